@@ -1,17 +1,33 @@
 package com.pxbt.dev.aiTradingCharts.Gateway;
 
+import com.pxbt.dev.aiTradingCharts.Gateway.RequestWeightLimiter.Priority;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.Supplier;
 
+
+/**
+ * Binance REST klines. Every request first takes its weight from a {@link RequestWeightLimiter},
+ * which keeps us under the IP's per-minute weight limit, lets interactive requests jump the queue
+ * and sheds background work when the limit is close.
+ */
 @Slf4j
 @Service
 public class BinanceGateway {
 
+    static final String USED_WEIGHT_HEADER = "X-MBX-USED-WEIGHT-1M";
+
     private final WebClient webClient;
+    private final ScheduledExecutorService sharedScheduler;
+    private RequestWeightLimiter limiter;
 
     @Value("${binance.api.klines-endpoint}")
     private String binanceKlinesEndpoint;
@@ -19,20 +35,109 @@ public class BinanceGateway {
     @Value("${binance.api.klines-query-params}")
     private String klinesQueryParams;
 
-    public BinanceGateway(WebClient webClient) {
+    @Value("${binance.api.klines-range-query-params}")
+    private String klinesRangeQueryParams;
+
+    @Value("${binance.api.weight-limit-per-minute:6000}")
+    private int weightLimitPerMinute;
+
+    @Value("${binance.api.shed-threshold:0.9}")
+    private double shedThreshold;
+
+    @Value("${binance.api.max-background-queue:200}")
+    private int maxBackgroundQueue;
+
+    public BinanceGateway(WebClient webClient, ScheduledExecutorService sharedScheduler) {
         this.webClient = webClient;
+        this.sharedScheduler = sharedScheduler;
     }
 
-    public Mono<String> getRawKlines(String symbol, String interval, int limit) {
+    @PostConstruct
+    public void init() {
+        limiter = new RequestWeightLimiter("Binance REST", sharedScheduler, weightLimitPerMinute,
+                shedThreshold, maxBackgroundQueue);
+    }
+
+    /**
+     * Raw kline response bytes, for {@link BinanceKlineParser} to scan without decoding to a String first
+     */
+    public Mono<byte[]> getRawKlines(String symbol, String interval, int limit, Priority priority) {
         String binanceSymbol = symbol.toUpperCase() + "USDT";
 
         log.debug("Fetching Binance klines for {} with interval {}", symbol, interval);
 
-        return webClient.get()
-                .uri(binanceKlinesEndpoint + klinesQueryParams, binanceSymbol, interval, limit)
-                .retrieve()
-                .bodyToMono(String.class)
+        return send(symbol, klineWeight(limit), priority, () -> webClient.get()
+                .uri(binanceKlinesEndpoint + klinesQueryParams, binanceSymbol, interval, limit));
+    }
+
+    /**
+     * Klines opened between startTime and endTime (epoch millis, inclusive)
+     */
+    public Mono<byte[]> getRawKlines(String symbol, String interval, long startTime, long endTime, int limit,
+                                     Priority priority) {
+        String binanceSymbol = symbol.toUpperCase() + "USDT";
+
+        log.debug("Fetching Binance klines for {} with interval {} from {} to {}", symbol, interval, startTime, endTime);
+
+        return send(symbol, klineWeight(limit), priority, () -> webClient.get()
+                .uri(binanceKlinesEndpoint + klinesRangeQueryParams, binanceSymbol, interval, startTime, endTime, limit));
+    }
+
+    /**
+     * Wait for the limiter, then send; the used weight Binance reports back keeps the limiter honest
+     */
+    private Mono<byte[]> send(String symbol, int weight, Priority priority,
+                              Supplier<WebClient.RequestHeadersSpec<?>> request) {
+        return Mono.defer(() -> Mono.fromFuture(limiter.acquire(weight, priority)))
+                .then(Mono.defer(() -> request.get()
+                        .retrieve()
+                        .onStatus(status -> status.value() == 429 || status.value() == 418, response -> {
+                            HttpHeaders headers = response.headers().asHttpHeaders();
+                            limiter.onUsedWeight(usedWeight(headers));
+                            limiter.onRateLimited(retryAfterMs(headers), response.statusCode().value() == 418);
+                            return response.createException();
+                        })
+                        .toEntity(byte[].class)))
+                .flatMap(entity -> {
+                    limiter.onUsedWeight(usedWeight(entity.getHeaders()));
+                    return Mono.justOrEmpty(entity.getBody());
+                })
                 .doOnSuccess(response -> log.debug("Binance raw data received for {}", symbol))
                 .doOnError(error -> log.error("Binance API failed for {}: {}", symbol, error.getMessage()));
     }
-}
\ No newline at end of file
+
+    /**
+     * Request weight of GET /api/v3/klines, which depends on the limit
+     */
+    public static int klineWeight(int limit) {
+        if (limit < 100) return 1;
+        if (limit < 500) return 2;
+        if (limit <= 1000) return 5;
+        return 10;
+    }
+
+    private static int usedWeight(HttpHeaders headers) {
+        String value = headers.getFirst(USED_WEIGHT_HEADER);
+        try {
+            return value == null ? -1 : Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long retryAfterMs(HttpHeaders headers) {
+        String value = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        try {
+            return value == null ? 60_000 : Long.parseLong(value.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            return 60_000;
+        }
+    }
+
+    /**
+     * Current request weight, queue depths and wait times
+     */
+    public Map<String, Object> getRateLimitStats() {
+        return limiter.getStats();
+    }
+}
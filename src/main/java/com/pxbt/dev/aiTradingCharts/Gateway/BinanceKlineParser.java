@@ -0,0 +1,166 @@
+package com.pxbt.dev.aiTradingCharts.Gateway;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Single-pass scanner for REST kline responses, straight from the response bytes:
+ * {@code [[1499040000000,"0.01634790","0.80000000","0.01575800","0.01577100","148976.11427815",...],...]}
+ *
+ * Open time, open, high, low, close and volume are handed to a {@link KlineSink} as primitives; the
+ * remaining fields of each row are skipped. No tree, list or string is built per cell, so a sink that
+ * writes into columns (e.g. a {@code BarSeries}) parses a response without per-bar garbage.
+ * Stateless and thread-safe.
+ */
+public final class BinanceKlineParser {
+
+    /**
+     * Receives each kline in response order (oldest first)
+     */
+    @FunctionalInterface
+    public interface KlineSink {
+        void kline(long openTime, double open, double high, double low, double close, double volume);
+    }
+
+    private static final int FIELDS_USED = 6;
+
+    private BinanceKlineParser() {
+    }
+
+    /**
+     * @return the number of klines passed to the sink
+     * @throws IllegalArgumentException if the response isn't a kline array (e.g. a Binance error object)
+     */
+    public static int parse(byte[] json, KlineSink sink) {
+        Ascii text = new Ascii(json);
+        int length = json.length;
+        int i = skipWhitespace(text, 0);
+        if (i >= length || json[i] != '[') {
+            throw new IllegalArgumentException("Not a kline array: " + preview(json));
+        }
+
+        int count = 0;
+        long openTime = 0;
+        double[] prices = new double[FIELDS_USED - 1];
+        i++;
+        while (true) {
+            i = skipWhitespace(text, i);
+            if (i >= length) throw malformed(i);
+            byte c = json[i];
+            if (c == ']') return count;
+            if (c == ',') {
+                i++;
+                continue;
+            }
+            if (c != '[') throw malformed(i);
+
+            // One row: read the leading fields, skip the rest
+            int field = 0;
+            i++;
+            while (true) {
+                i = skipWhitespace(text, i);
+                if (i >= length) throw malformed(i);
+                c = json[i];
+                if (c == ']') {
+                    i++;
+                    break;
+                }
+                if (c == ',') {
+                    i++;
+                    continue;
+                }
+
+                int valueStart;
+                int valueEnd;
+                if (c == '"') {
+                    valueStart = i + 1;
+                    valueEnd = findStringEnd(json, valueStart);
+                    if (valueEnd < 0) throw malformed(i);
+                    i = valueEnd + 1;
+                } else {
+                    valueStart = i;
+                    valueEnd = findScalarEnd(json, i);
+                    i = valueEnd;
+                }
+
+                if (field == 0) {
+                    openTime = DecimalParser.parseLong(text, valueStart, valueEnd);
+                } else if (field < FIELDS_USED) {
+                    prices[field - 1] = DecimalParser.parse(text, valueStart, valueEnd);
+                }
+                field++;
+            }
+
+            if (field < FIELDS_USED) throw malformed(i);
+            sink.kline(openTime, prices[0], prices[1], prices[2], prices[3], prices[4]);
+            count++;
+        }
+    }
+
+    private static int findScalarEnd(byte[] json, int i) {
+        while (i < json.length) {
+            byte c = json[i];
+            if (c == ',' || c == ']' || c == '}' || c <= ' ') break;
+            i++;
+        }
+        return i;
+    }
+
+    private static int findStringEnd(byte[] json, int i) {
+        while (i < json.length) {
+            byte c = json[i];
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '"') {
+                return i;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(Ascii text, int i) {
+        while (i < text.length() && text.charAt(i) <= ' ') i++;
+        return i;
+    }
+
+    private static IllegalArgumentException malformed(int position) {
+        return new IllegalArgumentException("Malformed kline response at byte " + position);
+    }
+
+    private static String preview(byte[] json) {
+        return new String(json, 0, Math.min(json.length, 200), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * The response bytes seen as characters, so {@link DecimalParser} can read them in place.
+     * Kline numbers are plain ASCII, which is all the parser ever looks at.
+     */
+    private static final class Ascii implements CharSequence {
+        private final byte[] bytes;
+
+        private Ascii(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes[index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new String(bytes, start, end - start, StandardCharsets.ISO_8859_1);
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes, StandardCharsets.ISO_8859_1);
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package com.pxbt.dev.aiTradingCharts.Gateway;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.java_websocket.WebSocket;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.handshake.ServerHandshake;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Single multiplexed connection to Binance combined streams.
+ *
+ * All symbols share one socket ({@code /stream?streams=a@ticker/b@ticker/...}); messages arrive as
+ * {@code {"stream": "...", "data": {...}}} and are routed to the listener registered for that stream.
+ * Ticker messages are scanned in place by {@link BinanceTickerParser} and routed by the stream
+ * name's character range, so the hot path allocates nothing beyond the frame text itself.
+ * Streams can be added or removed at runtime with SUBSCRIBE / UNSUBSCRIBE frames on the same socket.
+ * Reconnects and stall detection are handled by a {@link ConnectionSupervisor} on the shared scheduler.
+ */
+@Slf4j
+@Service
+public class BinanceStreamGateway {
+
+    // Keep the handshake URL short - anything beyond this is subscribed after the socket opens
+    private static final int MAX_STREAMS_IN_URL = 50;
+
+    @Value("${binance.stream.base-url:wss://stream.binance.com:9443/stream}")
+    private String streamBaseUrl;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, TickerListener> handlers = new ConcurrentHashMap<>();
+    private final AtomicLong requestIds = new AtomicLong();
+
+    // Immutable lookup table rebuilt on (un)subscribe, read lock-free by the socket thread
+    private volatile StreamRoutes routes = StreamRoutes.EMPTY;
+
+    @Value("${binance.stream.reconnect.initial-backoff-ms:1000}")
+    private long initialBackoffMs;
+
+    @Value("${binance.stream.reconnect.max-backoff-ms:60000}")
+    private long maxBackoffMs;
+
+    @Value("${binance.stream.health.check-interval-ms:5000}")
+    private long healthCheckIntervalMs;
+
+    @Value("${binance.stream.health.stall-timeout-ms:15000}")
+    private long stallTimeoutMs;
+
+    @Value("${binance.stream.health.pong-timeout-ms:10000}")
+    private long pongTimeoutMs;
+
+    private final ScheduledExecutorService sharedScheduler;
+    private ConnectionSupervisor supervisor;
+
+    private volatile WebSocketClient client;
+    private volatile boolean stopped = false;
+
+    public BinanceStreamGateway(ScheduledExecutorService sharedScheduler) {
+        this.sharedScheduler = sharedScheduler;
+    }
+
+    @PostConstruct
+    public void init() {
+        supervisor = new ConnectionSupervisor("Binance combined stream", sharedScheduler,
+                new ConnectionSupervisor.Connection() {
+                    @Override
+                    public void connect() {
+                        openConnection();
+                    }
+
+                    @Override
+                    public void ping() {
+                        WebSocketClient current = client;
+                        if (current != null && current.isOpen()) {
+                            current.sendPing();
+                        }
+                    }
+
+                    @Override
+                    public void forceClose(String reason) {
+                        WebSocketClient current = client;
+                        if (current != null) {
+                            // Abnormal close - onClose fires and the supervisor schedules the reconnect
+                            current.closeConnection(CloseFrame.ABNORMAL_CLOSE, reason);
+                        }
+                    }
+                },
+                initialBackoffMs, maxBackoffMs, stallTimeoutMs, pongTimeoutMs);
+    }
+
+    /**
+     * Called with (fromMillis, toMillis) after a dropped connection is re-established,
+     * so ticks missed in between can be back-filled from REST
+     */
+    public void setReconnectListener(BiConsumer<Long, Long> listener) {
+        supervisor.setGapListener(listener);
+    }
+
+    /**
+     * Route a ticker stream (e.g. "btcusdt@ticker") to a listener, subscribing live if already connected
+     */
+    public void subscribe(String streamName, TickerListener listener) {
+        boolean added = handlers.put(streamName, listener) == null;
+        rebuildRoutes();
+        if (added && isConnected()) {
+            sendControl("SUBSCRIBE", List.of(streamName));
+        }
+    }
+
+    /**
+     * Stop routing a stream and unsubscribe it on the live socket
+     */
+    public void unsubscribe(String streamName) {
+        boolean removed = handlers.remove(streamName) != null;
+        rebuildRoutes();
+        if (removed && isConnected()) {
+            sendControl("UNSUBSCRIBE", List.of(streamName));
+        }
+    }
+
+    private synchronized void rebuildRoutes() {
+        routes = new StreamRoutes(handlers);
+    }
+
+    public Set<String> getSubscribedStreams() {
+        return Collections.unmodifiableSet(handlers.keySet());
+    }
+
+    public boolean isConnected() {
+        WebSocketClient current = client;
+        return current != null && current.isOpen();
+    }
+
+    /**
+     * Open the combined-stream connection for everything subscribed so far and keep it alive
+     */
+    public void connect() {
+        supervisor.start(healthCheckIntervalMs);
+    }
+
+    /**
+     * Connection health and reconnect counters
+     */
+    public Map<String, Object> getConnectionStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(supervisor.getStats());
+        stats.put("subscribedStreams", handlers.size());
+        return stats;
+    }
+
+    private synchronized void openConnection() {
+        if (stopped) return;
+
+        WebSocketClient previous = client;
+        if (previous != null && !previous.isClosed()) {
+            previous.close();
+        }
+
+        List<String> urlStreams = handlers.keySet().stream()
+                .sorted()
+                .limit(MAX_STREAMS_IN_URL)
+                .toList();
+
+        try {
+            URI uri = new URI(streamBaseUrl + (urlStreams.isEmpty() ? "" : "?streams=" + String.join("/", urlStreams)));
+            log.info("🔗 Connecting Binance combined stream ({} streams)", handlers.size());
+
+            WebSocketClient newClient = new WebSocketClient(uri) {
+                // Reused for every frame - onMessage always runs on this client's read thread
+                private final BinanceTickerParser parser = new BinanceTickerParser();
+
+                @Override
+                public void onMessage(String message) {
+                    supervisor.onMessage();
+                    dispatch(message, parser);
+                }
+
+                @Override
+                public void onWebsocketPong(WebSocket conn, Framedata frame) {
+                    supervisor.onPong();
+                }
+
+                @Override
+                public void onOpen(ServerHandshake handshake) {
+                    log.info("✅ Binance combined stream CONNECTED");
+                    // Anything registered after the URL was built (or beyond the URL cap)
+                    List<String> pending = new ArrayList<>(handlers.keySet());
+                    pending.removeAll(urlStreams);
+                    if (!pending.isEmpty()) {
+                        sendControl("SUBSCRIBE", pending);
+                    }
+                    supervisor.onConnected();
+                }
+
+                @Override
+                public void onClose(int code, String reason, boolean remote) {
+                    log.warn("❌ Binance combined stream CLOSED - Code: {}, Reason: {}", code, reason);
+                    // Ignore late closes from a client we've already replaced
+                    if (!stopped && client == this) {
+                        supervisor.onDisconnected();
+                    }
+                }
+
+                @Override
+                public void onError(Exception ex) {
+                    log.debug("💥 Binance combined stream ERROR: {}", ex.getMessage());
+                }
+            };
+
+            // The supervisor does its own stall detection with pings
+            newClient.setConnectionLostTimeout(0);
+            client = newClient;
+            newClient.connect();
+
+        } catch (Exception e) {
+            log.error("❌ Failed to connect Binance combined stream: {}", e.getMessage());
+            supervisor.onDisconnected();
+        }
+    }
+
+    private void dispatch(String message, BinanceTickerParser parser) {
+        try {
+            if (!parser.parse(message)) {
+                // SUBSCRIBE / UNSUBSCRIBE acknowledgement ({"result": null, "id": 1}) or malformed frame
+                log.debug("📨 Binance non-ticker message: {}", message);
+                return;
+            }
+            if (!parser.hasStream()) {
+                return;
+            }
+
+            TickerListener listener = routes.find(message, parser.getStreamStart(), parser.getStreamEnd());
+            if (listener != null) {
+                listener.onTicker(parser.getLastPrice(), parser.getVolume(), parser.getEventTime());
+            } else if (log.isTraceEnabled()) {
+                log.trace("No listener for stream {}", message.substring(parser.getStreamStart(), parser.getStreamEnd()));
+            }
+        } catch (Exception e) {
+            log.error("❌ Error dispatching Binance stream message: {}", e.getMessage());
+        }
+    }
+
+    private void sendControl(String method, List<String> streams) {
+        try {
+            ObjectNode request = objectMapper.createObjectNode();
+            request.put("method", method);
+            ArrayNode params = request.putArray("params");
+            streams.forEach(params::add);
+            request.put("id", requestIds.incrementAndGet());
+
+            client.send(objectMapper.writeValueAsString(request));
+            log.debug("📤 {} {}", method, streams);
+        } catch (Exception e) {
+            // Not fatal - onOpen re-subscribes everything registered after a reconnect
+            log.warn("⚠️ Failed to send {} for {}: {}", method, streams, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopped = true;
+        if (supervisor != null) {
+            supervisor.stop();
+        }
+        WebSocketClient current = client;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    /**
+     * Open-addressing table keyed by stream name that can be probed with a character range of the
+     * incoming frame, so routing needs no substring. Hashes match {@link String#hashCode()}.
+     */
+    private static final class StreamRoutes {
+
+        private static final StreamRoutes EMPTY = new StreamRoutes(Map.of());
+
+        private final String[] names;
+        private final int[] hashes;
+        private final TickerListener[] listeners;
+        private final int mask;
+
+        private StreamRoutes(Map<String, TickerListener> source) {
+            int size = Integer.highestOneBit(Math.max(4, source.size() * 2 - 1)) << 1;
+            names = new String[size];
+            hashes = new int[size];
+            listeners = new TickerListener[size];
+            mask = size - 1;
+
+            source.forEach((name, listener) -> {
+                int slot = name.hashCode() & mask;
+                while (names[slot] != null) slot = (slot + 1) & mask;
+                names[slot] = name;
+                hashes[slot] = name.hashCode();
+                listeners[slot] = listener;
+            });
+        }
+
+        private TickerListener find(String message, int start, int end) {
+            int hash = 0;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + message.charAt(i);
+            }
+
+            int length = end - start;
+            for (int slot = hash & mask; names[slot] != null; slot = (slot + 1) & mask) {
+                if (hashes[slot] == hash && names[slot].length() == length
+                        && message.regionMatches(start, names[slot], 0, length)) {
+                    return listeners[slot];
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.pxbt.dev.aiTradingCharts.Gateway;
+
+/**
+ * Single-pass scanner for combined-stream ticker messages:
+ * {@code {"stream":"btcusdt@ticker","data":{"e":"24hrTicker","E":...,"c":"42000.01",...,"v":"1234.5",...}}}
+ *
+ * Only the stream name (as a character range), last price {@code c}, base volume {@code v} and
+ * event time {@code E} are extracted; every other value is skipped without building a tree or strings.
+ * Instances are reused and not thread-safe - one per socket reader thread.
+ */
+public final class BinanceTickerParser {
+
+    private CharSequence message;
+    private int length;
+
+    private int streamStart;
+    private int streamEnd;
+    private boolean hasPrice;
+    private double lastPrice;
+    private double volume;
+    private long eventTime;
+
+    /**
+     * @return true if the message was well-formed and carried a last price
+     */
+    public boolean parse(CharSequence json) {
+        message = json;
+        length = json.length();
+        streamStart = -1;
+        streamEnd = -1;
+        hasPrice = false;
+        lastPrice = 0;
+        volume = 0;
+        eventTime = 0;
+
+        try {
+            int i = skipWhitespace(0);
+            return i < length && json.charAt(i) == '{' && parseObject(i, true) >= 0 && hasPrice;
+        } catch (NumberFormatException e) {
+            return false;
+        } finally {
+            message = null; // don't pin the last message
+        }
+    }
+
+    public boolean hasStream() {
+        return streamStart >= 0;
+    }
+
+    public int getStreamStart() {
+        return streamStart;
+    }
+
+    public int getStreamEnd() {
+        return streamEnd;
+    }
+
+    public double getLastPrice() {
+        return lastPrice;
+    }
+
+    public double getVolume() {
+        return volume;
+    }
+
+    public long getEventTime() {
+        return eventTime;
+    }
+
+    /**
+     * Walk an object starting at the '{' at {@code i}; returns the index after the closing '}' or -1
+     */
+    private int parseObject(int i, boolean envelope) {
+        i++;
+        while (true) {
+            i = skipWhitespace(i);
+            if (i >= length) return -1;
+
+            char c = message.charAt(i);
+            if (c == '}') return i + 1;
+            if (c == ',') {
+                i++;
+                continue;
+            }
+            if (c != '"') return -1;
+
+            int keyStart = i + 1;
+            int keyEnd = findStringEnd(keyStart);
+            if (keyEnd < 0) return -1;
+
+            i = skipWhitespace(keyEnd + 1);
+            if (i >= length || message.charAt(i) != ':') return -1;
+            i = skipWhitespace(i + 1);
+            if (i >= length) return -1;
+
+            int keyLength = keyEnd - keyStart;
+            char first = message.charAt(i);
+
+            if (envelope) {
+                if (first == '"' && keyEquals(keyStart, keyLength, "stream")) {
+                    int end = findStringEnd(i + 1);
+                    if (end < 0) return -1;
+                    streamStart = i + 1;
+                    streamEnd = end;
+                    i = end + 1;
+                    continue;
+                }
+                if (first == '{' && keyEquals(keyStart, keyLength, "data")) {
+                    i = parseObject(i, false);
+                    if (i < 0) return -1;
+                    continue;
+                }
+            } else if (keyLength == 1) {
+                char key = message.charAt(keyStart);
+                if (key == 'c' || key == 'v' || key == 'E') {
+                    int valueStart;
+                    int valueEnd;
+                    if (first == '"') {
+                        valueStart = i + 1;
+                        valueEnd = findStringEnd(valueStart);
+                        if (valueEnd < 0) return -1;
+                        i = valueEnd + 1;
+                    } else {
+                        valueStart = i;
+                        valueEnd = findScalarEnd(i);
+                        i = valueEnd;
+                    }
+
+                    if (key == 'c') {
+                        lastPrice = DecimalParser.parse(message, valueStart, valueEnd);
+                        hasPrice = true;
+                    } else if (key == 'v') {
+                        volume = DecimalParser.parse(message, valueStart, valueEnd);
+                    } else {
+                        eventTime = DecimalParser.parseLong(message, valueStart, valueEnd);
+                    }
+                    continue;
+                }
+            }
+
+            i = skipValue(i);
+            if (i < 0) return -1;
+        }
+    }
+
+    private int skipValue(int i) {
+        char c = message.charAt(i);
+        if (c == '"') {
+            int end = findStringEnd(i + 1);
+            return end < 0 ? -1 : end + 1;
+        }
+        if (c == '{' || c == '[') {
+            int depth = 0;
+            for (int j = i; j < length; j++) {
+                char ch = message.charAt(j);
+                if (ch == '"') {
+                    j = findStringEnd(j + 1);
+                    if (j < 0) return -1;
+                } else if (ch == '{' || ch == '[') {
+                    depth++;
+                } else if (ch == '}' || ch == ']') {
+                    if (--depth == 0) return j + 1;
+                }
+            }
+            return -1;
+        }
+        // number, true, false, null
+        return findScalarEnd(i);
+    }
+
+    private int findScalarEnd(int i) {
+        while (i < length) {
+            char c = message.charAt(i);
+            if (c == ',' || c == '}' || c == ']' || c <= ' ') break;
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Index of the closing quote of a string whose content starts at {@code i}, honouring escapes
+     */
+    private int findStringEnd(int i) {
+        while (i < length) {
+            char c = message.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == '"') {
+                return i;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    private int skipWhitespace(int i) {
+        while (i < length && message.charAt(i) <= ' ') i++;
+        return i;
+    }
+
+    private boolean keyEquals(int start, int keyLength, String key) {
+        if (keyLength != key.length()) return false;
+        for (int k = 0; k < keyLength; k++) {
+            if (message.charAt(start + k) != key.charAt(k)) return false;
+        }
+        return true;
+    }
+}
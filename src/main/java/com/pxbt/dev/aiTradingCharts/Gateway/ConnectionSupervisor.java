@@ -0,0 +1,227 @@
+package com.pxbt.dev.aiTradingCharts.Gateway;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Keeps one streaming connection alive on the shared scheduler.
+ *
+ * Reconnects use exponential backoff with jitter (half fixed, half random) so a Binance-wide
+ * blip doesn't turn into a synchronised reconnect storm. A periodic health check pings the
+ * socket when it goes quiet and forces a reconnect if no pong or message follows.
+ */
+@Slf4j
+public class ConnectionSupervisor {
+
+    /**
+     * Callbacks into the connection being supervised
+     */
+    public interface Connection {
+        void connect();
+
+        void ping();
+
+        void forceClose(String reason);
+    }
+
+    private final String name;
+    private final ScheduledExecutorService scheduler;
+    private final Connection connection;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final long stallTimeoutMs;
+    private final long pongTimeoutMs;
+
+    // Called with (gapStartMillis, gapEndMillis) once a dropped connection is back
+    private volatile BiConsumer<Long, Long> gapListener = (from, to) -> { };
+
+    private volatile boolean connected = false;
+    private volatile boolean stopped = false;
+    private volatile long connectedSince = 0;
+    private volatile long lastMessageTime = 0;
+    private volatile long pingSentAt = 0;
+    private volatile long gapStart = 0;
+    private volatile long lastBackoffMs = 0;
+    private int consecutiveFailures = 0;
+    private ScheduledFuture<?> pendingReconnect;
+    private ScheduledFuture<?> healthCheck;
+
+    private final AtomicLong disconnects = new AtomicLong();
+    private final AtomicLong reconnectAttempts = new AtomicLong();
+    private final AtomicLong stallsDetected = new AtomicLong();
+    private final AtomicLong gapsFilled = new AtomicLong();
+
+    public ConnectionSupervisor(String name, ScheduledExecutorService scheduler, Connection connection,
+                                long initialBackoffMs, long maxBackoffMs, long stallTimeoutMs, long pongTimeoutMs) {
+        this.name = name;
+        this.scheduler = scheduler;
+        this.connection = connection;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.stallTimeoutMs = stallTimeoutMs;
+        this.pongTimeoutMs = pongTimeoutMs;
+    }
+
+    public void setGapListener(BiConsumer<Long, Long> gapListener) {
+        this.gapListener = gapListener;
+    }
+
+    /**
+     * Connect now and start the periodic health check
+     */
+    public void start(long healthCheckIntervalMs) {
+        synchronized (this) {
+            stopped = false;
+            if (healthCheck == null) {
+                healthCheck = scheduler.scheduleWithFixedDelay(this::checkHealth,
+                        healthCheckIntervalMs, healthCheckIntervalMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        // Never under our lock - the connection takes its own lock and reports failures back through onDisconnected()
+        connectOrRetry();
+    }
+
+    public synchronized void stop() {
+        stopped = true;
+        if (healthCheck != null) healthCheck.cancel(false);
+        if (pendingReconnect != null) pendingReconnect.cancel(false);
+    }
+
+    public void onConnected() {
+        long now = System.currentTimeMillis();
+        long missedFrom;
+        synchronized (this) {
+            connected = true;
+            connectedSince = now;
+            lastMessageTime = now;
+            pingSentAt = 0;
+            consecutiveFailures = 0;
+            missedFrom = gapStart;
+            gapStart = 0;
+        }
+
+        if (missedFrom > 0) {
+            log.info("🩹 {} back after {} ms - filling gap", name, now - missedFrom);
+            gapsFilled.incrementAndGet();
+            try {
+                gapListener.accept(missedFrom, now);
+            } catch (Exception e) {
+                log.warn("⚠️ {} gap fill failed: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Hot path - a single volatile write per frame
+     */
+    public void onMessage() {
+        lastMessageTime = System.currentTimeMillis();
+    }
+
+    public void onPong() {
+        lastMessageTime = System.currentTimeMillis();
+        pingSentAt = 0;
+    }
+
+    /**
+     * Connection closed or failed to open - schedule the next attempt with backoff
+     */
+    public synchronized void onDisconnected() {
+        if (connected) {
+            disconnects.incrementAndGet();
+        }
+        connected = false;
+        if (gapStart == 0) {
+            // Data stopped arriving at the last message we saw, not when the close was noticed
+            gapStart = lastMessageTime > 0 ? lastMessageTime : System.currentTimeMillis();
+        }
+        if (stopped || (pendingReconnect != null && !pendingReconnect.isDone())) {
+            return;
+        }
+
+        long delay = nextBackoff(consecutiveFailures++);
+        lastBackoffMs = delay;
+        log.info("🔄 {} reconnecting in {} ms (attempt {})", name, delay, consecutiveFailures);
+        pendingReconnect = scheduler.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void reconnect() {
+        synchronized (this) {
+            // Cleared before connecting, so a failure reported while this attempt is still running schedules the next one
+            pendingReconnect = null;
+            if (stopped) return;
+        }
+        reconnectAttempts.incrementAndGet();
+        connectOrRetry();
+    }
+
+    private void connectOrRetry() {
+        try {
+            connection.connect();
+        } catch (Exception e) {
+            log.warn("⚠️ {} connect attempt failed: {}", name, e.getMessage());
+            onDisconnected();
+        }
+    }
+
+    private long nextBackoff(int failures) {
+        long ceiling = initialBackoffMs << Math.min(failures, 20);
+        ceiling = Math.min(maxBackoffMs, ceiling);
+        long half = ceiling / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    private void checkHealth() {
+        try {
+            if (!connected || stopped) return;
+
+            long now = System.currentTimeMillis();
+            if (pingSentAt > 0) {
+                if (now - pingSentAt > pongTimeoutMs) {
+                    stallsDetected.incrementAndGet();
+                    log.warn("⏱️ {} stalled - no data for {} ms and no pong, forcing reconnect",
+                            name, now - lastMessageTime);
+                    pingSentAt = 0;
+                    connection.forceClose("stalled");
+                }
+            } else if (now - lastMessageTime > stallTimeoutMs) {
+                log.debug("📡 {} quiet for {} ms - sending ping", name, now - lastMessageTime);
+                pingSentAt = now;
+                connection.ping();
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ {} health check failed: {}", name, e.getMessage());
+        }
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Connection health and reconnect counters for monitoring
+     */
+    public Map<String, Object> getStats() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("connected", connected);
+        stats.put("connectedForMs", connected ? now - connectedSince : 0);
+        stats.put("lastMessageAgeMs", lastMessageTime > 0 ? now - lastMessageTime : -1);
+        stats.put("awaitingPong", pingSentAt > 0);
+        stats.put("disconnects", disconnects.get());
+        stats.put("reconnectAttempts", reconnectAttempts.get());
+        stats.put("stallsDetected", stallsDetected.get());
+        stats.put("gapsFilled", gapsFilled.get());
+        stats.put("lastBackoffMs", lastBackoffMs);
+        return stats;
+    }
+}
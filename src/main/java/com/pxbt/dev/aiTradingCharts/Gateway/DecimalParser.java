@@ -0,0 +1,114 @@
+package com.pxbt.dev.aiTradingCharts.Gateway;
+
+/**
+ * Parses Binance decimal strings ("42000.01000000") straight from the message characters,
+ * without creating a substring per field.
+ *
+ * Values with at most 15 significant digits (every Binance price/quantity) take the exact
+ * fast path: an integer mantissa divided by a power of ten is a single correctly rounded
+ * IEEE operation. Trailing zeros of the fraction don't count - Binance pads every value to
+ * 8 decimals, so a quantity like "128456789.12000000" has 11 significant digits, not 17.
+ * Anything else falls back to {@link Double#parseDouble}.
+ */
+public final class DecimalParser {
+
+    // 10^0 .. 10^22 are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final int MAX_SIGNIFICANT_DIGITS = 15;
+
+    private DecimalParser() {
+    }
+
+    /**
+     * Parse the decimal in {@code [start, end)} of the given characters
+     */
+    public static double parse(CharSequence s, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int significantDigits = 0;
+        int fractionDigits = 0;
+        // Fraction zeros not yet followed by a non-zero digit - dropped if they turn out to be trailing
+        int pendingZeros = 0;
+        boolean seenDigit = false;
+        boolean seenDot = false;
+
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (seenDot) {
+                    if (c == '0') {
+                        pendingZeros++;
+                        continue;
+                    }
+                    fractionDigits += pendingZeros + 1;
+                    if (mantissa != 0) {
+                        // Zeros between significant digits are significant
+                        significantDigits += pendingZeros;
+                        if (significantDigits >= MAX_SIGNIFICANT_DIGITS) {
+                            return slowParse(s, start, end);
+                        }
+                        for (; pendingZeros > 0; pendingZeros--) mantissa *= 10;
+                    }
+                    pendingZeros = 0;
+                }
+                if (mantissa == 0 && c == '0') continue; // leading zeros are not significant
+                if (++significantDigits > MAX_SIGNIFICANT_DIGITS) {
+                    return slowParse(s, start, end);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                // Exponents, NaN, Infinity, garbage - let the JDK decide
+                return slowParse(s, start, end);
+            }
+        }
+
+        if (!seenDigit || fractionDigits >= POWERS_OF_TEN.length || mantissa > MAX_EXACT_MANTISSA) {
+            return slowParse(s, start, end);
+        }
+
+        double value = mantissa / POWERS_OF_TEN[fractionDigits];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parse a plain (optionally negative) integer in {@code [start, end)}
+     */
+    public static long parseLong(CharSequence s, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && s.charAt(i) == '-') {
+            negative = true;
+            i++;
+        }
+        if (i >= end) {
+            throw new NumberFormatException("Empty number");
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return Long.parseLong(s.subSequence(start, end).toString());
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static double slowParse(CharSequence s, int start, int end) {
+        return Double.parseDouble(s.subSequence(start, end).toString());
+    }
+}
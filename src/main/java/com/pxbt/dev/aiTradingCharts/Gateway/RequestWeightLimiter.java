@@ -0,0 +1,219 @@
+package com.pxbt.dev.aiTradingCharts.Gateway;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket for Binance request weight, refilled continuously up to the per-minute limit.
+ *
+ * Requests wait in one FIFO queue per {@link Priority} and are released strictly in priority order,
+ * so chart requests overtake startup and backfill traffic. The bucket is reconciled with the weight
+ * Binance reports as used ({@code X-MBX-USED-WEIGHT-1M}), which also covers other clients sharing
+ * our IP. Near the limit, background requests are shed instead of queued, and a 429/418 halts all
+ * requests until the server's Retry-After has passed.
+ */
+@Slf4j
+public class RequestWeightLimiter {
+
+    public enum Priority {
+        INTERACTIVE, // a user is waiting on the response
+        SYSTEM,      // startup loads and stream gap fills - queued, never shed
+        BACKGROUND   // backfill - shed when close to the limit
+    }
+
+    /**
+     * Thrown (through the returned future) when a background request is dropped near the limit
+     */
+    public static class RequestShedException extends RuntimeException {
+        public RequestShedException(String message) {
+            super(message);
+        }
+    }
+
+    private static final long WINDOW_MS = 60_000;
+
+    private final String name;
+    private final ScheduledExecutorService scheduler;
+    private final int weightPerMinute;
+    private final double shedThreshold;
+    private final int maxQueueDepth;
+    private final double refillPerMs;
+
+    private final Map<Priority, ArrayDeque<Waiter>> queues = new EnumMap<>(Priority.class);
+    private double tokens;
+    private long lastRefill;
+    private long blockedUntil = 0;
+    private volatile int serverUsedWeight = 0;
+    private long drainAt = 0; // when the next scheduled drain runs, 0 if none
+
+    private final AtomicLong granted = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+    private final AtomicLong rateLimitedResponses = new AtomicLong();
+    private final AtomicLong totalWaitMs = new AtomicLong();
+    private volatile long maxWaitMs = 0;
+
+    public RequestWeightLimiter(String name, ScheduledExecutorService scheduler, int weightPerMinute,
+                                double shedThreshold, int maxQueueDepth) {
+        this.name = name;
+        this.scheduler = scheduler;
+        this.weightPerMinute = weightPerMinute;
+        this.shedThreshold = shedThreshold;
+        this.maxQueueDepth = maxQueueDepth;
+        this.refillPerMs = weightPerMinute / (double) WINDOW_MS;
+        this.tokens = weightPerMinute;
+        this.lastRefill = System.currentTimeMillis();
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Reserve {@code weight} for a request
+     *
+     * @return completes when the request may be sent; fails with {@link RequestShedException} if shed
+     */
+    public CompletableFuture<Void> acquire(int weight, Priority priority) {
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        synchronized (this) {
+            refill(System.currentTimeMillis());
+            if (priority == Priority.BACKGROUND
+                    && (usedFraction() >= shedThreshold || queues.get(priority).size() >= maxQueueDepth)) {
+                shed.incrementAndGet();
+                permit.completeExceptionally(new RequestShedException(String.format(
+                        "%s shedding background request: %.0f%% of weight used, %d queued",
+                        name, usedFraction() * 100, queues.get(priority).size())));
+                return permit;
+            }
+            queues.get(priority).add(new Waiter(weight, permit, System.currentTimeMillis()));
+        }
+        drain();
+        return permit;
+    }
+
+    /**
+     * Weight Binance says this IP has used in the current minute
+     */
+    public synchronized void onUsedWeight(int usedWeight) {
+        if (usedWeight < 0) return;
+        serverUsedWeight = usedWeight;
+        refill(System.currentTimeMillis());
+        tokens = Math.min(tokens, weightPerMinute - usedWeight);
+    }
+
+    /**
+     * 429 (rate limited) or 418 (IP banned) - nothing is sent until {@code retryAfterMs} has passed
+     */
+    public void onRateLimited(long retryAfterMs, boolean banned) {
+        rateLimitedResponses.incrementAndGet();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            blockedUntil = Math.max(blockedUntil, now + Math.max(retryAfterMs, 1_000));
+            tokens = 0;
+            lastRefill = blockedUntil;
+        }
+        log.warn("🚦 {} {} - holding all requests for {} ms", name, banned ? "IP banned (418)" : "rate limited (429)",
+                retryAfterMs);
+        drain();
+    }
+
+    private void drain() {
+        List<Runnable> release = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            refill(now);
+            long waitMs = 0;
+            for (Priority priority : Priority.values()) {
+                ArrayDeque<Waiter> queue = queues.get(priority);
+                while (!queue.isEmpty()) {
+                    Waiter head = queue.peek();
+                    if (head.permit.isDone()) {   // cancelled by the caller
+                        queue.poll();
+                        continue;
+                    }
+                    if (now < blockedUntil) {
+                        waitMs = blockedUntil - now;
+                    } else if (tokens < head.weight) {
+                        waitMs = (long) Math.ceil((head.weight - tokens) / refillPerMs);
+                    } else {
+                        tokens -= head.weight;
+                        queue.poll();
+                        long waited = now - head.enqueuedAt;
+                        totalWaitMs.addAndGet(waited);
+                        maxWaitMs = Math.max(maxWaitMs, waited);
+                        granted.incrementAndGet();
+                        release.add(() -> head.permit.complete(null));
+                        continue;
+                    }
+                    break;
+                }
+                if (waitMs > 0) break; // lower priorities wait behind a blocked higher one
+            }
+            if (waitMs > 0 && (drainAt == 0 || now + waitMs < drainAt)) {
+                drainAt = now + waitMs;
+                scheduler.schedule(this::scheduledDrain, waitMs, TimeUnit.MILLISECONDS);
+            }
+        }
+        release.forEach(Runnable::run);
+    }
+
+    private void scheduledDrain() {
+        synchronized (this) {
+            drainAt = 0;
+        }
+        drain();
+    }
+
+    private void refill(long now) {
+        if (now > lastRefill) {
+            tokens = Math.min(weightPerMinute, tokens + (now - lastRefill) * refillPerMs);
+            lastRefill = now;
+        }
+    }
+
+    private double usedFraction() {
+        return Math.max(0, weightPerMinute - tokens) / weightPerMinute;
+    }
+
+    public synchronized int getQueueDepth() {
+        int depth = 0;
+        for (ArrayDeque<Waiter> queue : queues.values()) depth += queue.size();
+        return depth;
+    }
+
+    /**
+     * Current weight, queue depths and wait times for monitoring
+     */
+    public synchronized Map<String, Object> getStats() {
+        refill(System.currentTimeMillis());
+        long now = System.currentTimeMillis();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("weightLimitPerMinute", weightPerMinute);
+        stats.put("currentWeight", Math.round(weightPerMinute - tokens));
+        stats.put("serverUsedWeight", serverUsedWeight);
+        Map<String, Integer> depths = new LinkedHashMap<>();
+        queues.forEach((priority, queue) -> depths.put(priority.name().toLowerCase(), queue.size()));
+        stats.put("queueDepth", depths);
+        long grantedCount = granted.get();
+        stats.put("granted", grantedCount);
+        stats.put("avgWaitMs", grantedCount > 0 ? totalWaitMs.get() / grantedCount : 0);
+        stats.put("maxWaitMs", maxWaitMs);
+        stats.put("shed", shed.get());
+        stats.put("rateLimitedResponses", rateLimitedResponses.get());
+        stats.put("blockedForMs", Math.max(0, blockedUntil - now));
+        return stats;
+    }
+
+    private record Waiter(int weight, CompletableFuture<Void> permit, long enqueuedAt) {
+    }
+}
@@ -0,0 +1,10 @@
+package com.pxbt.dev.aiTradingCharts.Gateway;
+
+/**
+ * Receives the fields we use from a Binance 24hr ticker event, already parsed into primitives
+ */
+@FunctionalInterface
+public interface TickerListener {
+
+    void onTicker(double lastPrice, double volume, long eventTime);
+}
@@ -0,0 +1,40 @@
+package com.pxbt.dev.aiTradingCharts.config;
+
+import com.pxbt.dev.aiTradingCharts.service.ModelCandidate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import weka.classifiers.functions.LinearRegression;
+import weka.classifiers.functions.SMOreg;
+import weka.classifiers.trees.RandomForest;
+
+@Configuration
+public class ModelCandidateConfig {
+
+    // Threads the forest builds its trees on; 0 means all cores but two. These are Weka's own threads at
+    // normal priority, so the spare cores keep ticks and analysis flowing while a forest builds - at the cost
+    // of a slower forest, which is usually the slowest candidate of a round
+    @Value("${models.training.forest-slots:0}")
+    private int forestSlots;
+
+    @Bean
+    public ModelCandidate linearRegression() {
+        return new ModelCandidate("LinearRegression", LinearRegression::new);
+    }
+
+    @Bean
+    public ModelCandidate supportVectorRegression() {
+        return new ModelCandidate("SVM", SMOreg::new);
+    }
+
+    @Bean
+    public ModelCandidate randomForest() {
+        int slots = forestSlots > 0 ? forestSlots : Math.max(1, Runtime.getRuntime().availableProcessors() - 2);
+        return new ModelCandidate("RandomForest", () -> {
+            RandomForest forest = new RandomForest();
+            forest.setNumIterations(100);
+            forest.setNumExecutionSlots(slots);
+            return forest;
+        });
+    }
+}
@@ -0,0 +1,28 @@
+package com.pxbt.dev.aiTradingCharts.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class SchedulerConfig {
+
+    /**
+     * One small scheduler shared by reconnects, health checks and other housekeeping,
+     * instead of a new Timer thread per task
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService sharedScheduler() {
+        AtomicInteger counter = new AtomicInteger();
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(2, runnable -> {
+            Thread thread = new Thread(runnable, "shared-scheduler-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+}
@@ -4,6 +4,7 @@ import com.pxbt.dev.aiTradingCharts.dto.ChartDataResponseDto;
 import com.pxbt.dev.aiTradingCharts.model.CryptoPrice;
 import com.pxbt.dev.aiTradingCharts.model.AIAnalysisResult;
 import com.pxbt.dev.aiTradingCharts.service.BinanceHistoricalService;
+import com.pxbt.dev.aiTradingCharts.service.SymbolRegistry;
 import com.pxbt.dev.aiTradingCharts.service.TradingAnalysisService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -23,12 +24,16 @@ public class ApiDataController {
     @Autowired
     private TradingAnalysisService tradingAnalysisService;
 
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+
     @GetMapping("/data")
     public ResponseEntity<ChartDataResponseDto> getChartData(
             @RequestParam String symbol,
             @RequestParam String timeframe) {
 
         log.info("📈 Chart data requested - Symbol: {}, Timeframe: {}", symbol, timeframe);
+        symbolRegistry.touch(symbol);
 
         try {
             List<CryptoPrice> historicalData = binanceHistoricalService.getHistoricalDataReactive(symbol, timeframe, 100)
@@ -3,12 +3,19 @@ package com.pxbt.dev.aiTradingCharts.controller;
 import com.pxbt.dev.aiTradingCharts.dto.OHLCData;
 import com.pxbt.dev.aiTradingCharts.model.CryptoPrice;
 import com.pxbt.dev.aiTradingCharts.service.BinanceHistoricalService;
+import com.pxbt.dev.aiTradingCharts.service.HistoricalBackfillService;
+import com.pxbt.dev.aiTradingCharts.service.SymbolRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -17,9 +24,18 @@ import java.util.stream.Collectors;
 public class HistoricalDataController {
 
     private final BinanceHistoricalService binanceHistoricalService;
+    private final HistoricalBackfillService historicalBackfillService;
+    private final SymbolRegistry symbolRegistry;
 
-    public HistoricalDataController(BinanceHistoricalService binanceHistoricalService) {
+    @Value("${binance.backfill.max-days:365}")
+    private int maxBackfillDays;
+
+    public HistoricalDataController(BinanceHistoricalService binanceHistoricalService,
+                                    HistoricalBackfillService historicalBackfillService,
+                                    SymbolRegistry symbolRegistry) {
         this.binanceHistoricalService = binanceHistoricalService;
+        this.historicalBackfillService = historicalBackfillService;
+        this.symbolRegistry = symbolRegistry;
     }
 
     @GetMapping("/{symbol}")
@@ -29,6 +45,7 @@ public class HistoricalDataController {
             @RequestParam(defaultValue = "100") int limit) {
 
         log.info("📈 Historical data requested - Symbol: {}, Timeframe: {}, Limit: {}", symbol, timeframe, limit);
+        symbolRegistry.touch(symbol);
 
         try {
             // ✅ Get CryptoPrice objects instead of PriceUpdate
@@ -60,4 +77,50 @@ public class HistoricalDataController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Start loading {@code days} of history at {@code interval} into the bar store, paging past the 1000-bar
+     * limit. Returns 202 straight away; progress is at {@code /api/status/backfill}. Re-running after a
+     * failure picks up from the merged bars. Symbols must be registered, so releasing them frees the bars.
+     */
+    @PostMapping("/backfill")
+    public ResponseEntity<Map<String, Object>> backfill(
+            @RequestParam List<String> symbols,
+            @RequestParam(defaultValue = "1m") String interval,
+            @RequestParam(defaultValue = "30") int days) {
+
+        log.info("📥 Backfill requested - Symbols: {}, Interval: {}, Days: {}", symbols, interval, days);
+
+        if (!HistoricalBackfillService.INTERVALS.contains(interval)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Unknown interval: " + interval,
+                    "intervals", HistoricalBackfillService.INTERVALS));
+        }
+        if (days < 1 || days > maxBackfillDays) {
+            return ResponseEntity.badRequest().body(Map.of("error", "days must be between 1 and " + maxBackfillDays));
+        }
+        Set<String> requested = new LinkedHashSet<>();
+        try {
+            for (String symbol : symbols) {
+                requested.add(SymbolRegistry.normalize(symbol));
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        List<String> unregistered = requested.stream().filter(symbol -> !symbolRegistry.isRegistered(symbol)).toList();
+        if (!unregistered.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Symbols not registered: " + unregistered));
+        }
+
+        long end = System.currentTimeMillis();
+        long start = end - days * 24L * 60 * 60 * 1000;
+        List<String> queued = historicalBackfillService.startBackfill(List.copyOf(requested), interval, start, end);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("queued", queued);
+        body.put("alreadyRunning", requested.stream().filter(symbol -> !queued.contains(symbol)).toList());
+        body.put("interval", interval);
+        body.put("days", days);
+        body.put("progress", "/api/status/backfill");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(body);
+    }
+}
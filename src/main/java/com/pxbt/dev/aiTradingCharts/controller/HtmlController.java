@@ -1,18 +1,23 @@
 package com.pxbt.dev.aiTradingCharts.controller;
 
+import com.pxbt.dev.aiTradingCharts.service.SymbolRegistry;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 
-import java.util.List;
-
 @Controller
 public class HtmlController {
 
+    private final SymbolRegistry symbolRegistry;
+
+    public HtmlController(SymbolRegistry symbolRegistry) {
+        this.symbolRegistry = symbolRegistry;
+    }
+
     @GetMapping("/")
     public String chartPage(Model model) {
         System.out.println("🎯 Serving main chart page");
-        model.addAttribute("symbols", List.of("BTC", "SOL", "TAO", "WIF"));
+        model.addAttribute("symbols", symbolRegistry.getSymbols());
         return "chart"; // This serves chart.html from templates/
     }
 }
\ No newline at end of file
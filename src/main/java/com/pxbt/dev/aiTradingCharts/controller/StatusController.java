@@ -0,0 +1,144 @@
+package com.pxbt.dev.aiTradingCharts.controller;
+
+import com.pxbt.dev.aiTradingCharts.Gateway.BinanceGateway;
+import com.pxbt.dev.aiTradingCharts.handler.CryptoWebSocketHandler;
+import com.pxbt.dev.aiTradingCharts.service.AIModelService;
+import com.pxbt.dev.aiTradingCharts.service.HistoricalBackfillService;
+import com.pxbt.dev.aiTradingCharts.service.HistoricalResponseCache;
+import com.pxbt.dev.aiTradingCharts.service.IndicatorEngine;
+import com.pxbt.dev.aiTradingCharts.service.ModelRegistry;
+import com.pxbt.dev.aiTradingCharts.service.RealTimeDataService;
+import com.pxbt.dev.aiTradingCharts.service.RetrainingScheduler;
+import com.pxbt.dev.aiTradingCharts.service.StartupWarmupService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/status")
+public class StatusController {
+
+    private final RealTimeDataService realTimeDataService;
+    private final IndicatorEngine indicatorEngine;
+    private final HistoricalResponseCache historicalResponseCache;
+    private final HistoricalBackfillService historicalBackfillService;
+    private final BinanceGateway binanceGateway;
+    private final StartupWarmupService startupWarmupService;
+    private final ModelRegistry modelRegistry;
+    private final RetrainingScheduler retrainingScheduler;
+    private final AIModelService aiModelService;
+    private final CryptoWebSocketHandler webSocketHandler;
+
+    public StatusController(RealTimeDataService realTimeDataService, IndicatorEngine indicatorEngine,
+                            HistoricalResponseCache historicalResponseCache,
+                            HistoricalBackfillService historicalBackfillService,
+                            BinanceGateway binanceGateway, StartupWarmupService startupWarmupService,
+                            ModelRegistry modelRegistry, RetrainingScheduler retrainingScheduler,
+                            AIModelService aiModelService, CryptoWebSocketHandler webSocketHandler) {
+        this.realTimeDataService = realTimeDataService;
+        this.indicatorEngine = indicatorEngine;
+        this.historicalResponseCache = historicalResponseCache;
+        this.historicalBackfillService = historicalBackfillService;
+        this.binanceGateway = binanceGateway;
+        this.startupWarmupService = startupWarmupService;
+        this.modelRegistry = modelRegistry;
+        this.retrainingScheduler = retrainingScheduler;
+        this.aiModelService = aiModelService;
+        this.webSocketHandler = webSocketHandler;
+    }
+
+    /**
+     * Readiness - 200 once historical data is loaded for every symbol, 503 while warm-up is still running
+     */
+    @GetMapping("/ready")
+    public ResponseEntity<Map<String, Object>> getReadiness() {
+        Map<String, Object> status = startupWarmupService.getStatus();
+        return Boolean.TRUE.equals(status.get("ready"))
+                ? ResponseEntity.ok(status)
+                : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(status);
+    }
+
+    /**
+     * Tick -> analysis pipeline counters (submitted, conflated, dropped...)
+     */
+    @GetMapping("/pipeline")
+    public ResponseEntity<Map<String, Object>> getPipelineStats() {
+        return ResponseEntity.ok(realTimeDataService.getPipelineStats());
+    }
+
+    /**
+     * Binance stream connection health (last message age, disconnects, reconnect backoff...)
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<Map<String, Object>> getStreamStats() {
+        return ResponseEntity.ok(realTimeDataService.getStreamStats());
+    }
+
+    /**
+     * Indicator engine counters (states tracked, incremental updates vs. full rebuilds)
+     */
+    @GetMapping("/indicators")
+    public ResponseEntity<Map<String, Object>> getIndicatorStats() {
+        return ResponseEntity.ok(indicatorEngine.getStats());
+    }
+
+    /**
+     * Historical kline response cache counters (hits, misses, coalesced fetches, stale serves...)
+     */
+    @GetMapping("/historical-cache")
+    public ResponseEntity<Map<String, Object>> getHistoricalCacheStats() {
+        return ResponseEntity.ok(historicalResponseCache.getStats());
+    }
+
+    /**
+     * Backfill counters (pages fetched, bars merged, retries, checkpoints) and the progress of each backfill
+     */
+    @GetMapping("/backfill")
+    public ResponseEntity<Map<String, Object>> getBackfillStats() {
+        return ResponseEntity.ok(historicalBackfillService.getStats());
+    }
+
+    /**
+     * Binance REST request weight (current weight, queue depth per priority, wait times, shed requests)
+     */
+    @GetMapping("/binance-weight")
+    public ResponseEntity<Map<String, Object>> getBinanceWeightStats() {
+        return ResponseEntity.ok(binanceGateway.getRateLimitStats());
+    }
+
+    /**
+     * Trained models (resident vs. spilled, size of each) against the model heap budget
+     */
+    @GetMapping("/models")
+    public ResponseEntity<Map<String, Object>> getModelStats() {
+        return ResponseEntity.ok(modelRegistry.getStats());
+    }
+
+    /**
+     * Retraining jobs (pending symbols, completed, failed, rejected when the training queue is full)
+     */
+    @GetMapping("/retraining")
+    public ResponseEntity<Map<String, Object>> getRetrainingStats() {
+        return ResponseEntity.ok(retrainingScheduler.getStats());
+    }
+
+    /**
+     * Latest training round per model (wall and CPU time and R² of each candidate)
+     */
+    @GetMapping("/training")
+    public ResponseEntity<Map<String, Object>> getTrainingReports() {
+        return ResponseEntity.ok(aiModelService.getTrainingReports());
+    }
+
+    /**
+     * WebSocket clients (outbound queue depth, send lag, dropped and conflated messages per session)
+     */
+    @GetMapping("/websocket")
+    public ResponseEntity<Map<String, Object>> getWebSocketStats() {
+        return ResponseEntity.ok(webSocketHandler.getStats());
+    }
+}
\ No newline at end of file
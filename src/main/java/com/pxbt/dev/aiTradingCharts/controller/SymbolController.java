@@ -0,0 +1,73 @@
+package com.pxbt.dev.aiTradingCharts.controller;
+
+import com.pxbt.dev.aiTradingCharts.service.SymbolRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/symbols")
+public class SymbolController {
+
+    private final SymbolRegistry symbolRegistry;
+
+    public SymbolController(SymbolRegistry symbolRegistry) {
+        this.symbolRegistry = symbolRegistry;
+    }
+
+    /**
+     * Registered symbols with their state (INACTIVE until first used, ACTIVE while resources are held)
+     */
+    @GetMapping
+    public ResponseEntity<List<Map<String, Object>>> getSymbols() {
+        return ResponseEntity.ok(symbolRegistry.describe());
+    }
+
+    /**
+     * Start tracking a symbol (base asset, quoted in USDT). It is activated on first use,
+     * or right away with {@code activate=true}.
+     */
+    @PostMapping("/{symbol}")
+    public ResponseEntity<Map<String, Object>> register(@PathVariable String symbol,
+                                                        @RequestParam(defaultValue = "false") boolean activate) {
+        try {
+            String normalized = SymbolRegistry.normalize(symbol);
+            boolean added = symbolRegistry.register(normalized);
+            if (activate) {
+                symbolRegistry.touch(normalized);
+            }
+            log.info("🗂️ Symbol {} {}", normalized, added ? "registered" : "already registered");
+            return ResponseEntity.status(added ? HttpStatus.CREATED : HttpStatus.OK)
+                    .body(Map.of("symbol", normalized, "state", symbolRegistry.getState(normalized)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Stop tracking a symbol and release its stream subscription, bars and indicator state
+     */
+    @DeleteMapping("/{symbol}")
+    public ResponseEntity<Void> unregister(@PathVariable String symbol) {
+        try {
+            return symbolRegistry.unregister(symbol)
+                    ? ResponseEntity.noContent().build()
+                    : ResponseEntity.notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Registry counters (registered, active, activations, releases)
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        return ResponseEntity.ok(symbolRegistry.getStats());
+    }
+}
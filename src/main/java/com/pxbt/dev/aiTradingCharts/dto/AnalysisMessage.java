@@ -0,0 +1,64 @@
+package com.pxbt.dev.aiTradingCharts.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.pxbt.dev.aiTradingCharts.model.AIAnalysisResult;
+
+/**
+ * A symbol's AI analysis pushed to subscribed WebSocket clients, only when it changes.
+ *
+ * {@code analysis} messages carry the whole analysis at {@code version}; {@code analysis_delta} messages
+ * carry {@code changes}, a JSON merge patch that turns {@code baseVersion} into {@code version}. A client
+ * that doesn't hold {@code baseVersion} re-subscribes to the symbol to get a full one.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record AnalysisMessage(String type, String symbol, long version, Long baseVersion, long timestamp,
+                              JsonNode analysis, JsonNode changes) {
+
+    public static final String FULL = "analysis";
+    public static final String DELTA = "analysis_delta";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static AnalysisMessage full(String symbol, long version, long timestamp, JsonNode analysis) {
+        return new AnalysisMessage(FULL, symbol, version, null, timestamp, analysis, null);
+    }
+
+    public static AnalysisMessage delta(String symbol, long version, long baseVersion, long timestamp,
+                                        JsonNode changes) {
+        return new AnalysisMessage(DELTA, symbol, version, baseVersion, timestamp, null, changes);
+    }
+
+    /**
+     * The part of an analysis that is versioned: signal, each timeframe's predicted change, confidence and
+     * trend, chart patterns and Fibonacci zones. Prices that scale with the live price (current, predicted,
+     * targets) travel with the {@link PriceTickMessage}s instead, and computed-at timestamps are left out -
+     * otherwise every tick would count as a change.
+     */
+    public static JsonNode content(AIAnalysisResult analysis) {
+        ObjectNode content = MAPPER.createObjectNode();
+        content.put("symbol", analysis.getSymbol());
+        content.put("timeframe", analysis.getTimeframe());
+        content.put("tradingSignal", analysis.getTradingSignal());
+        content.put("confidence", analysis.getConfidence());
+
+        ObjectNode predictions = content.putObject("timeframePredictions");
+        if (analysis.getTimeframePredictions() != null) {
+            double price = analysis.getCurrentPrice();
+            analysis.getTimeframePredictions().forEach((timeframe, prediction) -> {
+                ObjectNode node = predictions.putObject(timeframe);
+                node.put("predictedChange", price > 0 ? prediction.getPredictedPrice() / price - 1 : 0);
+                node.put("confidence", prediction.getConfidence());
+                node.put("confidenceLevel", prediction.getConfidenceLevel());
+                node.put("trend", prediction.getTrend());
+                node.set("timeHorizons", MAPPER.valueToTree(prediction.getTimeHorizons()));
+            });
+        }
+
+        content.set("chartPatterns", MAPPER.valueToTree(analysis.getChartPatterns()));
+        content.set("fibonacciTimeZones", MAPPER.valueToTree(analysis.getFibonacciTimeZones()));
+        return content;
+    }
+}
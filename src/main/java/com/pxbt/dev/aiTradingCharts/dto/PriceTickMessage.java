@@ -0,0 +1,33 @@
+package com.pxbt.dev.aiTradingCharts.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Map;
+
+/**
+ * Latest price of a symbol pushed to subscribed WebSocket clients, at most a few times per second.
+ *
+ * Carries the parts of the analysis that move with the price - each timeframe's predicted price and
+ * targets, restated at this tick's price - so the versioned analysis only changes when the forecast does.
+ * {@code predictions} is left out until the symbol has been analysed.
+ */
+public record PriceTickMessage(String type, String symbol, double price, double volume, long timestamp,
+                               @JsonInclude(JsonInclude.Include.NON_EMPTY) Map<String, Prediction> predictions) {
+
+    public static final String TYPE = "price_tick";
+
+    /**
+     * A timeframe's predicted price and price targets at the tick's price
+     */
+    public record Prediction(double predictedPrice, Map<String, Double> priceTargets) {
+    }
+
+    public static PriceTickMessage of(String symbol, double price, double volume, long timestamp) {
+        return of(symbol, price, volume, timestamp, Map.of());
+    }
+
+    public static PriceTickMessage of(String symbol, double price, double volume, long timestamp,
+                                      Map<String, Prediction> predictions) {
+        return new PriceTickMessage(TYPE, symbol, price, volume, timestamp, predictions);
+    }
+}
@@ -0,0 +1,81 @@
+package com.pxbt.dev.aiTradingCharts.handler;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.io.UncheckedIOException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A data message to broadcast, encoded at most once per {@link MessageEncoding} - the first time a
+ * session using that encoding needs it.
+ *
+ * The encoded bytes are shared by every session using that encoding. A JSON text frame is immutable and is
+ * shared as is, but a binary frame wraps a {@link java.nio.ByteBuffer} whose position the container advances
+ * while sending, so each session gets its own frame over the shared bytes.
+ */
+public final class BroadcastMessage {
+
+    private final Object payload;
+    private final AtomicReferenceArray<byte[]> encoded = new AtomicReferenceArray<>(MessageEncoding.values().length);
+    private volatile TextMessage text;
+
+    private BroadcastMessage(Object payload) {
+        this.payload = payload;
+    }
+
+    /**
+     * @param payload a message record, serialized with the typed writer of each encoding
+     */
+    public static BroadcastMessage of(Object payload) {
+        return new BroadcastMessage(payload);
+    }
+
+    /**
+     * Frame to queue for one session
+     *
+     * @throws UncheckedIOException if the payload can't be serialized
+     */
+    public WebSocketMessage<?> encode(MessageEncoding encoding) {
+        byte[] bytes = bytes(encoding);
+        if (encoding.isBinary()) {
+            return encoding.wrap(bytes);
+        }
+        TextMessage message = text;
+        if (message == null) {
+            // Racing threads build equal messages; either may be kept
+            message = (TextMessage) encoding.wrap(bytes);
+            text = message;
+        }
+        return message;
+    }
+
+    private byte[] bytes(MessageEncoding encoding) {
+        byte[] bytes = encoded.get(encoding.ordinal());
+        if (bytes == null) {
+            try {
+                bytes = encoding.writerFor(payload.getClass()).writeValueAsBytes(payload);
+            } catch (JsonProcessingException e) {
+                throw new UncheckedIOException(e);
+            }
+            // Another thread may have won the race; either copy is the same bytes
+            if (!encoded.compareAndSet(encoding.ordinal(), null, bytes)) {
+                bytes = encoded.get(encoding.ordinal());
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Bytes encoded so far, over every encoding used
+     */
+    public int encodedBytes() {
+        int total = 0;
+        for (int i = 0; i < encoded.length(); i++) {
+            byte[] bytes = encoded.get(i);
+            if (bytes != null) total += bytes.length;
+        }
+        return total;
+    }
+}
@@ -4,25 +4,59 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pxbt.dev.aiTradingCharts.model.AIAnalysisResult;
 import com.pxbt.dev.aiTradingCharts.model.PriceUpdate;
 import com.pxbt.dev.aiTradingCharts.service.MarketDataService;
+import com.pxbt.dev.aiTradingCharts.service.SymbolRegistry;
 import com.pxbt.dev.aiTradingCharts.service.TradingAnalysisService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import java.io.IOException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
 import org.springframework.web.socket.*;
 
 @Slf4j
 @Component
-public class CryptoWebSocketHandler implements WebSocketHandler {
+public class CryptoWebSocketHandler implements WebSocketHandler, SubProtocolCapable {
+
+    // Subscribing to this receives every symbol
+    private static final String ALL_SYMBOLS = "*";
+
+    // Outbound queue and writer per connected session, by session id
+    private final Map<String, SessionSender> sessions = new ConcurrentHashMap<>();
+
+    // Subscribed sessions per symbol - a broadcast only visits the sessions that asked for its symbol
+    private final Map<String, Set<SessionSender>> subscribers = new ConcurrentHashMap<>();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
-    private final List<WebSocketSession> sessions = new CopyOnWriteArrayList<>();
+    // Current full analysis of a symbol, sent to a session when it subscribes
+    private volatile Function<String, BroadcastMessage> snapshotProvider = symbol -> null;
+
+    // One virtual thread per session while it has messages to send
+    private final ExecutorService writers = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("ws-writer-", 0).factory());
+
+    @Value("${websocket.outbound.queue-capacity:256}")
+    private int queueCapacity;
+
+    @Value("${websocket.outbound.overflow-policy:CONFLATE}")
+    private SessionSender.OverflowPolicy overflowPolicy;
 
     @Autowired
     private TradingAnalysisService analysisService;
@@ -30,26 +64,54 @@ public class CryptoWebSocketHandler implements WebSocketHandler {
     @Autowired
     private MarketDataService marketDataService;
 
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
-        sessions.add(session);
-        log.info("🔌 NEW CLIENT CONNECTED - Session: {}, Remote: {}",
-                session.getId(), session.getRemoteAddress());
+        MessageEncoding encoding = negotiateEncoding(session);
+        SessionSender sender = new SessionSender(session, encoding, queueCapacity, overflowPolicy, writers);
+        sessions.put(session.getId(), sender);
+        log.info("🔌 NEW CLIENT CONNECTED - Session: {}, Remote: {}, Encoding: {}",
+                session.getId(), session.getRemoteAddress(), encoding);
         log.info("✅ Total connected clients: {}", sessions.size());
 
         // Send welcome message to confirm connection
-        try {
-            String welcomeMsg = "{\"type\": \"welcome\", \"message\": \"Connected to AI Trading Data\", \"timestamp\": " + System.currentTimeMillis() + "}";
-            session.sendMessage(new TextMessage(welcomeMsg));
-            log.debug("✅ Welcome message sent to client: {}", session.getId());
-        } catch (Exception e) {
-            log.error("❌ Failed to send welcome message to client {}: {}", session.getId(), e.getMessage());
+        String welcomeMsg = "{\"type\": \"welcome\", \"message\": \"Connected to AI Trading Data\", \"timestamp\": " + System.currentTimeMillis() + "}";
+        sender.offer(null, new TextMessage(welcomeMsg));
+        log.debug("✅ Welcome message queued for client: {}", session.getId());
+    }
+
+    /**
+     * Subprotocols offered to clients during the handshake, one per {@link MessageEncoding}
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return Arrays.stream(MessageEncoding.values()).map(MessageEncoding::subprotocol).toList();
+    }
+
+    /**
+     * The subprotocol accepted in the handshake, else an {@code encoding} query parameter, else JSON
+     */
+    private static MessageEncoding negotiateEncoding(WebSocketSession session) {
+        MessageEncoding encoding = MessageEncoding.find(session.getAcceptedProtocol());
+        URI uri = session.getUri();
+        if (encoding == null && uri != null) {
+            encoding = MessageEncoding.find(UriComponentsBuilder.fromUri(uri).build()
+                    .getQueryParams().getFirst("encoding"));
         }
+        return encoding != null ? encoding : MessageEncoding.JSON;
     }
 
     @Override
     public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
-        sessions.remove(session);
+        SessionSender sender = sessions.remove(session.getId());
+        if (sender != null) {
+            for (String symbol : sender.getSubscriptions()) {
+                removeSubscriber(symbol, sender);
+            }
+            sender.close();
+        }
         log.info("🔌 CLIENT DISCONNECTED - Session: {}, Reason: {}, Code: {}",
                 session.getId(), status.getReason(), status.getCode());
         log.info("📊 Remaining clients: {}", sessions.size());
@@ -63,11 +125,16 @@ public class CryptoWebSocketHandler implements WebSocketHandler {
         if (payload.startsWith("analyze:")) {
             handleAnalysisRequest(session, payload);
         }
+        // Choose which symbols' updates this session receives
+        else if (payload.startsWith("subscribe:")) {
+            handleSubscription(session, payload.substring(10), true);
+        } else if (payload.startsWith("unsubscribe:")) {
+            handleSubscription(session, payload.substring(12), false);
+        }
         // Store real market data for analysis
         else {
             try {
-                ObjectMapper mapper = new ObjectMapper();
-                PriceUpdate priceUpdate = mapper.readValue(payload, PriceUpdate.class);
+                PriceUpdate priceUpdate = objectMapper.readValue(payload, PriceUpdate.class);
 
                 // STORE REAL MARKET DATA FOR ANALYSIS
                 marketDataService.addPriceUpdate(priceUpdate);
@@ -93,23 +160,74 @@ public class CryptoWebSocketHandler implements WebSocketHandler {
             AIAnalysisResult result = analysisService.analyzeMarketData(symbol, price);
 
             // Convert to JSON and send back to client
-            ObjectMapper mapper = new ObjectMapper();
-            String analysisJson = mapper.writeValueAsString(result);
-            session.sendMessage(new TextMessage("analysis:" + analysisJson));
+            String analysisJson = objectMapper.writeValueAsString(result);
+            send(session, new TextMessage("analysis:" + analysisJson));
 
             log.info("✅ ANALYSIS COMPLETE - Symbol: {}, Confidence: {}%, Signal: {}",
                     symbol, result.getConfidence(), result.getTradingSignal());
 
         } catch (Exception e) {
             log.error("❌ ANALYSIS FAILED: {}", e.getMessage());
-            try {
-                session.sendMessage(new TextMessage("error:Analysis failed - " + e.getMessage()));
-            } catch (IOException ioException) {
-                log.error("❌ Failed to send error message");
+            send(session, new TextMessage("error:Analysis failed - " + e.getMessage()));
+        }
+    }
+
+    /**
+     * "subscribe:BTC,ETH" / "unsubscribe:BTC" ("*" for every symbol). Replies with the session's
+     * subscriptions, then the current analysis of each symbol subscribed to - sent again if the symbol was
+     * already subscribed, which is how a client that missed an analysis version resyncs. A session receives
+     * no updates until it subscribes.
+     */
+    private void handleSubscription(WebSocketSession session, String symbolList, boolean subscribe) {
+        SessionSender sender = sessions.get(session.getId());
+        if (sender == null) return;
+
+        try {
+            List<String> snapshots = new ArrayList<>();
+            for (String part : symbolList.split(",")) {
+                if (part.isBlank()) continue;
+                String symbol = part.trim().equals(ALL_SYMBOLS) ? ALL_SYMBOLS : SymbolRegistry.normalize(part);
+                if (subscribe) {
+                    if (sender.getSubscriptions().add(symbol)) {
+                        addSubscriber(symbol, sender);
+                        // Starts the symbol's stream if it was idle
+                        if (!ALL_SYMBOLS.equals(symbol)) symbolRegistry.touch(symbol);
+                    }
+                    if (!ALL_SYMBOLS.equals(symbol)) snapshots.add(symbol);
+                } else if (sender.getSubscriptions().remove(symbol)) {
+                    removeSubscriber(symbol, sender);
+                }
+            }
+            log.debug("📌 Session {} subscriptions: {}", session.getId(), sender.getSubscriptions());
+            sender.offer(null, new TextMessage(objectMapper.writeValueAsString(Map.of(
+                    "type", "subscriptions",
+                    "symbols", List.copyOf(sender.getSubscriptions())))));
+            for (String symbol : snapshots) {
+                BroadcastMessage snapshot = snapshotProvider.apply(symbol);
+                if (snapshot != null) sender.offer(null, snapshot.encode(sender.getEncoding()));
             }
+        } catch (IllegalArgumentException e) {
+            send(session, new TextMessage("error:" + e.getMessage()));
+        } catch (Exception e) {
+            log.error("❌ SUBSCRIPTION FAILED: {}", e.getMessage());
         }
     }
 
+    private void addSubscriber(String symbol, SessionSender sender) {
+        subscribers.compute(symbol, (key, set) -> {
+            Set<SessionSender> updated = set != null ? set : ConcurrentHashMap.newKeySet();
+            updated.add(sender);
+            return updated;
+        });
+    }
+
+    private void removeSubscriber(String symbol, SessionSender sender) {
+        subscribers.computeIfPresent(symbol, (key, set) -> {
+            set.remove(sender);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
     @Override
     public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
         log.error("💥 TRANSPORT ERROR - Session: {}, Error: {}",
@@ -122,63 +240,113 @@ public class CryptoWebSocketHandler implements WebSocketHandler {
     }
 
     /**
-     * Broadcast message to all connected WebSocket clients
+     * Set where the current full analysis of a symbol comes from when a session subscribes
      */
+    public void setSnapshotProvider(Function<String, BroadcastMessage> snapshotProvider) {
+        this.snapshotProvider = snapshotProvider;
+    }
+
     /**
-     * Broadcast message to all connected WebSocket clients
+     * Broadcast a message to the clients subscribed to its symbol. The message is encoded once per encoding in
+     * use and the encoded bytes are queued for every session using it; each session's writer sends them,
+     * so this never blocks on a slow client.
+     *
+     * @param conflate whether a session behind on this symbol only needs the newest such message (under CONFLATE)
      */
-    public void broadcast(String message) {
-        if (sessions.isEmpty()) {
-            log.debug("📢 No clients connected to broadcast message");
+    public void broadcast(String symbol, BroadcastMessage message, boolean conflate) {
+        Set<SessionSender> direct = subscribers.getOrDefault(symbol, Set.of());
+        Set<SessionSender> everything = subscribers.getOrDefault(ALL_SYMBOLS, Set.of());
+        if (direct.isEmpty() && everything.isEmpty()) {
+            log.debug("📢 No clients subscribed to {}", symbol);
             return;
         }
 
-        log.debug("📢 BROADCASTING to {} clients - Message size: {} bytes",
-                sessions.size(), message.length());
-
-        int successCount = 0;
-        int errorCount = 0;
-        List<WebSocketSession> closedSessions = new ArrayList<>();
-
-        // Synchronize on the sessions set to prevent concurrent modification
-        synchronized (sessions) {
-            Iterator<WebSocketSession> iterator = sessions.iterator();
-            while (iterator.hasNext()) {
-                WebSocketSession session = iterator.next();
-                try {
-                    if (session.isOpen()) {
-                        // Synchronize on the session to prevent TEXT_PARTIAL_WRITING
-                        synchronized (session) {
-                            session.sendMessage(new TextMessage(message));
-                        }
-                        successCount++;
-                        log.trace("✅ Message sent to session: {}", session.getId());
-                    } else {
-                        log.debug("🔄 Session {} is closed, marking for removal", session.getId());
-                        closedSessions.add(session);
-                        iterator.remove(); // ✅ Safe removal during iteration
-                    }
-                } catch (IOException e) {
-                    errorCount++;
-                    log.error("❌ Failed to send message to session {}: {}",
-                            session.getId(), e.getMessage());
-                    closedSessions.add(session);
-                    iterator.remove(); // ✅ Safe removal during iteration
-                } catch (Exception e) {
-                    log.error("❌ Unexpected error broadcasting to session {}: {}",
-                            session.getId(), e.getMessage());
-                    closedSessions.add(session);
-                    iterator.remove(); // ✅ Safe removal during iteration
-                }
-            }
+        log.debug("📢 BROADCASTING {} to {} clients", symbol, direct.size() + everything.size());
+
+        List<SessionSender> closedSessions = new ArrayList<>();
+        int queuedCount = 0;
+        String conflationKey = conflate ? symbol : null;
+        for (SessionSender sender : direct) {
+            if (deliver(sender, conflationKey, message, closedSessions)) queuedCount++;
+        }
+        for (SessionSender sender : everything) {
+            if (!direct.contains(sender) && deliver(sender, conflationKey, message, closedSessions)) queuedCount++;
         }
 
-        // Log results outside synchronization block
         if (!closedSessions.isEmpty()) {
+            for (SessionSender sender : closedSessions) {
+                sessions.remove(sender.getSession().getId(), sender);
+                for (String subscription : sender.getSubscriptions()) {
+                    removeSubscriber(subscription, sender);
+                }
+                sender.close();
+            }
             log.info("🧹 Cleaned up {} closed sessions", closedSessions.size());
         }
 
-        log.debug("📢 BROADCAST RESULTS - Success: {}, Errors: {}, Total Clients: {}",
-                successCount, errorCount, sessions.size());
+        // Someone is watching - keep the symbol from being released as idle
+        if (queuedCount > 0) {
+            symbolRegistry.touch(symbol);
+        }
+
+        log.debug("📢 BROADCAST RESULTS - Queued: {}, Encoded: {} bytes, Total Clients: {}",
+                queuedCount, message.encodedBytes(), sessions.size());
+    }
+
+    /**
+     * Whether any session would receive a broadcast for this symbol - lets callers skip encoding it
+     */
+    public boolean hasSubscribers(String symbol) {
+        return subscribers.containsKey(symbol) || subscribers.containsKey(ALL_SYMBOLS);
+    }
+
+    private static boolean deliver(SessionSender sender, String conflationKey, BroadcastMessage message,
+                                   List<SessionSender> closedSessions) {
+        if (sender.getSession().isOpen() && sender.offer(conflationKey, message.encode(sender.getEncoding()))) {
+            return true;
+        }
+        closedSessions.add(sender);
+        return false;
+    }
+
+    private void send(WebSocketSession session, TextMessage message) {
+        SessionSender sender = sessions.get(session.getId());
+        if (sender != null) {
+            sender.offer(null, message);
+        }
+    }
+
+    /**
+     * Connected sessions with their encoding, outbound queue depth, lag and dropped / conflated counts,
+     * and subscribers per symbol
+     */
+    public Map<String, Object> getStats() {
+        List<Map<String, Object>> perSession = new ArrayList<>();
+        long dropped = 0;
+        long conflated = 0;
+        Map<MessageEncoding, Integer> encodings = new TreeMap<>();
+        for (SessionSender sender : sessions.values()) {
+            perSession.add(sender.getStats());
+            dropped += sender.getDropped();
+            conflated += sender.getConflated();
+            encodings.merge(sender.getEncoding(), 1, Integer::sum);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("sessions", perSession.size());
+        stats.put("encodings", encodings);
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("overflowPolicy", overflowPolicy);
+        stats.put("dropped", dropped);
+        stats.put("conflated", conflated);
+        Map<String, Integer> subscriptions = new TreeMap<>();
+        subscribers.forEach((symbol, set) -> subscriptions.put(symbol, set.size()));
+        stats.put("subscribers", subscriptions);
+        stats.put("perSession", perSession);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdownNow();
     }
 }
\ No newline at end of file
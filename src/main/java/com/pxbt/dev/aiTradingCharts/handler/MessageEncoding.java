@@ -0,0 +1,71 @@
+package com.pxbt.dev.aiTradingCharts.handler;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wire format of the data messages (price ticks, analysis) a WebSocket session receives.
+ *
+ * JSON goes out as text; CBOR and Smile as binary frames with the same structure - Smile also
+ * back-references field names repeated within a message, which the analysis is full of. Chosen per session
+ * by subprotocol ({@code new WebSocket(url, 'cbor')}) or handshake parameter ({@code /ws?encoding=smile}).
+ * Control replies (welcome, subscriptions, errors) are always JSON text.
+ */
+public enum MessageEncoding {
+    JSON(new ObjectMapper()),
+    CBOR(new ObjectMapper(new CBORFactory())),
+    SMILE(new ObjectMapper(new SmileFactory()));
+
+    private final ObjectMapper mapper;
+    // Serializer per message type, resolved once
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    MessageEncoding(ObjectMapper mapper) {
+        this.mapper = mapper;
+    }
+
+    /**
+     * Subprotocol name clients can request for this encoding
+     */
+    public String subprotocol() {
+        return name().toLowerCase();
+    }
+
+    public ObjectWriter writerFor(Class<?> type) {
+        return writers.computeIfAbsent(type, mapper::writerFor);
+    }
+
+    /**
+     * Whether this encoding goes out as binary frames
+     */
+    public boolean isBinary() {
+        return this != JSON;
+    }
+
+    /**
+     * A new frame over the payload. The bytes aren't copied, but a binary frame's buffer is consumed as it's
+     * sent, so one frame must not be handed to more than one session.
+     */
+    public WebSocketMessage<?> wrap(byte[] payload) {
+        return isBinary() ? new BinaryMessage(payload) : new TextMessage(payload);
+    }
+
+    /**
+     * @return null if the name isn't a known encoding
+     */
+    public static MessageEncoding find(String name) {
+        if (name == null) return null;
+        for (MessageEncoding encoding : values()) {
+            if (encoding.subprotocol().equalsIgnoreCase(name.trim())) return encoding;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,261 @@
+package com.pxbt.dev.aiTradingCharts.handler;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded outbound queue of one WebSocket session, drained by its own writer.
+ *
+ * {@link #offer} only enqueues and never blocks; a single drain task at a time (a virtual thread) sends
+ * the queued messages in order, so a slow client only ever holds up its own writer. What happens when the
+ * queue is full depends on the {@link OverflowPolicy}.
+ */
+@Slf4j
+public class SessionSender {
+
+    public enum OverflowPolicy {
+        /** Drop the oldest queued message to make room */
+        DROP_OLDEST,
+        /** Replace a queued conflatable message (a price tick) for the same symbol; drop the oldest if still full */
+        CONFLATE,
+        /** Close the session - the client has to reconnect and catch up */
+        DISCONNECT
+    }
+
+    private static final class Pending {
+        private final String key;
+        private WebSocketMessage<?> message;
+        private final long enqueuedAt;
+
+        private Pending(String key, WebSocketMessage<?> message, long enqueuedAt) {
+            this.key = key;
+            this.message = message;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+
+    private final WebSocketSession session;
+    private final MessageEncoding encoding;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    private final Executor writer;
+
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    // Symbols this session receives updates for
+    private final Set<String> subscriptions = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private volatile long lastLagNanos = 0;
+    private volatile long maxLagNanos = 0;
+
+    public SessionSender(WebSocketSession session, MessageEncoding encoding, int capacity, OverflowPolicy policy,
+                         Executor writer) {
+        this.session = session;
+        this.encoding = encoding;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.writer = writer;
+    }
+
+    public WebSocketSession getSession() {
+        return session;
+    }
+
+    /**
+     * Encoding of the data messages this session receives
+     */
+    public MessageEncoding getEncoding() {
+        return encoding;
+    }
+
+    public Set<String> getSubscriptions() {
+        return subscriptions;
+    }
+
+    /**
+     * Queue a message for this session. Never blocks.
+     *
+     * @param key conflation key (the symbol of a price tick) - null if the message must not be conflated
+     * @return false if the sender is closed, or the session was disconnected because its queue is full
+     */
+    public boolean offer(String key, WebSocketMessage<?> message) {
+        if (closed) return false;
+
+        boolean overflow = false;
+        synchronized (queue) {
+            if (policy == OverflowPolicy.CONFLATE && key != null) {
+                for (Pending pending : queue) {
+                    if (key.equals(pending.key)) {
+                        // Keeps its place and enqueue time, so lag still shows how far behind the client is
+                        pending.message = message;
+                        conflated.incrementAndGet();
+                        return true;
+                    }
+                }
+            }
+            if (queue.size() >= capacity) {
+                if (policy == OverflowPolicy.DISCONNECT) {
+                    overflow = true;
+                } else {
+                    queue.pollFirst();
+                    dropped.incrementAndGet();
+                }
+            }
+            if (!overflow) {
+                queue.addLast(new Pending(key, message, System.nanoTime()));
+            }
+        }
+
+        if (overflow) {
+            log.warn("🐌 Session {} fell {} messages behind - disconnecting", session.getId(), capacity);
+            disconnect(CloseStatus.SESSION_NOT_RELIABLE);
+            return false;
+        }
+        enqueued.incrementAndGet();
+        schedule();
+        return true;
+    }
+
+    /**
+     * Stop sending and discard anything still queued
+     */
+    public void close() {
+        closed = true;
+        synchronized (queue) {
+            queue.clear();
+        }
+    }
+
+    private void schedule() {
+        if (!draining.compareAndSet(false, true)) {
+            return; // The running drain picks the message up
+        }
+        try {
+            writer.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            draining.set(false);
+        }
+    }
+
+    private void drain() {
+        try {
+            Pending next;
+            while (!closed && (next = poll()) != null) {
+                send(next);
+            }
+        } finally {
+            draining.set(false);
+        }
+        // An offer may have landed between the last poll and clearing the flag
+        if (!closed && queued() > 0) {
+            schedule();
+        }
+    }
+
+    private Pending poll() {
+        synchronized (queue) {
+            return queue.pollFirst();
+        }
+    }
+
+    private void send(Pending pending) {
+        if (!session.isOpen()) {
+            close();
+            return;
+        }
+        try {
+            session.sendMessage(pending.message);
+            sent.incrementAndGet();
+            long lag = System.nanoTime() - pending.enqueuedAt;
+            lastLagNanos = lag;
+            if (lag > maxLagNanos) maxLagNanos = lag;
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.error("❌ Failed to send message to session {}: {}", session.getId(), e.getMessage());
+            disconnect(CloseStatus.SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Stop sending at once, and close the session on the writer - closing can block on the network just like
+     * a send, and {@link #offer} runs on the broadcasting thread
+     */
+    private void disconnect(CloseStatus status) {
+        close();
+        try {
+            writer.execute(() -> closeSession(status));
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            closeSession(status);
+        }
+    }
+
+    private void closeSession(CloseStatus status) {
+        try {
+            session.close(status);
+        } catch (Exception e) {
+            log.debug("Closing session {} failed: {}", session.getId(), e.getMessage());
+        }
+    }
+
+    private int queued() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getConflated() {
+        return conflated.get();
+    }
+
+    /**
+     * Queue depth, age of the oldest queued message and enqueue-to-send lag of this session
+     */
+    public Map<String, Object> getStats() {
+        int depth;
+        long oldestAgeNanos;
+        synchronized (queue) {
+            depth = queue.size();
+            Pending oldest = queue.peekFirst();
+            oldestAgeNanos = oldest != null ? System.nanoTime() - oldest.enqueuedAt : 0;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("session", session.getId());
+        stats.put("encoding", encoding);
+        stats.put("subscriptions", new TreeSet<>(subscriptions));
+        stats.put("queued", depth);
+        stats.put("oldestQueuedMs", oldestAgeNanos / 1_000_000);
+        stats.put("enqueued", enqueued.get());
+        stats.put("sent", sent.get());
+        stats.put("conflated", conflated.get());
+        stats.put("dropped", dropped.get());
+        stats.put("failed", failed.get());
+        stats.put("lastLagMs", lastLagNanos / 1_000_000.0);
+        stats.put("maxLagMs", maxLagNanos / 1_000_000.0);
+        return stats;
+    }
+}
@@ -0,0 +1,621 @@
+package com.pxbt.dev.aiTradingCharts.model;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * OHLCV bars for one symbol and interval, stored column-wise in primitive arrays.
+ *
+ * A bar costs 48 bytes (one long and five doubles) with no object header or symbol reference.
+ * Columns start small and double as bars arrive; once {@code capacity} is reached the series
+ * becomes a ring and each append overwrites the oldest bar in place - no copying, no shifting.
+ *
+ * Incremental writes - the stream thread amending the forming bar, or appending a new one - hold a
+ * {@link StampedLock} write stamp for a few array stores. Readers never lock: they use optimistic stamps and
+ * retry if a write overlapped, so a writer never waits for a reader. Bulk rewrites ({@link #replace}, {@link #merge})
+ * build new columns off to the side without the lock and publish them by swapping the columns reference, so
+ * the stream thread waits at most for another short write, never for a copy.
+ *
+ * {@link #snapshot(int)} is always consistent. {@link #view(int)} shares the live columns: a rewrite never
+ * touches them, but the forming bar keeps moving and a full ring overwrites its oldest bar in place.
+ */
+public final class BarSeries {
+
+    private static final int INITIAL_COLUMN_SIZE = 64;
+    private static final int OPTIMISTIC_ATTEMPTS = 4;
+    private static final int SPINS_BEFORE_YIELD = 16;
+
+    private final int capacity;
+    private final StampedLock lock = new StampedLock();
+
+    // Swapped as a whole on growth, so a reader never pairs columns of different sizes
+    private Columns columns;
+
+    // Physical index of the oldest bar - only moves once the ring is full
+    private int head = 0;
+    private int size = 0;
+
+    // Bumped whenever history is rewritten rather than appended to, so incremental readers can resync
+    private volatile long generation = 0;
+
+    // Set once the bars have been copied into a larger series; writes that arrive afterwards go there
+    private volatile BarSeries successor;
+
+    public BarSeries(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.capacity = capacity;
+        this.columns = new Columns(Math.min(capacity, INITIAL_COLUMN_SIZE));
+    }
+
+    /**
+     * Append a bar. A bar with the same open time as the last one replaces it (the forming candle),
+     * and bars older than the last one are ignored.
+     *
+     * @return false if the bar was out of order and dropped
+     */
+    public boolean append(long timestamp, double open, double high, double low, double close, double volume) {
+        long stamp = lock.writeLock();
+        try {
+            if (successor == null) return appendLocked(timestamp, open, high, low, close, volume);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return successor.append(timestamp, open, high, low, close, volume);
+    }
+
+    /**
+     * Append bars (oldest first) in place under one write stamp, as {@link #append} would one by one.
+     * Extending the series forwards this way costs only the new bars, where {@link #merge} rebuilds it.
+     *
+     * @return how many bars were appended or amended the forming bar
+     */
+    public int append(View bars) {
+        long stamp = lock.writeLock();
+        try {
+            if (successor == null) {
+                int appended = 0;
+                for (int i = 0; i < bars.size(); i++) {
+                    if (appendLocked(bars.timestamp(i), bars.open(i), bars.high(i), bars.low(i), bars.close(i),
+                            bars.volume(i))) {
+                        appended++;
+                    }
+                }
+                return appended;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return successor.append(bars);
+    }
+
+    /**
+     * Atomically swap the contents for the given bars (oldest first; the newest {@code capacity} are kept).
+     * Readers see either the old or the new series, never a half-loaded one, and views handed out
+     * earlier keep the old columns.
+     */
+    public void replace(View bars) {
+        View next = copyOf(bars);
+        long stamp = lock.writeLock();
+        try {
+            if (successor == null) {
+                install(next.columns, next.length);
+                return;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        successor.replace(bars);
+    }
+
+    /**
+     * Merge bars (oldest first) into the series by open time, keeping the newest {@code capacity}. Where both
+     * have a bar, the series' own wins, so a backfill page never undoes what the stream wrote meanwhile.
+     */
+    public void merge(View bars) {
+        if (bars.isEmpty()) return;
+        publish(current -> mergeOf(current, bars));
+    }
+
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            if (successor == null) {
+                install(new Columns(Math.min(capacity, INITIAL_COLUMN_SIZE)), 0);
+                return;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        successor.clear();
+    }
+
+    /**
+     * A copy of the series that holds up to {@code capacity} bars, at the same generation. The copy is taken
+     * under the write stamp, and writes that reach this series afterwards are passed on to the copy, so a
+     * tick racing the resize lands in the copy rather than being lost.
+     */
+    public BarSeries withCapacity(int capacity) {
+        long stamp = lock.writeLock();
+        try {
+            if (successor == null) {
+                BarSeries larger = new BarSeries(capacity);
+                View copy = larger.copyOf(windowOf(columns, head, size, size));
+                larger.columns = copy.columns;
+                larger.size = copy.length;
+                larger.generation = generation;
+                successor = larger;
+                return larger;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return successor.withCapacity(capacity);
+    }
+
+    /**
+     * True once {@link #withCapacity} has moved the bars into a larger series - holders should look it up again
+     */
+    public boolean isRetired() {
+        return successor != null;
+    }
+
+    /**
+     * Build the new contents from the current ones without holding the lock, then swap them in if nothing
+     * was written meanwhile. After a few lost races the rebuild runs under the write stamp instead, so a
+     * busy stream can delay a merge but never starve it.
+     */
+    private void publish(UnaryOperator<View> rebuild) {
+        for (int attempt = 0; attempt < OPTIMISTIC_ATTEMPTS; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp == 0) {
+                backOff(attempt);
+                continue;
+            }
+            View next;
+            try {
+                next = rebuild.apply(windowOf(columns, head, size, capacity));
+            } catch (RuntimeException torn) {
+                // Read the series mid-write - rebuild
+                continue;
+            }
+            long writeStamp = lock.tryConvertToWriteLock(stamp);
+            if (writeStamp != 0) {
+                try {
+                    if (successor == null) {
+                        install(next.columns, next.length);
+                        return;
+                    }
+                } finally {
+                    lock.unlockWrite(writeStamp);
+                }
+                successor.publish(rebuild);
+                return;
+            }
+        }
+        long stamp = lock.writeLock();
+        try {
+            if (successor == null) {
+                View next = rebuild.apply(windowOf(columns, head, size, capacity));
+                install(next.columns, next.length);
+                return;
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        successor.publish(rebuild);
+    }
+
+    private void install(Columns built, int builtSize) {
+        columns = built;
+        head = 0;
+        size = builtSize;
+        generation++;
+    }
+
+    /**
+     * The newest {@code capacity} bars of {@code bars} in fresh columns, with room to append before growing
+     */
+    private View copyOf(View bars) {
+        int length = Math.min(bars.size(), capacity);
+        int room = (int) Math.min(capacity, Math.max(INITIAL_COLUMN_SIZE, (long) length * 2));
+        Columns built = new Columns(room);
+        int from = bars.size() - length;
+        for (int i = 0; i < length; i++) {
+            built.timestamps[i] = bars.timestamp(from + i);
+            built.opens[i] = bars.open(from + i);
+            built.highs[i] = bars.high(from + i);
+            built.lows[i] = bars.low(from + i);
+            built.closes[i] = bars.close(from + i);
+            built.volumes[i] = bars.volume(from + i);
+        }
+        return new View(built, 0, length);
+    }
+
+    /**
+     * Both sorted runs of bars in fresh columns, one bar per open time (the current one on a tie)
+     */
+    private View mergeOf(View current, View bars) {
+        int count = 0;
+        for (int i = 0, j = 0; i < current.size() || j < bars.size(); count++) {
+            int order = compare(current, i, bars, j);
+            if (order <= 0) i++;
+            if (order >= 0) j++;
+        }
+        int length = Math.min(count, capacity);
+        int skip = count - length;
+        Columns built = new Columns((int) Math.min(capacity, Math.max(INITIAL_COLUMN_SIZE, (long) length * 2)));
+        for (int i = 0, j = 0, out = -skip; out < length; out++) {
+            int order = compare(current, i, bars, j);
+            View from = order <= 0 ? current : bars;
+            int at = order <= 0 ? i : j;
+            if (order <= 0) i++;
+            if (order >= 0) j++;
+            if (out < 0) continue;
+            built.timestamps[out] = from.timestamp(at);
+            built.opens[out] = from.open(at);
+            built.highs[out] = from.high(at);
+            built.lows[out] = from.low(at);
+            built.closes[out] = from.close(at);
+            built.volumes[out] = from.volume(at);
+        }
+        return new View(built, 0, length);
+    }
+
+    /**
+     * Which run has the earlier next bar: negative for {@code a}, positive for {@code b}, 0 if they share an open time
+     */
+    private static int compare(View a, int i, View b, int j) {
+        if (i == a.size()) return 1;
+        if (j == b.size()) return -1;
+        return Long.compare(a.timestamp(i), b.timestamp(j));
+    }
+
+    /**
+     * Fold a live trade price into the bar opened at {@code barOpenTime}: extends high/low and moves
+     * the close of the forming bar, or starts a new bar if the interval has rolled over.
+     * Volume is left alone - ticker volume is a rolling 24h figure, not the bar's own.
+     *
+     * @return false if the tick belongs to a bar older than the newest one
+     */
+    public boolean applyTick(long barOpenTime, double price) {
+        long stamp = lock.writeLock();
+        try {
+            if (successor == null) return applyTickLocked(barOpenTime, price);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        return successor.applyTick(barOpenTime, price);
+    }
+
+    private boolean applyTickLocked(long barOpenTime, double price) {
+        if (size == 0) {
+            return appendLocked(barOpenTime, price, price, price, price, 0);
+        }
+        Columns c = columns;
+        int last = physical(c, head, size - 1);
+        if (barOpenTime == c.timestamps[last]) {
+            if (price > c.highs[last]) c.highs[last] = price;
+            if (price < c.lows[last]) c.lows[last] = price;
+            c.closes[last] = price;
+            return true;
+        }
+        return appendLocked(barOpenTime, price, price, price, price, 0);
+    }
+
+    private boolean appendLocked(long timestamp, double open, double high, double low, double close, double volume) {
+        Columns c = columns;
+        int slot;
+        if (size > 0 && timestamp <= c.timestamps[physical(c, head, size - 1)]) {
+            slot = physical(c, head, size - 1);
+            if (timestamp < c.timestamps[slot]) return false;
+        } else if (size < capacity) {
+            if (size == c.length()) {
+                c = grow(c);
+            }
+            slot = physical(c, head, size);
+            size++;
+        } else {
+            slot = head;
+            head = (head + 1) % capacity;
+        }
+
+        c.timestamps[slot] = timestamp;
+        c.opens[slot] = open;
+        c.highs[slot] = high;
+        c.lows[slot] = low;
+        c.closes[slot] = close;
+        c.volumes[slot] = volume;
+        return true;
+    }
+
+    public int size() {
+        for (int attempt = 0; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            int result = size;
+            if (stamp != 0 && lock.validate(stamp)) return result;
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * Most bars held before the oldest start being overwritten
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    public long generation() {
+        return generation;
+    }
+
+    /**
+     * Close of the newest bar, or NaN if empty
+     */
+    public double lastClose() {
+        for (int attempt = 0; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            try {
+                Columns c = columns;
+                int n = size;
+                double value = n > 0 ? c.closes[physical(c, head, n - 1)] : Double.NaN;
+                if (stamp != 0 && lock.validate(stamp)) return value;
+            } catch (RuntimeException torn) {
+                // Fields changed mid-read - retry
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * Open time of the newest bar, or -1 if empty
+     */
+    public long lastTimestamp() {
+        for (int attempt = 0; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            try {
+                Columns c = columns;
+                int n = size;
+                long value = n > 0 ? c.timestamps[physical(c, head, n - 1)] : -1;
+                if (stamp != 0 && lock.validate(stamp)) return value;
+            } catch (RuntimeException torn) {
+                // Fields changed mid-read - retry
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * All bars currently held
+     */
+    public View view() {
+        return view(Integer.MAX_VALUE);
+    }
+
+    /**
+     * The most recent {@code limit} bars without copying. The view shares the columns, so it stays
+     * valid until another {@code capacity - limit} bars are appended; use {@link #snapshot(int)} for
+     * data that must not change underneath the reader.
+     */
+    public View view(int limit) {
+        for (int attempt = 0; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            View window = windowOf(columns, head, size, limit);
+            if (stamp != 0 && lock.validate(stamp)) return window;
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * Private copy of the most recent {@code limit} bars, consistent as of a single point in time
+     */
+    public View snapshot(int limit) {
+        for (int attempt = 0; ; attempt++) {
+            long stamp = lock.tryOptimisticRead();
+            try {
+                View copy = windowOf(columns, head, size, limit).copy();
+                if (stamp != 0 && lock.validate(stamp)) return copy;
+            } catch (RuntimeException torn) {
+                // Fields changed mid-copy - retry
+            }
+            backOff(attempt);
+        }
+    }
+
+    /**
+     * Readers spin through a short write and yield if it is a long one, so they never hold up the writer
+     */
+    private static void backOff(int attempt) {
+        if (attempt < SPINS_BEFORE_YIELD) {
+            Thread.onSpinWait();
+        } else {
+            Thread.yield();
+        }
+    }
+
+    private static View windowOf(Columns c, int head, int size, int limit) {
+        int length = Math.min(Math.max(limit, 0), Math.min(size, c.length()));
+        return new View(c, physical(c, head, size - length), length);
+    }
+
+    private static int physical(Columns c, int head, int logicalIndex) {
+        int index = head + logicalIndex;
+        return index >= c.length() ? index - c.length() : index;
+    }
+
+    /**
+     * Only called before the ring wraps, so bars are still in physical order from index 0.
+     * Views handed out earlier keep the old columns, which are never written again.
+     */
+    private Columns grow(Columns old) {
+        Columns grown = new Columns((int) Math.min(capacity, (long) old.length() * 2));
+        System.arraycopy(old.timestamps, 0, grown.timestamps, 0, size);
+        System.arraycopy(old.opens, 0, grown.opens, 0, size);
+        System.arraycopy(old.highs, 0, grown.highs, 0, size);
+        System.arraycopy(old.lows, 0, grown.lows, 0, size);
+        System.arraycopy(old.closes, 0, grown.closes, 0, size);
+        System.arraycopy(old.volumes, 0, grown.volumes, 0, size);
+        columns = grown;
+        return grown;
+    }
+
+    /**
+     * Binance interval string ("1m", "4h", "1d", "1w"...) to milliseconds
+     */
+    public static long intervalMillis(String interval) {
+        long amount = Long.parseLong(interval.substring(0, interval.length() - 1));
+        return switch (interval.charAt(interval.length() - 1)) {
+            case 's' -> amount * 1_000L;
+            case 'm' -> amount * 60_000L;
+            case 'h' -> amount * 3_600_000L;
+            case 'd' -> amount * 86_400_000L;
+            case 'w' -> amount * 604_800_000L;
+            case 'M' -> amount * 2_592_000_000L; // 30 days
+            default -> throw new IllegalArgumentException("Unknown interval: " + interval);
+        };
+    }
+
+    /**
+     * Open time of the bar after the one containing {@code time}, aligned as Binance aligns its candles: weeks
+     * open on Monday 00:00 UTC and months on the 1st, shorter intervals count from the epoch
+     */
+    public static long nextBarOpen(String interval, long time) {
+        char unit = interval.charAt(interval.length() - 1);
+        if (unit == 'M') {
+            long months = Long.parseLong(interval.substring(0, interval.length() - 1));
+            LocalDate monthOpen = Instant.ofEpochMilli(time).atZone(ZoneOffset.UTC).toLocalDate().withDayOfMonth(1);
+            return monthOpen.plusMonths(months).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+        }
+        long length = intervalMillis(interval);
+        // The epoch was a Thursday; the first Monday came four days later
+        long origin = unit == 'w' ? 4 * 86_400_000L : 0;
+        return time - Math.floorMod(time - origin, length) + length;
+    }
+
+    private static final class Columns {
+        private final long[] timestamps;
+        private final double[] opens;
+        private final double[] highs;
+        private final double[] lows;
+        private final double[] closes;
+        private final double[] volumes;
+
+        private Columns(int length) {
+            timestamps = new long[length];
+            opens = new double[length];
+            highs = new double[length];
+            lows = new double[length];
+            closes = new double[length];
+            volumes = new double[length];
+        }
+
+        private int length() {
+            return timestamps.length;
+        }
+    }
+
+    /**
+     * Read-only window over a series; index 0 is the oldest bar in the window
+     */
+    public static final class View {
+
+        private final Columns columns;
+        private final int start;
+        private final int length;
+
+        private View(Columns columns, int start, int length) {
+            this.columns = columns;
+            this.start = start;
+            this.length = length;
+        }
+
+        public int size() {
+            return length;
+        }
+
+        public boolean isEmpty() {
+            return length == 0;
+        }
+
+        public long timestamp(int i) {
+            return columns.timestamps[index(i)];
+        }
+
+        public double open(int i) {
+            return columns.opens[index(i)];
+        }
+
+        public double high(int i) {
+            return columns.highs[index(i)];
+        }
+
+        public double low(int i) {
+            return columns.lows[index(i)];
+        }
+
+        public double close(int i) {
+            return columns.closes[index(i)];
+        }
+
+        public double volume(int i) {
+            return columns.volumes[index(i)];
+        }
+
+        /**
+         * Adapter for code that still works on {@link CryptoPrice} lists (price = close)
+         */
+        public List<CryptoPrice> toCryptoPrices(String symbol) {
+            List<CryptoPrice> prices = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                int p = index(i);
+                prices.add(new CryptoPrice(symbol, columns.closes[p], columns.volumes[p], columns.timestamps[p],
+                        columns.opens[p], columns.highs[p], columns.lows[p], columns.closes[p]));
+            }
+            return prices;
+        }
+
+        /**
+         * Adapter for code that still works on {@link PriceUpdate} lists (price = close)
+         */
+        public List<PriceUpdate> toPriceUpdates(String symbol) {
+            List<PriceUpdate> updates = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                int p = index(i);
+                updates.add(new PriceUpdate(symbol, columns.closes[p], columns.volumes[p], columns.timestamps[p],
+                        columns.opens[p], columns.highs[p], columns.lows[p], columns.closes[p]));
+            }
+            return updates;
+        }
+
+        /**
+         * Unwrap the window into fresh, contiguous columns (at most two array copies per column)
+         */
+        private View copy() {
+            Columns copy = new Columns(length);
+            int firstRun = Math.min(length, columns.length() - start);
+            copyRun(columns, start, copy, 0, firstRun);
+            copyRun(columns, 0, copy, firstRun, length - firstRun);
+            return new View(copy, 0, length);
+        }
+
+        private static void copyRun(Columns from, int fromIndex, Columns to, int toIndex, int count) {
+            if (count <= 0) return;
+            System.arraycopy(from.timestamps, fromIndex, to.timestamps, toIndex, count);
+            System.arraycopy(from.opens, fromIndex, to.opens, toIndex, count);
+            System.arraycopy(from.highs, fromIndex, to.highs, toIndex, count);
+            System.arraycopy(from.lows, fromIndex, to.lows, toIndex, count);
+            System.arraycopy(from.closes, fromIndex, to.closes, toIndex, count);
+            System.arraycopy(from.volumes, fromIndex, to.volumes, toIndex, count);
+        }
+
+        private int index(int i) {
+            if (i < 0 || i >= length) throw new IndexOutOfBoundsException("Bar " + i + " of " + length);
+            int p = start + i;
+            return p >= columns.length() ? p - columns.length() : p;
+        }
+    }
+}
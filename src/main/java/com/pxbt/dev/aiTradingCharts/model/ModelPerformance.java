@@ -3,9 +3,13 @@ package com.pxbt.dev.aiTradingCharts.model;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
+import java.io.Serializable;
+
 @Data
 @AllArgsConstructor
-public class ModelPerformance {
+public class ModelPerformance implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private double r2;              // R-squared score
     private double rmse;            // Root Mean Squared Error
     private double mae;             // Mean Absolute Error
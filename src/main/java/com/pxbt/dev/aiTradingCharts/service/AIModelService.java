@@ -3,19 +3,28 @@ package com.pxbt.dev.aiTradingCharts.service;
 import com.pxbt.dev.aiTradingCharts.model.ModelPerformance;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import weka.classifiers.Classifier;
 import weka.classifiers.Evaluation;
-import weka.classifiers.functions.LinearRegression;
-import weka.classifiers.functions.SMOreg;
-import weka.classifiers.trees.RandomForest;
 import weka.core.Attribute;
 import weka.core.DenseInstance;
 import weka.core.Instances;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.lang.management.ThreadMXBean;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Slf4j
 @Service
@@ -24,31 +33,72 @@ public class AIModelService {
     @Autowired
     BinanceHistoricalService binanceHistoricalService;
 
-    private Map<String, Classifier> trainedModels = new ConcurrentHashMap<>();
-    private Map<String, ModelPerformance> modelPerformance = new ConcurrentHashMap<>();
-    private Map<String, Instances> dataHeaders = new ConcurrentHashMap<>();
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    @Autowired
+    private List<ModelCandidate> modelCandidates;
+
+    // Candidate names to train, empty for every ModelCandidate bean
+    @Value("${models.training.candidates:}")
+    private List<String> enabledCandidates;
+
+    // Candidates trained at once; 0 means all of them
+    @Value("${models.training.threads:0}")
+    private int trainingThreads;
 
     private static final double TRAINING_RATIO = 0.8;
     private static final int MIN_TRAINING_SAMPLES = 50;
+    // Compiled predictions must match Weka's on every test sample to within this
+    private static final double COMPILED_TOLERANCE = 1e-9;
     private final Random random = new Random();
 
+    private List<ModelCandidate> candidates;
+    private ThreadPoolExecutor candidatePool;
+    private final Map<ModelRegistry.ModelKey, Map<String, Object>> trainingReports = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        candidates = modelCandidates.stream()
+                .filter(candidate -> enabledCandidates.stream().noneMatch(name -> !name.isBlank())
+                        || enabledCandidates.contains(candidate.name()))
+                .toList();
+        int threads = trainingThreads > 0 ? trainingThreads : Math.max(1, candidates.size());
+        candidatePool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), candidateThreadFactory());
+        log.info("🤖 Model candidates: {} ({} trained at once)",
+                candidates.stream().map(ModelCandidate::name).toList(), threads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        candidatePool.shutdownNow();
+    }
+
     /**
      * REAL AI TRAINING with Weka ML library
      */
 
-    public void trainModel(String timeframe, List<double[]> featuresList, List<Double> targetChanges) {
-        if (featuresList.size() < MIN_TRAINING_SAMPLES) {
-            log.warn("❌ Insufficient training data for {}: {} samples (need {})",
-                    timeframe, featuresList.size(), MIN_TRAINING_SAMPLES);
+    public void trainModel(String symbol, String timeframe, List<double[]> featuresList, List<Double> targetChanges) {
+        trainModel(symbol, timeframe, featuresList.toArray(new double[0][]),
+                targetChanges.stream().mapToDouble(Double::doubleValue).toArray());
+    }
+
+    /**
+     * Train from a primitive feature matrix (one row per sample) and its target changes
+     */
+    public void trainModel(String symbol, String timeframe, double[][] features, double[] targetChanges) {
+        if (features.length < MIN_TRAINING_SAMPLES) {
+            log.warn("❌ Insufficient training data for {} {}: {} samples (need {})",
+                    symbol, timeframe, features.length, MIN_TRAINING_SAMPLES);
             return;
         }
 
         try {
-            log.info("🤖 Training REAL AI model for {} with {} samples", timeframe, featuresList.size());
+            log.info("🤖 Training REAL AI model for {} {} with {} samples", symbol, timeframe, features.length);
 
             // Create Weka dataset
-            Instances dataset = createDataset(featuresList, targetChanges, timeframe);
-            dataHeaders.put(timeframe, dataset);
+            Instances dataset = createDataset(features, targetChanges, symbol + "_" + timeframe);
 
             // Split data
             int trainSize = (int) (dataset.size() * TRAINING_RATIO);
@@ -56,30 +106,60 @@ public class AIModelService {
             Instances testData = new Instances(dataset, trainSize, dataset.size() - trainSize);
 
             // Train multiple models and select best
-            Classifier bestModel = trainAndSelectBestModel(trainData, testData, timeframe);
+            Classifier bestModel = trainAndSelectBestModel(trainData, testData, key(symbol, timeframe));
 
             if (bestModel != null) {
-                trainedModels.put(timeframe, bestModel);
                 ModelPerformance performance = evaluateModel(bestModel, testData);
-                modelPerformance.put(timeframe, performance);
+                CompiledModel compiled = compile(bestModel, dataset,
+                        Arrays.copyOfRange(features, trainSize, features.length), testData);
+                modelRegistry.put(key(symbol, timeframe), bestModel, dataset, performance, trainData.size(), compiled);
 
-                log.info("✅ REAL AI Model trained for {} - R²: {:.4f}, RMSE: {:.6f}",
-                        timeframe, performance.getR2(), performance.getRmse());
+                log.info("✅ REAL AI Model trained for {} {} - R²: {:.4f}, RMSE: {:.6f}",
+                        symbol, timeframe, performance.getR2(), performance.getRmse());
             } else {
-                log.error("❌ No suitable model found for timeframe: {}", timeframe);
+                log.error("❌ No suitable model found for {} {}", symbol, timeframe);
             }
 
         } catch (Exception e) {
-            log.error("❌ AI training failed for {}: {}", timeframe, e.getMessage(), e);
+            log.error("❌ AI training failed for {} {}: {}", symbol, timeframe, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Flatten the model for allocation-free predictions, if it checks out against Weka on the test samples
+     *
+     * @return null if the model type isn't supported or its predictions differ from Weka's
+     */
+    private CompiledModel compile(Classifier model, Instances header, double[][] testRows, Instances testData) {
+        CompiledModel compiled = CompiledModel.compile(model, header);
+        if (compiled == null) {
+            log.debug("{} isn't compiled - predictions go through Weka", model.getClass().getSimpleName());
+            return null;
+        }
+        try {
+            double deviation = CompiledModel.maxDeviation(compiled, model, testRows, testData);
+            if (deviation > COMPILED_TOLERANCE) {
+                log.warn("⚠️ Compiled {} deviates from Weka by {} - not using it",
+                        model.getClass().getSimpleName(), deviation);
+                return null;
+            }
+            return compiled;
+        } catch (Exception e) {
+            log.warn("⚠️ Couldn't validate compiled {}: {}", model.getClass().getSimpleName(), e.getMessage());
+            return null;
         }
     }
 
-    private Instances createDataset(List<double[]> featuresList, List<Double> targets, String timeframe) {
+    private static ModelRegistry.ModelKey key(String symbol, String timeframe) {
+        return new ModelRegistry.ModelKey(symbol, timeframe, TrainingDataService.FEATURE_SET_VERSION);
+    }
+
+    private Instances createDataset(double[][] featureRows, double[] targets, String name) {
         // Create attributes
         ArrayList<Attribute> attributes = new ArrayList<>();
 
         // Add feature attributes
-        for (int i = 0; i < featuresList.get(0).length; i++) {
+        for (int i = 0; i < featureRows[0].length; i++) {
             attributes.add(new Attribute("feature_" + i));
         }
 
@@ -87,13 +167,13 @@ public class AIModelService {
         attributes.add(new Attribute("price_change"));
 
         // Create dataset
-        Instances dataset = new Instances("CryptoPrice_" + timeframe, attributes, featuresList.size());
+        Instances dataset = new Instances("CryptoPrice_" + name, attributes, featureRows.length);
         dataset.setClassIndex(dataset.numAttributes() - 1);
 
         // Add instances
-        for (int i = 0; i < featuresList.size(); i++) {
-            double[] features = featuresList.get(i);
-            double target = targets.get(i);
+        for (int i = 0; i < featureRows.length; i++) {
+            double[] features = featureRows[i];
+            double target = targets[i];
 
             double[] instanceValues = new double[features.length + 1];
             System.arraycopy(features, 0, instanceValues, 0, features.length);
@@ -105,63 +185,110 @@ public class AIModelService {
         return dataset;
     }
 
-    private Classifier trainAndSelectBestModel(Instances trainData, Instances testData, String timeframe) {
-        Map<String, Classifier> models = new HashMap<>();
-        Map<String, Double> modelScores = new HashMap<>();
-
-        try {
-            // 1. Linear Regression
-            LinearRegression lr = new LinearRegression();
-            lr.buildClassifier(trainData);
-            models.put("LinearRegression", lr);
-            double lrScore = calculateRSquared(lr, testData);
-            modelScores.put("LinearRegression", lrScore);
-            log.debug("📊 Linear Regression R²: {:.4f}", lrScore);
+    /**
+     * Train every candidate concurrently and keep the one with the best test R².
+     * A round takes about as long as its slowest candidate; the timings are kept as the key's training report.
+     */
+    private Classifier trainAndSelectBestModel(Instances trainData, Instances testData, ModelRegistry.ModelKey key) {
+        long roundStart = System.nanoTime();
+        long processCpuStart = processCpuTime();
+
+        List<CompletableFuture<CandidateResult>> rounds = candidates.stream()
+                .map(candidate -> CompletableFuture.supplyAsync(
+                        () -> trainCandidate(candidate, trainData, testData), candidatePool))
+                .toList();
+        List<CandidateResult> results = rounds.stream().map(CompletableFuture::join).toList();
+
+        long roundWallMs = (System.nanoTime() - roundStart) / 1_000_000;
+        long processCpuEnd = processCpuTime();
+
+        CandidateResult best = selectBestModel(results);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("trainedAt", System.currentTimeMillis());
+        report.put("trainingSamples", trainData.size());
+        report.put("wallMs", roundWallMs);
+        report.put("processCpuMs", processCpuStart >= 0 && processCpuEnd >= 0
+                ? (processCpuEnd - processCpuStart) / 1_000_000 : null);
+        report.put("best", best != null ? best.name() : null);
+        report.put("candidates", results.stream().map(CandidateResult::describe).toList());
+        trainingReports.put(key, report);
+
+        log.info("⏱️ Trained {} candidates for {} {} in {} ms (slowest {} ms, sum {} ms)", results.size(),
+                key.symbol(), key.timeframe(), roundWallMs,
+                results.stream().mapToLong(CandidateResult::wallMs).max().orElse(0),
+                results.stream().mapToLong(CandidateResult::wallMs).sum());
+
+        return best != null ? best.classifier() : null;
+    }
 
-        } catch (Exception e) {
-            log.warn("⚠️ Linear Regression failed: {}", e.getMessage());
-        }
+    private CandidateResult trainCandidate(ModelCandidate candidate, Instances trainData, Instances testData) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long wallStart = System.nanoTime();
+        long cpuStart = threads.getCurrentThreadCpuTime();
+        Classifier classifier = null;
+        double score = Double.NaN;
+        String error = null;
 
         try {
-            // 2. Support Vector Regression
-            SMOreg svm = new SMOreg();
-            svm.buildClassifier(trainData);
-            models.put("SVM", svm);
-            double svmScore = calculateRSquared(svm, testData);
-            modelScores.put("SVM", svmScore);
-            log.debug("📊 SVM R²: {:.4f}", svmScore);
-
+            // Own copies - candidates run concurrently and some filter or reweight their input
+            classifier = candidate.factory().get();
+            classifier.buildClassifier(new Instances(trainData));
+            score = calculateRSquared(classifier, new Instances(testData));
+            log.debug("📊 {} R²: {:.4f}", candidate.name(), score);
         } catch (Exception e) {
-            log.warn("⚠️ SVM failed: {}", e.getMessage());
+            classifier = null;
+            error = e.getMessage();
+            log.warn("⚠️ {} failed: {}", candidate.name(), e.getMessage());
         }
 
-        try {
-            // 3. Random Forest
-            RandomForest rf = new RandomForest();
-            rf.setNumIterations(100);
-            rf.buildClassifier(trainData);
-            models.put("RandomForest", rf);
-            double rfScore = calculateRSquared(rf, testData);
-            modelScores.put("RandomForest", rfScore);
-            log.debug("📊 Random Forest R²: {:.4f}", rfScore);
+        long cpuEnd = threads.getCurrentThreadCpuTime();
+        return new CandidateResult(candidate.name(), classifier, score,
+                (System.nanoTime() - wallStart) / 1_000_000,
+                cpuStart >= 0 && cpuEnd >= 0 ? (cpuEnd - cpuStart) / 1_000_000 : -1, error);
+    }
 
-        } catch (Exception e) {
-            log.warn("⚠️ Random Forest failed: {}", e.getMessage());
-        }
+    private CandidateResult selectBestModel(List<CandidateResult> results) {
+        return results.stream()
+                .filter(result -> result.classifier() != null && Double.isFinite(result.r2()))
+                .max(Comparator.comparingDouble(CandidateResult::r2))
+                .map(result -> {
+                    log.info("🏆 Best model: {} with R²: {:.4f}", result.name(), result.r2());
+                    return result;
+                })
+                .orElse(null);
+    }
 
-        return selectBestModel(models, modelScores);
+    /**
+     * One candidate's outcome. cpuMs is the candidate thread's own CPU time - RandomForest builds its
+     * trees on Weka's execution slot threads, which only show up in the round's processCpuMs.
+     */
+    private record CandidateResult(String name, Classifier classifier, double r2, long wallMs, long cpuMs,
+                                   String error) {
+        Map<String, Object> describe() {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("name", name);
+            row.put("r2", Double.isFinite(r2) ? r2 : null);
+            row.put("wallMs", wallMs);
+            row.put("cpuMs", cpuMs >= 0 ? cpuMs : null);
+            if (error != null) row.put("error", error);
+            return row;
+        }
     }
 
-    private Classifier selectBestModel(Map<String, Classifier> models, Map<String, Double> scores) {
-        if (scores.isEmpty()) return null;
+    private static long processCpuTime() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        return os instanceof com.sun.management.OperatingSystemMXBean sunOs ? sunOs.getProcessCpuTime() : -1;
+    }
 
-        return scores.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(entry -> {
-                    log.info("🏆 Best model: {} with R²: {:.4f}", entry.getKey(), entry.getValue());
-                    return models.get(entry.getKey());
-                })
-                .orElse(null);
+    private static ThreadFactory candidateThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "model-candidate-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        };
     }
 
     private double calculateRSquared(Classifier model, Instances testData) throws Exception {
@@ -209,32 +336,39 @@ public class AIModelService {
     /**
      * REAL AI PREDICTION
      */
-    public double predictPriceChange(double[] features, String timeframe) {
-        if (!trainedModels.containsKey(timeframe)) {
-            log.warn("⚠️ No trained model for {}", timeframe);
+    public double predictPriceChange(String symbol, double[] features, String timeframe) {
+        ModelRegistry.Model model = modelRegistry.get(key(symbol, timeframe));
+        if (model == null) {
+            log.warn("⚠️ No trained model for {} {}", symbol, timeframe);
             return 0.0;
         }
+        return predict(model, features, symbol, timeframe);
+    }
+
+    private double predict(ModelRegistry.Model model, double[] features, String symbol, String timeframe) {
+        CompiledModel compiled = model.compiled();
+        if (compiled != null && features.length == compiled.featureCount() && !hasMissing(features)) {
+            double prediction = compiled.predict(features);
+            if (!Double.isNaN(prediction)) return applyPredictionBounds(prediction);
+        }
 
         try {
-            Classifier model = trainedModels.get(timeframe);
-            Instances header = dataHeaders.get(timeframe);
-
             // Create instance for prediction
             double[] instanceValues = new double[features.length + 1];
             System.arraycopy(features, 0, instanceValues, 0, features.length);
             instanceValues[features.length] = weka.core.Utils.missingValue(); // Target is missing for prediction
 
             DenseInstance instance = new DenseInstance(1.0, instanceValues);
-            instance.setDataset(header);
+            instance.setDataset(model.header());
 
-            double prediction = model.classifyInstance(instance);
+            double prediction = model.classifier().classifyInstance(instance);
             prediction = applyPredictionBounds(prediction);
 
-            log.debug("🤖 AI Prediction for {}: {:.4f}% change", timeframe, prediction * 100);
+            log.debug("🤖 AI Prediction for {} {}: {:.4f}% change", symbol, timeframe, prediction * 100);
             return prediction;
 
         } catch (Exception e) {
-            log.error("❌ AI prediction failed for {}: {}", timeframe, e.getMessage());
+            log.error("❌ AI prediction failed for {} {}: {}", symbol, timeframe, e.getMessage());
             return 0.0;
         }
     }
@@ -242,10 +376,11 @@ public class AIModelService {
     /**
      * Get prediction with confidence score
      */
-    public Map<String, Object> predictWithConfidence(double[] features, String timeframe) {
+    public Map<String, Object> predictWithConfidence(String symbol, double[] features, String timeframe) {
         Map<String, Object> result = new HashMap<>();
 
-        if (!trainedModels.containsKey(timeframe)) {
+        ModelRegistry.Model model = modelRegistry.get(key(symbol, timeframe));
+        if (model == null) {
             result.put("prediction", 0.0);
             result.put("confidence", 0.1);
             result.put("model", "none");
@@ -253,15 +388,12 @@ public class AIModelService {
         }
 
         try {
-            Classifier model = trainedModels.get(timeframe);
-            double prediction = predictPriceChange(features, timeframe);
-
-            ModelPerformance perf = modelPerformance.get(timeframe);
-            double confidence = calculatePredictionConfidence(prediction, perf);
+            double prediction = predict(model, features, symbol, timeframe);
+            double confidence = calculatePredictionConfidence(prediction, model.performance());
 
             result.put("prediction", prediction);
             result.put("confidence", confidence);
-            result.put("model", model.getClass().getSimpleName());
+            result.put("model", model.classifier().getClass().getSimpleName());
 
             return result;
 
@@ -290,6 +422,13 @@ public class AIModelService {
         return Math.max(0.1, Math.min(0.95, baseConfidence));
     }
 
+    private static boolean hasMissing(double[] features) {
+        for (double feature : features) {
+            if (Double.isNaN(feature)) return true;
+        }
+        return false;
+    }
+
     private double applyPredictionBounds(double prediction) {
         // Limit predictions to reasonable bounds (±20%)
         return Math.max(-0.2, Math.min(0.2, prediction));
@@ -298,38 +437,46 @@ public class AIModelService {
     /**
      * Get model performance metrics
      */
-    public ModelPerformance getModelPerformance(String timeframe) {
-        return modelPerformance.get(timeframe);
+    public ModelPerformance getModelPerformance(String symbol, String timeframe) {
+        return modelRegistry.getPerformance(key(symbol, timeframe));
     }
 
     /**
      * Check if model is trained and ready
      */
-    public boolean isModelTrained(String timeframe) {
-        return trainedModels.containsKey(timeframe) &&
-                modelPerformance.get(timeframe) != null &&
-                modelPerformance.get(timeframe).getR2() > 0.1;
+    public boolean isModelTrained(String symbol, String timeframe) {
+        ModelPerformance performance = getModelPerformance(symbol, timeframe);
+        return performance != null && performance.getR2() > 0.1;
     }
 
     /**
-     * Get all trained timeframes
+     * When the symbol's model for a timeframe was trained, or 0 if there is none
      */
-    public List<String> getTrainedTimeframes() {
-        return new ArrayList<>(trainedModels.keySet());
+    public long getTrainedAt(String symbol, String timeframe) {
+        return modelRegistry.getTrainedAt(key(symbol, timeframe));
     }
 
     /**
-     * Get model information for monitoring
+     * Get the timeframes with a trained model for a symbol
      */
-    public Map<String, Object> getModelInfo(String timeframe) {
-        Map<String, Object> info = new HashMap<>();
-        if (trainedModels.containsKey(timeframe)) {
-            Classifier model = trainedModels.get(timeframe);
-            ModelPerformance perf = modelPerformance.get(timeframe);
+    public List<String> getTrainedTimeframes(String symbol) {
+        return modelRegistry.getKeys().stream()
+                .filter(key -> key.symbol().equalsIgnoreCase(symbol)
+                        && key.featureVersion() == TrainingDataService.FEATURE_SET_VERSION)
+                .map(ModelRegistry.ModelKey::timeframe)
+                .toList();
+    }
 
-            info.put("modelType", model.getClass().getSimpleName());
+    /**
+     * Get model information for monitoring - doesn't load a spilled model
+     */
+    public Map<String, Object> getModelInfo(String symbol, String timeframe) {
+        Map<String, Object> info = new HashMap<>();
+        ModelRegistry.ModelKey key = key(symbol, timeframe);
+        if (modelRegistry.contains(key)) {
+            info.put("modelType", modelRegistry.getModelType(key));
             info.put("trained", true);
-            info.put("performance", perf);
+            info.put("performance", modelRegistry.getPerformance(key));
         } else {
             info.put("trained", false);
             info.put("performance", null);
@@ -341,6 +488,15 @@ public class AIModelService {
      * Get the number of trained models
      */
     public int getTrainedModelCount() {
-        return trainedModels.size();
+        return modelRegistry.size();
+    }
+
+    /**
+     * Latest training round per model: candidates tried, with wall and CPU time and test R² for each
+     */
+    public Map<String, Object> getTrainingReports() {
+        Map<String, Object> reports = new TreeMap<>();
+        trainingReports.forEach((key, report) -> reports.put(key.symbol() + " " + key.timeframe(), report));
+        return reports;
     }
 }
\ No newline at end of file
@@ -0,0 +1,141 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Latest-value-wins hand-off between tick ingest and AI analysis.
+ *
+ * Ingest records the tick itself elsewhere and only signals the symbol here. Every symbol owns one
+ * slot counting signals since the last analysis; the worker always analyses the newest tick, so
+ * any extra signals are conflated instead of queued, and at most one analysis task per symbol sits
+ * on the bounded worker pool. A slow analysis never backs up the WebSocket read thread, and
+ * signalling allocates nothing.
+ */
+@Slf4j
+public class AnalysisPipeline {
+
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor workers;
+    private final Consumer<String> analyzer;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong conflated = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    public AnalysisPipeline(int workerThreads, int queueCapacity, Consumer<String> analyzer) {
+        this.analyzer = analyzer;
+        this.workers = new ThreadPoolExecutor(
+                workerThreads, workerThreads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                namedThreadFactory(),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * Signal a new tick for a symbol. Never blocks: pending ticks for the same symbol are conflated,
+     * and if the worker queue is full they are dropped.
+     */
+    public void submit(String symbol) {
+        submitted.incrementAndGet();
+        Slot slot = slots.computeIfAbsent(symbol, Slot::new);
+        slot.pending.incrementAndGet();
+        schedule(slot);
+    }
+
+    private void schedule(Slot slot) {
+        if (!slot.queued.compareAndSet(false, true)) {
+            return; // A drain is already pending or running and will pick up the latest value
+        }
+
+        try {
+            workers.execute(() -> drain(slot));
+        } catch (RejectedExecutionException e) {
+            slot.queued.set(false);
+            long discarded = slot.pending.getAndSet(0);
+            if (discarded > 0) {
+                dropped.addAndGet(discarded);
+                log.debug("⚠️ Analysis queue full - dropped {} {} ticks", discarded, slot.symbol);
+            }
+        }
+    }
+
+    private void drain(Slot slot) {
+        long signals = slot.pending.getAndSet(0);
+        try {
+            if (signals > 0) {
+                // Only the newest tick is analysed - the rest were superseded while waiting
+                conflated.addAndGet(signals - 1);
+                analyzer.accept(slot.symbol);
+                processed.incrementAndGet();
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.error("❌ Analysis failed for {}: {}", slot.symbol, e.getMessage());
+        } finally {
+            slot.queued.set(false);
+            // A tick may have arrived while we were busy
+            if (slot.pending.get() > 0) {
+                schedule(slot);
+            }
+        }
+    }
+
+    /**
+     * Pipeline counters for monitoring
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("submitted", submitted.get());
+        stats.put("processed", processed.get());
+        stats.put("conflated", conflated.get());
+        stats.put("dropped", dropped.get());
+        stats.put("failed", failed.get());
+        stats.put("activeWorkers", workers.getActiveCount());
+        stats.put("queuedTasks", workers.getQueue().size());
+        stats.put("trackedSymbols", slots.size());
+        return stats;
+    }
+
+    public long getConflatedCount() {
+        return conflated.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private static ThreadFactory namedThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "ai-analysis-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Slot {
+        private final String symbol;
+        private final AtomicLong pending = new AtomicLong();
+        private final AtomicBoolean queued = new AtomicBoolean();
+
+        private Slot(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latest published analysis of each symbol, numbered so clients can follow it with deltas.
+ *
+ * A new analysis only becomes a new version if its content differs from the last one; the change is
+ * described as a JSON merge patch (RFC 7386) against the previous version - changed fields with their
+ * new value, removed fields as null, unchanged fields left out - so patterns and Fibonacci zones that
+ * didn't move aren't resent.
+ */
+public class AnalysisVersions {
+
+    /**
+     * A published version of a symbol's analysis
+     */
+    public record Version(long version, long publishedAt, JsonNode analysis) {
+    }
+
+    /**
+     * A new version and how it differs from the one before ({@code changes} is null for the first version)
+     */
+    public record Change(long version, long baseVersion, JsonNode analysis, JsonNode changes) {
+    }
+
+    private final Map<String, Version> latest = new ConcurrentHashMap<>();
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong unchanged = new AtomicLong();
+
+    /**
+     * Record a symbol's newest analysis
+     *
+     * @param timestamp when it was computed
+     * @return the change to send, or null if it's the same as the current version
+     */
+    public Change publish(String symbol, JsonNode analysis, long timestamp) {
+        Change[] change = new Change[1];
+        latest.compute(symbol, (key, previous) -> {
+            if (previous == null) {
+                change[0] = new Change(1, 0, analysis, null);
+                return new Version(1, timestamp, analysis);
+            }
+            JsonNode changes = diff(previous.analysis(), analysis);
+            if (changes == null) return previous;
+            long version = previous.version() + 1;
+            change[0] = new Change(version, previous.version(), analysis, changes);
+            return new Version(version, timestamp, analysis);
+        });
+
+        if (change[0] == null) {
+            unchanged.incrementAndGet();
+        } else {
+            published.incrementAndGet();
+        }
+        return change[0];
+    }
+
+    /**
+     * @return null if nothing was published for the symbol yet
+     */
+    public Version latest(String symbol) {
+        return latest.get(symbol);
+    }
+
+    public void remove(String symbol) {
+        latest.remove(symbol);
+    }
+
+    /**
+     * Merge patch turning {@code previous} into {@code next}
+     *
+     * @return null if they are equal
+     */
+    static JsonNode diff(JsonNode previous, JsonNode next) {
+        if (!previous.isObject() || !next.isObject()) {
+            // Scalars and arrays are replaced as a whole
+            return previous.equals(next) ? null : next;
+        }
+
+        ObjectNode patch = JsonNodeFactory.instance.objectNode();
+        Iterator<Map.Entry<String, JsonNode>> fields = next.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode before = previous.get(field.getKey());
+            JsonNode change = before == null ? field.getValue() : diff(before, field.getValue());
+            if (change != null) patch.set(field.getKey(), change);
+        }
+        Iterator<String> names = previous.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            if (!next.has(name)) patch.putNull(name);
+        }
+        return patch.isEmpty() ? null : patch;
+    }
+
+    /**
+     * Versions published vs. analyses that matched the current version and weren't sent
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("symbols", latest.size());
+        stats.put("published", published.get());
+        stats.put("unchanged", unchanged.get());
+        return stats;
+    }
+}
@@ -0,0 +1,116 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
+import com.pxbt.dev.aiTradingCharts.model.CryptoPrice;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared home for every bar series, keyed by symbol and interval.
+ * Services read zero-copy {@link BarSeries.View}s from here instead of keeping their own lists.
+ */
+@Slf4j
+@Service
+public class BarSeriesStore {
+
+    private static final BarSeries EMPTY = new BarSeries(1);
+
+    private final Map<String, BarSeries> series = new ConcurrentHashMap<>();
+
+    // Columns grow on demand, so a generous cap costs nothing until the bars actually arrive
+    @Value("${bars.max-bars-per-series:100000}")
+    private int defaultCapacity;
+
+    public BarSeries getOrCreate(String symbol, String interval) {
+        return getOrCreate(symbol, interval, defaultCapacity);
+    }
+
+    public BarSeries getOrCreate(String symbol, String interval, int capacity) {
+        return series.computeIfAbsent(key(symbol, interval), k -> new BarSeries(capacity));
+    }
+
+    /**
+     * Series that can hold at least {@code capacity} bars, up to {@code bars.max-bars-per-series}. A smaller
+     * existing series is swapped for a larger copy; writes that still reach the old instance are passed on to
+     * the copy, but readers holding it should look it up again (the indicator engine does).
+     */
+    public BarSeries ensureCapacity(String symbol, String interval, int capacity) {
+        int capped = Math.min(capacity, defaultCapacity);
+        return series.compute(key(symbol, interval), (k, existing) -> {
+            if (existing == null) return new BarSeries(capped);
+            if (existing.capacity() >= capped) return existing;
+            log.debug("💾 Grew {} to hold {} bars", k, capped);
+            return existing.withCapacity(capped);
+        });
+    }
+
+    /**
+     * Most bars a series is allowed to hold ({@code bars.max-bars-per-series})
+     */
+    public int maxBarsPerSeries() {
+        return defaultCapacity;
+    }
+
+    /**
+     * @return the series, or null if nothing has been stored for it yet
+     */
+    public BarSeries get(String symbol, String interval) {
+        return series.get(key(symbol, interval));
+    }
+
+    /**
+     * Drop a series, e.g. when its symbol is released
+     */
+    public void remove(String symbol, String interval) {
+        series.remove(key(symbol, interval));
+    }
+
+    /**
+     * View of the most recent {@code limit} bars; empty if the series doesn't exist
+     */
+    public BarSeries.View view(String symbol, String interval, int limit) {
+        BarSeries bars = get(symbol, interval);
+        return bars != null ? bars.view(limit) : EMPTY.view();
+    }
+
+    /**
+     * Replace a series' contents with freshly loaded bars (oldest first)
+     */
+    public BarSeries load(String symbol, String interval, List<CryptoPrice> bars) {
+        BarSeries loaded = new BarSeries(Math.max(1, bars.size()));
+        for (CryptoPrice bar : bars) {
+            loaded.append(bar.getTimestamp(), bar.getOpen(), bar.getHigh(), bar.getLow(),
+                    bar.getClose(), bar.getVolume());
+        }
+
+        BarSeries target = getOrCreate(symbol, interval);
+        target.replace(loaded.view());
+        log.debug("💾 Stored {} {} bars for {}", target.size(), interval, symbol);
+        return target;
+    }
+
+    /**
+     * Symbols that have a series for the given interval
+     */
+    public Set<String> symbols(String interval) {
+        String suffix = "|" + interval;
+        Set<String> symbols = new TreeSet<>();
+        for (String key : series.keySet()) {
+            if (key.endsWith(suffix)) {
+                symbols.add(key.substring(0, key.length() - suffix.length()));
+            }
+        }
+        return symbols;
+    }
+
+    private static String key(String symbol, String interval) {
+        return symbol + "|" + interval;
+    }
+}
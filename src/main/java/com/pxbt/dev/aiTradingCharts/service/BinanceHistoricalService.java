@@ -1,20 +1,26 @@
 package com.pxbt.dev.aiTradingCharts.service;
 
 import com.pxbt.dev.aiTradingCharts.Gateway.BinanceGateway;
+import com.pxbt.dev.aiTradingCharts.Gateway.BinanceKlineParser;
+import com.pxbt.dev.aiTradingCharts.Gateway.RequestWeightLimiter.Priority;
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
 import com.pxbt.dev.aiTradingCharts.model.CryptoPrice;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.pxbt.dev.aiTradingCharts.model.PriceUpdate;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
@@ -22,42 +28,116 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequiredArgsConstructor
 public class BinanceHistoricalService {
 
+    // Interval of the long-term series the prediction and training services work on
+    public static final String DAILY = "1d";
+
+    private static final int KLINES_PER_REQUEST = 1000;
+    private static final int LOAD_RETRIES = 3;
+    private static final long DAY_MS = BarSeries.intervalMillis(DAILY);
+
     private final BinanceGateway binanceGateway;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final BarSeriesStore barSeriesStore;
+    private final KlineCache klineCache;
+    private final HistoricalResponseCache historicalResponseCache;
+    private final SymbolRegistry symbolRegistry;
 
-    private Map<String, List<CryptoPrice>> currentData = new ConcurrentHashMap<>();
+    // Daily series per symbol for applyTick, which runs on every trade - saves the store's key lookup
+    private final Map<String, BarSeries> tickedSeries = new ConcurrentHashMap<>();
 
     @PostConstruct
     public void init() {
-        log.info("📚 BinanceHistoricalService initializing with long term data...");
-        loadAllDataInOneCall();
+        // Daily history is loaded when a symbol is activated and dropped (after saving it) when it's released
+        symbolRegistry.addResources(new SymbolRegistry.SymbolResources() {
+            @Override
+            public Mono<Void> acquire(String symbol) {
+                return loadHistory(symbol).then();
+            }
+
+            @Override
+            public void release(String symbol) {
+                BarSeries daily = barSeriesStore.get(symbol, DAILY);
+                if (daily != null) {
+                    klineCache.write(symbol, DAILY, daily.snapshot(Integer.MAX_VALUE));
+                    barSeriesStore.remove(symbol, DAILY);
+                }
+                tickedSeries.remove(symbol);
+            }
+        });
     }
 
-    private void loadAllDataInOneCall() {
-        try {
-            Map<String, List<CryptoPrice>> allData = new HashMap<>();
-            String[] symbols = {"BTC", "SOL", "TAO", "WIF"};
+    /**
+     * Load a symbol's daily history, warm-starting from the kline cache where there is one.
+     * Nothing is fetched until subscribed, and symbols load independently of each other.
+     */
+    public Mono<BarSeries> loadHistory(String symbol) {
+        log.info("📚 Loading long term data for {}...", symbol);
+        // Disk read off the event loop; the fetches themselves are non-blocking
+        return Mono.fromCallable(() -> Optional.ofNullable(klineCache.read(symbol, DAILY)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(cached -> cached.isPresent() ? warmStart(symbol, cached.get()) : coldStart(symbol))
+                .publishOn(Schedulers.boundedElastic())
+                .doOnNext(daily -> {
+                    klineCache.write(symbol, DAILY, daily.snapshot(Integer.MAX_VALUE));
+                    tickedSeries.put(symbol, daily);
+                })
+                .retryWhen(Retry.backoff(LOAD_RETRIES, Duration.ofSeconds(2)))
+                .doOnError(e -> log.error("❌ Failed to load historical data for {}: {}", symbol, e.getMessage()));
+    }
 
-            for (String symbol : symbols) {
-                // ✅ LOAD 1000 POINTS FOR AI PREDICTIONS
-                List<CryptoPrice> symbolData = fetchBinanceData(symbol, "1d", 1000);
-                allData.put(symbol, symbolData);
+    private Mono<BarSeries> warmStart(String symbol, BarSeries cached) {
+        BarSeries daily = barSeriesStore.getOrCreate(symbol, DAILY);
+        daily.replace(cached.view());
+        return topUp(symbol, daily)
+                .doOnSuccess(fetched -> log.info("📊 {}: Loaded {} data points from cache", symbol, daily.size()))
+                .thenReturn(daily);
+    }
 
-                log.info("📊 {}: Loaded {} data points covering ~{} years",
-                        symbol, symbolData.size(), symbolData.size() / 365);
-            }
+    private Mono<BarSeries> coldStart(String symbol) {
+        // ✅ LOAD 1000 POINTS FOR AI PREDICTIONS - parsed straight into columns
+        return fetchBinanceData(symbol, DAILY, KLINES_PER_REQUEST)
+                .map(fetched -> {
+                    BarSeries daily = barSeriesStore.getOrCreate(symbol, DAILY);
+                    daily.replace(fetched.view());
+                    log.info("📊 {}: Loaded {} data points covering ~{} years",
+                            symbol, fetched.size(), fetched.size() / 365);
+                    return daily;
+                });
+    }
 
-            currentData.putAll(allData);
-            log.info("Historical data loaded from Binance");
+    /**
+     * Fetch the bars from the last cached one (which may have been forming) up to now, a page at a time.
+     * If Binance can't be reached the cached bars are used as they are.
+     */
+    private Mono<Integer> topUp(String symbol, BarSeries daily) {
+        long now = System.currentTimeMillis();
+        return fetchDailyPage(symbol, daily, daily.lastTimestamp(), now)
+                .expand(count -> count < KLINES_PER_REQUEST
+                        ? Mono.empty()
+                        : fetchDailyPage(symbol, daily, daily.lastTimestamp() + 1, now))
+                .reduce(0, Integer::sum)
+                .doOnSuccess(fetched -> log.info("🔄 {}: fetched {} bars newer than the cache", symbol, fetched))
+                .onErrorResume(e -> {
+                    log.warn("⚠️ {}: couldn't top up cached bars, using cache as is: {}", symbol, e.getMessage());
+                    return Mono.just(0);
+                });
+    }
 
-        } catch (Exception e) {
-            log.error("❌ Failed to load historical data: {}", e.getMessage());
-            currentData = Map.of(
-                    "BTC", new ArrayList<>(),
-                    "SOL", new ArrayList<>(),
-                    "TAO", new ArrayList<>(),
-                    "WIF", new ArrayList<>()
-            );
+    private Mono<Integer> fetchDailyPage(String symbol, BarSeries daily, long from, long to) {
+        return binanceGateway.getRawKlines(symbol, DAILY, from, to, KLINES_PER_REQUEST, Priority.SYSTEM)
+                .map(response -> BinanceKlineParser.parse(response, daily::append))
+                .defaultIfEmpty(0);
+    }
+
+    /**
+     * Persist the daily bars (including today's forming one) so the next start only fetches what's new
+     */
+    @PreDestroy
+    public void saveToCache() {
+        for (String symbol : barSeriesStore.symbols(DAILY)) {
+            BarSeries daily = barSeriesStore.get(symbol, DAILY);
+            if (daily != null) {
+                klineCache.write(symbol, DAILY, daily.snapshot(Integer.MAX_VALUE));
+            }
         }
     }
 
@@ -69,7 +149,7 @@ public class BinanceHistoricalService {
      */
     public List<PriceUpdate> getHistoricalDataAsPriceUpdate(String symbol, String interval, int limit) {
         try {
-            String response = binanceGateway.getRawKlines(symbol, interval, limit).block();
+            byte[] response = binanceGateway.getRawKlines(symbol, interval, limit, Priority.SYSTEM).block();
             return parseBinanceKlinesToPriceUpdate(response, symbol);
         } catch (Exception e) {
             log.error("❌ Failed to get historical data for {}: {}", symbol, e.getMessage());
@@ -77,35 +157,31 @@ public class BinanceHistoricalService {
         }
     }
 
+    /**
+     * Klines opened within [startTime, endTime] - used to back-fill stream gaps after a reconnect
+     */
+    public Mono<List<PriceUpdate>> getHistoricalDataAsPriceUpdate(String symbol, String interval, long startTime, long endTime) {
+        return binanceGateway.getRawKlines(symbol, interval, startTime, endTime, 1000, Priority.SYSTEM)
+                .map(response -> parseBinanceKlinesToPriceUpdate(response, symbol));
+    }
+
     /**
      * ✅ KEEP THIS - MarketDataService needs it
      */
-    private List<PriceUpdate> parseBinanceKlinesToPriceUpdate(String response, String symbol) {
+    private List<PriceUpdate> parseBinanceKlinesToPriceUpdate(byte[] response, String symbol) {
         try {
-            List<List<Object>> klines = objectMapper.readValue(response, new TypeReference<>() {
-            });
-
             List<PriceUpdate> priceUpdates = new ArrayList<>();
-            for (List<Object> kline : klines) {
-                long timestamp = Long.parseLong(kline.get(0).toString());
-                double open = Double.parseDouble(kline.get(1).toString());
-                double high = Double.parseDouble(kline.get(2).toString());
-                double low = Double.parseDouble(kline.get(3).toString());
-                double close = Double.parseDouble(kline.get(4).toString());
-                double volume = Double.parseDouble(kline.get(5).toString());
-
-                PriceUpdate update = new PriceUpdate(
-                        symbol,
-                        close,      // price (current price)
-                        volume,     // volume
-                        timestamp,  // timestamp
-                        open,       // open
-                        high,       // high
-                        low,        // low
-                        close       // close
-                );
-                priceUpdates.add(update);
-            }
+            BinanceKlineParser.parse(response, (timestamp, open, high, low, close, volume) ->
+                    priceUpdates.add(new PriceUpdate(
+                            symbol,
+                            close,      // price (current price)
+                            volume,     // volume
+                            timestamp,  // timestamp
+                            open,       // open
+                            high,       // high
+                            low,        // low
+                            close       // close
+                    )));
 
             log.info("✅ Loaded {} historical OHLC data points for {}", priceUpdates.size(), symbol);
             return priceUpdates;
@@ -121,31 +197,80 @@ public class BinanceHistoricalService {
      * ✅ FOR PricePredictionService - returns cached CryptoPrice data
      */
     public List<CryptoPrice> getHistoricalData(String symbol, int days) {
-        List<CryptoPrice> data = currentData.get(symbol);
-        if (data == null || data.isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        int pointsNeeded = Math.min(days, data.size());
-        int startIndex = Math.max(0, data.size() - pointsNeeded);
-        return new ArrayList<>(data.subList(startIndex, data.size()));
+        return getDailyBars(symbol, days).toCryptoPrices(symbol);
     }
 
     public List<CryptoPrice> getFullHistoricalData(String symbol) {
-        return currentData.getOrDefault(symbol, new ArrayList<>());
+        return getDailyBars(symbol, Integer.MAX_VALUE).toCryptoPrices(symbol);
+    }
+
+    /**
+     * Zero-copy view of the most recent daily bars - preferred over the list methods
+     */
+    public BarSeries.View getDailyBars(String symbol, int limit) {
+        return barSeriesStore.view(symbol, DAILY, limit);
+    }
+
+    /**
+     * Open time of the newest daily bar - today's forming one - or -1 until the history has loaded.
+     * Moves when a daily bar closes and the next one opens.
+     */
+    public long getLastDailyBarTime(String symbol) {
+        BarSeries daily = barSeriesStore.get(symbol, DAILY);
+        return daily != null ? daily.lastTimestamp() : -1;
+    }
+
+    /**
+     * Bumped whenever the symbol's daily history is reloaded or rewritten rather than appended to
+     */
+    public long getDailyGeneration(String symbol) {
+        BarSeries daily = barSeriesStore.get(symbol, DAILY);
+        return daily != null ? daily.generation() : 0;
+    }
+
+    /**
+     * Daily bars held per registered symbol - zero until its history has loaded
+     */
+    public Map<String, Integer> getDailyBarCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (String symbol : symbolRegistry.getSymbols()) {
+            BarSeries daily = barSeriesStore.get(symbol, DAILY);
+            counts.put(symbol, daily != null ? daily.size() : 0);
+        }
+        return counts;
+    }
+
+    /**
+     * Fold a live trade price into today's (UTC) forming daily bar, opening it if the day just rolled over.
+     * Does nothing until the daily history for the symbol has been loaded.
+     */
+    public void applyTick(String symbol, double price, long timestamp) {
+        BarSeries daily = tickedSeries.get(symbol);
+        if (daily == null || daily.isRetired()) {
+            // Not loaded yet, or swapped for a larger copy since
+            daily = barSeriesStore.get(symbol, DAILY);
+            if (daily == null) return;
+            tickedSeries.put(symbol, daily);
+        }
+        if (daily.lastTimestamp() < 0) return;
+
+        daily.applyTick(timestamp - Math.floorMod(timestamp, DAY_MS), price);
     }
 
     // ===== METHODS FOR Frontend/Controllers (CryptoPrice) =====
 
     /**
      * ✅ FOR Frontend - returns reactive CryptoPrice data
-     * Renamed to avoid method clash
+     * Renamed to avoid method clash. Served from the response cache until the interval's candle closes;
+     * the returned list is shared and must not be modified.
      */
     public Mono<List<CryptoPrice>> getHistoricalDataReactive(String symbol, String timeframe, int limit) {
         String binanceInterval = convertTimeframeToBinanceInterval(timeframe);
-        return binanceGateway.getRawKlines(symbol, binanceInterval, limit)
-                .map(response -> parseBinanceKlinesToCryptoPrice(response, symbol))
-                .doOnSuccess(data -> log.info("Loaded {} {} data points for {}", data.size(), timeframe, symbol));
+        return historicalResponseCache.get(symbol, binanceInterval, limit, () ->
+                binanceGateway.getRawKlines(symbol, binanceInterval, limit, Priority.INTERACTIVE)
+                        .map(response -> parseBinanceKlinesToCryptoPrice(response, symbol))
+                        .doOnSuccess(data -> log.info("Loaded {} {} data points for {}",
+                                data != null ? data.size() : 0, timeframe, symbol)));
     }
 
     // ===== PRIVATE HELPER METHODS =====
@@ -153,24 +278,11 @@ public class BinanceHistoricalService {
     /**
      * ✅ Parsing method that returns CryptoPrice
      */
-    private List<CryptoPrice> parseBinanceKlinesToCryptoPrice(String response, String symbol) {
+    private List<CryptoPrice> parseBinanceKlinesToCryptoPrice(byte[] response, String symbol) {
         try {
-            List<List<Object>> klines = objectMapper.readValue(response, new TypeReference<>() {});
-
             List<CryptoPrice> cryptoPrices = new ArrayList<>();
-            for (List<Object> kline : klines) {
-                long timestamp = Long.parseLong(kline.get(0).toString());
-                double open = Double.parseDouble(kline.get(1).toString());
-                double high = Double.parseDouble(kline.get(2).toString());
-                double low = Double.parseDouble(kline.get(3).toString());
-                double close = Double.parseDouble(kline.get(4).toString());
-                double volume = Double.parseDouble(kline.get(5).toString());
-
-                CryptoPrice cryptoPrice = new CryptoPrice(
-                        symbol, close, volume, timestamp, open, high, low, close
-                );
-                cryptoPrices.add(cryptoPrice);
-            }
+            BinanceKlineParser.parse(response, (timestamp, open, high, low, close, volume) ->
+                    cryptoPrices.add(new CryptoPrice(symbol, close, volume, timestamp, open, high, low, close)));
 
             log.info("✅ Loaded {} historical OHLC data points for {}", cryptoPrices.size(), symbol);
             return cryptoPrices;
@@ -181,17 +293,17 @@ public class BinanceHistoricalService {
     }
 
     /**
-     * ✅ Helper method for batch fetching
+     * ✅ Helper method for batch fetching - klines go straight into a column store, no object per bar
      */
-    private List<CryptoPrice> fetchBinanceData(String symbol, String timeframe, int limit) {
-        try {
-            String binanceInterval = convertTimeframeToBinanceInterval(timeframe);
-            String response = binanceGateway.getRawKlines(symbol, binanceInterval, limit).block();
-            return parseBinanceKlinesToCryptoPrice(response, symbol);
-        } catch (Exception e) {
-            log.error("❌ Failed to fetch Binance data for {}: {}", symbol, e.getMessage());
-            return new ArrayList<>();
-        }
+    private Mono<BarSeries> fetchBinanceData(String symbol, String timeframe, int limit) {
+        String binanceInterval = convertTimeframeToBinanceInterval(timeframe);
+        return binanceGateway.getRawKlines(symbol, binanceInterval, limit, Priority.SYSTEM)
+                .map(response -> {
+                    BarSeries bars = new BarSeries(Math.max(1, limit));
+                    int count = BinanceKlineParser.parse(response, bars::append);
+                    log.info("✅ Loaded {} historical OHLC data points for {}", count, symbol);
+                    return bars;
+                });
     }
 
     private String convertTimeframeToBinanceInterval(String timeframe) {
@@ -0,0 +1,255 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.IteratedSingleClassifierEnhancer;
+import weka.classifiers.functions.LinearRegression;
+import weka.classifiers.meta.Bagging;
+import weka.classifiers.trees.RandomTree;
+import weka.core.Instances;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A trained model flattened into plain arrays, evaluated straight on a {@code double[]} of features
+ * without building a Weka {@code Instance} or walking Weka's object graph, and without allocating.
+ *
+ * Random forests (and single random trees) become one struct-of-arrays node table shared by all trees;
+ * linear regression becomes a coefficient vector and intercept. Anything else - or a model that uses
+ * nominal attributes - isn't compiled and keeps going through Weka. Missing (NaN) features are also left
+ * to Weka, which splits such instances across branches.
+ */
+public interface CompiledModel extends Serializable {
+
+    double predict(double[] features);
+
+    /**
+     * Number of features the model reads
+     */
+    int featureCount();
+
+    /**
+     * Compile a trained model
+     *
+     * @param header dataset header it was trained against (class attribute last)
+     * @return null if the model type or its attributes aren't supported
+     */
+    static CompiledModel compile(Classifier model, Instances header) {
+        for (int i = 0; i < header.numAttributes(); i++) {
+            if (i != header.classIndex() && !header.attribute(i).isNumeric()) return null;
+        }
+        int featureCount = header.numAttributes() - 1;
+        try {
+            if (model instanceof LinearRegression linear) {
+                return LinearModel.compile(linear, featureCount);
+            }
+            if (model instanceof RandomTree tree) {
+                return Forest.compile(List.of(tree), featureCount);
+            }
+            if (model instanceof Bagging bagging) {
+                List<RandomTree> trees = new ArrayList<>();
+                for (Classifier member : (Classifier[]) field(IteratedSingleClassifierEnhancer.class, "m_Classifiers")
+                        .get(bagging)) {
+                    if (!(member instanceof RandomTree tree)) return null;
+                    trees.add(tree);
+                }
+                return Forest.compile(trees, featureCount);
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // A Weka version with a different internal layout - stay on the Weka path
+            return null;
+        }
+        return null;
+    }
+
+    /**
+     * Largest difference between the compiled and the Weka prediction over some instances
+     *
+     * @param rows features of each instance, in the same order as {@code instances}
+     */
+    static double maxDeviation(CompiledModel compiled, Classifier model, double[][] rows, Instances instances)
+            throws Exception {
+        double max = 0;
+        for (int i = 0; i < rows.length; i++) {
+            double expected = model.classifyInstance(instances.get(i));
+            double actual = compiled.predict(rows[i]);
+            if (Double.isNaN(expected) != Double.isNaN(actual)) return Double.POSITIVE_INFINITY;
+            if (!Double.isNaN(expected)) max = Math.max(max, Math.abs(expected - actual));
+        }
+        return max;
+    }
+
+    private static Field field(Class<?> owner, String name) throws NoSuchFieldException {
+        Field field = owner.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+
+    /**
+     * Dot product plus intercept - what Weka's LinearRegression computes for numeric attributes
+     */
+    final class LinearModel implements CompiledModel {
+        private final double[] weights;
+        private final double intercept;
+
+        private LinearModel(double[] weights, double intercept) {
+            this.weights = weights;
+            this.intercept = intercept;
+        }
+
+        static LinearModel compile(LinearRegression model, int featureCount) {
+            // One slot per attribute (0 for the class and for unselected attributes), then the intercept
+            double[] coefficients = model.coefficients();
+            double[] weights = new double[featureCount];
+            System.arraycopy(coefficients, 0, weights, 0, featureCount);
+            return new LinearModel(weights, coefficients[coefficients.length - 1]);
+        }
+
+        @Override
+        public double predict(double[] features) {
+            double result = intercept;
+            for (int i = 0; i < weights.length; i++) {
+                result += weights[i] * features[i];
+            }
+            return result;
+        }
+
+        @Override
+        public int featureCount() {
+            return weights.length;
+        }
+    }
+
+    /**
+     * Regression trees as one node table. A node with {@code feature[n] < 0} is a leaf; otherwise features
+     * below {@code threshold[n]} go to {@code left[n]} and the rest to {@code right[n]}. {@code value[n]} is
+     * the node's prediction, NaN if it saw no training instances - as in Weka, a path ending in such a node
+     * predicts the value of the deepest node above it that has one. The forest predicts the mean of its trees.
+     */
+    final class Forest implements CompiledModel {
+        private final int[] roots;
+        private final int[] feature;
+        private final double[] threshold;
+        private final int[] left;
+        private final int[] right;
+        private final double[] value;
+        private final int featureCount;
+
+        private Forest(int[] roots, int[] feature, double[] threshold, int[] left, int[] right, double[] value,
+                       int featureCount) {
+            this.roots = roots;
+            this.feature = feature;
+            this.threshold = threshold;
+            this.left = left;
+            this.right = right;
+            this.value = value;
+            this.featureCount = featureCount;
+        }
+
+        static Forest compile(List<RandomTree> trees, int featureCount) throws ReflectiveOperationException {
+            Field treeRoot = field(RandomTree.class, "m_Tree");
+            Field zeroR = field(RandomTree.class, "m_zeroR");
+            Class<?> nodeClass = treeRoot.getType();
+            Field successors = field(nodeClass, "m_Successors");
+            Field attribute = field(nodeClass, "m_Attribute");
+            Field splitPoint = field(nodeClass, "m_SplitPoint");
+            Field distribution = field(nodeClass, "m_ClassDistribution");
+
+            Builder builder = new Builder();
+            int[] roots = new int[trees.size()];
+            for (int t = 0; t < trees.size(); t++) {
+                // A tree built without usable attributes predicts with ZeroR instead
+                if (zeroR.get(trees.get(t)) != null) {
+                    throw new IllegalStateException("tree without splits");
+                }
+                roots[t] = builder.add(treeRoot.get(trees.get(t)), successors, attribute, splitPoint, distribution);
+            }
+            return builder.build(roots, featureCount);
+        }
+
+        @Override
+        public double predict(double[] features) {
+            double sum = 0;
+            int predictions = 0;
+            for (int root : roots) {
+                int node = root;
+                double result = Double.NaN;
+                while (true) {
+                    if (!Double.isNaN(value[node])) result = value[node];
+                    int split = feature[node];
+                    if (split < 0) break;
+                    node = features[split] < threshold[node] ? left[node] : right[node];
+                }
+                if (!Double.isNaN(result)) {
+                    sum += result;
+                    predictions++;
+                }
+            }
+            return predictions == 0 ? Double.NaN : sum / predictions;
+        }
+
+        @Override
+        public int featureCount() {
+            return featureCount;
+        }
+
+        public int nodeCount() {
+            return feature.length;
+        }
+
+        /**
+         * Flattens Weka's RandomTree.Tree nodes depth-first, so each tree's nodes are contiguous
+         */
+        private static final class Builder {
+            private int size = 0;
+            private int[] feature = new int[1024];
+            private double[] threshold = new double[1024];
+            private int[] left = new int[1024];
+            private int[] right = new int[1024];
+            private double[] value = new double[1024];
+
+            int add(Object node, Field successors, Field attribute, Field splitPoint, Field distribution)
+                    throws IllegalAccessException {
+                int index = size++;
+                ensureCapacity(size);
+                double[] classDistribution = (double[]) distribution.get(node);
+                value[index] = classDistribution != null ? classDistribution[0] : Double.NaN;
+                int split = attribute.getInt(node);
+                Object[] children = (Object[]) successors.get(node);
+                if (split < 0 || children == null) {
+                    feature[index] = -1;
+                    return index;
+                }
+                if (children.length != 2) {
+                    throw new IllegalStateException("not a binary numeric split");
+                }
+                feature[index] = split;
+                threshold[index] = splitPoint.getDouble(node);
+                int leftChild = add(children[0], successors, attribute, splitPoint, distribution);
+                int rightChild = add(children[1], successors, attribute, splitPoint, distribution);
+                left[index] = leftChild;
+                right[index] = rightChild;
+                return index;
+            }
+
+            private void ensureCapacity(int capacity) {
+                if (capacity <= feature.length) return;
+                int grown = feature.length * 2;
+                feature = Arrays.copyOf(feature, grown);
+                threshold = Arrays.copyOf(threshold, grown);
+                left = Arrays.copyOf(left, grown);
+                right = Arrays.copyOf(right, grown);
+                value = Arrays.copyOf(value, grown);
+            }
+
+            Forest build(int[] roots, int featureCount) {
+                return new Forest(roots, Arrays.copyOf(feature, size),
+                        Arrays.copyOf(threshold, size), Arrays.copyOf(left, size),
+                        Arrays.copyOf(right, size), Arrays.copyOf(value, size), featureCount);
+            }
+        }
+    }
+}
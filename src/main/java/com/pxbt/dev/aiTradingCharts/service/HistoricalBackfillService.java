@@ -0,0 +1,364 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.Gateway.BinanceGateway;
+import com.pxbt.dev.aiTradingCharts.Gateway.BinanceKlineParser;
+import com.pxbt.dev.aiTradingCharts.Gateway.RequestWeightLimiter;
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads kline history beyond Binance's 1000-bar page limit.
+ *
+ * A {@code [start, end)} range is split into {@code startTime}/{@code endTime} pages of 1000 bars that
+ * are fetched concurrently as BACKGROUND requests, so the gateway's weight limiter paces them behind chart
+ * traffic and sheds them near the limit (a shed page waits and is sent again). Bars already held are not
+ * fetched: pages after the newest held bar go forwards and are appended to the live series in place as they
+ * complete, so the series stays contiguous and is checkpointed to the kline cache as it grows. Pages before
+ * the oldest held bar go backwards and are merged in front in one rewrite once they are all in (or when a
+ * page fails), since merging each one would copy the whole series per page. A failed or interrupted
+ * backfill therefore resumes from what was merged instead of starting over. The range is cut to what
+ * {@code bars.max-bars-per-series} can hold.
+ */
+@Slf4j
+@Service
+public class HistoricalBackfillService {
+
+    public enum State { QUEUED, RUNNING, DONE, FAILED }
+
+    /**
+     * Binance kline intervals that can be backfilled - fixed-length ones, so pages line up with the bars
+     */
+    public static final List<String> INTERVALS =
+            List.of("1m", "3m", "5m", "15m", "30m", "1h", "2h", "4h", "6h", "8h", "12h", "1d", "3d", "1w");
+
+    private static final int PAGE_SIZE = 1000;
+    private static final Duration SHED_RETRY_DELAY = Duration.ofSeconds(1);
+
+    private final BinanceGateway binanceGateway;
+    private final BarSeriesStore barSeriesStore;
+    private final KlineCache klineCache;
+    private final SymbolRegistry symbolRegistry;
+
+    @Value("${binance.backfill.max-concurrency:8}")
+    private int maxConcurrency;
+
+    @Value("${binance.backfill.page-retries:3}")
+    private int pageRetries;
+
+    @Value("${binance.backfill.checkpoint-every-pages:20}")
+    private int checkpointEveryPages;
+
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private final Map<String, Progress> progress = new ConcurrentHashMap<>();
+
+    private final AtomicLong pagesFetched = new AtomicLong();
+    private final AtomicLong barsMerged = new AtomicLong();
+    private final AtomicLong pageRetriesUsed = new AtomicLong();
+    private final AtomicLong shedRetries = new AtomicLong();
+    private final AtomicLong checkpoints = new AtomicLong();
+    private final AtomicLong failedBackfills = new AtomicLong();
+
+    public HistoricalBackfillService(BinanceGateway binanceGateway, BarSeriesStore barSeriesStore,
+                                     KlineCache klineCache, SymbolRegistry symbolRegistry) {
+        this.binanceGateway = binanceGateway;
+        this.barSeriesStore = barSeriesStore;
+        this.klineCache = klineCache;
+        this.symbolRegistry = symbolRegistry;
+    }
+
+    @PostConstruct
+    public void init() {
+        // Backfilled series are checkpointed as they grow, so a released symbol's can simply be dropped.
+        // The daily series belongs to BinanceHistoricalService, which saves and drops it itself.
+        symbolRegistry.addResources(new SymbolRegistry.SymbolResources() {
+            @Override
+            public Mono<Void> acquire(String symbol) {
+                return Mono.empty();
+            }
+
+            @Override
+            public void release(String symbol) {
+                for (String key : progress.keySet()) {
+                    int separator = key.indexOf('|');
+                    String interval = key.substring(separator + 1);
+                    if (key.substring(0, separator).equals(symbol) && !interval.equals(BinanceHistoricalService.DAILY)) {
+                        barSeriesStore.remove(symbol, interval);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Outcome of one backfill
+     */
+    public record BackfillResult(String symbol, String interval, int barsHeld, int pages, long bars,
+                                 int seriesSize, long elapsedMs) {
+    }
+
+    /**
+     * Fill the store's {@code symbol}/{@code interval} series with every bar opened in {@code [start, end)}.
+     * Bars already held (in memory or in the kline cache) aren't fetched again.
+     */
+    public Mono<BackfillResult> backfill(String symbol, String interval, long start, long end) {
+        String key = symbol + "|" + interval;
+        return Mono.defer(() -> {
+            if (!running.add(key)) {
+                return Mono.<BackfillResult>error(new IllegalStateException("Backfill already running for " + key));
+            }
+            Progress tracked = progress.compute(key, (k, queued) -> queued != null && queued.state == State.QUEUED
+                    ? queued : new Progress());
+            // Released before the outcome reaches the caller, so it can start the next one straight away
+            return run(symbol, interval, start, end, tracked)
+                    .doOnTerminate(() -> running.remove(key))
+                    .doOnCancel(() -> running.remove(key));
+        });
+    }
+
+    private Mono<BackfillResult> run(String symbol, String interval, long start, long end, Progress tracked) {
+        AtomicLong merged = new AtomicLong();
+        return Mono.defer(() -> {
+            tracked.start();
+            long begun = System.currentTimeMillis();
+            long intervalMs = BarSeries.intervalMillis(interval);
+            // Nothing older than the series can hold - it would be dropped again as soon as it was merged
+            long earliest = end - (long) barSeriesStore.maxBarsPerSeries() * intervalMs;
+            long alignedStart = Math.max(start - Math.floorMod(start, intervalMs),
+                    earliest + Math.floorMod(-earliest, intervalMs));
+            int barsInRange = (int) Math.max(0, (end - alignedStart + intervalMs - 1) / intervalMs);
+
+            BarSeries series = barSeriesStore.ensureCapacity(symbol, interval, Math.max(barsInRange, PAGE_SIZE));
+            if (series.size() == 0) {
+                BarSeries cached = klineCache.read(symbol, interval);
+                if (cached != null) series.merge(cached.view());
+            }
+
+            // Newer pages continue forwards from the newest held bar and are appended in place as they arrive;
+            // older ones go backwards from the oldest and are merged in front in one pass at the end
+            BarSeries.View held = series.snapshot(Integer.MAX_VALUE);
+            List<long[]> pages;
+            if (held.isEmpty()) {
+                pages = pages(alignedStart, end, intervalMs);
+            } else {
+                pages = pages(Math.max(alignedStart, held.timestamp(held.size() - 1) + intervalMs), end, intervalMs);
+                List<long[]> older = pages(alignedStart, Math.min(end, held.timestamp(0)), intervalMs);
+                Collections.reverse(older);
+                pages.addAll(older);
+                log.info("⏩ {} {} backfill skipping {} bars already held ({} pages left)",
+                        symbol, interval, held.size(), pages.size());
+            }
+            tracked.pagesTotal = pages.size();
+            long heldFrom = held.isEmpty() ? Long.MIN_VALUE : held.timestamp(0);
+            // Newest first, each one ending where the previous one starts
+            List<BarSeries> olderPages = new ArrayList<>();
+
+            return Flux.fromIterable(pages)
+                    // A failed page only fails the backfill in its turn, after the pages before it are merged
+                    .flatMapSequential(page -> fetchPage(symbol, interval, page).materialize(), maxConcurrency, 1)
+                    .<BarSeries>dematerialize()
+                    // Off the thread that delivered the response - merging and checkpoints copy and write files
+                    .publishOn(Schedulers.boundedElastic())
+                    .doOnNext(page -> {
+                        // Pages arrive here in the order listed whatever order they completed in
+                        if (page.size() == 0) return;
+                        if (page.lastTimestamp() < heldFrom) {
+                            olderPages.add(page);
+                            return;
+                        }
+                        BarSeries.View bars = page.view();
+                        if (bars.timestamp(0) > series.lastTimestamp()) {
+                            series.append(bars);
+                        } else {
+                            // Overlaps what the stream wrote meanwhile - the series' own bars win
+                            series.merge(bars);
+                        }
+                        merged.addAndGet(bars.size());
+                        barsMerged.addAndGet(bars.size());
+                        tracked.bars = merged.get();
+                        if (++tracked.pagesMerged % checkpointEveryPages == 0) {
+                            checkpoint(symbol, interval, series);
+                        }
+                    })
+                    .then(Mono.fromCallable(() -> {
+                        mergeOlder(series, olderPages, merged, tracked);
+                        checkpoint(symbol, interval, series);
+                        BackfillResult result = new BackfillResult(symbol, interval, held.size(), pages.size(),
+                                merged.get(), series.size(), System.currentTimeMillis() - begun);
+                        tracked.finish(State.DONE, null);
+                        log.info("✅ Backfilled {} {}: {} bars in {} pages ({} ms)",
+                                symbol, interval, result.bars(), result.pages(), result.elapsedMs());
+                        return result;
+                    }))
+                    .doOnError(e -> {
+                        // Keep the older pages that did arrive - they reach back contiguously from the held bars
+                        mergeOlder(series, olderPages, merged, tracked);
+                        checkpoint(symbol, interval, series);
+                    });
+        })
+                .subscribeOn(Schedulers.boundedElastic())
+                // Also covers a failure before any page was requested, such as an unknown interval
+                .doOnError(e -> {
+                    failedBackfills.incrementAndGet();
+                    tracked.finish(State.FAILED, e.getMessage());
+                    log.error("❌ Backfill of {} {} stopped after {} bars - will resume from the merged bars: {}",
+                            symbol, interval, merged.get(), e.getMessage());
+                });
+    }
+
+    /**
+     * Merge the older pages collected so far in front of the series in a single rewrite
+     */
+    private void mergeOlder(BarSeries series, List<BarSeries> olderPages, AtomicLong merged, Progress tracked) {
+        if (olderPages.isEmpty()) return;
+        int total = 0;
+        for (BarSeries page : olderPages) {
+            total += page.size();
+        }
+        BarSeries older = new BarSeries(total);
+        for (int i = olderPages.size() - 1; i >= 0; i--) {
+            older.append(olderPages.get(i).view());
+        }
+        series.merge(older.view());
+        merged.addAndGet(total);
+        barsMerged.addAndGet(total);
+        tracked.bars = merged.get();
+        tracked.pagesMerged += olderPages.size();
+        olderPages.clear();
+    }
+
+    /**
+     * Backfill several symbols, one after another so background requests stay a small share of the weight
+     */
+    public Flux<BackfillResult> backfillAll(List<String> symbols, String interval, long start, long end) {
+        return Flux.fromIterable(symbols)
+                .concatMap(symbol -> backfill(symbol, interval, start, end)
+                        .onErrorResume(e -> Mono.empty()));
+    }
+
+    /**
+     * Start {@link #backfillAll} in the background; progress shows up in {@link #getStats()}
+     *
+     * @return the symbols queued - ones already queued or running for this interval are left to finish
+     */
+    public List<String> startBackfill(List<String> symbols, String interval, long start, long end) {
+        List<String> queued = new ArrayList<>();
+        for (String symbol : symbols) {
+            String key = symbol + "|" + interval;
+            Progress tracked = new Progress();
+            Progress current = progress.compute(key, (k, existing) ->
+                    existing != null && (existing.state == State.QUEUED || running.contains(k)) ? existing : tracked);
+            if (current == tracked) queued.add(symbol);
+        }
+        backfillAll(queued, interval, start, end)
+                .subscribe(result -> { }, e -> log.error("❌ Backfill of {} {} failed: {}", queued, interval, e.getMessage()));
+        return queued;
+    }
+
+    /**
+     * {@code [startTime, endTime]} pairs (inclusive, as Binance takes them) of at most PAGE_SIZE bars each
+     */
+    private static List<long[]> pages(long from, long end, long intervalMs) {
+        long pageSpan = PAGE_SIZE * intervalMs;
+        List<long[]> pages = new ArrayList<>();
+        for (long pageStart = from; pageStart < end; pageStart += pageSpan) {
+            pages.add(new long[]{pageStart, Math.min(end, pageStart + pageSpan) - 1});
+        }
+        return pages;
+    }
+
+    private Mono<BarSeries> fetchPage(String symbol, String interval, long[] page) {
+        return binanceGateway.getRawKlines(symbol, interval, page[0], page[1], PAGE_SIZE,
+                        RequestWeightLimiter.Priority.BACKGROUND)
+                .map(response -> {
+                    BarSeries bars = new BarSeries(PAGE_SIZE);
+                    BinanceKlineParser.parse(response, bars::append);
+                    pagesFetched.incrementAndGet();
+                    return bars;
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> new BarSeries(1)))
+                // Shed near the weight limit - wait for it to recover rather than spend a retry
+                .retryWhen(Retry.fixedDelay(Long.MAX_VALUE, SHED_RETRY_DELAY)
+                        .filter(RequestWeightLimiter.RequestShedException.class::isInstance)
+                        .doBeforeRetry(signal -> shedRetries.incrementAndGet()))
+                .retryWhen(Retry.backoff(pageRetries, Duration.ofMillis(500))
+                        .doBeforeRetry(signal -> {
+                            pageRetriesUsed.incrementAndGet();
+                            log.warn("🔁 Retrying {} {} page at {}: {}", symbol, interval, page[0],
+                                    signal.failure().getMessage());
+                        }));
+    }
+
+    private void checkpoint(String symbol, String interval, BarSeries series) {
+        klineCache.write(symbol, interval, series.snapshot(Integer.MAX_VALUE));
+        checkpoints.incrementAndGet();
+    }
+
+    /**
+     * Backfill counters for monitoring, with the progress of each backfill started since boot
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pagesFetched", pagesFetched.get());
+        stats.put("barsMerged", barsMerged.get());
+        stats.put("pageRetries", pageRetriesUsed.get());
+        stats.put("shedRetries", shedRetries.get());
+        stats.put("checkpoints", checkpoints.get());
+        stats.put("failedBackfills", failedBackfills.get());
+        Map<String, Object> backfills = new TreeMap<>();
+        progress.forEach((key, tracked) -> backfills.put(key, tracked.describe()));
+        stats.put("backfills", backfills);
+        return stats;
+    }
+
+    private static final class Progress {
+        private volatile State state = State.QUEUED;
+        private volatile long started = 0;
+        private volatile long finished = 0;
+        private volatile int pagesTotal = 0;
+        private volatile int pagesMerged = 0;
+        private volatile long bars = 0;
+        private volatile String error;
+
+        void start() {
+            started = System.currentTimeMillis();
+            state = State.RUNNING;
+        }
+
+        void finish(State outcome, String message) {
+            finished = System.currentTimeMillis();
+            error = message;
+            state = outcome;
+        }
+
+        Map<String, Object> describe() {
+            Map<String, Object> description = new LinkedHashMap<>();
+            description.put("state", state);
+            description.put("pagesMerged", pagesMerged);
+            description.put("pagesTotal", pagesTotal);
+            description.put("barsMerged", bars);
+            if (started > 0) {
+                description.put("elapsedMs", (finished > 0 ? finished : System.currentTimeMillis()) - started);
+            }
+            if (error != null) description.put("error", error);
+            return description;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
+import com.pxbt.dev.aiTradingCharts.model.CryptoPrice;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache for kline responses served to the frontend, keyed by symbol, interval and limit.
+ *
+ * An entry stays fresh until the current candle of its interval closes - before that Binance would
+ * return the same closed bars. Once expired it is still served for up to the stale-while-revalidate
+ * window while a single background fetch refreshes it. Requests arriving while a key is being loaded
+ * share that one upstream call instead of starting their own.
+ */
+@Slf4j
+@Service
+public class HistoricalResponseCache {
+
+    // Give Binance a moment to publish the candle that just closed
+    private static final long CLOSE_GRACE_MS = 1_000;
+
+    @Value("${historical.cache.stale-while-revalidate-ms:300000}")
+    private long staleWhileRevalidateMs;
+
+    @Value("${historical.cache.max-entries:500}")
+    private int maxEntries;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // Wall clock in millis; candle boundaries are computed from it
+    private LongSupplier clock = System::currentTimeMillis;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong staleServed = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Cached klines for the key, loading them with {@code loader} on a miss
+     */
+    public Mono<List<CryptoPrice>> get(String symbol, String interval, int limit,
+                                       Supplier<Mono<List<CryptoPrice>>> loader) {
+        String key = symbol.toUpperCase() + "|" + interval + "|" + limit;
+        long now = clock.getAsLong();
+
+        Entry entry = entries.get(key);
+        if (entry == null || entry.isDead(now)) {
+            Entry[] created = new Entry[1];
+            entry = entries.compute(key, (k, current) -> current != null && !current.isDead(now)
+                    ? current
+                    : (created[0] = new Entry(k, interval, loader)));
+            if (entry == created[0]) {
+                misses.incrementAndGet();
+                prune(now);
+                return entry.inflight;
+            }
+        }
+
+        List<CryptoPrice> value = entry.value;
+        if (value == null) {
+            // First load still in flight - wait on it rather than calling Binance again
+            coalesced.incrementAndGet();
+            return entry.inflight;
+        }
+        if (now < entry.expiresAt) {
+            hits.incrementAndGet();
+            return Mono.just(value);
+        }
+
+        staleServed.incrementAndGet();
+        if (entry.refreshing.compareAndSet(false, true)) {
+            refreshes.incrementAndGet();
+            entry.fetch(key, loader).subscribe(v -> { }, e -> { });
+        }
+        return Mono.just(value);
+    }
+
+    /**
+     * Drop entries that are past serving, and the stalest ones if the cache is still over its limit
+     */
+    private void prune(long now) {
+        if (entries.size() <= maxEntries) return;
+        entries.values().removeIf(e -> e.value != null && e.isDead(now));
+        if (entries.size() > maxEntries) {
+            entries.entrySet().stream()
+                    .filter(e -> e.getValue().value != null)
+                    .sorted((a, b) -> Long.compare(a.getValue().expiresAt, b.getValue().expiresAt))
+                    .limit(entries.size() - maxEntries)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(entries::remove);
+        }
+    }
+
+    /**
+     * Hit/miss/coalescing counters for monitoring
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("entries", entries.size());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("coalesced", coalesced.get());
+        stats.put("staleServed", staleServed.get());
+        stats.put("refreshes", refreshes.get());
+        stats.put("errors", errors.get());
+        return stats;
+    }
+
+    private final class Entry {
+        private final String interval;
+        // First load, shared by every request that arrives before it completes
+        private final Mono<List<CryptoPrice>> inflight;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile List<CryptoPrice> value;
+        private volatile long expiresAt;
+
+        private Entry(String key, String interval, Supplier<Mono<List<CryptoPrice>>> loader) {
+            BarSeries.intervalMillis(interval); // rejects an unknown interval up front
+            this.interval = interval;
+            this.inflight = fetch(key, loader);
+        }
+
+        /**
+         * Past the stale window - must be fetched again in the foreground
+         */
+        private boolean isDead(long now) {
+            return value != null && now >= expiresAt + staleWhileRevalidateMs;
+        }
+
+        /**
+         * Lazy upstream call (nothing is sent until subscribed) that stores its result in this entry
+         */
+        private Mono<List<CryptoPrice>> fetch(String key, Supplier<Mono<List<CryptoPrice>>> loader) {
+            return Mono.defer(loader)
+                    .defaultIfEmpty(List.of())
+                    .flatMap(prices -> prices.isEmpty()
+                            ? Mono.<List<CryptoPrice>>error(new IllegalStateException("empty kline response"))
+                            : Mono.just(List.copyOf(prices)))
+                    .doOnNext(prices -> {
+                        long now = clock.getAsLong();
+                        value = prices;
+                        expiresAt = BarSeries.nextBarOpen(interval, now) + CLOSE_GRACE_MS;
+                    })
+                    .doOnError(e -> {
+                        errors.incrementAndGet();
+                        log.warn("⚠️ Kline fetch for {} failed: {}", key, e.getMessage());
+                        // Keep serving a stale value if there is one; otherwise let the next request retry
+                        if (value == null) entries.remove(key, this);
+                    })
+                    .doFinally(signal -> refreshing.set(false))
+                    .cache();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Keeps one {@link IndicatorState} per symbol, interval and spec in step with the bar store.
+ *
+ * States are synced on read: only bars appended (or the forming bar amended) since the last read
+ * are fed in, so reading indicators costs O(new bars) instead of a rescan of the whole window.
+ * A series whose history was rewritten (reload, backfill) is replayed once from scratch.
+ */
+@Slf4j
+@Service
+public class IndicatorEngine {
+
+    // Bars per read usually number one or two, so the first snapshot is small
+    private static final int TAIL_BARS = 8;
+
+    @Autowired
+    private BarSeriesStore barSeriesStore;
+
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+
+    private final Map<String, Tracked> tracked = new ConcurrentHashMap<>();
+
+    private final AtomicLong incrementalUpdates = new AtomicLong();
+    private final AtomicLong rebuilds = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        // States are created lazily on first read; a released symbol just drops its own
+        symbolRegistry.addResources(new SymbolRegistry.SymbolResources() {
+            @Override
+            public Mono<Void> acquire(String symbol) {
+                return Mono.empty();
+            }
+
+            @Override
+            public void release(String symbol) {
+                tracked.keySet().removeIf(key -> key.startsWith(symbol + "|"));
+            }
+        });
+    }
+
+    /**
+     * Run {@code reader} against the up-to-date indicator state for a series.
+     * The state is locked for the duration of the call, so readers see one consistent bar.
+     *
+     * @return the reader's result; the state passed in has {@code count() == 0} if there are no bars yet
+     */
+    public <T> T read(String symbol, String interval, IndicatorState.Spec spec, Function<IndicatorState, T> reader) {
+        Tracked entry = tracked.computeIfAbsent(symbol + "|" + interval + "|" + spec.name(),
+                k -> new Tracked(spec));
+        synchronized (entry) {
+            BarSeries series = barSeriesStore.get(symbol, interval);
+            if (series != null) {
+                sync(entry, series);
+            }
+            return reader.apply(entry.state);
+        }
+    }
+
+    private void sync(Tracked entry, BarSeries series) {
+        long lastTimestamp = series.lastTimestamp();
+        if (lastTimestamp < 0) return;
+
+        IndicatorState state = entry.state;
+        long generation = series.generation();
+        boolean rewritten = entry.series != series || entry.generation != generation
+                || lastTimestamp < state.lastTimestamp();
+        if (rewritten || state.barsSeen() == 0) {
+            rebuild(entry, series);
+            return;
+        }
+
+        // One snapshot, widened until it reaches back to the last bar we consumed (it may still be forming)
+        BarSeries.View tail;
+        int limit = TAIL_BARS;
+        while (true) {
+            tail = series.snapshot(limit);
+            if (tail.size() < limit || tail.timestamp(0) <= state.lastTimestamp()) break;
+            limit *= 2;
+        }
+        if (series.generation() != generation || tail.isEmpty() || tail.timestamp(0) > state.lastTimestamp()) {
+            // Rewritten since the check above, or the ring moved past the bars we had
+            rebuild(entry, series);
+            return;
+        }
+
+        for (int i = tail.size() - barsSince(tail, state.lastTimestamp()); i < tail.size(); i++) {
+            long ts = tail.timestamp(i);
+            if (ts == state.lastTimestamp()) {
+                if (tail.close(i) != state.lastClose() || tail.volume(i) != state.volume(0)) {
+                    state.amendNewest(ts, tail.close(i), tail.volume(i));
+                    incrementalUpdates.incrementAndGet();
+                }
+            } else if (ts > state.lastTimestamp()) {
+                state.push(ts, tail.close(i), tail.volume(i));
+                incrementalUpdates.incrementAndGet();
+            }
+        }
+    }
+
+    private void rebuild(Tracked entry, BarSeries series) {
+        // Replay everything held so EMAs warm up over the full history, as they would have live
+        entry.generation = series.generation();
+        entry.series = series;
+        entry.state = IndicatorState.of(entry.spec, series.snapshot(Integer.MAX_VALUE));
+        rebuilds.incrementAndGet();
+        log.debug("🔁 Rebuilt {} indicators over {} bars", entry.spec.name(), entry.state.barsSeen());
+    }
+
+    /**
+     * Number of bars at the end of the snapshot with a timestamp at or after {@code timestamp}
+     */
+    private static int barsSince(BarSeries.View tail, long timestamp) {
+        int lo = 0, hi = tail.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (tail.timestamp(mid) < timestamp) lo = mid + 1;
+            else hi = mid;
+        }
+        return tail.size() - lo;
+    }
+
+    /**
+     * Sync counters for monitoring
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("trackedStates", tracked.size());
+        stats.put("incrementalUpdates", incrementalUpdates.get());
+        stats.put("rebuilds", rebuilds.get());
+        return stats;
+    }
+
+    private static final class Tracked {
+        private final IndicatorState.Spec spec;
+        private IndicatorState state;
+        private BarSeries series;
+        private long generation = -1;
+
+        private Tracked(IndicatorState.Spec spec) {
+            this.spec = spec;
+            this.state = new IndicatorState(spec);
+        }
+    }
+}
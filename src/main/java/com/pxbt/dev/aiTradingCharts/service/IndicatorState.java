@@ -0,0 +1,528 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.stream.IntStream;
+
+/**
+ * Technical indicators over a sliding window of bars, updated in O(1) per bar.
+ *
+ * Every period listed in the {@link Spec} gets rolling sums (closes, squared closes, linearly
+ * weighted closes, volumes, gains, losses and returns) that are adjusted as bars enter and leave
+ * the window, so SMA, volatility, RSI, Bollinger, z-score and friends never rescan the window.
+ * EMAs run over every bar ever pushed. The newest bar can be amended in place, which is how a
+ * forming candle follows live ticks.
+ *
+ * Closes are summed relative to a shift (the close at the last full resum) to keep variance
+ * numerically stable at BTC-sized prices, and the sums are rebuilt from the window every
+ * {@link #RESUM_INTERVAL} bars so rounding drift can't accumulate. Not thread-safe.
+ */
+public final class IndicatorState {
+
+    /**
+     * Window length, periods needing rolling sums (the window itself is always tracked) and
+     * periods for running EMAs. The name identifies the spec in {@link IndicatorEngine}.
+     */
+    public record Spec(String name, int window, int[] periods, int[] emaPeriods) {
+        public Spec {
+            periods = IntStream.concat(Arrays.stream(periods), IntStream.of(window)).distinct().sorted().toArray();
+            emaPeriods = emaPeriods.clone();
+            for (int period : periods) {
+                if (period < 1 || period > window) {
+                    throw new IllegalArgumentException("Period " + period + " outside window " + window);
+                }
+            }
+        }
+    }
+
+    /**
+     * Window and periods behind the 15-value AI feature vectors (prediction and training must agree)
+     */
+    public static final Spec FEATURES = new Spec("features", 50, new int[]{5, 10, 14, 20, 21}, new int[]{12, 26});
+
+    static final int RESUM_INTERVAL = 1024;
+
+    // Rolling quantities kept per period
+    private static final int CLOSE = 0;      // close - shift
+    private static final int CLOSE_SQ = 1;   // (close - shift)^2
+    private static final int WEIGHTED = 2;   // sum of j * (close - shift), j = 1 for the oldest bar in the period
+    private static final int VOLUME = 3;
+    private static final int GAIN = 4;       // positive close-to-close changes within the period
+    private static final int LOSS = 5;       // magnitude of negative changes within the period
+    private static final int RETURN = 6;     // fractional change vs. the previous close
+    private static final int RETURN_VOLUME = 7;
+    private static final int QUANTITIES = 8;
+
+    private final Spec spec;
+    private final int window;
+    private final int[] periodSlot;          // period -> index into sums, -1 if not tracked
+    private final double[][] sums;           // [period index][quantity]
+
+    // Ring of the last window + 1 bars (one extra so the bar leaving the window is still readable)
+    private final long[] timestamps;
+    private final double[] closes;
+    private final double[] volumes;
+    private final double[] changes;
+    private final double[] returns;
+    private int newest = -1;
+    private long barsSeen = 0;
+
+    private double shift = Double.NaN;
+    private int sinceResum = 0;
+
+    private final double[] ema;
+    private final double[] emaBeforeNewest;
+
+    public IndicatorState(Spec spec) {
+        this.spec = spec;
+        this.window = spec.window();
+        this.periodSlot = new int[window + 1];
+        Arrays.fill(periodSlot, -1);
+        int[] periods = spec.periods();
+        for (int i = 0; i < periods.length; i++) {
+            periodSlot[periods[i]] = i;
+        }
+        this.sums = new double[periods.length][QUANTITIES];
+
+        int ring = window + 1;
+        timestamps = new long[ring];
+        closes = new double[ring];
+        volumes = new double[ring];
+        changes = new double[ring];
+        returns = new double[ring];
+
+        ema = new double[spec.emaPeriods().length];
+        emaBeforeNewest = new double[ema.length];
+    }
+
+    /**
+     * Fresh state fed with every bar of a view (oldest first)
+     */
+    public static IndicatorState of(Spec spec, BarSeries.View bars) {
+        IndicatorState state = new IndicatorState(spec);
+        for (int i = 0; i < bars.size(); i++) {
+            state.push(bars.timestamp(i), bars.close(i), bars.volume(i));
+        }
+        return state;
+    }
+
+    public Spec getSpec() {
+        return spec;
+    }
+
+    // ===== UPDATES =====
+
+    /**
+     * A new bar closed (or a new tick arrived, for tick-driven series)
+     */
+    public void push(long timestamp, double close, double volume) {
+        if (Double.isNaN(shift)) shift = close;
+
+        double previousClose = barsSeen > 0 ? closes[newest] : close;
+        newest = (newest + 1) % closes.length;
+        barsSeen++;
+
+        timestamps[newest] = timestamp;
+        closes[newest] = close;
+        volumes[newest] = volume;
+        changes[newest] = close - previousClose;
+        returns[newest] = previousClose != 0 ? (close - previousClose) / previousClose : 0;
+
+        int[] periods = spec.periods();
+        for (int k = 0; k < periods.length; k++) {
+            int p = periods[k];
+            double[] s = sums[k];
+            double d = close - shift;
+
+            // Weighted sum first: every bar already in the period loses one unit of weight
+            if (barsSeen > p) {
+                s[WEIGHTED] -= s[CLOSE];
+                s[WEIGHTED] += p * d;
+            } else {
+                s[WEIGHTED] += barsSeen * d;
+            }
+
+            addBar(s, newest, 1, p);
+            if (barsSeen > p) {
+                removeClose(s, back(p));
+            }
+            // Change-based sums cover the p - 1 changes between bars inside the period
+            if (p > 1 && barsSeen > p - 1) {
+                removeChange(s, back(p - 1));
+            }
+        }
+
+        int[] emaSpec = spec.emaPeriods();
+        for (int k = 0; k < emaSpec.length; k++) {
+            emaBeforeNewest[k] = ema[k];
+            ema[k] = barsSeen == 1 ? close : nextEma(close, ema[k], emaSpec[k]);
+        }
+
+        if (++sinceResum >= RESUM_INTERVAL) {
+            resum();
+        }
+    }
+
+    /**
+     * Replace the newest bar's close/volume (a forming candle that has moved)
+     */
+    public void amendNewest(long timestamp, double close, double volume) {
+        if (barsSeen == 0) {
+            push(timestamp, close, volume);
+            return;
+        }
+
+        int[] periods = spec.periods();
+        double oldD = closes[newest] - shift;
+        for (int k = 0; k < periods.length; k++) {
+            double[] s = sums[k];
+            long inPeriod = Math.min(barsSeen, periods[k]);
+            s[WEIGHTED] -= inPeriod * oldD;
+            addBar(s, newest, -1, periods[k]);
+        }
+
+        double previousClose = barsSeen > 1 ? closes[back(1)] : close;
+        timestamps[newest] = timestamp;
+        closes[newest] = close;
+        volumes[newest] = volume;
+        changes[newest] = close - previousClose;
+        returns[newest] = previousClose != 0 ? (close - previousClose) / previousClose : 0;
+
+        double newD = close - shift;
+        for (int k = 0; k < periods.length; k++) {
+            double[] s = sums[k];
+            long inPeriod = Math.min(barsSeen, periods[k]);
+            s[WEIGHTED] += inPeriod * newD;
+            addBar(s, newest, 1, periods[k]);
+        }
+
+        int[] emaSpec = spec.emaPeriods();
+        for (int k = 0; k < emaSpec.length; k++) {
+            ema[k] = barsSeen == 1 ? close : nextEma(close, emaBeforeNewest[k], emaSpec[k]);
+        }
+    }
+
+    private void addBar(double[] s, int slot, int sign, int period) {
+        double d = closes[slot] - shift;
+        s[CLOSE] += sign * d;
+        s[CLOSE_SQ] += sign * d * d;
+        s[VOLUME] += sign * volumes[slot];
+        if (period > 1) {
+            double change = changes[slot];
+            if (change > 0) s[GAIN] += sign * change;
+            else s[LOSS] -= sign * change;
+            s[RETURN] += sign * returns[slot];
+            s[RETURN_VOLUME] += sign * returns[slot] * volumes[slot];
+        }
+    }
+
+    private void removeClose(double[] s, int slot) {
+        double d = closes[slot] - shift;
+        s[CLOSE] -= d;
+        s[CLOSE_SQ] -= d * d;
+        s[VOLUME] -= volumes[slot];
+    }
+
+    private void removeChange(double[] s, int slot) {
+        double change = changes[slot];
+        if (change > 0) s[GAIN] -= change;
+        else s[LOSS] += change;
+        s[RETURN] -= returns[slot];
+        s[RETURN_VOLUME] -= returns[slot] * volumes[slot];
+    }
+
+    /**
+     * Rebuild every rolling sum from the ring around a fresh shift - clears accumulated rounding error
+     */
+    void resum() {
+        sinceResum = 0;
+        if (barsSeen == 0) return;
+        shift = closes[newest];
+
+        int[] periods = spec.periods();
+        for (int k = 0; k < periods.length; k++) {
+            double[] s = sums[k];
+            Arrays.fill(s, 0);
+            int p = periods[k];
+            int inPeriod = (int) Math.min(barsSeen, p);
+            for (int back = inPeriod - 1; back >= 0; back--) {
+                int slot = back(back);
+                double d = closes[slot] - shift;
+                s[CLOSE] += d;
+                s[CLOSE_SQ] += d * d;
+                s[WEIGHTED] += (inPeriod - back) * d;
+                s[VOLUME] += volumes[slot];
+                if (p > 1 && back < p - 1) {
+                    double change = changes[slot];
+                    if (change > 0) s[GAIN] += change;
+                    else s[LOSS] -= change;
+                    s[RETURN] += returns[slot];
+                    s[RETURN_VOLUME] += returns[slot] * volumes[slot];
+                }
+            }
+        }
+    }
+
+    private static double nextEma(double close, double previous, int period) {
+        double multiplier = 2.0 / (period + 1);
+        return (close * multiplier) + (previous * (1 - multiplier));
+    }
+
+    // ===== RAW ACCESS =====
+
+    public long barsSeen() {
+        return barsSeen;
+    }
+
+    /**
+     * Bars currently in the window
+     */
+    public int count() {
+        return (int) Math.min(barsSeen, window);
+    }
+
+    public int window() {
+        return window;
+    }
+
+    /**
+     * Close {@code back} bars ago (0 = newest); {@code back} must be below {@link #count()}
+     */
+    public double close(int back) {
+        return closes[back(back)];
+    }
+
+    public double volume(int back) {
+        return volumes[back(back)];
+    }
+
+    /**
+     * Newest close, or NaN before the first bar
+     */
+    public double lastClose() {
+        return barsSeen > 0 ? closes[newest] : Double.NaN;
+    }
+
+    /**
+     * Newest bar's timestamp, or -1 before the first bar
+     */
+    public long lastTimestamp() {
+        return barsSeen > 0 ? timestamps[newest] : -1;
+    }
+
+    private int back(int back) {
+        int slot = newest - back;
+        return slot < 0 ? slot + closes.length : slot;
+    }
+
+    private double[] sums(int period) {
+        int slot = period <= window ? periodSlot[period] : -1;
+        if (slot < 0) throw new IllegalArgumentException("Period " + period + " is not tracked by this state");
+        return sums[slot];
+    }
+
+    private int inPeriod(int period) {
+        return (int) Math.min(barsSeen, period);
+    }
+
+    // ===== ROLLING STATISTICS (over the newest min(period, bars seen) bars) =====
+
+    public double mean(int period) {
+        return shift + sums(period)[CLOSE] / inPeriod(period);
+    }
+
+    /**
+     * Population standard deviation of closes
+     */
+    public double stdDev(int period) {
+        double[] s = sums(period);
+        int n = inPeriod(period);
+        double meanD = s[CLOSE] / n;
+        return Math.sqrt(Math.max(0, s[CLOSE_SQ] / n - meanD * meanD));
+    }
+
+    /**
+     * Linearly weighted mean of closes (newest bar weighted highest)
+     */
+    public double weightedMean(int period) {
+        int n = inPeriod(period);
+        return shift + sums(period)[WEIGHTED] / (n * (n + 1) / 2.0);
+    }
+
+    public double volumeSum(int period) {
+        return sums(period)[VOLUME];
+    }
+
+    public double gainSum(int period) {
+        return sums(period)[GAIN];
+    }
+
+    public double lossSum(int period) {
+        return sums(period)[LOSS];
+    }
+
+    public double returnSum(int period) {
+        return sums(period)[RETURN];
+    }
+
+    public double ema(int period) {
+        int[] emaSpec = spec.emaPeriods();
+        for (int k = 0; k < emaSpec.length; k++) {
+            if (emaSpec[k] == period) return ema[k];
+        }
+        throw new IllegalArgumentException("EMA " + period + " is not tracked by this state");
+    }
+
+    // ===== INDICATORS (same definitions the services used to compute over a window array) =====
+
+    /**
+     * Simple moving average; the last close while fewer than {@code period} bars are in the window
+     */
+    public double sma(int period) {
+        if (count() < period) return lastClose();
+        return mean(period);
+    }
+
+    /**
+     * Standard deviation of the last {@code period} closes; 0 until that many bars are in the window
+     */
+    public double volatility(int period) {
+        if (count() < period) return 0.0;
+        return stdDev(period);
+    }
+
+    /**
+     * RSI from the {@code period - 1} changes inside the last {@code period} bars
+     */
+    public double rsi(int period) {
+        if (count() < period + 1) return 50.0;
+        double avgGain = gainSum(period) / period;
+        double avgLoss = lossSum(period) / period;
+        if (avgLoss == 0) return 100.0;
+        double rs = avgGain / avgLoss;
+        return 100.0 - (100.0 / (1 + rs));
+    }
+
+    public double macd() {
+        return ema(12) - ema(26);
+    }
+
+    /**
+     * Newest close minus the close {@code period - 1} bars back
+     */
+    public double momentum(int period) {
+        if (count() < period) return 0.0;
+        return lastClose() - close(period - 1);
+    }
+
+    public double rateOfChange(int period) {
+        if (count() < period) return 0.0;
+        double base = close(period - 1);
+        return ((lastClose() - base) / base) * 100;
+    }
+
+    /**
+     * Newest volume relative to the average volume of the rest of the window
+     */
+    public double volumeStrength() {
+        int n = count();
+        if (n < 2) return 0.5;
+        double avgVolume = (volumeSum(window) - volume(0)) / (n - 1);
+        return volume(0) / avgVolume;
+    }
+
+    public double priceAcceleration() {
+        if (count() < 3) return 0;
+        double change1 = (close(0) - close(1)) / close(1);
+        double change2 = (close(1) - close(2)) / close(2);
+        return change1 - change2;
+    }
+
+    /**
+     * Newest close in standard deviations from the window mean
+     */
+    public double zScore() {
+        if (count() < 2) return 0.0;
+        double stdDev = stdDev(window);
+        return stdDev == 0 ? 0.0 : (lastClose() - mean(window)) / stdDev;
+    }
+
+    /**
+     * Position inside 20-bar, 2-sigma Bollinger bands (0 = lower band, 1 = upper band)
+     */
+    public double bollingerPosition() {
+        if (count() < 20) return 0.5;
+        double sma20 = mean(20);
+        double stdDev = stdDev(20);
+        double upperBand = sma20 + (2 * stdDev);
+        double lowerBand = sma20 - (2 * stdDev);
+        return (lastClose() - lowerBand) / (upperBand - lowerBand);
+    }
+
+    /**
+     * Volume-weighted average return across the window
+     */
+    public double volumePriceTrend() {
+        int n = count();
+        if (n < 2) return 0;
+        double[] s = sums(window);
+        double volumeSum = s[VOLUME] - volume(n - 1);
+        return volumeSum == 0 ? 0 : s[RETURN_VOLUME] / volumeSum;
+    }
+
+    /**
+     * Newest close relative to the window mean
+     */
+    public double supportResistance() {
+        if (count() < 10) return 0.0;
+        double avg = mean(window);
+        return (lastClose() - avg) / avg;
+    }
+
+    /**
+     * 20-bar SMA against the 50-bar SMA (or the whole window if shorter)
+     */
+    public double trendStrength() {
+        int n = count();
+        if (n < 20) return 0.0;
+        double sma20 = mean(20);
+        double sma50 = n < 50 ? mean(window) : mean(50);
+        return (sma20 - sma50) / sma50;
+    }
+
+    /**
+     * Least-squares slope of closes across the window, normalised by its oldest close
+     */
+    public double longTermTrend() {
+        int n = count();
+        if (n < 100) return 0;
+        double[] s = sums(window);
+        // x = 0..n-1 (oldest to newest); sum(x*y) = weighted sum - plain sum, shift cancels in the slope
+        double sumX = n * (n - 1) / 2.0;
+        double sumX2 = (n - 1) * n * (2.0 * n - 1) / 6.0;
+        double sumY = s[CLOSE];
+        double sumXY = s[WEIGHTED] - s[CLOSE];
+        double slope = (n * sumXY - sumX * sumY) / (n * sumX2 - sumX * sumX);
+        return slope / close(n - 1);
+    }
+
+    /**
+     * +0.1 on Monday to Thursday bars, -0.1 otherwise (system time zone)
+     */
+    public double seasonality() {
+        if (count() < 7) return 0;
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(lastTimestamp());
+        int dayOfWeek = cal.get(Calendar.DAY_OF_WEEK);
+        return (dayOfWeek >= 2 && dayOfWeek <= 5) ? 0.1 : -0.1;
+    }
+
+    public double marketCycle() {
+        if (count() < 30) return 0;
+        double momentum30 = momentum(30);
+        double momentum10 = momentum(10);
+        return (momentum30 - momentum10) / Math.abs(momentum30);
+    }
+}
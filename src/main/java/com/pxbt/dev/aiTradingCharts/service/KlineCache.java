@@ -0,0 +1,226 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk kline cache - one memory-mapped columnar file per symbol and interval.
+ *
+ * Layout: a 32-byte header (magic, version, capacity, count) followed by six fixed-size columns
+ * (open time, open, high, low, close, volume), each {@code capacity} slots long. Loading is a bulk
+ * read of the mapped columns, and saving only writes the bars after the last stored one (the last
+ * stored bar is rewritten too, as it may have been the forming candle). A file is rewritten with
+ * double the capacity when it fills up, or from scratch if the series no longer extends it (including when
+ * older bars were added in front).
+ *
+ * Reads and writes of a file are serialised on a per-file lock, as a backfill checkpoint and the regular
+ * history save can write the same series at once.
+ */
+@Slf4j
+@Service
+public class KlineCache {
+
+    private static final int MAGIC = 0x4B4C4E31; // "KLN1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int COLUMNS = 6;
+    private static final int MIN_CAPACITY = 1024;
+
+    @Value("${klines.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${klines.cache.directory:data/klines}")
+    private String directory;
+
+    private final Map<Path, Object> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Read the cached bars for a series
+     *
+     * @return the bars (oldest first), or null if caching is off or there is no usable file
+     */
+    public BarSeries read(String symbol, String interval) {
+        if (!enabled) return null;
+        Path file = file(symbol, interval);
+        synchronized (lock(file)) {
+            return read(file, symbol, interval);
+        }
+    }
+
+    private BarSeries read(Path file, String symbol, String interval) {
+        if (!Files.isRegularFile(file)) return null;
+
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            int capacity = checkHeader(buffer, channel.size(), file);
+            int count = buffer.getInt(12);
+            if (count == 0) return null;
+
+            long[] timestamps = new long[count];
+            buffer.position(HEADER_BYTES);
+            buffer.asLongBuffer().get(timestamps);
+            double[][] values = new double[COLUMNS - 1][count];
+            for (int column = 1; column < COLUMNS; column++) {
+                buffer.position(columnOffset(capacity, column));
+                buffer.asDoubleBuffer().get(values[column - 1]);
+            }
+
+            BarSeries bars = new BarSeries(count);
+            for (int i = 0; i < count; i++) {
+                bars.append(timestamps[i], values[0][i], values[1][i], values[2][i], values[3][i], values[4][i]);
+            }
+            log.info("💾 Read {} cached {} bars for {} in {} ms",
+                    count, interval, symbol, (System.nanoTime() - start) / 1_000_000);
+            return bars;
+        } catch (Exception e) {
+            log.warn("⚠️ Ignoring unreadable kline cache {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Bring the cache file up to date with a series (oldest first). Only bars from the last
+     * stored open time onwards are written unless the file has to be rebuilt.
+     */
+    public void write(String symbol, String interval, BarSeries.View bars) {
+        if (!enabled || bars.isEmpty()) return;
+        Path file = file(symbol, interval);
+        synchronized (lock(file)) {
+            try {
+                Files.createDirectories(file.getParent());
+                if (!Files.isRegularFile(file) || !append(file, bars)) {
+                    rewrite(file, bars, Math.max(MIN_CAPACITY, bars.size() * 2));
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ Failed to write kline cache {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    private Object lock(Path file) {
+        return locks.computeIfAbsent(file, key -> new Object());
+    }
+
+    /**
+     * @return false if the file can't take the bars in place (or is unreadable) and has to be rewritten
+     */
+    private boolean append(Path file, BarSeries.View bars) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int capacity;
+            try {
+                capacity = checkHeader(buffer, channel.size(), file);
+            } catch (IOException e) {
+                log.warn("⚠️ Replacing unreadable kline cache {}: {}", file, e.getMessage());
+                return false;
+            }
+            int count = buffer.getInt(12);
+            if (count == 0) return false;
+
+            // First bar in the series at or after the last stored one
+            long firstStored = buffer.getLong(columnOffset(capacity, 0));
+            long lastStored = buffer.getLong(columnOffset(capacity, 0) + (count - 1) * 8);
+            int from = firstAtOrAfter(bars, lastStored);
+            if (from == bars.size() || from == 0 && bars.timestamp(0) > lastStored) {
+                // The series ends before the file does, or starts after it - history has diverged
+                return false;
+            }
+            if (bars.timestamp(0) < firstStored) {
+                // Older history was merged in front of what the file holds
+                return false;
+            }
+
+            int slot = bars.timestamp(from) == lastStored ? count - 1 : count;
+            int newCount = slot + bars.size() - from;
+            if (newCount > capacity) {
+                return false;
+            }
+
+            for (int i = from; i < bars.size(); i++, slot++) {
+                buffer.putLong(columnOffset(capacity, 0) + slot * 8, bars.timestamp(i));
+                buffer.putDouble(columnOffset(capacity, 1) + slot * 8, bars.open(i));
+                buffer.putDouble(columnOffset(capacity, 2) + slot * 8, bars.high(i));
+                buffer.putDouble(columnOffset(capacity, 3) + slot * 8, bars.low(i));
+                buffer.putDouble(columnOffset(capacity, 4) + slot * 8, bars.close(i));
+                buffer.putDouble(columnOffset(capacity, 5) + slot * 8, bars.volume(i));
+            }
+            // Count last, so a crash mid-write leaves the previous bars readable
+            buffer.force();
+            buffer.putInt(12, newCount);
+            buffer.force();
+            return true;
+        }
+    }
+
+    private void rewrite(Path file, BarSeries.View bars, int capacity) throws IOException {
+        // Unique, so a leftover from a crashed rewrite is never reused
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName() + ".", ".tmp");
+        long size = columnOffset(capacity, COLUMNS);
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, capacity);
+                buffer.putInt(12, bars.size());
+                for (int i = 0; i < bars.size(); i++) {
+                    buffer.putLong(columnOffset(capacity, 0) + i * 8, bars.timestamp(i));
+                    buffer.putDouble(columnOffset(capacity, 1) + i * 8, bars.open(i));
+                    buffer.putDouble(columnOffset(capacity, 2) + i * 8, bars.high(i));
+                    buffer.putDouble(columnOffset(capacity, 3) + i * 8, bars.low(i));
+                    buffer.putDouble(columnOffset(capacity, 4) + i * 8, bars.close(i));
+                    buffer.putDouble(columnOffset(capacity, 5) + i * 8, bars.volume(i));
+                }
+                buffer.force();
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        log.debug("💾 Rewrote kline cache {} with {} bars (capacity {})", file, bars.size(), capacity);
+    }
+
+    private static int checkHeader(MappedByteBuffer buffer, long fileSize, Path file) throws IOException {
+        if (fileSize < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("not a kline cache file: " + file);
+        }
+        int capacity = buffer.getInt(8);
+        int count = buffer.getInt(12);
+        if (capacity <= 0 || count < 0 || count > capacity || fileSize < columnOffset(capacity, COLUMNS)) {
+            throw new IOException("corrupt kline cache header: " + file);
+        }
+        return capacity;
+    }
+
+    private static int columnOffset(int capacity, int column) {
+        return HEADER_BYTES + column * capacity * 8;
+    }
+
+    private static int firstAtOrAfter(BarSeries.View bars, long timestamp) {
+        int lo = 0, hi = bars.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (bars.timestamp(mid) < timestamp) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private Path file(String symbol, String interval) {
+        return Paths.get(directory, symbol.toUpperCase() + "-" + interval + ".klines");
+    }
+}
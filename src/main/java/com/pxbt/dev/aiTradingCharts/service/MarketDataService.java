@@ -1,73 +1,76 @@
 package com.pxbt.dev.aiTradingCharts.service;
 
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
 import com.pxbt.dev.aiTradingCharts.model.PriceUpdate;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import javax.annotation.PostConstruct;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 @Slf4j
 @Service
 public class MarketDataService {
 
-    // Store historical data for each symbol
-    private final Map<String, List<PriceUpdate>> historicalData = new ConcurrentHashMap<>();
-    // Need to keep this reasonable as many more caused out-of-memory errors on railway deploy
+    // Historical bars followed by live updates, kept per symbol in the shared bar store
+    public static final String MARKET_SERIES = "market";
     private static final int MAX_HISTORICAL_POINTS = 1000; // Match Binance loading
 
     @Autowired
     private BinanceHistoricalService binanceHistoricalService;
 
+    @Autowired
+    private BarSeriesStore barSeriesStore;
+
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+
+    @PostConstruct
+    public void init() {
+        // Registered after BinanceHistoricalService (a dependency), so the daily bars are loaded by the time we seed
+        symbolRegistry.addResources(new SymbolRegistry.SymbolResources() {
+            @Override
+            public Mono<Void> acquire(String symbol) {
+                return Mono.fromRunnable(() -> loadInitialHistoricalData(symbol));
+            }
+
+            @Override
+            public void release(String symbol) {
+                barSeriesStore.remove(symbol, MARKET_SERIES);
+            }
+        });
+    }
+
     /**
-     * Load extensive historical data from Binance when application starts
+     * Seed a symbol's market series from its daily history - done when the symbol is activated
      */
-    @PostConstruct
-    public void loadInitialHistoricalData() {
-        log.info("🔄 Loading extensive historical data from Binance (1000 points)...");
-
-        String[] symbols = {"BTC", "SOL", "TAO", "WIF"};
-
-        for (String symbol : symbols) {
-            try {
-                // ✅ LOAD 1000 DATA POINTS - Maximum historical data for AI training
-                List<PriceUpdate> binanceData = binanceHistoricalService.getHistoricalDataAsPriceUpdate(
-                        symbol, "1d", 1000  // Daily data for maximum history
-                );
-
-                if (!binanceData.isEmpty()) {
-                    // Initialize with Binance historical data
-                    historicalData.put(symbol, new CopyOnWriteArrayList<>(binanceData));
-                    log.info("✅ Loaded {} historical points for {} from Binance", binanceData.size(), symbol);
-
-                    // Log data range
-                    if (!binanceData.isEmpty()) {
-                        long startTime = binanceData.get(0).getTimestamp();
-                        long endTime = binanceData.get(binanceData.size() - 1).getTimestamp();
-                        long days = (endTime - startTime) / (1000 * 60 * 60 * 24);
-                        log.info("📅 {} data covers ~{} days ({} to {})",
-                                symbol, days,
-                                new java.util.Date(startTime),
-                                new java.util.Date(endTime));
-                    }
-                } else {
-                    // Initialize empty list if no Binance data
-                    historicalData.put(symbol, new CopyOnWriteArrayList<>());
-                    log.warn("⚠️ No historical data loaded for {} from Binance", symbol);
-                }
-            } catch (Exception e) {
-                log.error("❌ Failed to load historical data for {}: {}", symbol, e.getMessage());
-                // Initialize empty list even if Binance fails
-                historicalData.put(symbol, new CopyOnWriteArrayList<>());
+    public void loadInitialHistoricalData(String symbol) {
+        BarSeries series = barSeriesStore.getOrCreate(symbol, MARKET_SERIES, MAX_HISTORICAL_POINTS);
+        try {
+            // ✅ Seed from the daily bars BinanceHistoricalService already loaded - no second download
+            BarSeries.View daily = binanceHistoricalService.getDailyBars(symbol, MAX_HISTORICAL_POINTS);
+
+            if (!daily.isEmpty()) {
+                series.replace(daily);
+                log.info("✅ Loaded {} historical points for {} from Binance", daily.size(), symbol);
+
+                // Log data range
+                long startTime = daily.timestamp(0);
+                long endTime = daily.timestamp(daily.size() - 1);
+                long days = (endTime - startTime) / (1000 * 60 * 60 * 24);
+                log.info("📅 {} data covers ~{} days ({} to {})",
+                        symbol, days,
+                        new java.util.Date(startTime),
+                        new java.util.Date(endTime));
+            } else {
+                log.warn("⚠️ No historical data loaded for {} from Binance", symbol);
             }
+        } catch (Exception e) {
+            log.error("❌ Failed to load historical data for {}: {}", symbol, e.getMessage());
         }
-
-        logDataStatus();
     }
 
 
@@ -77,26 +80,19 @@ public class MarketDataService {
     public void addPriceUpdate(PriceUpdate priceUpdate) {
         String symbol = priceUpdate.getSymbol();
 
-        historicalData.computeIfAbsent(symbol, k -> new CopyOnWriteArrayList<>());
+        BarSeries series = barSeriesStore.getOrCreate(symbol, MARKET_SERIES, MAX_HISTORICAL_POINTS);
 
-        List<PriceUpdate> data = historicalData.get(symbol);
+        // The series is a ring of MAX_HISTORICAL_POINTS, so the oldest point drops off by itself
+        boolean stored = series.append(priceUpdate.getTimestamp(), priceUpdate.getOpen(), priceUpdate.getHigh(),
+                priceUpdate.getLow(), priceUpdate.getPrice(), priceUpdate.getVolume());
 
-        // Add the new price update
-        data.add(priceUpdate);
-
-        // Keep data manageable - remove the oldest points if we exceed the limit
-        if (data.size() > MAX_HISTORICAL_POINTS) {
-            int excess = data.size() - MAX_HISTORICAL_POINTS;
-            // Remove oldest 'excess' number of elements
-            for (int i = 0; i < excess; i++) {
-                if (!data.isEmpty()) {
-                    data.remove(0);
-                }
-            }
+        if (!stored) {
+            log.debug("⏪ Ignored out-of-order price data for {} at {}", symbol, priceUpdate.getTimestamp());
+            return;
         }
 
         log.debug("💾 Stored price data: {} at ${} (Total: {} points)",
-                symbol, priceUpdate.getPrice(), data.size());
+                symbol, priceUpdate.getPrice(), series.size());
     }
 
     /**
@@ -106,51 +102,49 @@ public class MarketDataService {
      * @return List of price updates, most recent first
      */
     public List<PriceUpdate> getHistoricalData(String symbol, int limit) {
-        List<PriceUpdate> data = historicalData.getOrDefault(symbol, new CopyOnWriteArrayList<>());
-
-        if (data.isEmpty()) {
-            return new ArrayList<>();
-        }
-
-        // Return the most recent 'limit' data points
-        int startIndex = Math.max(0, data.size() - limit);
-        return new ArrayList<>(data.subList(startIndex, data.size()));
+        // Return the most recent 'limit' data points, copied consistently even while ticks are appended
+        BarSeries series = barSeriesStore.get(symbol, MARKET_SERIES);
+        return series != null ? series.snapshot(limit).toPriceUpdates(symbol) : new ArrayList<>();
     }
 
     /**
      * Get all available historical data for a symbol
      */
     public List<PriceUpdate> getHistoricalData(String symbol) {
-        return new ArrayList<>(historicalData.getOrDefault(symbol, new CopyOnWriteArrayList<>()));
+        return getHistoricalData(symbol, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Zero-copy view of the most recent {@code limit} points (close = price)
+     */
+    public BarSeries.View getBars(String symbol, int limit) {
+        return barSeriesStore.view(symbol, MARKET_SERIES, limit);
     }
 
     /**
      * Get the number of data points available for a symbol
      */
     public int getDataCount(String symbol) {
-        return historicalData.getOrDefault(symbol, new CopyOnWriteArrayList<>()).size();
+        BarSeries series = barSeriesStore.get(symbol, MARKET_SERIES);
+        return series != null ? series.size() : 0;
     }
 
     /**
      * Get the most recent price for a symbol
      */
     public Double getCurrentPrice(String symbol) {
-        List<PriceUpdate> data = historicalData.get(symbol);
-        if (data == null || data.isEmpty()) {
-            return null;
-        }
-        return data.get(data.size() - 1).getPrice();
+        BarSeries series = barSeriesStore.get(symbol, MARKET_SERIES);
+        double price = series != null ? series.lastClose() : Double.NaN;
+        return Double.isNaN(price) ? null : price;
     }
 
     /**
      * Get the timestamp of the most recent update for a symbol
      */
     public Long getLastUpdateTime(String symbol) {
-        List<PriceUpdate> data = historicalData.get(symbol);
-        if (data == null || data.isEmpty()) {
-            return null;
-        }
-        return data.get(data.size() - 1).getTimestamp();
+        BarSeries series = barSeriesStore.get(symbol, MARKET_SERIES);
+        long timestamp = series != null ? series.lastTimestamp() : -1;
+        return timestamp < 0 ? null : timestamp;
     }
 
     /**
@@ -164,13 +158,13 @@ public class MarketDataService {
      * Get data coverage in days for a symbol
      */
     public double getDataCoverageDays(String symbol) {
-        List<PriceUpdate> data = getHistoricalData(symbol);
+        BarSeries.View data = getBars(symbol, Integer.MAX_VALUE);
         if (data.size() < 2) {
             return 0.0;
         }
 
-        long startTime = data.get(0).getTimestamp();
-        long endTime = data.get(data.size() - 1).getTimestamp();
+        long startTime = data.timestamp(0);
+        long endTime = data.timestamp(data.size() - 1);
         long durationMs = endTime - startTime;
 
         return durationMs / (1000.0 * 60 * 60 * 24); // Convert to days
@@ -180,7 +174,7 @@ public class MarketDataService {
      * Get all available symbols that have data
      */
     public List<String> getAvailableSymbols() {
-        return new ArrayList<>(historicalData.keySet());
+        return new ArrayList<>(barSeriesStore.symbols(MARKET_SERIES));
     }
 
     /**
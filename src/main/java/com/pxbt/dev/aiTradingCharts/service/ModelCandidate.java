@@ -0,0 +1,15 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import weka.classifiers.Classifier;
+
+import java.util.function.Supplier;
+
+/**
+ * A model type tried in every training round. Each {@code ModelCandidate} bean is trained on the same
+ * data and the one with the best test R² is kept; add a bean to try another Weka classifier.
+ *
+ * @param name    shown in logs and training reports
+ * @param factory a new, untrained classifier per round
+ */
+public record ModelCandidate(String name, Supplier<Classifier> factory) {
+}
@@ -0,0 +1,414 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.model.ModelPerformance;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import weka.classifiers.Classifier;
+import weka.core.Instances;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Trained models keyed by (symbol, timeframe, feature-set version), held within a heap budget.
+ *
+ * Every model is saved to the {@link ModelStore} when it is trained, and the stored models are loaded
+ * back after a restart. Each model's size is measured when it is stored (its serialized size - a 100-tree
+ * RandomForest is megabytes). When the resident models exceed the budget the least recently used are
+ * dropped from the heap; the next prediction that needs one reads it back from the store. Performance
+ * figures stay in memory for every model, so listing and confidence never touch the disk.
+ *
+ * A {@link Model} is immutable and replaced as a whole, so retraining swaps the classifier, header and
+ * performance in one step: a prediction uses either the old model or the new one, never a mix.
+ */
+@Slf4j
+@Service
+public class ModelRegistry {
+
+    /**
+     * Identifies a model. The feature-set version changes whenever the features a model is trained on do,
+     * so a model is never fed features it wasn't trained with.
+     */
+    public record ModelKey(String symbol, String timeframe, int featureVersion) {
+        public ModelKey {
+            symbol = symbol.toUpperCase();
+        }
+    }
+
+    /**
+     * A trained model: the classifier, the (empty) dataset header its instances are built against,
+     * its test performance and how it was trained. This is what the {@link ModelStore} persists.
+     * {@code compiled} is the flat evaluator for the classifier, null if it couldn't be compiled.
+     */
+    public record Model(Classifier classifier, Instances header, ModelPerformance performance,
+                        int trainingSamples, long trainedAt, CompiledModel compiled) implements Serializable {
+    }
+
+    @Value("${models.registry.max-heap-bytes:268435456}")
+    private long maxHeapBytes;
+
+    private final SymbolRegistry symbolRegistry;
+    private final ModelStore modelStore;
+
+    // Every known model, resident or evicted
+    private final Map<ModelKey, Entry> entries = new ConcurrentHashMap<>();
+    // Resident models in access order, eldest first - guarded by this
+    private final LinkedHashMap<ModelKey, Entry> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private long residentBytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong spillFailures = new AtomicLong();
+    private volatile int restored = 0;
+
+    public ModelRegistry(SymbolRegistry symbolRegistry, ModelStore modelStore) {
+        this.symbolRegistry = symbolRegistry;
+        this.modelStore = modelStore;
+    }
+
+    @PostConstruct
+    public void init() {
+        // Models of a released symbol leave the heap but stay in the store for when it comes back
+        symbolRegistry.addResources(new SymbolRegistry.SymbolResources() {
+            @Override
+            public Mono<Void> acquire(String symbol) {
+                return Mono.empty();
+            }
+
+            @Override
+            public void release(String symbol) {
+                List<Entry> released = new ArrayList<>();
+                synchronized (ModelRegistry.this) {
+                    Iterator<Entry> it = resident.values().iterator();
+                    while (it.hasNext()) {
+                        Entry entry = it.next();
+                        if (entry.key.symbol().equals(symbol)) {
+                            it.remove();
+                            residentBytes -= entry.sizeBytes;
+                            released.add(entry);
+                        }
+                    }
+                }
+                released.forEach(ModelRegistry.this::spill);
+            }
+        });
+        log.info("🧠 Model registry started with a {} MB heap budget", maxHeapBytes / (1024 * 1024));
+    }
+
+    /**
+     * Load the newest usable version of every stored model for the current feature set. Runs in the
+     * background at startup; a model trained meanwhile is newer and is kept.
+     *
+     * @return the number of models restored
+     */
+    public int restore() {
+        long start = System.currentTimeMillis();
+        int count = 0;
+        for (ModelKey key : modelStore.keys()) {
+            if (key.featureVersion() != TrainingDataService.FEATURE_SET_VERSION || entries.containsKey(key)) continue;
+            ModelStore.Stored stored = modelStore.readLatest(key);
+            if (stored == null) continue;
+
+            Entry entry = new Entry(key, stored.model(), serializedSize(stored.model()), stored.version());
+            synchronized (this) {
+                if (entries.putIfAbsent(key, entry) != null) continue;
+                resident.put(key, entry);
+                residentBytes += entry.sizeBytes;
+            }
+            count++;
+            evictOverBudget();
+        }
+        restored = count;
+        log.info("🧠 Restored {} stored models in {} ms", count, System.currentTimeMillis() - start);
+        return count;
+    }
+
+    /**
+     * Save a freshly trained model as a new version, then swap it in for any previous one for the key and
+     * evict others if the budget is exceeded. Only the header's attributes are kept, not the training instances.
+     * Predictions keep using the previous model until the swap.
+     */
+    public void put(ModelKey key, Classifier classifier, Instances header, ModelPerformance performance,
+                    int trainingSamples, CompiledModel compiled) {
+        Model model = new Model(classifier, new Instances(header, 0), performance, trainingSamples,
+                System.currentTimeMillis(), compiled);
+        long size = serializedSize(model);
+        Entry entry = new Entry(key, model, size, 0);
+        // Not published yet, so nothing waits on the write
+        persist(entry);
+
+        synchronized (this) {
+            Entry previous = resident.remove(key);
+            if (previous != null) residentBytes -= previous.sizeBytes;
+            entries.put(key, entry);
+            resident.put(key, entry);
+            residentBytes += size;
+        }
+        log.info("🧠 Stored {} model for {} {} ({} KB)", entry.modelType, key.symbol(), key.timeframe(), size / 1024);
+        if (size > maxHeapBytes) {
+            log.warn("⚠️ {} model for {} {} alone exceeds the model heap budget", entry.modelType,
+                    key.symbol(), key.timeframe());
+        }
+        evictOverBudget();
+    }
+
+    /**
+     * The model for a key, read back from the store if it was evicted
+     *
+     * @return null if no model has been trained for the key (or no stored version is usable)
+     */
+    public Model get(ModelKey key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        Model model;
+        synchronized (entry) {
+            model = entry.model;
+            if (model == null) {
+                model = load(entry);
+                if (model == null) {
+                    entries.remove(key, entry);
+                    misses.incrementAndGet();
+                    return null;
+                }
+                entry.model = model;
+                reloads.incrementAndGet();
+            } else {
+                hits.incrementAndGet();
+            }
+            synchronized (this) {
+                if (resident.putIfAbsent(key, entry) == null) {
+                    residentBytes += entry.sizeBytes;
+                }
+            }
+        }
+        evictOverBudget();
+        return model;
+    }
+
+    public boolean contains(ModelKey key) {
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Performance of a model without loading it
+     */
+    public ModelPerformance getPerformance(ModelKey key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.performance : null;
+    }
+
+    /**
+     * Classifier type (RandomForest, SMOreg...) of a model without loading it
+     */
+    public String getModelType(ModelKey key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.modelType : null;
+    }
+
+    /**
+     * When a model was trained, or 0 if there is none
+     */
+    public long getTrainedAt(ModelKey key) {
+        Entry entry = entries.get(key);
+        return entry != null ? entry.trainedAt : 0;
+    }
+
+    public List<ModelKey> getKeys() {
+        return entries.keySet().stream()
+                .sorted(Comparator.comparing(ModelKey::symbol).thenComparing(ModelKey::timeframe))
+                .toList();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private void evictOverBudget() {
+        List<Entry> victims = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> it = resident.values().iterator();
+            // Always keep the most recently used model, even if it alone is over budget
+            while (residentBytes > maxHeapBytes && resident.size() > 1 && it.hasNext()) {
+                Entry eldest = it.next();
+                it.remove();
+                residentBytes -= eldest.sizeBytes;
+                victims.add(eldest);
+            }
+        }
+        for (Entry victim : victims) {
+            spill(victim);
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Drop a model from the heap, saving it first if that failed when it was trained. A model that became
+     * resident again in the meantime, or was replaced by a newer one, is left alone.
+     */
+    private void spill(Entry entry) {
+        synchronized (entry) {
+            synchronized (this) {
+                if (resident.containsKey(entry.key) || entry.model == null) return;
+            }
+            if (entries.get(entry.key) == entry && entry.version == 0 && !persist(entry)) {
+                // Can't save it - keep it resident rather than lose it
+                spillFailures.incrementAndGet();
+                synchronized (this) {
+                    if (resident.putIfAbsent(entry.key, entry) == null) {
+                        residentBytes += entry.sizeBytes;
+                    }
+                }
+                return;
+            }
+            entry.model = null;
+            log.debug("💾 Evicted {} model for {} {}", entry.modelType, entry.key.symbol(), entry.key.timeframe());
+        }
+    }
+
+    /**
+     * Save a model as a new store version - called with the entry locked or before it is published
+     */
+    private boolean persist(Entry entry) {
+        try {
+            entry.version = modelStore.write(entry.key, entry.model);
+            return true;
+        } catch (IOException e) {
+            log.warn("⚠️ Couldn't save {} {} model: {}", entry.key.symbol(), entry.key.timeframe(), e.getMessage());
+            return false;
+        }
+    }
+
+    private Model load(Entry entry) {
+        long start = System.nanoTime();
+        ModelStore.Stored stored = modelStore.readLatest(entry.key);
+        if (stored == null) {
+            log.error("❌ No usable stored version of the {} {} model", entry.key.symbol(), entry.key.timeframe());
+            return null;
+        }
+        if (stored.version() != entry.version) {
+            log.warn("⚠️ Reloaded version {} of the {} {} model instead of {}", stored.version(),
+                    entry.key.symbol(), entry.key.timeframe(), entry.version);
+            entry.adopt(stored);
+        }
+        log.debug("💾 Reloaded {} model for {} {} in {} ms", entry.modelType, entry.key.symbol(),
+                entry.key.timeframe(), (System.nanoTime() - start) / 1_000_000);
+        return stored.model();
+    }
+
+    /**
+     * Serialized size of the model - proportional to, and a lower bound on, its heap footprint
+     */
+    private static long serializedSize(Model model) {
+        CountingOutputStream counter = new CountingOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(counter)) {
+            out.writeObject(model);
+        } catch (IOException e) {
+            log.warn("⚠️ Couldn't measure model size: {}", e.getMessage());
+        }
+        return counter.count;
+    }
+
+    /**
+     * Resident and evicted model counts, heap use against the budget, and cache counters
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        List<Map<String, Object>> models = new ArrayList<>();
+        synchronized (this) {
+            stats.put("models", entries.size());
+            stats.put("resident", resident.size());
+            stats.put("residentBytes", residentBytes);
+        }
+        stats.put("maxHeapBytes", maxHeapBytes);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("reloads", reloads.get());
+        stats.put("evictions", evictions.get());
+        stats.put("spillFailures", spillFailures.get());
+        stats.put("restored", restored);
+        for (ModelKey key : getKeys()) {
+            Entry entry = entries.get(key);
+            if (entry == null) continue;
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("symbol", key.symbol());
+            row.put("timeframe", key.timeframe());
+            row.put("featureVersion", key.featureVersion());
+            row.put("modelType", entry.modelType);
+            row.put("version", entry.version);
+            row.put("trainedAt", entry.trainedAt);
+            row.put("sizeBytes", entry.sizeBytes);
+            row.put("resident", entry.model != null);
+            row.put("r2", entry.performance != null ? entry.performance.getR2() : null);
+            models.add(row);
+        }
+        stats.put("entries", models);
+        stats.put("store", modelStore.getStats());
+        return stats;
+    }
+
+    private static final class Entry {
+        private final ModelKey key;
+        private final long sizeBytes;
+        private volatile ModelPerformance performance;
+        private volatile String modelType;
+        private volatile long trainedAt;
+        private volatile Model model;
+        // Store version holding this model, 0 until saved
+        private volatile int version;
+
+        private Entry(ModelKey key, Model model, long sizeBytes, int version) {
+            this.key = key;
+            this.sizeBytes = sizeBytes;
+            this.model = model;
+            this.version = version;
+            describe(model);
+        }
+
+        /**
+         * Switch to an older stored version after the expected one turned out unusable
+         */
+        private void adopt(ModelStore.Stored stored) {
+            version = stored.version();
+            describe(stored.model());
+        }
+
+        private void describe(Model model) {
+            performance = model.performance();
+            modelType = model.classifier().getClass().getSimpleName();
+            trainedAt = model.trainedAt();
+        }
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
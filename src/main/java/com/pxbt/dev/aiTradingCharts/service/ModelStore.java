@@ -0,0 +1,237 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * On-disk model store - every training writes a new numbered version of the model.
+ *
+ * Layout: one directory per {@link ModelRegistry.ModelKey} ({@code BTC-1d-v1/}) holding
+ * {@code 000001.model}, {@code 000002.model}... Each file is a 48-byte header (magic, format, payload
+ * length, SHA-256 of the payload) followed by the serialized {@link ModelRegistry.Model}. Reads verify the
+ * digest before deserializing, and fall back to the previous version if the newest is damaged. Only Weka
+ * and this application's classes, plus the few JDK classes they hold, are deserialized. The newest
+ * {@code keep-versions} files of each model are kept.
+ */
+@Slf4j
+@Service
+public class ModelStore {
+
+    /**
+     * A model read back from the store, with the version it came from
+     */
+    public record Stored(int version, ModelRegistry.Model model) {
+    }
+
+    private static final int MAGIC = 0x4D444C31; // "MDL1"
+    private static final int FORMAT = 1;
+    private static final int DIGEST_BYTES = 32;
+    private static final Pattern KEY_DIRECTORY = Pattern.compile("([A-Z0-9]+)-(\\w+)-v(\\d+)");
+    private static final Pattern VERSION_FILE = Pattern.compile("(\\d{6})\\.model");
+    // What a RandomForest, LinearRegression or SMOreg model is made of; anything else in a file is refused
+    private static final ObjectInputFilter MODEL_CLASSES = ObjectInputFilter.Config.createFilter(
+            "weka.**;com.pxbt.dev.aiTradingCharts.**;"
+                    + "java.lang.Object;java.lang.Number;java.lang.Integer;java.lang.Long;java.lang.Double;"
+                    + "java.lang.Boolean;java.lang.String;java.lang.Enum;"
+                    + "java.util.ArrayList;java.util.BitSet;java.util.HashMap;java.util.Map$Entry;java.util.Random;"
+                    + "!*");
+
+    @Value("${models.store.directory:data/models}")
+    private String directory;
+
+    @Value("${models.store.keep-versions:3}")
+    private int keepVersions;
+
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong integrityFailures = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    /**
+     * Write a model as the next version of its key and prune old versions
+     *
+     * @return the version written
+     */
+    public synchronized int write(ModelRegistry.ModelKey key, ModelRegistry.Model model) throws IOException {
+        long start = System.nanoTime();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(model);
+        }
+        byte[] payload = bytes.toByteArray();
+
+        Path keyDirectory = keyDirectory(key);
+        Files.createDirectories(keyDirectory);
+        List<Integer> versions = versions(keyDirectory);
+        int version = versions.isEmpty() ? 1 : versions.get(0) + 1;
+
+        Path file = keyDirectory.resolve(fileName(version));
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT);
+            out.writeLong(payload.length);
+            out.write(sha256(payload));
+            out.write(payload);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writes.incrementAndGet();
+
+        for (int i = keepVersions - 1; i < versions.size(); i++) {
+            Files.deleteIfExists(keyDirectory.resolve(fileName(versions.get(i))));
+        }
+        log.info("💾 Saved {} {} model version {} ({} KB) in {} ms", key.symbol(), key.timeframe(), version,
+                payload.length / 1024, (System.nanoTime() - start) / 1_000_000);
+        return version;
+    }
+
+    /**
+     * The newest version of a model that passes its integrity check
+     *
+     * @return null if no stored version is usable
+     */
+    public Stored readLatest(ModelRegistry.ModelKey key) {
+        Path keyDirectory = keyDirectory(key);
+        if (!Files.isDirectory(keyDirectory)) return null;
+
+        List<Integer> versions;
+        try {
+            versions = versions(keyDirectory);
+        } catch (IOException e) {
+            log.warn("⚠️ Can't list stored models in {}: {}", keyDirectory, e.getMessage());
+            return null;
+        }
+
+        for (int i = 0; i < versions.size(); i++) {
+            Path file = keyDirectory.resolve(fileName(versions.get(i)));
+            try {
+                ModelRegistry.Model model = read(file);
+                reads.incrementAndGet();
+                if (i > 0) {
+                    fallbacks.incrementAndGet();
+                    log.warn("⚠️ Fell back to version {} of the {} {} model", versions.get(i),
+                            key.symbol(), key.timeframe());
+                }
+                return new Stored(versions.get(i), model);
+            } catch (Exception e) {
+                integrityFailures.incrementAndGet();
+                log.warn("⚠️ Skipping unusable stored model {}: {}", file, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Every key with at least one stored version
+     */
+    public List<ModelRegistry.ModelKey> keys() {
+        Path root = Paths.get(directory);
+        if (!Files.isDirectory(root)) return List.of();
+
+        List<ModelRegistry.ModelKey> keys = new ArrayList<>();
+        try (Stream<Path> children = Files.list(root)) {
+            children.filter(Files::isDirectory).forEach(child -> {
+                Matcher matcher = KEY_DIRECTORY.matcher(child.getFileName().toString());
+                if (matcher.matches()) {
+                    keys.add(new ModelRegistry.ModelKey(matcher.group(1), matcher.group(2),
+                            Integer.parseInt(matcher.group(3))));
+                }
+            });
+        } catch (IOException e) {
+            log.warn("⚠️ Can't list model store {}: {}", root, e.getMessage());
+        }
+        return keys;
+    }
+
+    private static ModelRegistry.Model read(Path file) throws IOException, ClassNotFoundException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+                throw new IOException("not a model file");
+            }
+            long length = in.readLong();
+            if (length <= 0 || length > Files.size(file)) {
+                throw new IOException("corrupt header");
+            }
+            byte[] digest = in.readNBytes(DIGEST_BYTES);
+            byte[] payload = in.readNBytes((int) length);
+            if (payload.length != length || !Arrays.equals(digest, sha256(payload))) {
+                throw new IOException("checksum mismatch");
+            }
+            try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(payload))) {
+                objects.setObjectInputFilter(MODEL_CLASSES);
+                return (ModelRegistry.Model) objects.readObject();
+            }
+        }
+    }
+
+    /**
+     * Stored versions of a key, newest first
+     */
+    private static List<Integer> versions(Path keyDirectory) throws IOException {
+        try (Stream<Path> files = Files.list(keyDirectory)) {
+            return files.map(file -> VERSION_FILE.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Integer.parseInt(matcher.group(1)))
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+        }
+    }
+
+    private static byte[] sha256(byte[] payload) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(payload);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path keyDirectory(ModelRegistry.ModelKey key) {
+        return Paths.get(directory, key.symbol() + "-" + key.timeframe() + "-v" + key.featureVersion());
+    }
+
+    private static String fileName(int version) {
+        return String.format("%06d.model", version);
+    }
+
+    /**
+     * Write, read and integrity counters for monitoring
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("directory", directory);
+        stats.put("keepVersions", keepVersions);
+        stats.put("writes", writes.get());
+        stats.put("reads", reads.get());
+        stats.put("integrityFailures", integrityFailures.get());
+        stats.put("fallbacks", fallbacks.get());
+        return stats;
+    }
+}
@@ -1,36 +1,71 @@
 package com.pxbt.dev.aiTradingCharts.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pxbt.dev.aiTradingCharts.Gateway.BinanceStreamGateway;
+import com.pxbt.dev.aiTradingCharts.dto.AnalysisMessage;
+import com.pxbt.dev.aiTradingCharts.dto.PriceTickMessage;
+import com.pxbt.dev.aiTradingCharts.handler.BroadcastMessage;
 import com.pxbt.dev.aiTradingCharts.handler.CryptoWebSocketHandler;
 import com.pxbt.dev.aiTradingCharts.model.*;
 import lombok.extern.slf4j.Slf4j;
-import org.java_websocket.client.WebSocketClient;
-import org.java_websocket.handshake.ServerHandshake;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
 import javax.annotation.PostConstruct;
-import java.net.URI;
+import javax.annotation.PreDestroy;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Slf4j
 @Service
 @EnableScheduling
 public class RealTimeDataService {
 
-    private final Map<String, Deque<PriceUpdate>> priceCache = new ConcurrentHashMap<>();
-    private final List<WebSocketClient> webSocketClients = new ArrayList<>();
+    // Last 100 ticks per symbol, stored as primitives
+    private static final int PRICE_CACHE_SIZE = 100;
+    private static final long ONE_MINUTE_MS = 60_000L;
+    private final Map<String, TickBuffer> priceCache = new ConcurrentHashMap<>();
 
     // Smart polling control
-    private long lastDataBroadcastTime = 0;
+    private volatile long lastDataBroadcastTime = 0;
+
+    // Ingest only touches the cache; analysis + broadcast run on the pipeline workers
+    private AnalysisPipeline analysisPipeline;
+
+    @Value("${realtime.analysis.worker-threads:2}")
+    private int analysisWorkerThreads;
+
+    @Value("${realtime.analysis.queue-capacity:64}")
+    private int analysisQueueCapacity;
+
+    // Price ticks go out on their own, throttled per symbol; analysis only when it changes
+    private TickThrottle tickThrottle;
+    private final AnalysisVersions analysisVersions = new AnalysisVersions();
+
+    // What each symbol's current analysis was computed from - it isn't recomputed until that changes
+    private final Map<String, AnalysisInputs> analysedInputs = new ConcurrentHashMap<>();
+    // Each symbol's predictions relative to the price they were made at, restated at every tick's price
+    private final Map<String, Map<String, Projection>> projections = new ConcurrentHashMap<>();
+    private final AtomicLong unchangedInputs = new AtomicLong();
+    private final AtomicLong failedAnalyses = new AtomicLong();
+
+    @Value("${realtime.ticks.max-hz:4}")
+    private double tickMaxHz;
+
+    @Autowired
+    private ScheduledExecutorService sharedScheduler;
 
     @Autowired
     private CryptoWebSocketHandler webSocketHandler;
 
+    @Autowired
+    private BinanceStreamGateway binanceStreamGateway;
+
     @Autowired
     private PricePredictionService predictionService;
 
@@ -43,130 +78,250 @@ public class RealTimeDataService {
     @Autowired
     private FibonacciTimeZoneService fibonacciTimeZoneService;
 
-    private ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private AIModelService aiModelService;
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN = allocationTracker();
+
+    private final AtomicLong broadcasts = new AtomicLong();
+    private final AtomicLong broadcastPayloadBytes = new AtomicLong();
+    private final AtomicLong broadcastAllocatedBytes = new AtomicLong();
+    private volatile long lastBroadcastAllocatedBytes = -1;
 
-    private final List<String> symbols = Arrays.asList("BTC", "SOL", "TAO", "WIF");
-    private final Map<String, String> symbolToStream = Map.of(
-            "BTC", "btcusdt@ticker",
-            "SOL", "solusdt@ticker",
-            "TAO", "taousdt@ticker",
-            "WIF", "wifusdt@ticker"
-    );
+    @Autowired
+    private SymbolRegistry symbolRegistry;
 
     @PostConstruct
     public void init() {
         log.info("🚀 INITIALIZING RealTimeDataService - Real-Time Broadcasting Enabled");
         log.info("📊 Real-time updates: EVERY PRICE CHANGE | Manual refresh: 2 minutes");
+        analysisPipeline = new AnalysisPipeline(analysisWorkerThreads, analysisQueueCapacity, this::analyzeAndBroadcast);
+        tickThrottle = new TickThrottle(tickMaxHz, sharedScheduler, this::publishTick);
+        // New subscribers start from the current analysis version
+        webSocketHandler.setSnapshotProvider(this::analysisSnapshot);
+
+        // Ticker stream per active symbol, subscribed on the shared socket at runtime
+        symbolRegistry.addResources(new SymbolRegistry.SymbolResources() {
+            @Override
+            public Mono<Void> acquire(String symbol) {
+                return Mono.fromRunnable(() -> binanceStreamGateway.subscribe(streamName(symbol),
+                        (price, volume, eventTime) -> processRealTimeUpdate(symbol, price, volume)));
+            }
+
+            @Override
+            public void release(String symbol) {
+                binanceStreamGateway.unsubscribe(streamName(symbol));
+                priceCache.remove(symbol);
+                tickThrottle.remove(symbol);
+                analysisVersions.remove(symbol);
+                analysedInputs.remove(symbol);
+                projections.remove(symbol);
+            }
+        });
+    }
+
+    /**
+     * Open the stream for the symbols subscribed so far - called by the startup warm-up, returns without
+     * waiting for the socket to connect. Symbols activated later are subscribed on the open socket.
+     */
+    public void startStreaming() {
         connectToBinanceWebSockets();
     }
 
-    private void connectToBinanceWebSockets() {
-        log.info("🔗 Connecting to Binance WebSockets (real-time mode)...");
-
-        for (String symbol : symbols) {
-            String streamName = symbolToStream.get(symbol);
-            if (streamName != null) {
-                connectToSymbolWebSocket(symbol, streamName);
-                // Small delay to avoid rate limiting
-                try { Thread.sleep(500); } catch (InterruptedException e) {}
-            }
-        }
+    private static String streamName(String symbol) {
+        return symbol.toLowerCase() + "usdt@ticker";
+    }
 
-        log.info("✅ WebSocket connections established (real-time broadcasting)");
+    public boolean isStreamConnected() {
+        return binanceStreamGateway.isConnected();
     }
 
-    private void connectToSymbolWebSocket(String symbol, String streamName) {
-        try {
-            String binanceUrl = "wss://stream.binance.com:9443/ws/" + streamName;
-            log.debug("🔗 Connecting {} -> {}", symbol, binanceUrl);
-
-            WebSocketClient client = new WebSocketClient(new URI(binanceUrl)) {
-                @Override
-                public void onMessage(String message) {
-                    // REAL-TIME MODE: Process AND broadcast every update
-                    processRealTimeUpdate(message, symbol, true);
-                }
+    @PreDestroy
+    public void shutdown() {
+        if (analysisPipeline != null) {
+            analysisPipeline.shutdown();
+        }
+    }
 
-                @Override
-                public void onOpen(ServerHandshake handshake) {
-                    log.debug("✅ {} WebSocket CONNECTED (real-time)", symbol);
-                }
+    private void connectToBinanceWebSockets() {
+        log.info("🔗 Connecting to Binance combined stream (real-time mode)...");
 
-                @Override
-                public void onClose(int code, String reason, boolean remote) {
-                    log.warn("❌ {} WebSocket CLOSED - Reason: {}", symbol, reason);
-                    // Don't auto-reconnect aggressively
-                    scheduleGentleReconnection(symbol, streamName);
-                }
+        binanceStreamGateway.setReconnectListener(this::fillTickGap);
 
-                @Override
-                public void onError(Exception ex) {
-                    log.debug("💥 {} WebSocket ERROR: {}", symbol, ex.getMessage());
-                }
-            };
+        // One socket for every symbol - no per-symbol connections or sleeps
+        binanceStreamGateway.connect();
+    }
 
-            client.connect();
-            webSocketClients.add(client);
+    /**
+     * Back-fill ticks missed while the stream was down from 1m klines (one point per closed minute).
+     * Runs asynchronously so the socket thread that reported the reconnect isn't blocked on REST.
+     */
+    private void fillTickGap(long from, long to) {
+        if (to - from < ONE_MINUTE_MS) return;
 
-        } catch (Exception e) {
-            log.error("❌ Failed to connect {} WebSocket: {}", symbol, e.getMessage());
+        for (String symbol : symbolRegistry.getActiveSymbols()) {
+            binanceHistoricalService.getHistoricalDataAsPriceUpdate(symbol, "1m", from - ONE_MINUTE_MS, to)
+                    .subscribe(klines -> mergeGap(symbol, klines, from, to),
+                            error -> log.warn("⚠️ Gap fill failed for {}: {}", symbol, error.getMessage()));
         }
     }
 
-    private void scheduleGentleReconnection(String symbol, String streamName) {
-        log.info("🔄 Scheduling {} reconnection in 30 seconds...", symbol);
-        new Timer().schedule(new TimerTask() {
-            @Override
-            public void run() {
-                log.info("🔄 Attempting {} reconnection...", symbol);
-                connectToSymbolWebSocket(symbol, streamName);
-            }
-        }, 30000); // 30 seconds - be gentle
+    private void mergeGap(String symbol, List<PriceUpdate> klines, long from, long to) {
+        PriceUpdate latest = getLatestPriceUpdate(symbol);
+        // Ticker volume is the rolling 24h figure - carry it forward rather than mixing in 1m kline volume
+        double volume = latest != null ? latest.getVolume() : 0;
+
+        double[] prices = new double[klines.size()];
+        double[] volumes = new double[klines.size()];
+        long[] timestamps = new long[klines.size()];
+        int count = 0;
+        for (PriceUpdate kline : klines) {
+            long closeTime = kline.getTimestamp() + ONE_MINUTE_MS;
+            if (closeTime <= from || closeTime >= to || kline.getClose() <= 0) continue;
+            prices[count] = kline.getClose();
+            volumes[count] = volume;
+            timestamps[count++] = closeTime;
+        }
+        if (count == 0) return;
+
+        priceCache.computeIfAbsent(symbol, k -> new TickBuffer(PRICE_CACHE_SIZE))
+                .merge(prices, volumes, timestamps, count);
+        log.info("🩹 Back-filled {} missed minutes for {}", count, symbol);
+        analysisPipeline.submit(symbol);
     }
 
     /**
-     * Process update with REAL-TIME broadcasting
+     * Ingest a ticker message - runs on the WebSocket read thread, so it only updates the
+     * cache and hands the tick to the analysis pipeline
      */
-    private void processRealTimeUpdate(String message, String symbol, boolean forceBroadcast) {
-        try {
-            JsonNode update = objectMapper.readTree(message);
+    private void processRealTimeUpdate(String symbol, double price, double volume) {
+        // Validate data
+        if (price <= 0) {
+            log.debug("⚠️ Invalid price for {}: {}", symbol, price);
+            return;
+        }
 
-            double price = update.has("c") ? update.get("c").asDouble() : 0;
-            double volume = update.has("v") ? update.get("v").asDouble() : 0;
+        long now = System.currentTimeMillis();
 
-            // Validate data
-            if (price <= 0) {
-                log.debug("⚠️ Invalid price for {}: {}", symbol, price);
-                return;
-            }
+        // Always update cache (for manual predictions) - primitives only, no per-tick objects
+        priceCache.computeIfAbsent(symbol, k -> new TickBuffer(PRICE_CACHE_SIZE))
+                .append(price, volume, now);
+
+        // Keep today's daily bar current so indicators move with the market between candle closes
+        binanceHistoricalService.applyTick(symbol, price, now);
 
-            PriceUpdate priceUpdate = new PriceUpdate(symbol, price, volume, System.currentTimeMillis());
+        // Latest-value-wins: stale ticks are skipped by the throttle and conflated while analysis is busy
+        tickThrottle.signal(symbol);
+        analysisPipeline.submit(symbol);
+    }
 
-            // Always update cache (for manual predictions)
-            updatePriceCache(symbol, priceUpdate);
+    /**
+     * Throttle stage - send the newest price of a symbol to its subscribers
+     */
+    private void publishTick(String symbol) {
+        if (!webSocketHandler.hasSubscribers(symbol)) return;
+        PriceUpdate latest = getLatestPriceUpdate(symbol);
+        if (latest == null) return;
 
-            // Send to AI analysis
-            AIAnalysisResult analysis = analyzeWithAI(priceUpdate);
+        try {
+            // A client that is behind only needs the newest tick
+            webSocketHandler.broadcast(symbol, BroadcastMessage.of(PriceTickMessage.of(symbol, latest.getPrice(),
+                    latest.getVolume(), latest.getTimestamp(), predictionsAt(symbol, latest.getPrice()))), true);
+        } catch (Exception e) {
+            log.error("❌ Error broadcasting tick for {}: {}", symbol, e.getMessage());
+        }
+    }
 
-            // Broadcast to WebSocket clients
-            broadcastUpdate(priceUpdate, analysis);
+    /**
+     * Current predictions of a symbol at the given price - empty until it has been analysed
+     */
+    private Map<String, PriceTickMessage.Prediction> predictionsAt(String symbol, double price) {
+        Map<String, Projection> symbolProjections = projections.get(symbol);
+        if (symbolProjections == null) return Map.of();
+        Map<String, PriceTickMessage.Prediction> predictions = new LinkedHashMap<>();
+        symbolProjections.forEach((timeframe, projection) -> predictions.put(timeframe, projection.at(price)));
+        return predictions;
+    }
 
-            lastDataBroadcastTime = System.currentTimeMillis();
+    /**
+     * Pipeline stage - AI analysis of the newest tick followed by broadcast, off the ingest thread.
+     *
+     * Patterns, Fibonacci zones and the models' forecasts only move when a daily bar closes, the history is
+     * reloaded or a model is retrained. Between those a tick only changes the price, which the price ticks
+     * already carry, so the analysis is neither recomputed nor re-versioned.
+     */
+    private void analyzeAndBroadcast(String symbol) {
+        if (!webSocketHandler.hasSubscribers(symbol)) return; // Nobody is watching this symbol
+        PriceUpdate priceUpdate = getLatestPriceUpdate(symbol);
+        if (priceUpdate == null) return;
+
+        AnalysisInputs inputs = analysisInputs(symbol);
+        if (inputs.equals(analysedInputs.get(symbol))) {
+            unchangedInputs.incrementAndGet();
+            return;
+        }
 
+        AIAnalysisResult analysis;
+        try {
+            analysis = analyze(priceUpdate);
         } catch (Exception e) {
-            log.error("❌ Error processing {} update: {}", symbol, e.getMessage());
+            // Keep the last good analysis and projections; the same inputs are tried again on the next tick
+            failedAnalyses.incrementAndGet();
+            log.error("❌ AI ANALYSIS ERROR for {}: {}", symbol, e.getMessage());
+            return;
         }
+        projections.put(symbol, projectionsOf(analysis));
+        broadcastAnalysis(symbol, analysis);
+        analysedInputs.put(symbol, inputs);
+        lastDataBroadcastTime = System.currentTimeMillis();
     }
 
-    private void updatePriceCache(String symbol, PriceUpdate priceUpdate) {
-        priceCache.computeIfAbsent(symbol, k -> new ConcurrentLinkedDeque<>())
-                .add(priceUpdate);
+    private AnalysisInputs analysisInputs(String symbol) {
+        long modelsTrainedAt = 0;
+        for (String timeframe : PricePredictionService.TIMEFRAMES) {
+            modelsTrainedAt = Math.max(modelsTrainedAt, aiModelService.getTrainedAt(symbol, timeframe));
+        }
+        return new AnalysisInputs(binanceHistoricalService.getLastDailyBarTime(symbol),
+                binanceHistoricalService.getDailyGeneration(symbol), modelsTrainedAt);
+    }
 
-        // Keep only last 100 updates per symbol (clean memory)
-        Deque<PriceUpdate> symbolCache = priceCache.get(symbol);
-        while (symbolCache.size() > 100) {
-            symbolCache.removeFirst();
+    private static Map<String, Projection> projectionsOf(AIAnalysisResult analysis) {
+        Map<String, Projection> byTimeframe = new LinkedHashMap<>();
+        if (analysis.getTimeframePredictions() != null) {
+            analysis.getTimeframePredictions().forEach((timeframe, prediction) ->
+                    byTimeframe.put(timeframe, Projection.of(prediction, analysis.getCurrentPrice())));
         }
+        return byTimeframe;
+    }
+
+    /**
+     * Analysis pipeline counters (conflated / dropped ticks etc.), throttled tick and analysis version counts,
+     * and the size and allocation cost of analysis broadcasts
+     */
+    public Map<String, Object> getPipelineStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(analysisPipeline.getStats());
+        stats.put("ticks", tickThrottle.getStats());
+        stats.put("analysisVersions", analysisVersions.getStats());
+        // Ticks that reached the analysis stage with nothing but the price changed
+        stats.put("unchangedInputs", unchangedInputs.get());
+        // Analyses that threw; the previous one stays published
+        stats.put("failedAnalyses", failedAnalyses.get());
+        stats.put("lastBroadcastTime", lastDataBroadcastTime);
+        long count = broadcasts.get();
+        stats.put("broadcasts", count);
+        stats.put("avgPayloadBytes", count > 0 ? broadcastPayloadBytes.get() / count : 0);
+        // Allocated by the worker thread to diff and encode one analysis and hand it to every session
+        stats.put("avgAllocatedBytesPerBroadcast", count > 0 && THREAD_MX_BEAN != null
+                ? broadcastAllocatedBytes.get() / count : -1);
+        stats.put("lastAllocatedBytesPerBroadcast", lastBroadcastAllocatedBytes);
+        return stats;
+    }
+
+    /**
+     * Binance stream connection health and reconnect counters
+     */
+    public Map<String, Object> getStreamStats() {
+        return binanceStreamGateway.getConnectionStats();
     }
 
     /**
@@ -175,16 +330,14 @@ public class RealTimeDataService {
     public void manualRefresh() {
         log.info("🎯 MANUAL REFRESH triggered - Broadcasting all symbols");
 
-        for (String symbol : symbols) {
+        for (String symbol : symbolRegistry.getActiveSymbols()) {
             try {
-                // Get latest price from cache or generate synthetic update
+                // Re-ingest the latest cached tick so it goes through the normal pipeline
                 PriceUpdate latestUpdate = getLatestPriceUpdate(symbol);
                 if (latestUpdate != null) {
-                    processRealTimeUpdate(
-                            createSyntheticMessage(latestUpdate),
-                            symbol,
-                            true // Force broadcast
-                    );
+                    // Recompute even if no bar closed since the last analysis
+                    analysedInputs.remove(symbol);
+                    processRealTimeUpdate(symbol, latestUpdate.getPrice(), latestUpdate.getVolume());
                 }
             } catch (Exception e) {
                 log.error("❌ Manual refresh failed for {}: {}", symbol, e.getMessage());
@@ -195,23 +348,8 @@ public class RealTimeDataService {
     }
 
     private PriceUpdate getLatestPriceUpdate(String symbol) {
-        Deque<PriceUpdate> symbolCache = priceCache.get(symbol);
-        if (symbolCache != null && !symbolCache.isEmpty()) {
-            return symbolCache.getLast();
-        }
-        return null;
-    }
-
-    private String createSyntheticMessage(PriceUpdate update) {
-        try {
-            Map<String, Object> syntheticMessage = new HashMap<>();
-            syntheticMessage.put("s", update.getSymbol() + "USDT");
-            syntheticMessage.put("c", update.getPrice());
-            syntheticMessage.put("v", update.getVolume());
-            return objectMapper.writeValueAsString(syntheticMessage);
-        } catch (Exception e) {
-            return "{}";
-        }
+        TickBuffer symbolCache = priceCache.get(symbol);
+        return symbolCache != null ? symbolCache.latest(symbol) : null;
     }
 
     /**
@@ -220,12 +358,11 @@ public class RealTimeDataService {
     public void quickPredictionsRefresh() {
         log.info("🧠 Quick predictions refresh triggered");
 
-        for (String symbol : symbols) {
+        for (String symbol : symbolRegistry.getActiveSymbols()) {
             try {
-                PriceUpdate latestUpdate = getLatestPriceUpdate(symbol);
-                if (latestUpdate != null) {
-                    AIAnalysisResult analysis = analyzeWithAI(latestUpdate);
-                    broadcastUpdate(latestUpdate, analysis);
+                if (getLatestPriceUpdate(symbol) != null) {
+                    analysedInputs.remove(symbol);
+                    analysisPipeline.submit(symbol);
                 }
             } catch (Exception e) {
                 log.error("❌ Quick refresh failed for {}: {}", symbol, e.getMessage());
@@ -235,41 +372,7 @@ public class RealTimeDataService {
 
     public AIAnalysisResult analyzeWithAI(PriceUpdate update) {
         try {
-            double currentPrice = update.getPrice();
-
-            // Get historical data for analysis
-            List<CryptoPrice> historicalData = binanceHistoricalService.getHistoricalData(
-                    update.getSymbol(), 90 // Need more data for Fibonacci
-            );
-
-            // Detect chart patterns
-            List<ChartPattern> patterns = chartPatternService.detectPatterns(
-                    update.getSymbol(), historicalData
-            );
-
-
-            patterns = ensureValidChartPatterns(patterns, update.getSymbol());
-
-            // Calculate Fibonacci Time Zones
-            List<FibonacciTimeZone> fibZones = fibonacciTimeZoneService.calculateTimeZones(
-                    update.getSymbol(), historicalData
-            );
-
-            // Get predictions for multiple timeframes
-            Map<String, PricePrediction> timeframePredictions =
-                    predictionService.predictMultipleTimeframes(update.getSymbol(), currentPrice);
-
-            log.debug("⏰ Calculated {} Fibonacci Time Zones for {}", fibZones.size(), update.getSymbol());
-
-            return new AIAnalysisResult(
-                    update.getSymbol(),
-                    currentPrice,
-                    timeframePredictions,
-                    patterns,
-                    fibZones, // Include Fibonacci zones
-                    System.currentTimeMillis()
-            );
-
+            return analyze(update);
         } catch (Exception e) {
             log.error("❌ AI ANALYSIS ERROR for {}: {}", update.getSymbol(), e.getMessage());
             Map<String, PricePrediction> errorPredictions = new HashMap<>();
@@ -286,6 +389,43 @@ public class RealTimeDataService {
         }
     }
 
+    private AIAnalysisResult analyze(PriceUpdate update) {
+        double currentPrice = update.getPrice();
+
+        // Get historical data for analysis
+        List<CryptoPrice> historicalData = binanceHistoricalService.getHistoricalData(
+                update.getSymbol(), 90 // Need more data for Fibonacci
+        );
+
+        // Detect chart patterns
+        List<ChartPattern> patterns = chartPatternService.detectPatterns(
+                update.getSymbol(), historicalData
+        );
+
+
+        patterns = ensureValidChartPatterns(patterns, update.getSymbol());
+
+        // Calculate Fibonacci Time Zones
+        List<FibonacciTimeZone> fibZones = fibonacciTimeZoneService.calculateTimeZones(
+                update.getSymbol(), historicalData
+        );
+
+        // Get predictions for multiple timeframes
+        Map<String, PricePrediction> timeframePredictions =
+                predictionService.predictMultipleTimeframes(update.getSymbol(), currentPrice);
+
+        log.debug("⏰ Calculated {} Fibonacci Time Zones for {}", fibZones.size(), update.getSymbol());
+
+        return new AIAnalysisResult(
+                update.getSymbol(),
+                currentPrice,
+                timeframePredictions,
+                patterns,
+                fibZones, // Include Fibonacci zones
+                System.currentTimeMillis()
+        );
+    }
+
     private List<ChartPattern> ensureValidChartPatterns(List<ChartPattern> patterns, String symbol) {
         if (patterns == null) return new ArrayList<>();
 
@@ -306,53 +446,101 @@ public class RealTimeDataService {
                 .toList();
     }
 
-    private void broadcastUpdate(PriceUpdate priceUpdate, AIAnalysisResult analysis) {
+    private void broadcastAnalysis(String symbol, AIAnalysisResult analysis) {
+        long allocatedBefore = threadAllocatedBytes();
         try {
 
             if (analysis.getChartPatterns() != null) {
-                analysis.setChartPatterns(ensureValidChartPatterns(analysis.getChartPatterns(), priceUpdate.getSymbol()));
+                analysis.setChartPatterns(ensureValidChartPatterns(analysis.getChartPatterns(), symbol));
             }
 
-            // Create a combined message
-            Map<String, Object> broadcastMessage = new HashMap<>();
-            broadcastMessage.put("type", "price_update");
-            broadcastMessage.put("symbol", priceUpdate.getSymbol());
-            broadcastMessage.put("price", priceUpdate.getPrice());
-            broadcastMessage.put("volume", priceUpdate.getVolume());
-            broadcastMessage.put("timestamp", priceUpdate.getTimestamp());
-            broadcastMessage.put("analysis", analysis);
-
-
-            String jsonMessage = objectMapper.writeValueAsString(broadcastMessage);
-            objectMapper.readTree(jsonMessage); // This will throw if invalid JSON
+            AnalysisVersions.Change change = analysisVersions.publish(symbol, AnalysisMessage.content(analysis),
+                    analysis.getTimestamp());
+            if (change == null) {
+                log.trace("Analysis for {} unchanged", symbol);
+                return;
+            }
 
-            // Broadcast to all connected WebSocket clients
-            webSocketHandler.broadcast(jsonMessage);
+            AnalysisMessage message = change.changes() == null
+                    ? AnalysisMessage.full(symbol, change.version(), analysis.getTimestamp(), change.analysis())
+                    : AnalysisMessage.delta(symbol, change.version(), change.baseVersion(), analysis.getTimestamp(),
+                    change.changes());
+            // Encoded once per encoding in use and shared by the sessions. Deltas chain, so they are never conflated
+            BroadcastMessage broadcast = BroadcastMessage.of(message);
+            webSocketHandler.broadcast(symbol, broadcast, false);
+            recordBroadcast(broadcast.encodedBytes(), allocatedBefore);
 
-            log.debug("📢 Broadcasted update for {}", priceUpdate.getSymbol());
+            log.debug("📢 Broadcasted {} v{} for {}", message.type(), change.version(), symbol);
 
         } catch (Exception e) {
-            log.error("❌ Error broadcasting update for {}: {}", priceUpdate.getSymbol(), e.getMessage());
+            log.error("❌ Error broadcasting analysis for {}: {}", symbol, e.getMessage());
+        }
+    }
+
+    /**
+     * Full current analysis of a symbol for a client that just subscribed
+     *
+     * @return null if none was published yet
+     */
+    private BroadcastMessage analysisSnapshot(String symbol) {
+        AnalysisVersions.Version latest = analysisVersions.latest(symbol);
+        if (latest == null) return null;
+        return BroadcastMessage.of(
+                AnalysisMessage.full(symbol, latest.version(), latest.publishedAt(), latest.analysis()));
+    }
 
-            sendSafeFallbackMessage(priceUpdate);
+    private void recordBroadcast(int payloadBytes, long allocatedBefore) {
+        broadcasts.incrementAndGet();
+        broadcastPayloadBytes.addAndGet(payloadBytes);
+        if (allocatedBefore >= 0) {
+            long allocated = threadAllocatedBytes() - allocatedBefore;
+            lastBroadcastAllocatedBytes = allocated;
+            broadcastAllocatedBytes.addAndGet(allocated);
         }
     }
 
+    /**
+     * Bytes allocated so far by the calling thread, or -1 if the JVM doesn't track it
+     */
+    private static long threadAllocatedBytes() {
+        return THREAD_MX_BEAN != null ? THREAD_MX_BEAN.getCurrentThreadAllocatedBytes() : -1;
+    }
 
-    private void sendSafeFallbackMessage(PriceUpdate priceUpdate) {
-        try {
-            Map<String, Object> safeMessage = new HashMap<>();
-            safeMessage.put("type", "price_update");
-            safeMessage.put("symbol", priceUpdate.getSymbol());
-            safeMessage.put("price", priceUpdate.getPrice());
-            safeMessage.put("volume", priceUpdate.getVolume());
-            safeMessage.put("timestamp", priceUpdate.getTimestamp());
-            safeMessage.put("analysis", Map.of("error", "Analysis temporarily unavailable"));
-
-            webSocketHandler.broadcast(objectMapper.writeValueAsString(safeMessage));
-        } catch (Exception e) {
-            log.error("❌ Even fallback message failed for {}: {}", priceUpdate.getSymbol(), e.getMessage());
+    private static com.sun.management.ThreadMXBean allocationTracker() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean bean
+                && bean.isThreadAllocatedMemorySupported()) {
+            bean.setThreadAllocatedMemoryEnabled(true);
+            return bean;
         }
+        return null;
+    }
+
+    /**
+     * What an analysis is computed from, apart from the live price
+     */
+    private record AnalysisInputs(long lastDailyBarTime, long dailyGeneration, long modelsTrainedAt) {
     }
 
-}
\ No newline at end of file
+    /**
+     * A timeframe's predicted price and targets as multiples of the price the analysis ran at, so each tick
+     * can restate them at its own price without re-running the models
+     */
+    private record Projection(double change, Map<String, Double> targetFactors) {
+
+        static Projection of(PricePrediction prediction, double price) {
+            double predicted = prediction.getPredictedPrice();
+            Map<String, Double> factors = new LinkedHashMap<>();
+            if (prediction.getPriceTargets() != null && predicted > 0) {
+                prediction.getPriceTargets().forEach((name, target) -> factors.put(name, target / predicted));
+            }
+            return new Projection(price > 0 ? predicted / price - 1 : 0, factors);
+        }
+
+        PriceTickMessage.Prediction at(double price) {
+            double predicted = price * (1 + change);
+            Map<String, Double> targets = new LinkedHashMap<>();
+            targetFactors.forEach((name, factor) -> targets.put(name, predicted * factor));
+            return new PriceTickMessage.Prediction(predicted, targets);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retrains a symbol's models once enough new daily bars have closed since they were trained.
+ *
+ * Training runs on its own small pool of low-priority threads with a bounded queue, never on a request
+ * or scheduler thread, and at most one job per symbol is queued or running. New models are swapped in
+ * by the {@link ModelRegistry} as a whole once trained, so predictions carry on with the previous model
+ * in the meantime and never see a half-updated one.
+ */
+@Slf4j
+@Service
+public class RetrainingScheduler {
+
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+    private static final int MIN_TRAINING_BARS = 100;
+
+    @Value("${models.retrain.enabled:true}")
+    private boolean enabled;
+
+    @Value("${models.retrain.check-interval-ms:300000}")
+    private long checkIntervalMs;
+
+    @Value("${models.retrain.min-new-bars:1}")
+    private int minNewBars;
+
+    @Value("${models.retrain.threads:1}")
+    private int threads;
+
+    @Value("${models.retrain.queue-capacity:16}")
+    private int queueCapacity;
+
+    private final TrainingDataService trainingDataService;
+    private final BinanceHistoricalService historicalDataService;
+    private final ModelRegistry modelRegistry;
+    private final SymbolRegistry symbolRegistry;
+    private final ScheduledExecutorService sharedScheduler;
+    private ThreadPoolExecutor trainers;
+
+    // Queued or running job per symbol
+    private final Map<String, CompletableFuture<Void>> pending = new ConcurrentHashMap<>();
+    // Last time training started per symbol, so a timeframe short of samples isn't retried every check
+    private final Map<String, Long> attemptedAt = new ConcurrentHashMap<>();
+
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private volatile long lastDurationMs = 0;
+
+    public RetrainingScheduler(TrainingDataService trainingDataService, BinanceHistoricalService historicalDataService,
+                               ModelRegistry modelRegistry, SymbolRegistry symbolRegistry,
+                               ScheduledExecutorService sharedScheduler) {
+        this.trainingDataService = trainingDataService;
+        this.historicalDataService = historicalDataService;
+        this.modelRegistry = modelRegistry;
+        this.symbolRegistry = symbolRegistry;
+        this.sharedScheduler = sharedScheduler;
+    }
+
+    @PostConstruct
+    public void init() {
+        trainers = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), trainerThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+        if (enabled) {
+            sharedScheduler.scheduleWithFixedDelay(this::checkForNewBars,
+                    checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+            log.info("🔁 Retraining every {} new daily bars, checked every {} s", minNewBars, checkIntervalMs / 1000);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        trainers.shutdownNow();
+    }
+
+    /**
+     * Queue a retrain of every timeframe of a symbol, or join the one already queued
+     *
+     * @return completes when the models are trained; fails if the training queue is full
+     */
+    public CompletableFuture<Void> retrain(String symbol) {
+        CompletableFuture<Void> job = new CompletableFuture<>();
+        CompletableFuture<Void> existing = pending.putIfAbsent(symbol, job);
+        if (existing != null) return existing;
+
+        try {
+            trainers.execute(() -> run(symbol, job));
+        } catch (RejectedExecutionException e) {
+            pending.remove(symbol, job);
+            rejected.incrementAndGet();
+            log.warn("⚠️ Training queue full - skipped retraining {}", symbol);
+            job.completeExceptionally(e);
+        }
+        return job;
+    }
+
+    private void run(String symbol, CompletableFuture<Void> job) {
+        long start = System.currentTimeMillis();
+        attemptedAt.put(symbol, start);
+        try {
+            int trained = 0;
+            for (String timeframe : TrainingDataService.TIMEFRAMES) {
+                if (trainingDataService.collectSymbolTrainingData(symbol, timeframe)) trained++;
+            }
+            lastDurationMs = System.currentTimeMillis() - start;
+            completed.incrementAndGet();
+            log.info("🔁 Retrained {} {} models in {} ms", trained, symbol, lastDurationMs);
+            job.complete(null);
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.error("❌ Retraining {} failed: {}", symbol, e.getMessage(), e);
+            job.completeExceptionally(e);
+        } finally {
+            pending.remove(symbol, job);
+        }
+    }
+
+    private void checkForNewBars() {
+        try {
+            for (String symbol : symbolRegistry.getActiveSymbols()) {
+                if (!pending.containsKey(symbol) && newClosedBars(symbol) >= minNewBars) {
+                    retrain(symbol);
+                }
+            }
+        } catch (Exception e) {
+            log.error("❌ Retraining check failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Daily bars that closed after the symbol's oldest model was trained (all of them if a model is missing),
+     * or after training was last attempted
+     */
+    private int newClosedBars(String symbol) {
+        BarSeries.View bars = historicalDataService.getDailyBars(symbol, Integer.MAX_VALUE);
+        if (bars.size() < MIN_TRAINING_BARS) return 0;
+
+        long trainedAt = Long.MAX_VALUE;
+        for (String timeframe : TrainingDataService.TIMEFRAMES) {
+            trainedAt = Math.min(trainedAt, modelRegistry.getTrainedAt(
+                    new ModelRegistry.ModelKey(symbol, timeframe, TrainingDataService.FEATURE_SET_VERSION)));
+        }
+        trainedAt = Math.max(trainedAt, attemptedAt.getOrDefault(symbol, 0L));
+
+        long now = System.currentTimeMillis();
+        int count = 0;
+        for (int i = bars.size() - 1; i >= 0; i--) {
+            long closeTime = bars.timestamp(i) + DAY_MS;
+            if (closeTime > now) continue; // still forming
+            if (closeTime <= trainedAt) break;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Job counters and the state of the training pool
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("minNewBars", minNewBars);
+        stats.put("pending", List.copyOf(pending.keySet()));
+        stats.put("activeTrainers", trainers.getActiveCount());
+        stats.put("queuedJobs", trainers.getQueue().size());
+        stats.put("completed", completed.get());
+        stats.put("failed", failed.get());
+        stats.put("rejected", rejected.get());
+        stats.put("lastDurationMs", lastDurationMs);
+        return stats;
+    }
+
+    private static ThreadFactory trainerThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "model-trainer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            // Training yields to tick handling and predictions when cores are busy
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,178 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs the startup work in the background once the HTTP port is open, instead of in
+ * {@code @PostConstruct} methods that block the context one after another.
+ *
+ * Activation of the pinned symbols (history and market series, all symbols concurrently), the stream
+ * connection, restoring the stored models and optional model training start together, so time-to-ready
+ * is set by the slowest fetch rather than the sum of them. {@link #isReady()} only turns true once every pinned symbol is active
+ * with its daily bars loaded; other symbols are activated on demand by the {@link SymbolRegistry}.
+ */
+@Slf4j
+@Service
+public class StartupWarmupService {
+
+    public enum TaskState { PENDING, RUNNING, DONE, FAILED, SKIPPED }
+
+    private static final String HISTORY = "history";
+    private static final String STREAM = "stream";
+    private static final String MODELS = "models";
+    private static final String TRAINING = "training";
+
+    @Autowired
+    private BinanceHistoricalService binanceHistoricalService;
+
+    @Autowired
+    private MarketDataService marketDataService;
+
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+
+    @Autowired
+    private RealTimeDataService realTimeDataService;
+
+    @Autowired
+    private RetrainingScheduler retrainingScheduler;
+
+    @Autowired
+    private ModelRegistry modelRegistry;
+
+    @Value("${startup.train-models:false}")
+    private boolean trainModels;
+
+    private final Map<String, Task> tasks = new LinkedHashMap<>();
+    private volatile long startedAt = 0;
+    private volatile long readyAt = 0;
+
+    public StartupWarmupService() {
+        tasks.put(HISTORY, new Task());
+        tasks.put(STREAM, new Task());
+        tasks.put(MODELS, new Task());
+        tasks.put(TRAINING, new Task());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        startedAt = System.currentTimeMillis();
+        log.info("🔥 Warming up in the background - HTTP is already being served");
+
+        Mono<Void> history = track(HISTORY, symbolRegistry.activatePinned()
+                .then(Mono.fromRunnable(marketDataService::logDataStatus)))
+                // Records the time to ready if everything loaded; otherwise the first isReady() that sees it does
+                .doOnSuccess(v -> isReady())
+                .cache();
+
+        Mono<Void> stream = track(STREAM, Mono.fromRunnable(realTimeDataService::startStreaming));
+
+        Mono<Void> models = track(MODELS, Mono.fromRunnable(modelRegistry::restore)
+                .subscribeOn(Schedulers.boundedElastic()));
+
+        Mono<Void> training;
+        if (trainModels) {
+            // Needs the history, so it starts when that is loaded rather than alongside it
+            training = history
+                    .doOnError(e -> tasks.get(TRAINING).finish(TaskState.SKIPPED, "history failed to load"))
+                    .then(track(TRAINING, Flux.fromIterable(symbolRegistry.getActiveSymbols())
+                            .flatMap(symbol -> Mono.fromFuture(retrainingScheduler.retrain(symbol)))
+                            .then()));
+        } else {
+            tasks.get(TRAINING).finish(TaskState.SKIPPED, null);
+            training = Mono.empty();
+        }
+
+        Mono.whenDelayError(history, stream, models, training)
+                .subscribe(v -> { }, e -> log.error("❌ Warm-up finished with errors: {}", e.getMessage()),
+                        () -> log.info("🏁 Warm-up complete in {} ms", System.currentTimeMillis() - startedAt));
+    }
+
+    private Mono<Void> track(String name, Mono<?> work) {
+        Task task = tasks.get(name);
+        return Mono.defer(() -> {
+                    task.start();
+                    return work;
+                })
+                .doOnSuccess(v -> task.finish(TaskState.DONE, null))
+                .doOnError(e -> {
+                    task.finish(TaskState.FAILED, e.getMessage());
+                    log.error("❌ Warm-up task {} failed: {}", name, e.getMessage());
+                })
+                .then();
+    }
+
+    /**
+     * True once the data the app serves is present: every pinned symbol active, with its daily bars loaded
+     */
+    public boolean isReady() {
+        if (tasks.get(HISTORY).state != TaskState.DONE) return false;
+        Map<String, Integer> dailyBars = binanceHistoricalService.getDailyBarCounts();
+        boolean ready = symbolRegistry.getPinnedSymbols().stream()
+                .allMatch(symbol -> symbolRegistry.getState(symbol) == SymbolRegistry.State.ACTIVE
+                        && dailyBars.getOrDefault(symbol, 0) > 0);
+        if (ready && readyAt == 0) markReady();
+        return ready;
+    }
+
+    private synchronized void markReady() {
+        if (readyAt != 0) return;
+        readyAt = System.currentTimeMillis();
+        log.info("✅ Ready after {} ms", readyAt - startedAt);
+    }
+
+    /**
+     * Readiness plus the state and duration of each warm-up task
+     */
+    public Map<String, Object> getStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        boolean ready = isReady();
+        status.put("ready", ready);
+        status.put("timeToReadyMs", readyAt > 0 ? readyAt - startedAt : null);
+        Map<String, Object> taskStates = new LinkedHashMap<>();
+        tasks.forEach((name, task) -> taskStates.put(name, task.describe()));
+        status.put("tasks", taskStates);
+        status.put("dailyBars", binanceHistoricalService.getDailyBarCounts());
+        status.put("streamConnected", realTimeDataService.isStreamConnected());
+        return status;
+    }
+
+    private static final class Task {
+        private volatile TaskState state = TaskState.PENDING;
+        private volatile long started = 0;
+        private volatile long finished = 0;
+        private volatile String error;
+
+        void start() {
+            started = System.currentTimeMillis();
+            state = TaskState.RUNNING;
+        }
+
+        void finish(TaskState outcome, String message) {
+            finished = System.currentTimeMillis();
+            error = message;
+            state = outcome;
+        }
+
+        Map<String, Object> describe() {
+            Map<String, Object> description = new LinkedHashMap<>();
+            description.put("state", state);
+            if (started > 0) {
+                description.put("elapsedMs", (finished > 0 ? finished : System.currentTimeMillis()) - started);
+            }
+            if (error != null) description.put("error", error);
+            return description;
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * The symbols the app tracks, added and removed at runtime.
+ *
+ * A registered symbol holds nothing until it is used: the first {@link #touch} activates it, which asks
+ * every {@link SymbolResources} (history, market series, stream subscription...) to set itself up.
+ * Symbols that go unused for the idle timeout release those resources again; the default symbols
+ * are pinned and stay active. This keeps hundreds of registered pairs cheap when only a few are viewed.
+ */
+@Slf4j
+@Service
+public class SymbolRegistry {
+
+    public enum State { INACTIVE, ACTIVATING, ACTIVE, FAILED }
+
+    /**
+     * Per-symbol resources owned by a service. Services register in their {@code @PostConstruct}, so a
+     * service is always set up after the services it depends on, and released before them.
+     */
+    public interface SymbolResources {
+        Mono<Void> acquire(String symbol);
+
+        void release(String symbol);
+    }
+
+    // Base asset as the app names it (BTC, SOL...) - the USDT quote is added by the gateways
+    private static final Pattern SYMBOL = Pattern.compile("[A-Z0-9]{2,20}");
+    private static final long RETRY_FAILED_AFTER_MS = 60_000;
+
+    @Value("${symbols.default:BTC,SOL,TAO,WIF}")
+    private List<String> defaultSymbols;
+
+    @Value("${symbols.idle-timeout-ms:900000}")
+    private long idleTimeoutMs;
+
+    @Value("${symbols.idle-check-interval-ms:60000}")
+    private long idleCheckIntervalMs;
+
+    private final ScheduledExecutorService sharedScheduler;
+    private final List<SymbolResources> resources = new CopyOnWriteArrayList<>();
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong registrations = new AtomicLong();
+
+    private final AtomicLong activations = new AtomicLong();
+    private final AtomicLong releases = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public SymbolRegistry(ScheduledExecutorService sharedScheduler) {
+        this.sharedScheduler = sharedScheduler;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (String symbol : defaultSymbols) {
+            Entry entry = new Entry(normalize(symbol), true);
+            entries.putIfAbsent(entry.symbol, entry);
+        }
+        sharedScheduler.scheduleWithFixedDelay(this::releaseIdle,
+                idleCheckIntervalMs, idleCheckIntervalMs, TimeUnit.MILLISECONDS);
+        log.info("🗂️ Symbol registry started with {} pinned symbols", entries.size());
+    }
+
+    public void addResources(SymbolResources owner) {
+        resources.add(owner);
+    }
+
+    /**
+     * @return the symbol upper-cased
+     * @throws IllegalArgumentException if it isn't a plausible base asset name
+     */
+    public static String normalize(String symbol) {
+        String normalized = symbol == null ? "" : symbol.trim().toUpperCase();
+        if (!SYMBOL.matcher(normalized).matches()) {
+            throw new IllegalArgumentException("Invalid symbol: " + symbol);
+        }
+        return normalized;
+    }
+
+    /**
+     * Start tracking a symbol; nothing is loaded until it is first used
+     *
+     * @return false if it was already registered
+     */
+    public boolean register(String symbol) {
+        Entry entry = new Entry(normalize(symbol), false);
+        boolean added = entries.putIfAbsent(entry.symbol, entry) == null;
+        if (added) log.info("➕ Registered symbol {}", entry.symbol);
+        return added;
+    }
+
+    /**
+     * Stop tracking a symbol, releasing whatever it holds
+     *
+     * @return false if it wasn't registered
+     */
+    public boolean unregister(String symbol) {
+        Entry entry = entries.remove(normalize(symbol));
+        if (entry == null) return false;
+        deactivate(entry);
+        log.info("➖ Unregistered symbol {}", entry.symbol);
+        return true;
+    }
+
+    public boolean isRegistered(String symbol) {
+        return lookup(symbol) != null;
+    }
+
+    /**
+     * Note that a symbol is being used, activating it if needed. Unregistered symbols are ignored.
+     */
+    public void touch(String symbol) {
+        Entry entry = lookup(symbol);
+        if (entry == null) return;
+        entry.lastAccess = System.currentTimeMillis();
+        if (entry.state == State.INACTIVE
+                || entry.state == State.FAILED && entry.lastAccess - entry.failedAt > RETRY_FAILED_AFTER_MS) {
+            activate(entry).subscribe(v -> { }, e -> { });
+        }
+    }
+
+    /**
+     * Activate a registered symbol and wait for it
+     *
+     * @return completes once all of its resources are set up; errors if it isn't registered or setup failed
+     */
+    public Mono<Void> activate(String symbol) {
+        Entry entry = lookup(symbol);
+        if (entry == null) {
+            return Mono.error(new IllegalArgumentException("Unknown symbol: " + symbol));
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return activate(entry);
+    }
+
+    /**
+     * Activate every pinned symbol concurrently - used at startup
+     */
+    public Mono<Void> activatePinned() {
+        return Flux.fromIterable(sorted())
+                .filter(entry -> entry.pinned)
+                .flatMapDelayError(this::activate, Math.max(1, entries.size()), 1)
+                .then();
+    }
+
+    private Mono<Void> activate(Entry entry) {
+        synchronized (entry) {
+            if (entry.activation != null) return entry.activation;
+
+            long epoch = entry.epoch;
+            entry.state = State.ACTIVATING;
+            entry.activation = Flux.fromIterable(resources)
+                    .concatMap(owner -> owner.acquire(entry.symbol))
+                    .then()
+                    .doOnSuccess(v -> {
+                        boolean current;
+                        synchronized (entry) {
+                            current = entry.epoch == epoch;
+                            if (current) entry.state = State.ACTIVE;
+                        }
+                        if (!current) {
+                            // Released (or unregistered) while activating - drop what was just set up
+                            releaseResources(entry.symbol);
+                            return;
+                        }
+                        activations.incrementAndGet();
+                        log.info("🟢 Activated {}", entry.symbol);
+                    })
+                    .doOnError(e -> {
+                        failures.incrementAndGet();
+                        log.warn("⚠️ Couldn't activate {}: {}", entry.symbol, e.getMessage());
+                        boolean current;
+                        synchronized (entry) {
+                            // Unless it was released meanwhile, which already made it INACTIVE
+                            current = entry.epoch == epoch;
+                            if (current) {
+                                entry.failedAt = System.currentTimeMillis();
+                                entry.state = State.FAILED;
+                                entry.activation = null;
+                                entry.epoch++;
+                            }
+                        }
+                        // Drop whatever was set up before the failure
+                        releaseResources(entry.symbol);
+                        if (current) releases.incrementAndGet();
+                    })
+                    .cache();
+            return entry.activation;
+        }
+    }
+
+    private void deactivate(Entry entry) {
+        synchronized (entry) {
+            if (entry.state == State.INACTIVE) return;
+            entry.state = State.INACTIVE;
+            entry.activation = null;
+            entry.epoch++;
+        }
+        releaseResources(entry.symbol);
+        releases.incrementAndGet();
+        log.info("⚪ Released {}", entry.symbol);
+    }
+
+    private void releaseResources(String symbol) {
+        // Reverse order: a service is released before the ones it depends on
+        for (int i = resources.size() - 1; i >= 0; i--) {
+            try {
+                resources.get(i).release(symbol);
+            } catch (Exception e) {
+                log.warn("⚠️ Releasing {} failed: {}", symbol, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs on the shared scheduler, so only picks the idle symbols - releasing closes streams and writes
+     * caches, which happens on boundedElastic
+     */
+    private void releaseIdle() {
+        for (Entry entry : entries.values()) {
+            if (isIdle(entry, System.currentTimeMillis())) {
+                Schedulers.boundedElastic().schedule(() -> {
+                    // Touched again since it was picked
+                    if (isIdle(entry, System.currentTimeMillis())) deactivate(entry);
+                });
+            }
+        }
+    }
+
+    private boolean isIdle(Entry entry, long now) {
+        return !entry.pinned && entry.state == State.ACTIVE && now - entry.lastAccess > idleTimeoutMs;
+    }
+
+    /**
+     * @return the symbol's entry, or null if it isn't registered or isn't a valid name
+     */
+    private Entry lookup(String symbol) {
+        try {
+            return entries.get(normalize(symbol));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Every registered symbol, pinned ones first, then in registration order
+     */
+    public List<String> getSymbols() {
+        return sorted().stream().map(entry -> entry.symbol).toList();
+    }
+
+    /**
+     * Symbols whose resources are set up
+     */
+    public List<String> getActiveSymbols() {
+        return sorted().stream().filter(entry -> entry.state == State.ACTIVE).map(entry -> entry.symbol).toList();
+    }
+
+    public List<String> getPinnedSymbols() {
+        return sorted().stream().filter(entry -> entry.pinned).map(entry -> entry.symbol).toList();
+    }
+
+    public State getState(String symbol) {
+        Entry entry = lookup(symbol);
+        return entry != null ? entry.state : null;
+    }
+
+    /**
+     * One row per symbol: state, pinned, time since last use
+     */
+    public List<Map<String, Object>> describe() {
+        long now = System.currentTimeMillis();
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Entry entry : sorted()) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("symbol", entry.symbol);
+            row.put("state", entry.state);
+            row.put("pinned", entry.pinned);
+            row.put("idleMs", entry.lastAccess > 0 ? now - entry.lastAccess : null);
+            rows.add(row);
+        }
+        return rows;
+    }
+
+    /**
+     * Registration and activation counters for monitoring
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("registered", entries.size());
+        stats.put("active", getActiveSymbols().size());
+        stats.put("activations", activations.get());
+        stats.put("releases", releases.get());
+        stats.put("failedActivations", failures.get());
+        stats.put("idleTimeoutMs", idleTimeoutMs);
+        return stats;
+    }
+
+    private List<Entry> sorted() {
+        List<Entry> sorted = new ArrayList<>(entries.values());
+        sorted.sort(Comparator.comparing((Entry entry) -> !entry.pinned).thenComparingLong(entry -> entry.order));
+        return sorted;
+    }
+
+    private final class Entry {
+        private final String symbol;
+        private final boolean pinned;
+        private final long order = registrations.incrementAndGet();
+        private volatile State state = State.INACTIVE;
+        private volatile long lastAccess = 0;
+        private volatile long failedAt = 0;
+        private Mono<Void> activation;
+        private long epoch = 0;
+
+        private Entry(String symbol, boolean pinned) {
+            this.symbol = symbol;
+            this.pinned = pinned;
+        }
+    }
+}
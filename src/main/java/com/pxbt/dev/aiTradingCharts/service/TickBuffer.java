@@ -0,0 +1,76 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.model.PriceUpdate;
+
+/**
+ * Fixed-size primitive ring of the most recent ticks for one symbol.
+ * Appending allocates nothing; a {@link PriceUpdate} is only built when somebody reads the latest tick.
+ */
+final class TickBuffer {
+
+    private final double[] prices;
+    private final double[] volumes;
+    private final long[] timestamps;
+    private int next = 0;
+    private int size = 0;
+
+    TickBuffer(int capacity) {
+        prices = new double[capacity];
+        volumes = new double[capacity];
+        timestamps = new long[capacity];
+    }
+
+    synchronized void append(double price, double volume, long timestamp) {
+        prices[next] = price;
+        volumes[next] = volume;
+        timestamps[next] = timestamp;
+        next = (next + 1) % prices.length;
+        if (size < prices.length) size++;
+    }
+
+    /**
+     * Fold back-filled points (ascending timestamps) into the ring in time order, keeping the newest
+     * {@code capacity} entries. Only used after a stream gap, so it can afford to rebuild the ring.
+     */
+    synchronized void merge(double[] fillPrices, double[] fillVolumes, long[] fillTimestamps, int count) {
+        int capacity = prices.length;
+        int total = size + count;
+        double[] mergedPrices = new double[total];
+        double[] mergedVolumes = new double[total];
+        long[] mergedTimestamps = new long[total];
+
+        int oldest = (next - size + capacity) % capacity;
+        int a = 0, b = 0, out = 0;
+        while (a < size || b < count) {
+            int slot = (oldest + a) % capacity;
+            if (b >= count || (a < size && timestamps[slot] <= fillTimestamps[b])) {
+                mergedPrices[out] = prices[slot];
+                mergedVolumes[out] = volumes[slot];
+                mergedTimestamps[out++] = timestamps[slot];
+                a++;
+            } else {
+                mergedPrices[out] = fillPrices[b];
+                mergedVolumes[out] = fillVolumes[b];
+                mergedTimestamps[out++] = fillTimestamps[b];
+                b++;
+            }
+        }
+
+        int keep = Math.min(capacity, total);
+        System.arraycopy(mergedPrices, total - keep, prices, 0, keep);
+        System.arraycopy(mergedVolumes, total - keep, volumes, 0, keep);
+        System.arraycopy(mergedTimestamps, total - keep, timestamps, 0, keep);
+        size = keep;
+        next = keep % capacity;
+    }
+
+    synchronized PriceUpdate latest(String symbol) {
+        if (size == 0) return null;
+        int last = (next - 1 + prices.length) % prices.length;
+        return new PriceUpdate(symbol, prices[last], volumes[last], timestamps[last]);
+    }
+
+    synchronized int size() {
+        return size;
+    }
+}
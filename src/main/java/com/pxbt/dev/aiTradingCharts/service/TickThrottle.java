@@ -0,0 +1,103 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Caps how often each symbol's price is published, keeping the latest value.
+ *
+ * Like the analysis pipeline, the caller records the tick itself elsewhere and only signals the symbol
+ * here. At most one publish per symbol is scheduled at a time, no sooner than the minimum interval after
+ * the previous one, and it reads whatever tick is newest by then - ticks in between are skipped, not
+ * queued. Publishing runs on the scheduler, never on the signalling thread.
+ */
+@Slf4j
+public class TickThrottle {
+
+    private final Map<String, Slot> slots = new ConcurrentHashMap<>();
+    private final long minIntervalNanos;
+    private final ScheduledExecutorService scheduler;
+    private final Consumer<String> publisher;
+
+    private final AtomicLong signalled = new AtomicLong();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * @param maxHz publishes per second per symbol, 0 or less for no limit
+     */
+    public TickThrottle(double maxHz, ScheduledExecutorService scheduler, Consumer<String> publisher) {
+        this.minIntervalNanos = maxHz > 0 ? (long) (1_000_000_000L / maxHz) : 0;
+        this.scheduler = scheduler;
+        this.publisher = publisher;
+    }
+
+    /**
+     * Signal a new tick for a symbol. Never blocks.
+     */
+    public void signal(String symbol) {
+        signalled.incrementAndGet();
+        Slot slot = slots.computeIfAbsent(symbol, key -> new Slot(key, System.nanoTime() - minIntervalNanos));
+        if (!slot.scheduled.compareAndSet(false, true)) {
+            return; // The pending publish will pick up this tick
+        }
+
+        long delay = Math.max(0, slot.lastPublishedAt + minIntervalNanos - System.nanoTime());
+        try {
+            scheduler.schedule(() -> publish(slot), delay, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            slot.scheduled.set(false);
+        }
+    }
+
+    private void publish(Slot slot) {
+        slot.lastPublishedAt = System.nanoTime();
+        // Cleared first, so a tick arriving mid-publish schedules the next one
+        slot.scheduled.set(false);
+        try {
+            publisher.accept(slot.symbol);
+            published.incrementAndGet();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.error("❌ Publishing {} tick failed: {}", slot.symbol, e.getMessage());
+        }
+    }
+
+    public void remove(String symbol) {
+        slots.remove(symbol);
+    }
+
+    /**
+     * Ticks signalled vs. published - the difference was superseded before it could be sent
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxHz", minIntervalNanos > 0 ? 1_000_000_000.0 / minIntervalNanos : 0);
+        stats.put("signalled", signalled.get());
+        stats.put("published", published.get());
+        stats.put("skipped", Math.max(0, signalled.get() - published.get()));
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    private static final class Slot {
+        private final String symbol;
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private volatile long lastPublishedAt;
+
+        private Slot(String symbol, long lastPublishedAt) {
+            this.symbol = symbol;
+            this.lastPublishedAt = lastPublishedAt;
+        }
+    }
+}
@@ -15,23 +15,34 @@ public class TradingAnalysisService {
     @Autowired
     private MarketDataService marketDataService;
 
+    @Autowired
+    private IndicatorEngine indicatorEngine;
+
     private final Random random = new Random();
 
+    // Bars behind each prediction horizon; the monthly one uses the whole analysis window
+    private static final int ANALYSIS_WINDOW = 200;
+    private static final long ONE_DAY_LOOKBACK_MS = 168 * 60 * 60 * 1000L;  // last 7 days
+    private static final long ONE_WEEK_LOOKBACK_MS = 720 * 60 * 60 * 1000L; // last 30 days
+    private static final int MOMENTUM_BARS = 10;                             // 9 changes, averaged over 10
+    private static final int RSI_BARS = 15;                                  // 14 changes
+
     public AIAnalysisResult analyzeMarketData(String symbol, double currentPrice) {
         log.info("🔄 Starting ENHANCED analysis for {} - Price: ${}", symbol, currentPrice);
 
         // GET ENHANCED HISTORICAL DATA (7 days + real-time)
-        List<PriceUpdate> historicalData = marketDataService.getHistoricalData(symbol, 200);
+        List<PriceUpdate> historicalData = marketDataService.getHistoricalData(symbol, ANALYSIS_WINDOW);
         int dataPoints = historicalData.size();
 
         double daysCovered = calculateDaysCovered(historicalData);
         log.info("📊 Using {} data points for {} ({} days of data)",
                 dataPoints, symbol, String.format("%.1f", daysCovered));
 
-        // MULTI-TIMEFRAME ANALYSIS
-        Map<String, PricePrediction> timeframePredictions = calculateMultiTimeframePredictions(
-                symbol, currentPrice, historicalData
-        );
+        // MULTI-TIMEFRAME ANALYSIS - indicators come from the incrementally maintained state
+        TrendWindows windows = trendWindows(BinanceHistoricalService.DAILY, ANALYSIS_WINDOW);
+        Map<String, PricePrediction> timeframePredictions = indicatorEngine.read(
+                symbol, MarketDataService.MARKET_SERIES, windows.spec(),
+                state -> calculateMultiTimeframePredictions(symbol, currentPrice, state, windows));
 
         List<ChartPattern> chartPatterns = detectLongTermPatterns(symbol, currentPrice, historicalData);
         List<FibonacciTimeZone> fibonacciTimeZones = calculateWeeklyFibonacci(symbol, historicalData);
@@ -72,6 +83,29 @@ public class TradingAnalysisService {
                 timeframe);
     }
 
+    /**
+     * Bar counts for each prediction horizon at a given bar interval, plus the spec tracking them
+     */
+    private record TrendWindows(IndicatorState.Spec spec, int dayBars, int weekBars, int allBars) {
+    }
+
+    private static TrendWindows trendWindows(String interval, int window) {
+        long intervalMs;
+        try {
+            intervalMs = BarSeries.intervalMillis(interval);
+        } catch (RuntimeException e) {
+            // Unrecognised timeframe label - size the windows as for daily bars
+            intervalMs = BarSeries.intervalMillis(BinanceHistoricalService.DAILY);
+        }
+        int dayBars = (int) Math.max(1, Math.min(window, ONE_DAY_LOOKBACK_MS / intervalMs));
+        int weekBars = (int) Math.max(1, Math.min(window, ONE_WEEK_LOOKBACK_MS / intervalMs));
+
+        IndicatorState.Spec spec = new IndicatorState.Spec("trend-" + interval + "-" + window, window,
+                new int[]{dayBars, weekBars, Math.min(MOMENTUM_BARS, window), Math.min(RSI_BARS, window)},
+                new int[0]);
+        return new TrendWindows(spec, dayBars, weekBars, window);
+    }
+
     /**
      * Enhanced analysis with timeframe context
      */
@@ -87,9 +121,14 @@ public class TradingAnalysisService {
         int dataPoints = historicalData.size();
         log.info("📊 Using {} data points for {} timeframe {}", dataPoints, symbol, timeframe);
 
-        // MULTI-TIMEFRAME ANALYSIS with enhanced logging
+        // MULTI-TIMEFRAME ANALYSIS with enhanced logging - one pass builds every window's indicators
+        TrendWindows windows = trendWindows(timeframe, Math.max(1, dataPoints));
+        IndicatorState state = new IndicatorState(windows.spec());
+        for (PriceUpdate update : historicalData) {
+            state.push(update.getTimestamp(), update.getPrice(), update.getVolume());
+        }
         Map<String, PricePrediction> timeframePredictions = calculateMultiTimeframePredictions(
-                symbol, currentPrice, historicalData
+                symbol, currentPrice, state, windows
         );
 
         List<ChartPattern> chartPatterns = detectLongTermPatterns(symbol, currentPrice, historicalData);
@@ -204,19 +243,19 @@ public class TradingAnalysisService {
     }
 
     private Map<String, PricePrediction> calculateMultiTimeframePredictions(
-            String symbol, double currentPrice, List<PriceUpdate> historicalData) {
+            String symbol, double currentPrice, IndicatorState state, TrendWindows windows) {
 
         Map<String, PricePrediction> predictions = new HashMap<>();
 
         // Focus on timeframes that actually work well
         PricePrediction mediumTerm1D = calculate1DPrediction(symbol, currentPrice,
-                filterRecentData(historicalData, 168)); // Last 7 days - enough for 1D analysis
+                state, windows.dayBars()); // Last 7 days - enough for 1D analysis
 
         PricePrediction longTerm1W = calculate1WPrediction(symbol, currentPrice,
-                filterRecentData(historicalData, 720)); // Last 30 days - enough for 1W analysis
+                state, windows.weekBars()); // Last 30 days - enough for 1W analysis
 
         PricePrediction longTerm1M = calculate1MPrediction(symbol, currentPrice,
-                historicalData); // Use ALL historical data for monthly
+                state, windows.allBars()); // Use ALL historical data for monthly
 
         predictions.put("1day", mediumTerm1D);
         predictions.put("1week", longTerm1W);
@@ -231,25 +270,20 @@ public class TradingAnalysisService {
         return predictions;
     }
 
-    private void debugTechnicalIndicators(List<PriceUpdate> data, String timeframe) {
-        if (data.isEmpty()) {
+    private void debugTechnicalIndicators(IndicatorState state, int bars, String timeframe) {
+        if (state.count() == 0) {
             log.info("⚠️ No data for {} technical indicators", timeframe);
             return;
         }
 
-        double trend = calculatePriceTrend(data);
-        double volatility = calculateVolatility(data);
-        double momentum = calculateMomentum(data);
-        double rsi = calculateRSI(data);
+        double trend = calculatePriceTrend(state, bars);
+        double volatility = calculateVolatility(state, bars);
+        double momentum = calculateMomentum(state, bars);
+        double rsi = calculateRSI(state, bars);
 
         log.info("📊 {} Technical Indicators - Trend: {}, Volatility: {}, Momentum: {}, RSI: {}, Data Points: {}",
-                timeframe, trend, volatility, momentum, rsi, data.size());
-
-        // Also log price range
-        double minPrice = data.stream().mapToDouble(PriceUpdate::getPrice).min().orElse(0);
-        double maxPrice = data.stream().mapToDouble(PriceUpdate::getPrice).max().orElse(0);
-        log.info("📊 {} Price Range - Min: ${}, Max: ${}, Current: ${}",
-                timeframe, minPrice, maxPrice, data.get(data.size()-1).getPrice());
+                timeframe, trend, volatility, momentum, rsi, Math.min(bars, state.count()));
+        log.info("📊 {} Mean Price: ${}, Current: ${}", timeframe, state.mean(bars), state.lastClose());
     }
 
 
@@ -346,19 +380,20 @@ public class TradingAnalysisService {
         return durationMs / (1000.0 * 60 * 60 * 24); // Convert to days
     }
 
-    private PricePrediction calculate1DPrediction(String symbol, double currentPrice, List<PriceUpdate> data) {
-        if (data.size() < 10) {
-            debugTechnicalIndicators(data, "1D");
+    private PricePrediction calculate1DPrediction(String symbol, double currentPrice, IndicatorState state, int bars) {
+        int dataSize = Math.min(bars, state.count());
+        if (dataSize < 10) {
+            debugTechnicalIndicators(state, bars, "1D");
             return new PricePrediction(symbol, currentPrice, 0.4, "NEUTRAL");
         }
 
-        double trend = calculatePriceTrend(data);
-        double volatility = calculateVolatility(data);
-        double momentum = calculateMomentum(data);
-        double rsi = calculateRSI(data);
+        double trend = calculatePriceTrend(state, bars);
+        double volatility = calculateVolatility(state, bars);
+        double momentum = calculateMomentum(state, bars);
+        double rsi = calculateRSI(state, bars);
 
         double prediction = calculateDynamicPrediction(currentPrice, trend, momentum, volatility, "1D");
-        double confidence = calculateDynamicConfidence(trend, volatility, data.size(), "1D");
+        double confidence = calculateDynamicConfidence(trend, volatility, dataSize, "1D");
         String signal = getTrendDirection(trend, momentum, rsi);
 
         log.info("🔍 1D Prediction - trend: {}, momentum: {}, volatility: {}, prediction: {}",
@@ -367,19 +402,20 @@ public class TradingAnalysisService {
         return new PricePrediction(symbol, prediction, confidence, signal);
     }
 
-    private PricePrediction calculate1WPrediction(String symbol, double currentPrice, List<PriceUpdate> data) {
-        if (data.size() < 20) {
-            debugTechnicalIndicators(data, "1W");
+    private PricePrediction calculate1WPrediction(String symbol, double currentPrice, IndicatorState state, int bars) {
+        int dataSize = Math.min(bars, state.count());
+        if (dataSize < 20) {
+            debugTechnicalIndicators(state, bars, "1W");
             return new PricePrediction(symbol, currentPrice, 0.3, "NEUTRAL");
         }
 
-        double trend = calculatePriceTrend(data);
-        double volatility = calculateVolatility(data);
-        double momentum = calculateMomentum(data);
-        double rsi = calculateRSI(data);
+        double trend = calculatePriceTrend(state, bars);
+        double volatility = calculateVolatility(state, bars);
+        double momentum = calculateMomentum(state, bars);
+        double rsi = calculateRSI(state, bars);
 
         double prediction = calculateDynamicPrediction(currentPrice, trend, momentum, volatility, "1W");
-        double confidence = calculateDynamicConfidence(trend, volatility, data.size(), "1W");
+        double confidence = calculateDynamicConfidence(trend, volatility, dataSize, "1W");
         String signal = getTrendDirection(trend, momentum, rsi);
 
         log.info("🔍 1W Prediction - trend: {}, momentum: {}, volatility: {}, prediction: {}",
@@ -388,19 +424,20 @@ public class TradingAnalysisService {
         return new PricePrediction(symbol, prediction, confidence, signal);
     }
 
-    private PricePrediction calculate1MPrediction(String symbol, double currentPrice, List<PriceUpdate> data) {
-        if (data.size() < 30) {
-            debugTechnicalIndicators(data, "1M");
+    private PricePrediction calculate1MPrediction(String symbol, double currentPrice, IndicatorState state, int bars) {
+        int dataSize = Math.min(bars, state.count());
+        if (dataSize < 30) {
+            debugTechnicalIndicators(state, bars, "1M");
             return new PricePrediction(symbol, currentPrice, 0.2, "NEUTRAL");
         }
 
-        double trend = calculatePriceTrend(data);
-        double volatility = calculateVolatility(data);
-        double momentum = calculateMomentum(data);
-        double rsi = calculateRSI(data);
+        double trend = calculatePriceTrend(state, bars);
+        double volatility = calculateVolatility(state, bars);
+        double momentum = calculateMomentum(state, bars);
+        double rsi = calculateRSI(state, bars);
 
         double prediction = calculateDynamicPrediction(currentPrice, trend, momentum, volatility, "1M");
-        double confidence = calculateDynamicConfidence(trend, volatility, data.size(), "1M");
+        double confidence = calculateDynamicConfidence(trend, volatility, dataSize, "1M");
         String signal = getTrendDirection(trend, momentum, rsi);
 
         log.info("🔍 1M Prediction - trend: {}, momentum: {}, volatility: {}, prediction: {}",
@@ -455,13 +492,6 @@ public class TradingAnalysisService {
         return adjustedTrend + volatilityImpact;
     }
 
-    private List<PriceUpdate> filterRecentData(List<PriceUpdate> data, int hours) {
-        long cutoffTime = System.currentTimeMillis() - (hours * 60 * 60 * 1000L);
-        return data.stream()
-                .filter(update -> update.getTimestamp() >= cutoffTime)
-                .collect(Collectors.toList());
-    }
-
     private double calculateDynamicConfidence(double trend, double volatility, int dataSize, String timeframe) {
         double baseConfidence = getBaseConfidence(timeframe);
         double trendStrength = Math.min(1.0, Math.abs(trend) * 10);
@@ -581,50 +611,37 @@ public class TradingAnalysisService {
         return zones;
     }
 
-    private double calculatePriceTrend(List<PriceUpdate> data) {
-        if (data.size() < 2) return 0.0;
-        double totalWeight = 0;
-        double weightedSum = 0;
-        for (int i = 0; i < data.size(); i++) {
-            double weight = (i + 1) / (double) data.size();
-            totalWeight += weight;
-            weightedSum += data.get(i).getPrice() * weight;
-        }
-        double weightedAverage = weightedSum / totalWeight;
-        double firstPrice = data.get(0).getPrice();
+    // Indicators over the newest `bars` bars, read from the rolling sums in O(1)
+
+    private double calculatePriceTrend(IndicatorState state, int bars) {
+        int n = Math.min(bars, state.count());
+        if (n < 2) return 0.0;
+        double weightedAverage = state.weightedMean(bars);
+        double firstPrice = state.close(n - 1);
         return (weightedAverage - firstPrice) / firstPrice;
     }
 
-    private double calculateVolatility(List<PriceUpdate> data) {
-        if (data.size() < 2) return 0.0;
-        double sum = 0.0;
-        double mean = data.stream().mapToDouble(PriceUpdate::getPrice).average().orElse(0.0);
-        for (PriceUpdate update : data) {
-            sum += Math.pow(update.getPrice() - mean, 2);
-        }
-        return Math.sqrt(sum / data.size()) / mean;
+    private double calculateVolatility(IndicatorState state, int bars) {
+        if (Math.min(bars, state.count()) < 2) return 0.0;
+        return state.stdDev(bars) / state.mean(bars);
     }
 
-    private double calculateMomentum(List<PriceUpdate> data) {
-        if (data.size() < 3) return 0.0;
-        int lookback = Math.min(10, data.size() - 1);
-        double momentumSum = 0.0;
-        for (int i = data.size() - lookback; i < data.size() - 1; i++) {
-            double change = (data.get(i + 1).getPrice() - data.get(i).getPrice()) / data.get(i).getPrice();
-            momentumSum += change;
-        }
+    private double calculateMomentum(IndicatorState state, int bars) {
+        int n = Math.min(bars, state.count());
+        if (n < 3) return 0.0;
+        int lookback = Math.min(MOMENTUM_BARS, n - 1);
+        // The lookback - 1 changes inside the last lookback bars; short windows drop their oldest change
+        double momentumSum = lookback == MOMENTUM_BARS
+                ? state.returnSum(MOMENTUM_BARS)
+                : state.returnSum(bars) - (state.close(n - 2) - state.close(n - 1)) / state.close(n - 1);
         return momentumSum / lookback;
     }
 
-    private double calculateRSI(List<PriceUpdate> data) {
-        if (data.size() < 14) return 50.0;
-        double gains = 0.0;
-        double losses = 0.0;
-        for (int i = 1; i < Math.min(15, data.size()); i++) {
-            double change = data.get(i).getPrice() - data.get(i-1).getPrice();
-            if (change > 0) gains += change;
-            else losses -= change;
-        }
+    private double calculateRSI(IndicatorState state, int bars) {
+        if (Math.min(bars, state.count()) < 14) return 50.0;
+        int period = Math.min(RSI_BARS, bars);
+        double gains = state.gainSum(period);
+        double losses = state.lossSum(period);
         if (losses == 0) return 100.0;
         double rs = gains / losses;
         return 100.0 - (100.0 / (1 + rs));
@@ -1,36 +1,46 @@
 package com.pxbt.dev.aiTradingCharts.service;
 
-import com.pxbt.dev.aiTradingCharts.model.CryptoPrice;
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 @Service
 @Slf4j
 public class TrainingDataService {
 
+    public static final int FEATURE_COUNT = 15;
+
+    // Bump whenever the features change, so models trained on the old ones aren't used
+    public static final int FEATURE_SET_VERSION = 1;
+
+    public static final List<String> TIMEFRAMES = List.of("1h", "4h", "1d");
+
     @Autowired
     private AIModelService aiModelService;
 
     @Autowired
     private BinanceHistoricalService historicalDataService;
 
+    @Autowired
+    private SymbolRegistry symbolRegistry;
+
     /**
      * Comprehensive training data collection for all symbols and timeframes
      */
     public void collectTrainingData() {
         log.info("📚 Starting comprehensive AI training data collection...");
 
-        String[] symbols = {"BTCUSDT", "ETHUSDT", "SOLUSDT", "ADAUSDT", "DOTUSDT"};
-        String[] timeframes = {"1h", "4h", "1d"};
+        // Symbols whose daily history is loaded
+        List<String> symbols = symbolRegistry.getActiveSymbols();
 
         int totalTrained = 0;
 
         for (String symbol : symbols) {
-            for (String timeframe : timeframes) {
+            for (String timeframe : TIMEFRAMES) {
                 try {
                     boolean trained = collectSymbolTrainingData(symbol, timeframe);
                     if (trained) {
@@ -53,38 +63,21 @@ public class TrainingDataService {
      * @return true if training was successful, false if insufficient data
      */
     public boolean collectSymbolTrainingData(String symbol, String timeframe) {
-        List<CryptoPrice> fullData = historicalDataService.getFullHistoricalData(symbol);
+        BarSeries.View fullData = historicalDataService.getDailyBars(symbol, Integer.MAX_VALUE);
         if (fullData.size() < 100) {
             log.warn("❌ Insufficient data for {}: only {} points (need 100+)", symbol, fullData.size());
             return false;
         }
 
-        List<double[]> featuresList = new ArrayList<>();
-        List<Double> targetChanges = new ArrayList<>();
-
         log.info("🔄 Processing {} data points for {} - {}", fullData.size(), symbol, timeframe);
 
-        // Slide window through historical data with 50-point windows
-        int trainingSamples = 0;
-        for (int i = 50; i < fullData.size() - 10; i++) {
-            List<CryptoPrice> windowData = fullData.subList(i - 50, i);
-
-            // Extract features and calculate actual future change
-            double[] features = extractFeaturesForTraining(windowData, timeframe);
-            double actualChange = calculateActualChange(fullData, i, timeframe);
-
-            // Only include meaningful samples (filter out noise)
-            if (Math.abs(actualChange) < 0.5) { // Filter extreme outliers (>50% changes)
-                featuresList.add(features);
-                targetChanges.add(actualChange);
-                trainingSamples++;
-            }
-        }
+        TrainingSet trainingSet = buildTrainingSet(fullData, timeframe);
+        int trainingSamples = trainingSet.size();
 
         // Train the model with collected data
         if (trainingSamples >= 50) {
-            aiModelService.trainModel(timeframe, featuresList, targetChanges);
-            log.info("✅ Trained {} model with {} quality samples", timeframe, trainingSamples);
+            aiModelService.trainModel(symbol, timeframe, trainingSet.features(), trainingSet.targets());
+            log.info("✅ Trained {} {} model with {} quality samples", symbol, timeframe, trainingSamples);
             return true;
         } else {
             log.warn("⚠️ Insufficient quality samples for {} {}: {} (need 50+)", symbol, timeframe, trainingSamples);
@@ -93,44 +86,87 @@ public class TrainingDataService {
     }
 
     /**
-     * Enhanced feature extraction with 15 technical indicators
+     * Feature matrix (one row of {@link #FEATURE_COUNT} values per sample) and the matching future changes
      */
-    private double[] extractFeaturesForTraining(List<CryptoPrice> windowData, String timeframe) {
-        int featureSize = 15;
+    public record TrainingSet(double[][] features, double[] targets) {
+        public int size() {
+            return targets.length;
+        }
+    }
 
-        double[] features = new double[featureSize];
-        double[] prices = windowData.stream().mapToDouble(CryptoPrice::getPrice).toArray();
-        double[] volumes = windowData.stream().mapToDouble(CryptoPrice::getVolume).toArray();
+    /**
+     * Build the training set in a single pass over the bars.
+     *
+     * A 50-bar window slides through the history: when bar i is reached the indicator state holds
+     * bars [i - 50, i), the same window the live predictions use, and every indicator is read from
+     * its rolling sums. Cost is O(n) with one row allocated per sample, so years of 1m bars are fine.
+     */
+    public TrainingSet buildTrainingSet(BarSeries.View bars, String timeframe) {
+        IndicatorState state = new IndicatorState(IndicatorState.FEATURES);
+        int window = state.window();
+        int futureOffset = getFutureOffset(timeframe);
+
+        // Only positions with a known future price make samples
+        int lastSample = bars.size() - futureOffset;
+        int capacity = Math.max(0, lastSample - window);
+        double[][] features = new double[capacity][];
+        double[] targets = new double[capacity];
+        int samples = 0;
+
+        for (int i = 0; i < lastSample; i++) {
+            if (i >= window) {
+                double actualChange = calculateActualChange(bars, i, futureOffset);
+
+                // Only include meaningful samples (filter out noise)
+                if (Math.abs(actualChange) < 0.5) { // Filter extreme outliers (>50% changes)
+                    double[] row = new double[FEATURE_COUNT];
+                    extractFeaturesForTraining(state, row);
+                    features[samples] = row;
+                    targets[samples] = actualChange;
+                    samples++;
+                }
+            }
+            state.push(bars.timestamp(i), bars.close(i), bars.volume(i));
+        }
 
-        // Comprehensive feature set for AI training
-        features[0] = calculateSMA(prices, 5);           // 5-period Simple Moving Average
-        features[1] = calculateSMA(prices, 20);          // 20-period SMA
-        features[2] = calculateEMA(prices, 12);          // 12-period Exponential Moving Average
-        features[3] = calculateRSI(prices, 14);          // 14-period Relative Strength Index
-        features[4] = calculateMACD(prices);             // MACD (Trend direction)
-        features[5] = calculateVolatility(prices, 20);   // 20-period volatility
-        features[6] = calculateMomentum(prices, 10);     // 10-period price momentum
-        features[7] = calculatePriceRateOfChange(prices, 10); // Rate of Change
-        features[8] = calculateVolumeStrength(volumes);  // Volume strength indicator
-        features[9] = calculateZScore(prices);           // Statistical Z-score
-        features[10] = calculateTrendStrength(prices);   // Trend strength (SMA20 vs SMA50)
-        features[11] = calculateSupportResistance(prices); // Support/resistance position
-        features[12] = calculateBollingerPosition(prices); // Bollinger Bands position
-        features[13] = calculatePriceAcceleration(prices); // Price acceleration
-        features[14] = calculateVolumePriceTrend(volumes, prices); // Volume-Price relationship
+        if (samples < capacity) {
+            features = Arrays.copyOf(features, samples);
+            targets = Arrays.copyOf(targets, samples);
+        }
+        return new TrainingSet(features, targets);
+    }
 
-        return features;
+    /**
+     * Enhanced feature extraction with 15 technical indicators
+     */
+    private void extractFeaturesForTraining(IndicatorState state, double[] features) {
+        // Comprehensive feature set for AI training
+        features[0] = state.sma(5);                 // 5-period Simple Moving Average
+        features[1] = state.sma(20);                // 20-period SMA
+        features[2] = state.ema(12);                // 12-period Exponential Moving Average
+        features[3] = state.rsi(14);                // 14-period Relative Strength Index
+        features[4] = state.macd();                 // MACD (Trend direction)
+        features[5] = state.volatility(20);         // 20-period volatility
+        features[6] = state.momentum(10);           // 10-period price momentum
+        features[7] = state.rateOfChange(10);       // Rate of Change
+        features[8] = state.volumeStrength();       // Volume strength indicator
+        features[9] = state.zScore();               // Statistical Z-score
+        features[10] = state.trendStrength();       // Trend strength (SMA20 vs SMA50)
+        features[11] = state.supportResistance();   // Support/resistance position
+        features[12] = state.bollingerPosition();   // Bollinger Bands position
+        features[13] = state.priceAcceleration();   // Price acceleration
+        features[14] = state.volumePriceTrend();    // Volume-Price relationship
     }
 
     /**
      * Calculate actual price change for training targets
      */
-    private double calculateActualChange(List<CryptoPrice> data, int currentIndex, String timeframe) {
-        int futureIndex = currentIndex + getFutureOffset(timeframe);
+    private double calculateActualChange(BarSeries.View data, int currentIndex, int futureOffset) {
+        int futureIndex = currentIndex + futureOffset;
         if (futureIndex >= data.size()) return 0.0;
 
-        double currentPrice = data.get(currentIndex).getPrice();
-        double futurePrice = data.get(futureIndex).getPrice();
+        double currentPrice = data.close(currentIndex);
+        double futurePrice = data.close(futureIndex);
 
         return (futurePrice - currentPrice) / currentPrice;
     }
@@ -146,144 +182,4 @@ public class TrainingDataService {
             default -> 24;     // Default to 24 periods
         };
     }
-
-    // ===== TECHNICAL INDICATOR CALCULATIONS =====
-
-    private double calculateSMA(double[] prices, int period) {
-        if (prices.length < period) return prices[prices.length-1];
-        double sum = 0;
-        for (int i = prices.length - period; i < prices.length; i++) {
-            sum += prices[i];
-        }
-        return sum / period;
-    }
-
-    private double calculateEMA(double[] prices, int period) {
-        double multiplier = 2.0 / (period + 1);
-        double ema = prices[0];
-        for (int i = 1; i < prices.length; i++) {
-            ema = (prices[i] * multiplier) + (ema * (1 - multiplier));
-        }
-        return ema;
-    }
-
-    private double calculateRSI(double[] prices, int period) {
-        if (prices.length < period + 1) return 50.0;
-
-        double gains = 0.0;
-        double losses = 0.0;
-
-        for (int i = prices.length - period; i < prices.length - 1; i++) {
-            double change = prices[i + 1] - prices[i];
-            if (change > 0) {
-                gains += change;
-            } else {
-                losses -= change;
-            }
-        }
-
-        double avgGain = gains / period;
-        double avgLoss = losses / period;
-
-        if (avgLoss == 0) return 100.0;
-
-        double rs = avgGain / avgLoss;
-        return 100.0 - (100.0 / (1 + rs));
-    }
-
-    private double calculateMACD(double[] prices) {
-        double ema12 = calculateEMA(prices, 12);
-        double ema26 = calculateEMA(prices, 26);
-        return ema12 - ema26;
-    }
-
-    private double calculateVolatility(double[] prices, int period) {
-        if (prices.length < period) return 0.0;
-
-        double mean = calculateSMA(prices, period);
-        double sum = 0.0;
-        int start = Math.max(0, prices.length - period);
-        int count = prices.length - start;
-
-        for (int i = start; i < prices.length; i++) {
-            sum += Math.pow(prices[i] - mean, 2);
-        }
-
-        return Math.sqrt(sum / count);
-    }
-
-    private double calculateMomentum(double[] prices, int period) {
-        if (prices.length < period) return 0.0;
-        return prices[prices.length-1] - prices[prices.length-period];
-    }
-
-    private double calculatePriceRateOfChange(double[] prices, int period) {
-        if (prices.length < period) return 0.0;
-        return ((prices[prices.length-1] - prices[prices.length-period]) / prices[prices.length-period]) * 100;
-    }
-
-    private double calculateVolumeStrength(double[] volumes) {
-        if (volumes.length < 2) return 0.5;
-        double currentVolume = volumes[volumes.length-1];
-        double avgVolume = 0.0;
-        for (int i = 0; i < volumes.length - 1; i++) {
-            avgVolume += volumes[i];
-        }
-        avgVolume /= (volumes.length - 1);
-        return currentVolume / avgVolume;
-    }
-
-    private double calculateZScore(double[] prices) {
-        if (prices.length < 2) return 0.0;
-        double mean = calculateSMA(prices, prices.length);
-        double stdDev = calculateVolatility(prices, prices.length);
-        return stdDev == 0 ? 0.0 : (prices[prices.length-1] - mean) / stdDev;
-    }
-
-    private double calculateTrendStrength(double[] prices) {
-        if (prices.length < 20) return 0.0;
-        double sma20 = calculateSMA(prices, Math.min(20, prices.length));
-        double sma50 = calculateSMA(prices, Math.min(50, prices.length));
-        return (sma20 - sma50) / sma50;
-    }
-
-    private double calculateSupportResistance(double[] prices) {
-        if (prices.length < 10) return 0.0;
-        double current = prices[prices.length - 1];
-        double avg = calculateSMA(prices, prices.length);
-        return (current - avg) / avg;
-    }
-
-    private double calculateBollingerPosition(double[] prices) {
-        if (prices.length < 20) return 0.5;
-        double sma20 = calculateSMA(prices, 20);
-        double stdDev = calculateVolatility(prices, 20);
-        double upperBand = sma20 + (2 * stdDev);
-        double lowerBand = sma20 - (2 * stdDev);
-        double currentPrice = prices[prices.length - 1];
-
-        return (currentPrice - lowerBand) / (upperBand - lowerBand);
-    }
-
-    private double calculatePriceAcceleration(double[] prices) {
-        if (prices.length < 3) return 0;
-        double change1 = (prices[prices.length-1] - prices[prices.length-2]) / prices[prices.length-2];
-        double change2 = (prices[prices.length-2] - prices[prices.length-3]) / prices[prices.length-3];
-        return change1 - change2;
-    }
-
-    private double calculateVolumePriceTrend(double[] volumes, double[] prices) {
-        if (prices.length < 2) return 0;
-
-        double volumeSum = 0;
-        double priceChangeSum = 0;
-
-        for (int i = 1; i < prices.length; i++) {
-            double priceChange = (prices[i] - prices[i-1]) / prices[i-1];
-            volumeSum += volumes[i];
-            priceChangeSum += priceChange * volumes[i];
-        }
-
-        return volumeSum == 0 ? 0 : priceChangeSum / volumeSum;
-    }
-}
\ No newline at end of file
+}
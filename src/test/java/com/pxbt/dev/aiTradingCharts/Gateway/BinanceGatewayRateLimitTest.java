@@ -0,0 +1,153 @@
+package com.pxbt.dev.aiTradingCharts.Gateway;
+
+import com.pxbt.dev.aiTradingCharts.Gateway.RequestWeightLimiter.Priority;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BinanceGateway against a local stub of /api/v3/klines that reports used weight and can answer 429
+ */
+class BinanceGatewayRateLimitTest {
+
+    private static final byte[] KLINES = ("[[1700000000000,\"100.0\",\"110.0\",\"90.0\",\"105.0\",\"12.5\",1700000059999,\"0\",1,\"0\",\"0\",\"0\"],"
+            + "[1700000060000,\"105.0\",\"106.0\",\"104.0\",\"104.5\",\"3.0\",1700000119999,\"0\",1,\"0\",\"0\",\"0\"]]")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+    private ScheduledExecutorService scheduler;
+
+    // Symbols in the order the stub received them
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private volatile String usedWeightHeader;
+    private final AtomicBoolean rateLimitNext = new AtomicBoolean();
+
+    @BeforeEach
+    void startStub() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/v3/klines", exchange -> {
+            String query = exchange.getRequestURI().getQuery();
+            received.add(query.substring(query.indexOf("symbol=") + 7, query.indexOf('&')));
+            if (usedWeightHeader != null) {
+                exchange.getResponseHeaders().add(BinanceGateway.USED_WEIGHT_HEADER, usedWeightHeader);
+            }
+            byte[] body = KLINES;
+            int status = 200;
+            if (rateLimitNext.getAndSet(false)) {
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                body = "{\"code\":-1003,\"msg\":\"Too many requests\"}".getBytes(StandardCharsets.UTF_8);
+                status = 429;
+            }
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+        scheduler.shutdownNow();
+    }
+
+    private BinanceGateway gateway(int weightLimitPerMinute, double shedThreshold) {
+        BinanceGateway gateway = new BinanceGateway(WebClient.create(), scheduler);
+        ReflectionTestUtils.setField(gateway, "binanceKlinesEndpoint",
+                "http://localhost:" + server.getAddress().getPort() + "/api/v3/klines");
+        ReflectionTestUtils.setField(gateway, "klinesQueryParams", "?symbol={symbol}&interval={interval}&limit={limit}");
+        ReflectionTestUtils.setField(gateway, "klinesRangeQueryParams",
+                "?symbol={symbol}&interval={interval}&startTime={startTime}&endTime={endTime}&limit={limit}");
+        ReflectionTestUtils.setField(gateway, "weightLimitPerMinute", weightLimitPerMinute);
+        ReflectionTestUtils.setField(gateway, "shedThreshold", shedThreshold);
+        ReflectionTestUtils.setField(gateway, "maxBackgroundQueue", 100);
+        gateway.init();
+        return gateway;
+    }
+
+    @Test
+    void tracksUsedWeightReportedByBinance() {
+        BinanceGateway gateway = gateway(6000, 0.9);
+        usedWeightHeader = "1234";
+
+        byte[] body = gateway.getRawKlines("BTC", "1m", 10, Priority.INTERACTIVE).block();
+
+        assertEquals(2, BinanceKlineParser.parse(body, (t, o, h, l, c, v) -> { }));
+        Map<String, Object> stats = gateway.getRateLimitStats();
+        assertEquals(1234, stats.get("serverUsedWeight"));
+        // Refills at 0.1 weight per ms from the moment the response arrives, so allow for a few ms of drift
+        assertTrue((Long) stats.get("currentWeight") > 1200, "limiter takes the server's count over its own");
+        assertEquals(1L, stats.get("granted"));
+    }
+
+    @Test
+    void shedsBackgroundRequestsNearTheLimit() {
+        BinanceGateway gateway = gateway(1000, 0.9);
+        usedWeightHeader = "950";
+        gateway.getRawKlines("BTC", "1m", 10, Priority.INTERACTIVE).block();
+
+        assertThrows(RequestWeightLimiter.RequestShedException.class,
+                () -> gateway.getRawKlines("ETH", "1m", 0L, 1L, 1000, Priority.BACKGROUND).block());
+        assertNotNull(gateway.getRawKlines("SOL", "1m", 10, Priority.INTERACTIVE).block());
+
+        assertEquals(List.of("BTCUSDT", "SOLUSDT"), received, "shed request never reaches Binance");
+        assertEquals(1L, gateway.getRateLimitStats().get("shed"));
+    }
+
+    @Test
+    void interactiveRequestsOvertakeQueuedWork() {
+        // 300/minute refills one weight every 200 ms; shedding off so background queues too
+        BinanceGateway gateway = gateway(300, 2.0);
+        usedWeightHeader = "300";
+        gateway.getRawKlines("BTC", "1m", 10, Priority.INTERACTIVE).block();
+        usedWeightHeader = null;
+        received.clear();
+
+        Mono<byte[]> background = gateway.getRawKlines("ETH", "1m", 10, Priority.BACKGROUND).cache();
+        Mono<byte[]> system = gateway.getRawKlines("SOL", "1m", 10, Priority.SYSTEM).cache();
+        Mono<byte[]> interactive = gateway.getRawKlines("ADA", "1m", 10, Priority.INTERACTIVE).cache();
+        background.subscribe();
+        system.subscribe();
+        interactive.subscribe();
+        Mono.when(background, system, interactive).block();
+
+        assertEquals(List.of("ADAUSDT", "SOLUSDT", "ETHUSDT"), received);
+        assertTrue((Long) gateway.getRateLimitStats().get("maxWaitMs") > 0);
+    }
+
+    @Test
+    void rateLimitedResponseHoldsFurtherRequests() {
+        BinanceGateway gateway = gateway(6000, 0.9);
+        rateLimitNext.set(true);
+
+        // Taken before the 429, so however long that response took the hold is at least a second past it
+        long start = System.currentTimeMillis();
+        WebClientResponseException error = assertThrows(WebClientResponseException.class,
+                () -> gateway.getRawKlines("BTC", "1m", 10, Priority.INTERACTIVE).block());
+        assertEquals(429, error.getStatusCode().value());
+
+        assertNotNull(gateway.getRawKlines("BTC", "1m", 10, Priority.INTERACTIVE).block());
+        assertTrue(System.currentTimeMillis() - start >= 1_000, "waited out Retry-After");
+        assertTrue((Long) gateway.getRateLimitStats().get("maxWaitMs") > 0, "the limiter held the request");
+        assertEquals(1L, gateway.getRateLimitStats().get("rateLimitedResponses"));
+    }
+}
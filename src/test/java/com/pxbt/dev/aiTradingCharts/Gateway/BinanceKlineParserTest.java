@@ -0,0 +1,96 @@
+package com.pxbt.dev.aiTradingCharts.Gateway;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BinanceKlineParserTest {
+
+    // Two daily klines as GET /api/v3/klines returns them
+    private static final String RESPONSE = "[[1727913600000,\"62341.01000000\",\"64000.00000000\",\"61905.55000000\","
+            + "\"63512.40000000\",\"21853.40528000\",1727999999999,\"1376433962.15331760\",2890332,"
+            + "\"10731.81255000\",\"676055713.97022131\",\"0\"],"
+            + "[1728000000000,\"63512.41000000\",\"63990.00000000\",\"62750.10000000\",\"62806.32000000\","
+            + "\"15431.96802000\",1728086399999,\"976011843.26450418\",2051766,\"7286.22005000\","
+            + "\"460916325.11420340\",\"0\"]]";
+
+    private record Kline(long openTime, double open, double high, double low, double close, double volume) {
+    }
+
+    @Test
+    void readsTheLeadingFieldsOfEveryRow() {
+        List<Kline> klines = parse(RESPONSE);
+
+        assertEquals(List.of(
+                new Kline(1727913600000L, 62341.01, 64000.0, 61905.55, 63512.4, 21853.40528),
+                new Kline(1728000000000L, 63512.41, 63990.0, 62750.1, 62806.32, 15431.96802)), klines);
+    }
+
+    @Test
+    void acceptsWhitespaceUnquotedNumbersAndEscapedStrings() {
+        String body = " [\n  [ 1727913600000 , 1.5 , \"2\" , 0.5 , \"1.25\" , 100 , \"a \\\"quoted\\\" ], field\" ]\n]\n";
+        assertEquals(List.of(new Kline(1727913600000L, 1.5, 2, 0.5, 1.25, 100)), parse(body));
+        assertEquals(List.of(), parse("[]"));
+        assertEquals(List.of(), parse("  [ ]  "));
+    }
+
+    @Test
+    void rejectsBinanceErrorBodies() {
+        for (String body : new String[]{
+                "{\"code\":-1121,\"msg\":\"Invalid symbol.\"}",
+                "{\"code\":-1003,\"msg\":\"Too much request weight used; current limit is 6000 request weight per 1 MINUTE.\"}",
+                "<html><body><h1>502 Bad Gateway</h1></body></html>",
+                "",
+                "   "}) {
+            IllegalArgumentException error = assertThrows(IllegalArgumentException.class, () -> parse(body), body);
+            assertTrue(error.getMessage().startsWith("Not a kline array"), error.getMessage());
+        }
+    }
+
+    @Test
+    void rejectsEveryTruncationOfAResponse() {
+        byte[] bytes = RESPONSE.getBytes(StandardCharsets.US_ASCII);
+        // Cut anywhere short of the final bracket - mid-number, mid-string, between rows
+        for (int length = 1; length < bytes.length; length++) {
+            List<Kline> received = new ArrayList<>();
+            byte[] truncated = Arrays.copyOf(bytes, length);
+            assertThrows(IllegalArgumentException.class, () -> BinanceKlineParser.parse(truncated,
+                    (openTime, open, high, low, close, volume) ->
+                            received.add(new Kline(openTime, open, high, low, close, volume))),
+                    "accepted " + new String(truncated, StandardCharsets.US_ASCII));
+            // Only complete rows ever reach the sink
+            assertEquals(parse(RESPONSE).subList(0, received.size()), received);
+        }
+    }
+
+    @Test
+    void rejectsMalformedRows() {
+        for (String body : new String[]{
+                // Too few fields
+                "[[1727913600000,\"1\",\"2\",\"0.5\",\"1.5\"]]",
+                // Not a row
+                "[1727913600000]",
+                "[{\"openTime\":1727913600000}]",
+                // Values that aren't numbers
+                "[[1727913600000,\"abc\",\"2\",\"0.5\",\"1.5\",\"10\"]]",
+                "[[1727913600000,null,\"2\",\"0.5\",\"1.5\",\"10\"]]",
+                "[[\"\",\"1\",\"2\",\"0.5\",\"1.5\",\"10\"]]",
+                "[[1.7e12,\"1\",\"2\",\"0.5\",\"1.5\",\"10\"]]"}) {
+            assertThrows(IllegalArgumentException.class, () -> parse(body), body);
+        }
+    }
+
+    private static List<Kline> parse(String body) {
+        List<Kline> klines = new ArrayList<>();
+        int count = BinanceKlineParser.parse(body.getBytes(StandardCharsets.UTF_8),
+                (openTime, open, high, low, close, volume) ->
+                        klines.add(new Kline(openTime, open, high, low, close, volume)));
+        assertEquals(klines.size(), count);
+        return klines;
+    }
+}
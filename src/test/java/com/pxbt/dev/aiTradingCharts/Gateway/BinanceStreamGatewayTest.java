@@ -0,0 +1,119 @@
+package com.pxbt.dev.aiTradingCharts.Gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.java_websocket.client.WebSocketClient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Routing of ticker frames through the stream table, and the control frames sent as streams come and go
+ */
+class BinanceStreamGatewayTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    // Different names with equal String hash codes, so they share a probe chain
+    private static final String AA = "xAa@ticker";
+    private static final String BB = "xBB@ticker";
+
+    private final BinanceTickerParser parser = new BinanceTickerParser();
+    // "stream price" per delivered tick
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private BinanceStreamGateway gateway;
+
+    @BeforeEach
+    void setUp() {
+        gateway = new BinanceStreamGateway(mock(ScheduledExecutorService.class));
+    }
+
+    @Test
+    void everyStreamReachesItsOwnListener() {
+        assertEquals(AA.hashCode(), BB.hashCode());
+        List<String> streams = new ArrayList<>(List.of("btcusdt@ticker", AA, BB));
+        for (int i = 0; i < 40; i++) {
+            streams.add("coin" + i + "usdt@ticker");
+        }
+        streams.forEach(this::subscribe);
+
+        for (int i = 0; i < streams.size(); i++) {
+            dispatch(streams.get(i), i + 1);
+        }
+        dispatch("ethusdt@ticker", 99);
+
+        assertEquals(streams.size(), delivered.size());
+        for (int i = 0; i < streams.size(); i++) {
+            assertEquals(streams.get(i) + " " + (i + 1.0), delivered.get(i));
+        }
+    }
+
+    @Test
+    void removingAStreamKeepsTheRestOfItsProbeChain() {
+        subscribe(AA);
+        subscribe(BB);
+        subscribe("btcusdt@ticker");
+
+        gateway.unsubscribe(AA);
+        dispatch(AA, 1);
+        dispatch(BB, 2);
+        dispatch("btcusdt@ticker", 3);
+        assertEquals(List.of(BB + " 2.0", "btcusdt@ticker 3.0"), delivered);
+
+        // And back again
+        subscribe(AA);
+        gateway.unsubscribe(BB);
+        delivered.clear();
+        dispatch(AA, 4);
+        dispatch(BB, 5);
+        assertEquals(List.of(AA + " 4.0"), delivered);
+        assertEquals(Set.of(AA, "btcusdt@ticker"), gateway.getSubscribedStreams());
+    }
+
+    @Test
+    void liveSocketIsToldAboutNewAndRemovedStreams() throws Exception {
+        WebSocketClient client = mock(WebSocketClient.class);
+        when(client.isOpen()).thenReturn(true);
+        ReflectionTestUtils.setField(gateway, "client", client);
+
+        subscribe("btcusdt@ticker");
+        // A new listener for the same stream needs no frame
+        subscribe("btcusdt@ticker");
+        gateway.unsubscribe("btcusdt@ticker");
+        gateway.unsubscribe("ethusdt@ticker");
+
+        ArgumentCaptor<String> frames = ArgumentCaptor.forClass(String.class);
+        verify(client, times(2)).send(frames.capture());
+        JsonNode subscribe = MAPPER.readTree(frames.getAllValues().get(0));
+        JsonNode unsubscribe = MAPPER.readTree(frames.getAllValues().get(1));
+        assertEquals("SUBSCRIBE", subscribe.get("method").asText());
+        assertEquals("btcusdt@ticker", subscribe.get("params").get(0).asText());
+        assertEquals("UNSUBSCRIBE", unsubscribe.get("method").asText());
+        assertEquals("btcusdt@ticker", unsubscribe.get("params").get(0).asText());
+        assertNotEquals(subscribe.get("id").asLong(), unsubscribe.get("id").asLong());
+
+        // Nothing is sent while disconnected; onOpen subscribes whatever is registered by then
+        when(client.isOpen()).thenReturn(false);
+        subscribe("solusdt@ticker");
+        verifyNoMoreInteractions(ignoreStubs(client));
+    }
+
+    private void subscribe(String stream) {
+        gateway.subscribe(stream, (price, volume, eventTime) -> delivered.add(stream + " " + price));
+    }
+
+    private void dispatch(String stream, double price) {
+        String frame = "{\"stream\":\"" + stream + "\",\"data\":{\"e\":\"24hrTicker\",\"E\":1728000000123,"
+                + "\"c\":\"" + price + "\",\"v\":\"10.5\"}}";
+        ReflectionTestUtils.invokeMethod(gateway, "dispatch", frame, parser);
+    }
+}
@@ -0,0 +1,173 @@
+package com.pxbt.dev.aiTradingCharts.Gateway;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionSupervisorTest {
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2);
+    private ConnectionSupervisor supervisor;
+
+    @AfterEach
+    void tearDown() {
+        if (supervisor != null) supervisor.stop();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void aConnectThatThrowsSchedulesTheNextAttempt() throws Exception {
+        FakeConnection connection = new FakeConnection(3) {
+            @Override
+            void fail() {
+                throw new IllegalStateException("connection refused");
+            }
+        };
+        supervisor = supervisor(connection);
+
+        supervisor.start(60_000);
+
+        assertTrue(waitFor(supervisor::isConnected), "never reconnected: " + supervisor.getStats());
+        assertEquals(4, connection.attempts.get());
+        assertEquals(3L, supervisor.getStats().get("reconnectAttempts"));
+    }
+
+    @Test
+    void aFailureReportedFromInsideTheAttemptSchedulesTheNextOne() throws Exception {
+        // As BinanceStreamGateway.openConnection does: it catches the error and calls onDisconnected itself,
+        // while the scheduled attempt that called it is still running
+        FakeConnection connection = new FakeConnection(3) {
+            @Override
+            void fail() {
+                supervisor.onDisconnected();
+            }
+        };
+        supervisor = supervisor(connection);
+
+        supervisor.start(60_000);
+
+        assertTrue(waitFor(supervisor::isConnected), "never reconnected: " + supervisor.getStats());
+        assertEquals(4, connection.attempts.get());
+    }
+
+    @Test
+    void aDroppedConnectionIsReopenedAndTheGapReported() throws Exception {
+        FakeConnection connection = new FakeConnection(0);
+        supervisor = supervisor(connection);
+        AtomicInteger gaps = new AtomicInteger();
+        supervisor.setGapListener((from, to) -> {
+            assertTrue(from <= to);
+            gaps.incrementAndGet();
+        });
+
+        supervisor.start(60_000);
+        assertTrue(supervisor.isConnected());
+        supervisor.onDisconnected();
+
+        assertTrue(waitFor(() -> supervisor.isConnected() && gaps.get() == 1), "gap not filled: " + supervisor.getStats());
+        assertEquals(2, connection.attempts.get());
+        assertEquals(1L, supervisor.getStats().get("disconnects"));
+        assertEquals(1L, supervisor.getStats().get("gapsFilled"));
+    }
+
+    @Test
+    void startDoesNotHoldTheSupervisorLockWhileConnecting() throws Exception {
+        // The gateway holds its own lock in connect() and calls back into the supervisor from other threads
+        CountDownLatch calledBack = new CountDownLatch(1);
+        FakeConnection connection = new FakeConnection(0) {
+            @Override
+            public void connect() {
+                if (attempts.get() == 0) {
+                    new Thread(() -> {
+                        supervisor.onDisconnected();
+                        calledBack.countDown();
+                    }).start();
+                    try {
+                        calledBack.await(2, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                super.connect();
+            }
+        };
+        supervisor = supervisor(connection);
+
+        supervisor.start(60_000);
+
+        assertEquals(0, calledBack.getCount(), "callback blocked on the supervisor lock");
+    }
+
+    @Test
+    void noAttemptsAfterStop() throws Exception {
+        FakeConnection connection = new FakeConnection(Integer.MAX_VALUE) {
+            @Override
+            void fail() {
+                throw new IllegalStateException("connection refused");
+            }
+        };
+        supervisor = supervisor(connection);
+        supervisor.start(60_000);
+        assertTrue(waitFor(() -> connection.attempts.get() >= 2));
+
+        supervisor.stop();
+        Thread.sleep(50);
+        int attempts = connection.attempts.get();
+        Thread.sleep(100);
+        assertEquals(attempts, connection.attempts.get());
+    }
+
+    private ConnectionSupervisor supervisor(ConnectionSupervisor.Connection connection) {
+        return new ConnectionSupervisor("test", scheduler, connection, 2, 10, 60_000, 60_000);
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) return false;
+            Thread.sleep(2);
+        }
+        return true;
+    }
+
+    /**
+     * Fails its first {@code failures} attempts and then connects
+     */
+    private class FakeConnection implements ConnectionSupervisor.Connection {
+        final AtomicInteger attempts = new AtomicInteger();
+        private final int failures;
+
+        FakeConnection(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        public void connect() {
+            if (attempts.incrementAndGet() <= failures) {
+                fail();
+                return;
+            }
+            supervisor.onConnected();
+        }
+
+        void fail() {
+        }
+
+        @Override
+        public void ping() {
+        }
+
+        @Override
+        public void forceClose(String reason) {
+            supervisor.onDisconnected();
+        }
+    }
+}
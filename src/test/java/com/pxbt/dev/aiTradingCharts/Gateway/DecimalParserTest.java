@@ -0,0 +1,113 @@
+package com.pxbt.dev.aiTradingCharts.Gateway;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DecimalParser must return exactly what {@link Double#parseDouble} does, fast path or not
+ */
+class DecimalParserTest {
+
+    // Combined-stream 24hr ticker frames as Binance sends them - every decimal padded to 8 places
+    static final String BTC_FRAME = "{\"stream\":\"btcusdt@ticker\",\"data\":{\"e\":\"24hrTicker\",\"E\":1728000000123,"
+            + "\"s\":\"BTCUSDT\",\"p\":\"-412.55000000\",\"P\":\"-0.608\",\"w\":\"67655.31754620\","
+            + "\"x\":\"67844.73000000\",\"c\":\"67432.18000000\",\"Q\":\"0.00187000\",\"b\":\"67432.17000000\","
+            + "\"B\":\"2.45690000\",\"a\":\"67432.18000000\",\"A\":\"5.03388000\",\"o\":\"67844.73000000\","
+            + "\"h\":\"68388.00000000\",\"l\":\"66964.00000000\",\"v\":\"24118.70312000\",\"q\":\"1631748907.04418450\","
+            + "\"O\":1727913600123,\"C\":1728000000123,\"F\":3871440223,\"L\":3872918811,\"n\":1478589}}";
+    static final String WIF_FRAME = "{\"stream\":\"wifusdt@ticker\",\"data\":{\"e\":\"24hrTicker\",\"E\":1728000000456,"
+            + "\"s\":\"WIFUSDT\",\"p\":\"0.05230000\",\"P\":\"2.712\",\"w\":\"1.95512345\",\"x\":\"1.92850000\","
+            + "\"c\":\"1.98080000\",\"Q\":\"1520.40000000\",\"b\":\"1.98070000\",\"B\":\"20483.50000000\","
+            + "\"a\":\"1.98080000\",\"A\":\"5123.90000000\",\"o\":\"1.92850000\",\"h\":\"2.01450000\","
+            + "\"l\":\"1.90110000\",\"v\":\"128456789.12000000\",\"q\":\"251234567.89012345\","
+            + "\"O\":1727913600456,\"C\":1728000000456,\"F\":123456789,\"L\":124456789,\"n\":1000001}}";
+
+    private static final Pattern DECIMAL_FIELD = Pattern.compile("\"[A-Za-z]\":\"(-?[0-9.]+)\"");
+
+    @Test
+    void matchesTheJdkOnEveryDecimalOfRealTickerFrames() {
+        int checked = 0;
+        for (String frame : new String[]{BTC_FRAME, WIF_FRAME}) {
+            Matcher matcher = DECIMAL_FIELD.matcher(frame);
+            while (matcher.find()) {
+                assertSameDouble(frame, matcher.start(1), matcher.end(1));
+                checked++;
+            }
+        }
+        assertEquals(30, checked);
+    }
+
+    @Test
+    void matchesTheJdkOnEdgeCases() {
+        String[] values = {
+                // No fraction part, or an empty one
+                "0", "7", "42000", "42000.", "-42000", "+15",
+                // No integer part
+                ".5", "-.25",
+                // Trailing and leading zeros
+                "0.00000000", "-0.0", "1.0", "0.10000000", "0.00012300", "100.00100000", "42000.01000000",
+                // Exponents
+                "1e5", "1.5e3", "1E-7", "-2.5E+10", "6.02214076e23",
+                // More than 15 significant digits
+                "1234567890123456", "12345678901234567890", "0.1234567890123456789", "1234567890.123456789",
+                "128456789.123456789", "9007199254740993", "3.141592653589793238",
+                // Exactly 15, including zeros between significant digits
+                "123456789012345", "1.00000000000001", "100000000000000.5",
+                // Long fractions that are still exact
+                "0.000000000000000000001", "0.30000000000000004"
+        };
+        for (String value : values) {
+            assertSameDouble(value, 0, value.length());
+        }
+    }
+
+    @Test
+    void matchesTheJdkOnRandomBinanceStyleValues() {
+        Random random = new Random(3);
+        for (int n = 0; n < 100_000; n++) {
+            double magnitude = Math.pow(10, random.nextInt(14) - 5);
+            String value = String.format(Locale.ROOT, "%." + random.nextInt(9) + "f", random.nextDouble() * magnitude);
+            assertSameDouble(value, 0, value.length());
+        }
+    }
+
+    @Test
+    void rejectsWhatTheJdkRejects() {
+        for (String value : new String[]{"", "-", ".", "1.2.3", "12a", "--1"}) {
+            assertThrows(NumberFormatException.class, () -> DecimalParser.parse(value, 0, value.length()), value);
+        }
+    }
+
+    @Test
+    void paddedEightDecimalQuantitiesTakeTheFastPath() {
+        String frame = WIF_FRAME;
+        int start = frame.indexOf("128456789.12000000");
+        int end = start + "128456789.12000000".length();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        double sum = 0;
+        for (int i = 0; i < 10_000; i++) sum += DecimalParser.parse(frame, start, end); // warm up
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 10_000; i++) sum += DecimalParser.parse(frame, start, end);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertEquals(20_000 * 128456789.12, sum, 1e3);
+        // The slow path allocates a substring and its array on every call - over 500 KB here
+        assertTrue(allocated < 10_000, allocated + " bytes allocated");
+    }
+
+    private static void assertSameDouble(String text, int start, int end) {
+        String value = text.substring(start, end);
+        double expected = Double.parseDouble(value);
+        double actual = DecimalParser.parse(text, start, end);
+        assertEquals(Double.doubleToRawLongBits(expected), Double.doubleToRawLongBits(actual),
+                value + ": expected " + expected + " but was " + actual);
+    }
+}
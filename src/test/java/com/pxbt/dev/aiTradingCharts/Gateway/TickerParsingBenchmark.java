@@ -0,0 +1,66 @@
+package com.pxbt.dev.aiTradingCharts.Gateway;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One ticker frame: readTree and field reads (as the stream gateway did) vs. BinanceTickerParser. The WIF
+ * frame's volume has more than 15 digits once its 8-decimal padding is counted. Run {@link #main} after
+ * {@code mvn test-compile}; it adds the GC profiler, so {@code gc.alloc.rate.norm} is the bytes per tick.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TickerParsingBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Param({"BTC", "WIF"})
+    public String symbol;
+
+    private String frame;
+    private BinanceTickerParser parser;
+
+    @Setup
+    public void setUp() {
+        frame = symbol.equals("BTC") ? DecimalParserTest.BTC_FRAME : DecimalParserTest.WIF_FRAME;
+        parser = new BinanceTickerParser();
+    }
+
+    @Benchmark
+    public void readTree(Blackhole blackhole) throws Exception {
+        JsonNode root = MAPPER.readTree(frame);
+        JsonNode data = root.get("data");
+        blackhole.consume(root.get("stream").asText());
+        blackhole.consume(Double.parseDouble(data.get("c").asText()));
+        blackhole.consume(Double.parseDouble(data.get("v").asText()));
+        blackhole.consume(data.get("E").asLong());
+    }
+
+    @Benchmark
+    public void tickerParser(Blackhole blackhole) {
+        blackhole.consume(parser.parse(frame));
+        blackhole.consume(parser.getStreamStart());
+        blackhole.consume(parser.getLastPrice());
+        blackhole.consume(parser.getVolume());
+        blackhole.consume(parser.getEventTime());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TickerParsingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,189 @@
+package com.pxbt.dev.aiTradingCharts.handler;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pxbt.dev.aiTradingCharts.dto.PriceTickMessage;
+import com.pxbt.dev.aiTradingCharts.service.SymbolRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+/**
+ * Broadcast routing by subscription, and broadcasts to sessions that consume each binary frame's buffer while
+ * sending, the way the container does
+ */
+class CryptoWebSocketHandlerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private CryptoWebSocketHandler handler;
+    private final Map<String, WebSocketSession> sessions = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        handler = new CryptoWebSocketHandler();
+        ReflectionTestUtils.setField(handler, "queueCapacity", 16);
+        ReflectionTestUtils.setField(handler, "overflowPolicy", SessionSender.OverflowPolicy.CONFLATE);
+        ReflectionTestUtils.setField(handler, "symbolRegistry", mock(SymbolRegistry.class));
+    }
+
+    @Test
+    void everyBinarySessionReceivesTheFullFrame() throws Exception {
+        List<byte[]> first = new CopyOnWriteArrayList<>();
+        List<byte[]> second = new CopyOnWriteArrayList<>();
+        WebSocketSession a = binarySession("a", first);
+        WebSocketSession b = binarySession("b", second);
+        for (WebSocketSession session : List.of(a, b)) {
+            handler.afterConnectionEstablished(session);
+            handler.handleMessage(session, new TextMessage("subscribe:BTC"));
+        }
+
+        PriceTickMessage tick = PriceTickMessage.of("BTC", 67_432.18, 24_118.7, 1_728_000_000_000L);
+        handler.broadcast("BTC", BroadcastMessage.of(tick), true);
+
+        verify(a, timeout(2_000)).sendMessage(any(BinaryMessage.class));
+        verify(b, timeout(2_000)).sendMessage(any(BinaryMessage.class));
+        byte[] expected = MessageEncoding.CBOR.writerFor(PriceTickMessage.class).writeValueAsBytes(tick);
+        assertEquals(1, first.size());
+        assertEquals(1, second.size());
+        assertArrayEquals(expected, first.get(0));
+        assertArrayEquals(expected, second.get(0));
+    }
+
+    @Test
+    void encodedBytesCountsEachEncodingOnce() throws Exception {
+        PriceTickMessage tick = PriceTickMessage.of("ETH", 2_450.5, 310_000.0, 1_728_000_000_000L);
+        BroadcastMessage message = BroadcastMessage.of(tick);
+
+        // Sending drains a frame's buffer; the byte count must not depend on it
+        ByteBuffer sent = ((BinaryMessage) message.encode(MessageEncoding.CBOR)).getPayload();
+        sent.position(sent.limit());
+        message.encode(MessageEncoding.CBOR);
+        message.encode(MessageEncoding.JSON);
+
+        int cbor = MessageEncoding.CBOR.writerFor(PriceTickMessage.class).writeValueAsBytes(tick).length;
+        int json = MessageEncoding.JSON.writerFor(PriceTickMessage.class).writeValueAsBytes(tick).length;
+        assertEquals(cbor + json, message.encodedBytes());
+        assertSame(message.encode(MessageEncoding.JSON), message.encode(MessageEncoding.JSON));
+        assertNotSame(message.encode(MessageEncoding.CBOR), message.encode(MessageEncoding.CBOR));
+    }
+
+    @Test
+    void broadcastsOnlyReachTheSymbolsSubscribers() throws Exception {
+        List<String> btc = textSession("btc", "subscribe:BTC");
+        List<String> all = textSession("all", "subscribe:*");
+        // Subscribed both ways, but still gets each message once
+        List<String> both = textSession("both", "subscribe:btc,*");
+        List<String> none = textSession("none", null);
+        assertTrue(handler.hasSubscribers("SOL"));
+
+        handler.broadcast("SOL", BroadcastMessage.of(PriceTickMessage.of("SOL", 150.0, 1.0, 1L)), true);
+        handler.broadcast("BTC", BroadcastMessage.of(PriceTickMessage.of("BTC", 67_000.0, 1.0, 2L)), true);
+
+        // A session's messages are sent in order, so once BTC has arrived a misrouted SOL would have too
+        await(() -> ticks(btc).size() == 1 && ticks(all).size() == 2 && ticks(both).size() == 2);
+        assertEquals(List.of("BTC"), ticks(btc));
+        assertEquals(List.of("SOL", "BTC"), ticks(all));
+        assertEquals(List.of("SOL", "BTC"), ticks(both));
+        assertEquals(List.of(), ticks(none));
+    }
+
+    @Test
+    void unsubscribeAndDisconnectLeaveNoSubscribersBehind() throws Exception {
+        textSession("a", "subscribe:BTC,SOL");
+        textSession("b", "subscribe:BTC");
+        assertEquals(Map.of("BTC", 2, "SOL", 1), handler.getStats().get("subscribers"));
+
+        handler.handleMessage(sessions.get("a"), new TextMessage("unsubscribe:sol"));
+        assertEquals(Map.of("BTC", 2), handler.getStats().get("subscribers"));
+        assertFalse(handler.hasSubscribers("SOL"));
+
+        handler.afterConnectionClosed(sessions.get("a"), CloseStatus.NORMAL);
+        assertEquals(Map.of("BTC", 1), handler.getStats().get("subscribers"));
+        handler.afterConnectionClosed(sessions.get("b"), CloseStatus.GOING_AWAY);
+        assertEquals(Map.of(), handler.getStats().get("subscribers"));
+        assertFalse(handler.hasSubscribers("BTC"));
+        assertEquals(0, handler.getStats().get("sessions"));
+
+        // A broadcast with nobody left sends nothing
+        handler.broadcast("BTC", BroadcastMessage.of(PriceTickMessage.of("BTC", 67_000.0, 1.0, 3L)), true);
+        verify(sessions.get("b"), never()).sendMessage(argThat(message -> message.getPayload().toString()
+                .contains(PriceTickMessage.TYPE)));
+    }
+
+    /**
+     * A JSON session, connected and optionally subscribed; returns the payloads it is sent
+     */
+    private List<String> textSession(String id, String subscription) throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            received.add(((WebSocketMessage<?>) invocation.getArgument(0)).getPayload().toString());
+            return null;
+        }).when(session).sendMessage(any());
+        sessions.put(id, session);
+        handler.afterConnectionEstablished(session);
+        if (subscription != null) handler.handleMessage(session, new TextMessage(subscription));
+        return received;
+    }
+
+    /**
+     * Symbols of the price ticks among the payloads, in the order they were sent
+     */
+    private static List<String> ticks(List<String> payloads) throws Exception {
+        List<String> symbols = new ArrayList<>();
+        for (String payload : payloads) {
+            if (!payload.startsWith("{")) continue;
+            JsonNode message = MAPPER.readTree(payload);
+            if (PriceTickMessage.TYPE.equals(message.path("type").asText())) {
+                symbols.add(message.get("symbol").asText());
+            }
+        }
+        return symbols;
+    }
+
+    private static void await(Callable<Boolean> condition) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.call()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            Thread.sleep(5);
+        }
+    }
+
+    private static WebSocketSession binarySession(String id, List<byte[]> received) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.getAcceptedProtocol()).thenReturn("cbor");
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            if (invocation.getArgument(0) instanceof BinaryMessage frame) {
+                ByteBuffer buffer = frame.getPayload();
+                byte[] bytes = new byte[buffer.remaining()];
+                buffer.get(bytes);
+                received.add(bytes);
+            }
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+}
@@ -0,0 +1,109 @@
+package com.pxbt.dev.aiTradingCharts.handler;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.pxbt.dev.aiTradingCharts.dto.AnalysisMessage;
+import com.pxbt.dev.aiTradingCharts.dto.PriceTickMessage;
+import com.pxbt.dev.aiTradingCharts.model.AIAnalysisResult;
+import com.pxbt.dev.aiTradingCharts.model.ChartPattern;
+import com.pxbt.dev.aiTradingCharts.model.FibonacciTimeZone;
+import com.pxbt.dev.aiTradingCharts.model.PricePrediction;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode time of a full analysis message (with patterns and Fibonacci zones) and of a price tick, per
+ * {@link MessageEncoding}. Run {@link #main} after {@code mvn test-compile}; it prints the payload size of
+ * each before benchmarking.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageEncodingBenchmark {
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    private MessageEncoding encoding;
+
+    @Param({"analysis", "tick"})
+    private String message;
+
+    private Object payload;
+    private ObjectWriter writer;
+
+    @Setup
+    public void prepare() {
+        payload = "tick".equals(message) ? tick() : analysis();
+        writer = encoding.writerFor(payload.getClass());
+    }
+
+    @Benchmark
+    public byte[] encode() throws Exception {
+        return writer.writeValueAsBytes(payload);
+    }
+
+    static PriceTickMessage tick() {
+        double price = 67_432.18;
+        Map<String, PriceTickMessage.Prediction> predictions = new LinkedHashMap<>();
+        String[] timeframes = {"1h", "4h", "1d", "1w"};
+        for (int i = 0; i < timeframes.length; i++) {
+            double predicted = price * (1 + 0.004 * (i + 1));
+            predictions.put(timeframes[i], new PriceTickMessage.Prediction(predicted,
+                    Map.of("conservative", predicted * 0.99, "expected", predicted, "optimistic", predicted * 1.01)));
+        }
+        return PriceTickMessage.of("BTC", price, 24_118.7, 1_728_000_000_000L, predictions);
+    }
+
+    static AnalysisMessage analysis() {
+        long now = 1_728_000_000_000L;
+        double price = 67_432.18;
+
+        Map<String, PricePrediction> predictions = new LinkedHashMap<>();
+        String[] timeframes = {"1h", "4h", "1d", "1w"};
+        for (int i = 0; i < timeframes.length; i++) {
+            double predicted = price * (1 + 0.004 * (i + 1));
+            predictions.put(timeframes[i], new PricePrediction("BTC", predicted, 0.55 + 0.05 * i, "BULLISH",
+                    Map.of("conservative", predicted * 0.99, "target", predicted, "optimistic", predicted * 1.01),
+                    Map.of("timeframe", timeframes[i], "type", "SHORT_TERM", "ai_model", "RandomForest")));
+        }
+
+        List<ChartPattern> patterns = new ArrayList<>();
+        String[] types = {"UPTREND", "DOUBLE_BOTTOM", "BULLISH_ENGULFING", "SUPPORT", "RESISTANCE"};
+        for (int i = 0; i < types.length; i++) {
+            patterns.add(new ChartPattern(types[i], price * (0.95 + 0.02 * i), 0.6 + 0.05 * i,
+                    "Detected " + types[i].toLowerCase() + " on the daily chart", now - i * 86_400_000L));
+        }
+
+        List<FibonacciTimeZone> zones = new ArrayList<>();
+        int[] fibonacci = {1, 2, 3, 5, 8, 13, 21, 34, 55, 89};
+        for (int i = 0; i < 30; i++) {
+            long start = now - (30 - i) * 3 * 86_400_000L;
+            zones.add(new FibonacciTimeZone("BTC", "FIB_" + fibonacci[i % fibonacci.length], start,
+                    start + fibonacci[i % fibonacci.length] * 86_400_000L, price * (0.9 + 0.003 * i),
+                    price * (0.92 + 0.003 * i), 0.4 + 0.01 * i,
+                    "Fibonacci time zone " + fibonacci[i % fibonacci.length] + " from swing low",
+                    i % 2 == 0 ? "BULLISH" : "BEARISH"));
+        }
+
+        AIAnalysisResult result = new AIAnalysisResult("BTC", price, predictions, patterns, zones, now);
+        return AnalysisMessage.full("BTC", 42, now, AnalysisMessage.content(result));
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (Object payload : List.of(analysis(), tick())) {
+            for (MessageEncoding encoding : MessageEncoding.values()) {
+                int bytes = encoding.writerFor(payload.getClass()).writeValueAsBytes(payload).length;
+                System.out.printf("%-16s %-5s %,7d bytes%n", payload.getClass().getSimpleName(), encoding, bytes);
+            }
+        }
+        new Runner(new OptionsBuilder().include(MessageEncodingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
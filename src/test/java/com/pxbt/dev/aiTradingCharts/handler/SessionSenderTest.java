@@ -0,0 +1,212 @@
+package com.pxbt.dev.aiTradingCharts.handler;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Overflow behaviour per policy. The writer only runs when the test drains it, so queues fill up
+ * exactly as they would behind a stalled client.
+ */
+class SessionSenderTest {
+
+    private final ArrayDeque<Runnable> writer = new ArrayDeque<>();
+    private final List<String> received = new CopyOnWriteArrayList<>();
+    private WebSocketSession session;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s1");
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            received.add(((TextMessage) invocation.getArgument(0)).getPayload());
+            return null;
+        }).when(session).sendMessage(any());
+    }
+
+    @Test
+    void dropOldestKeepsTheNewestMessages() {
+        SessionSender sender = sender(3, SessionSender.OverflowPolicy.DROP_OLDEST);
+        for (int i = 1; i <= 5; i++) {
+            // Keys are ignored - nothing is conflated
+            assertTrue(sender.offer("BTC", text("tick " + i)));
+        }
+
+        assertEquals(3, sender.getStats().get("queued"));
+        drain();
+        assertEquals(List.of("tick 3", "tick 4", "tick 5"), received);
+        assertEquals(2L, sender.getDropped());
+        assertEquals(0L, sender.getConflated());
+        assertEquals(3L, sender.getStats().get("sent"));
+    }
+
+    @Test
+    void conflateReplacesQueuedTicksInPlace() {
+        SessionSender sender = sender(3, SessionSender.OverflowPolicy.CONFLATE);
+        assertTrue(sender.offer("BTC", text("BTC 1")));
+        assertTrue(sender.offer("ETH", text("ETH 1")));
+        assertTrue(sender.offer(null, text("analysis A")));
+        assertTrue(sender.offer("BTC", text("BTC 2")));
+        assertTrue(sender.offer("ETH", text("ETH 2")));
+        assertTrue(sender.offer(null, text("analysis B")));
+        assertTrue(sender.offer(null, text("analysis C")));
+
+        // Ticks were replaced where they stood; analyses are never conflated, so the queue overflowed
+        assertEquals(2L, sender.getConflated());
+        assertEquals(2L, sender.getDropped());
+        drain();
+        assertEquals(List.of("analysis A", "analysis B", "analysis C"), received);
+
+        // Once sent, a tick is queued afresh
+        assertTrue(sender.offer("BTC", text("BTC 3")));
+        assertTrue(sender.offer("BTC", text("BTC 4")));
+        drain();
+        assertEquals("BTC 4", received.get(received.size() - 1));
+        assertEquals(4, received.size());
+        assertEquals(3L, sender.getConflated());
+    }
+
+    @Test
+    void disconnectClosesTheSessionOnOverflow() throws IOException {
+        SessionSender sender = sender(2, SessionSender.OverflowPolicy.DISCONNECT);
+        assertTrue(sender.offer("BTC", text("BTC 1")));
+        assertTrue(sender.offer("BTC", text("BTC 2")));
+
+        assertFalse(sender.offer("BTC", text("BTC 3")));
+        assertFalse(sender.offer(null, text("analysis")));
+        // The session is closed by the writer, not the offering thread
+        verify(session, never()).close(any());
+
+        // Nothing queued before the overflow is sent to the closed session
+        drain();
+        verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertEquals(List.of(), received);
+        assertEquals(0, sender.getStats().get("queued"));
+        assertEquals(0L, sender.getDropped());
+    }
+
+    @Test
+    void failedSendDisconnects() throws IOException {
+        SessionSender sender = sender(4, SessionSender.OverflowPolicy.CONFLATE);
+        doThrow(new IOException("Broken pipe")).when(session).sendMessage(any());
+        sender.offer(null, text("analysis"));
+        sender.offer("BTC", text("BTC 1"));
+
+        drain();
+        verify(session).close(CloseStatus.SERVER_ERROR);
+        verify(session, times(1)).sendMessage(any());
+        assertEquals(1L, sender.getStats().get("failed"));
+        assertFalse(sender.offer("BTC", text("BTC 2")));
+    }
+
+    @Test
+    void stalledClientNeverBlocksOffers() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sending.countDown();
+            release.await();
+            received.add(((TextMessage) invocation.getArgument(0)).getPayload());
+            return null;
+        }).when(session).sendMessage(any());
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            SessionSender sender = new SessionSender(session, MessageEncoding.JSON, 16,
+                    SessionSender.OverflowPolicy.DROP_OLDEST, threads);
+            sender.offer(null, text("first"));
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+
+            // The writer is stuck in sendMessage; every offer still returns straight away
+            long start = System.nanoTime();
+            for (int i = 0; i < 1_000; i++) {
+                assertTrue(sender.offer(null, text("update " + i)));
+            }
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+            assertEquals(16, sender.getStats().get("queued"));
+            assertEquals(1_000L - 16, sender.getDropped());
+
+            release.countDown();
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (received.size() < 17 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(17, received.size());
+            assertEquals("first", received.get(0));
+            assertEquals("update 984", received.get(1));
+            assertEquals("update 999", received.get(16));
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void blockingCloseNeverHoldsUpTheOfferingThread() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch closing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            sending.countDown();
+            release.await();
+            return null;
+        }).when(session).sendMessage(any());
+        doAnswer(invocation -> {
+            closing.countDown();
+            release.await();
+            return null;
+        }).when(session).close(any());
+        ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+        try {
+            SessionSender sender = new SessionSender(session, MessageEncoding.JSON, 1,
+                    SessionSender.OverflowPolicy.DISCONNECT, threads);
+            sender.offer(null, text("first"));
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+            assertTrue(sender.offer(null, text("queued")));
+
+            // The overflowing offer returns while the close it triggered is stuck on the network
+            Future<Boolean> overflow = threads.submit(() -> sender.offer(null, text("overflow")));
+            assertFalse(overflow.get(5, TimeUnit.SECONDS));
+            assertTrue(closing.await(5, TimeUnit.SECONDS));
+            assertFalse(sender.offer(null, text("after")));
+            verify(session).close(CloseStatus.SESSION_NOT_RELIABLE);
+        } finally {
+            release.countDown();
+            threads.shutdownNow();
+        }
+    }
+
+    private SessionSender sender(int capacity, SessionSender.OverflowPolicy policy) {
+        return new SessionSender(session, MessageEncoding.JSON, capacity, policy, writer::add);
+    }
+
+    /**
+     * Run the writer's pending drain tasks, including any they schedule
+     */
+    private void drain() {
+        Runnable task;
+        while ((task = writer.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private static WebSocketMessage<?> text(String payload) {
+        return new TextMessage(payload);
+    }
+}
@@ -0,0 +1,127 @@
+package com.pxbt.dev.aiTradingCharts.model;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full 1000-bar history: BarSeries vs. the CopyOnWriteArrayList of PriceUpdate it replaced (append, then
+ * drop the oldest once over the limit; read the newest bars with {@code new ArrayList<>(subList)}).
+ * The {@code contended} groups read 200-bar snapshots on three threads while a fourth keeps writing.
+ * Run {@link #main} after {@code mvn test-compile}.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BarSeriesBenchmark {
+
+    private static final int CAPACITY = 1000;
+    private static final int READ_LIMIT = 200;
+    private static final long MINUTE = 60_000L;
+
+    private BarSeries series;
+    private List<PriceUpdate> list;
+    private long seriesTime;
+    private long listTime;
+
+    @Setup
+    public void fill() {
+        series = new BarSeries(CAPACITY);
+        list = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < CAPACITY; i++) {
+            appendSeries();
+            appendList();
+        }
+    }
+
+    @Benchmark
+    @Group("appendBarSeries")
+    public boolean appendBarSeries() {
+        return appendSeries();
+    }
+
+    @Benchmark
+    @Group("appendCopyOnWrite")
+    public int appendCopyOnWrite() {
+        return appendList();
+    }
+
+    @Benchmark
+    @Group("snapshotBarSeries")
+    public BarSeries.View snapshotBarSeries() {
+        return series.snapshot(READ_LIMIT);
+    }
+
+    @Benchmark
+    @Group("snapshotCopyOnWrite")
+    public List<PriceUpdate> snapshotCopyOnWrite() {
+        return readList();
+    }
+
+    @Benchmark
+    @Group("contendedBarSeries")
+    @GroupThreads(3)
+    public BarSeries.View contendedBarSeriesRead() {
+        return series.snapshot(READ_LIMIT);
+    }
+
+    @Benchmark
+    @Group("contendedBarSeries")
+    @GroupThreads(1)
+    public boolean contendedBarSeriesWrite() {
+        return appendSeries();
+    }
+
+    @Benchmark
+    @Group("contendedCopyOnWrite")
+    @GroupThreads(3)
+    public List<PriceUpdate> contendedCopyOnWriteRead() {
+        return readList();
+    }
+
+    @Benchmark
+    @Group("contendedCopyOnWrite")
+    @GroupThreads(1)
+    public int contendedCopyOnWriteWrite() {
+        return appendList();
+    }
+
+    private boolean appendSeries() {
+        long t = seriesTime += MINUTE;
+        return series.append(t, 100, 101, 99, 100.5, 12);
+    }
+
+    private int appendList() {
+        long t = listTime += MINUTE;
+        list.add(new PriceUpdate("BTC", 100.5, 12, t, 100, 101, 99, 100.5));
+        if (list.size() > CAPACITY) {
+            list.remove(0);
+        }
+        return list.size();
+    }
+
+    private List<PriceUpdate> readList() {
+        while (true) {
+            int size = list.size();
+            try {
+                return new ArrayList<>(list.subList(Math.max(0, size - READ_LIMIT), size));
+            } catch (IndexOutOfBoundsException | ConcurrentModificationException e) {
+                // A write landed between size(), subList() and the copy - the old code's race; retry
+            }
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BarSeriesBenchmark.class.getSimpleName()).build()).run();
+    }
+}
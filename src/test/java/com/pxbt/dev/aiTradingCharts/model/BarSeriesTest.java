@@ -0,0 +1,338 @@
+package com.pxbt.dev.aiTradingCharts.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BarSeriesTest {
+
+    private static final long MINUTE = 60_000L;
+
+    @Test
+    void ringKeepsTheNewestBarsOnceFull() {
+        // Grows past the initial 64 slots to its capacity of 100, then wraps two and a half times
+        BarSeries series = new BarSeries(100);
+        for (int i = 1; i <= 250; i++) {
+            assertTrue(series.append(i * MINUTE, i, i + 2, i - 2, i + 1, i * 10));
+        }
+
+        assertEquals(100, series.size());
+        assertEquals(250 * MINUTE, series.lastTimestamp());
+        assertEquals(251, series.lastClose());
+        assertNull(inconsistency(series.view(), 0));
+        assertEquals(151 * MINUTE, series.view().timestamp(0));
+
+        // Windows that straddle the physical end of the ring
+        BarSeries.View newest = series.view(70);
+        assertEquals(70, newest.size());
+        assertEquals(181 * MINUTE, newest.timestamp(0));
+        assertNull(inconsistency(newest, 0));
+        BarSeries.View snapshot = series.snapshot(70);
+        for (int i = 0; i < 70; i++) {
+            assertEquals(newest.timestamp(i), snapshot.timestamp(i));
+            assertEquals(newest.volume(i), snapshot.volume(i));
+        }
+
+        // A snapshot is a private copy; a view over the ring is overwritten by later appends
+        for (int i = 251; i <= 300; i++) {
+            series.append(i * MINUTE, i, i + 2, i - 2, i + 1, i * 10);
+        }
+        assertEquals(181 * MINUTE, snapshot.timestamp(0));
+        assertEquals(281 * MINUTE, newest.timestamp(0));
+        assertNull(inconsistency(series.snapshot(Integer.MAX_VALUE), 0));
+        assertEquals(201 * MINUTE, series.view().timestamp(0));
+        assertEquals(0, series.generation());
+    }
+
+    @Test
+    void viewsTakenBeforeGrowthKeepTheirBars() {
+        BarSeries series = new BarSeries(1000);
+        for (int i = 1; i <= 64; i++) {
+            series.append(i * MINUTE, i, i + 2, i - 2, i + 1, i * 10);
+        }
+        BarSeries.View before = series.view();
+        for (int i = 65; i <= 500; i++) {
+            series.append(i * MINUTE, i, i + 2, i - 2, i + 1, i * 10);
+        }
+
+        assertEquals(64, before.size());
+        assertNull(inconsistency(before, 0));
+        assertEquals(500, series.size());
+        assertNull(inconsistency(series.view(), 0));
+    }
+
+    @Test
+    void barWithTheSameOpenTimeAmendsTheFormingBar() {
+        BarSeries series = new BarSeries(3);
+        series.append(MINUTE, 10, 12, 9, 11, 100);
+        series.append(2 * MINUTE, 11, 13, 10, 12, 200);
+
+        // Same open time replaces the forming bar, an older one is dropped
+        assertTrue(series.append(2 * MINUTE, 11, 14, 10, 13.5, 260));
+        assertFalse(series.append(MINUTE, 1, 1, 1, 1, 1));
+        assertEquals(2, series.size());
+        BarSeries.View bars = series.view();
+        assertEquals(14, bars.high(1));
+        assertEquals(13.5, bars.close(1));
+        assertEquals(260, bars.volume(1));
+        assertEquals(11, bars.close(0));
+
+        // Ticks extend high and low and move the close, but leave open and volume alone
+        assertTrue(series.applyTick(2 * MINUTE, 15));
+        assertTrue(series.applyTick(2 * MINUTE, 8.5));
+        assertTrue(series.applyTick(2 * MINUTE, 12.25));
+        bars = series.view();
+        assertEquals(11, bars.open(1));
+        assertEquals(15, bars.high(1));
+        assertEquals(8.5, bars.low(1));
+        assertEquals(12.25, bars.close(1));
+        assertEquals(260, bars.volume(1));
+
+        // A tick in the next interval opens a new bar; one for an older bar is refused
+        assertTrue(series.applyTick(3 * MINUTE, 12.5));
+        assertFalse(series.applyTick(2 * MINUTE, 99));
+        bars = series.view();
+        assertEquals(3, bars.size());
+        assertEquals(12.25, bars.close(1));
+        assertEquals(3 * MINUTE, bars.timestamp(2));
+        assertEquals(12.5, bars.open(2));
+        assertEquals(0, bars.volume(2));
+    }
+
+    @Test
+    void formingBarIsAmendedInPlaceAfterTheRingWraps() {
+        BarSeries series = new BarSeries(3);
+        for (int i = 1; i <= 5; i++) {
+            series.append(i * MINUTE, i, i, i, i, i);
+        }
+        // The newest bar now sits in the middle of the columns
+        series.applyTick(5 * MINUTE, 7);
+        series.append(5 * MINUTE, 5, 8, 4, 6, 50);
+        series.applyTick(6 * MINUTE, 6.5);
+
+        BarSeries.View bars = series.snapshot(Integer.MAX_VALUE);
+        assertEquals(3, bars.size());
+        assertEquals(List.of(4 * MINUTE, 5 * MINUTE, 6 * MINUTE),
+                List.of(bars.timestamp(0), bars.timestamp(1), bars.timestamp(2)));
+        assertEquals(4, bars.close(0));
+        assertEquals(8, bars.high(1));
+        assertEquals(50, bars.volume(1));
+        assertEquals(6.5, series.lastClose());
+    }
+
+    @Test
+    void replaceAndClearStartANewGeneration() {
+        BarSeries series = new BarSeries(100);
+        for (int i = 1; i <= 150; i++) {
+            series.append(i * MINUTE, i, i + 2, i - 2, i + 1, i * 10);
+        }
+        BarSeries reloaded = new BarSeries(10);
+        for (int i = 1; i <= 5; i++) {
+            reloaded.append(i * MINUTE, i, i + 2, i - 2, i + 1, i * 10);
+        }
+
+        series.replace(reloaded.view());
+        assertEquals(1, series.generation());
+        assertEquals(5, series.size());
+        assertNull(inconsistency(series.view(), 0));
+
+        series.clear();
+        assertEquals(2, series.generation());
+        assertEquals(0, series.size());
+        assertEquals(-1, series.lastTimestamp());
+        assertTrue(Double.isNaN(series.lastClose()));
+        assertTrue(series.snapshot(10).isEmpty());
+    }
+
+    @Test
+    void viewsTakenBeforeAReplaceAreNotRewritten() {
+        BarSeries series = new BarSeries(100);
+        for (int i = 1; i <= 150; i++) {
+            series.append(i * MINUTE, i, i + 2, i - 2, i + 1, i * 10);
+        }
+        BarSeries.View before = series.view(10);
+        BarSeries reloaded = new BarSeries(1000);
+        for (int i = 1001; i <= 1200; i++) {
+            reloaded.append(i * MINUTE, i, i + 2, i - 2, i + 1, i * 10);
+        }
+
+        // The reload is copied into new columns and swapped in; the old ones are left as they were
+        series.replace(reloaded.view());
+        for (int i = 1201; i <= 1300; i++) {
+            series.append(i * MINUTE, i, i + 2, i - 2, i + 1, i * 10);
+        }
+        assertEquals(141 * MINUTE, before.timestamp(0));
+        assertNull(inconsistency(before, 0));
+        assertEquals(100, series.size());
+        assertEquals(1201 * MINUTE, series.view().timestamp(0));
+        assertNull(inconsistency(series.view(), 0));
+
+        BarSeries.View reloadedView = series.view();
+        series.clear();
+        series.append(MINUTE, 1, 3, -1, 2, 10);
+        assertEquals(1201 * MINUTE, reloadedView.timestamp(0));
+        assertNull(inconsistency(reloadedView, 0));
+    }
+
+    @Test
+    void mergeKeepsTheSeriesOwnBarsAndTheNewestCapacity() {
+        BarSeries series = new BarSeries(100);
+        for (int i = 51; i <= 80; i++) {
+            series.append(i * MINUTE, i, i + 2, i - 2, i + 1, i * 10);
+        }
+        series.applyTick(80 * MINUTE, 500);
+        BarSeries.View before = series.view();
+
+        // Older bars, plus a stale copy of the forming bar that must not undo the tick
+        BarSeries page = new BarSeries(100);
+        for (int i = 1; i <= 80; i++) {
+            page.append(i * MINUTE, i, i + 2, i - 2, i + 1, i * 10);
+        }
+        series.merge(page.view());
+
+        assertEquals(1, series.generation());
+        assertEquals(80, series.size());
+        assertEquals(500, series.lastClose());
+        assertEquals(MINUTE, series.view().timestamp(0));
+        assertEquals(30, before.size());
+        assertEquals(51 * MINUTE, before.timestamp(0));
+
+        // Past capacity the oldest bars go
+        BarSeries newer = new BarSeries(100);
+        for (int i = 81; i <= 120; i++) {
+            newer.append(i * MINUTE, i, i + 2, i - 2, i + 1, i * 10);
+        }
+        series.merge(newer.view());
+        assertEquals(100, series.size());
+        assertEquals(21 * MINUTE, series.view().timestamp(0));
+        assertEquals(500, series.view().close(59));
+        assertNull(inconsistency(series.view(40), 0));
+        series.append(121 * MINUTE, 121, 123, 119, 122, 1210);
+        assertEquals(22 * MINUTE, series.view().timestamp(0));
+        assertNull(inconsistency(series.view(41), 0));
+    }
+
+    @Test
+    void pageAppendExtendsInPlace() {
+        BarSeries series = new BarSeries(100);
+        for (int i = 1; i <= 10; i++) {
+            series.append(i * MINUTE, i, i + 2, i - 2, i + 1, i * 10);
+        }
+        BarSeries page = new BarSeries(200);
+        for (int i = 5; i <= 130; i++) {
+            page.append(i * MINUTE, i, i + 2, i - 2, i + 1, i * 10);
+        }
+
+        // Bars before the forming one are dropped, the forming one is amended, the rest wrap the ring
+        assertEquals(121, series.append(page.view()));
+        assertEquals(100, series.size());
+        assertEquals(31 * MINUTE, series.view().timestamp(0));
+        assertNull(inconsistency(series.view(), 0));
+        assertEquals(0, series.generation());
+    }
+
+    @Test
+    void writesToAResizedSeriesReachTheLargerCopy() {
+        BarSeries series = new BarSeries(10);
+        for (int i = 1; i <= 15; i++) {
+            series.append(i * MINUTE, i, i + 2, i - 2, i + 1, i * 10);
+        }
+        series.merge(series.snapshot(3));
+        long generation = series.generation();
+
+        BarSeries larger = series.withCapacity(100);
+        assertTrue(series.isRetired());
+        assertFalse(larger.isRetired());
+        assertEquals(generation, larger.generation());
+        assertEquals(10, larger.size());
+
+        // A writer still holding the old instance
+        series.append(16 * MINUTE, 16, 18, 14, 17, 160);
+        series.applyTick(16 * MINUTE, 17);
+        assertEquals(11, larger.size());
+        assertEquals(6 * MINUTE, larger.view().timestamp(0));
+        assertNull(inconsistency(larger.view(), 0));
+        assertEquals(10, series.size());
+    }
+
+    @Test
+    void snapshotsStayConsistentWhileBarsAreWritten() throws Exception {
+        // Small enough to grow and then wrap many times during the run
+        BarSeries series = new BarSeries(500);
+        int bars = 50_000;
+        AtomicBoolean writing = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicLong snapshotsChecked = new AtomicLong();
+
+        Thread appender = new Thread(() -> {
+            for (int i = 1; i <= bars; i++) {
+                series.append(i * MINUTE, i, i + 2, i - 2, i + 1, i * 10);
+            }
+            writing.set(false);
+        });
+        // Amends the forming bar from a second writer, like the stream thread does during a backfill
+        Thread ticker = new Thread(() -> {
+            while (writing.get()) {
+                long open = series.lastTimestamp();
+                if (open > 0) series.applyTick(open, open / MINUTE + 1);
+            }
+        });
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 2; r++) {
+            readers.add(new Thread(() -> {
+                long previousFirst = 0;
+                while (writing.get() && failure.get() == null) {
+                    BarSeries.View snapshot = series.snapshot(100);
+                    String problem = snapshot.size() > 100 ? "size " + snapshot.size()
+                            : inconsistency(snapshot, previousFirst);
+                    if (problem != null) {
+                        failure.compareAndSet(null, problem);
+                        return;
+                    }
+                    if (!snapshot.isEmpty()) previousFirst = snapshot.timestamp(0);
+                    snapshotsChecked.incrementAndGet();
+                }
+            }));
+        }
+
+        readers.forEach(Thread::start);
+        ticker.start();
+        appender.start();
+        appender.join(30_000);
+        ticker.join(5_000);
+        for (Thread reader : readers) reader.join(5_000);
+
+        assertNull(failure.get());
+        assertTrue(snapshotsChecked.get() > 0);
+        assertEquals(500, series.size());
+        assertEquals(bars * MINUTE, series.lastTimestamp());
+        assertNull(inconsistency(series.snapshot(Integer.MAX_VALUE), 0));
+    }
+
+    /**
+     * @return what's wrong with the snapshot, or null if every bar matches the one appended at its time, the
+     * bars are contiguous and the window didn't move backwards
+     */
+    private static String inconsistency(BarSeries.View snapshot, long previousFirst) {
+        for (int i = 0; i < snapshot.size(); i++) {
+            long open = snapshot.timestamp(i);
+            long bar = open / MINUTE;
+            if (open != snapshot.timestamp(0) + i * MINUTE) return "gap at " + i + ": " + open;
+            if (snapshot.open(i) != bar || snapshot.high(i) != bar + 2 || snapshot.low(i) != bar - 2
+                    || snapshot.close(i) != bar + 1 || snapshot.volume(i) != bar * 10) {
+                return "torn bar " + bar;
+            }
+        }
+        if (!snapshot.isEmpty() && snapshot.timestamp(0) < previousFirst) {
+            return "went back from " + previousFirst + " to " + snapshot.timestamp(0);
+        }
+        return null;
+    }
+}
@@ -0,0 +1,121 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A training round with stub candidates that only sleep, so its timing is known
+ */
+class AIModelServiceTest {
+
+    private static final long FAST_MS = 50;
+    private static final long SLOW_MS = 400;
+
+    // Both candidates have to be building at once to get past it
+    private final CountDownLatch building = new CountDownLatch(2);
+    private final Instances data = dataset(100);
+    private AIModelService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new AIModelService();
+        ReflectionTestUtils.setField(service, "modelCandidates", List.of(
+                new ModelCandidate("Exact", () -> new Stub(SLOW_MS, true)),
+                new ModelCandidate("Mean", () -> new Stub(FAST_MS, false))));
+        ReflectionTestUtils.setField(service, "enabledCandidates", List.of());
+        ReflectionTestUtils.setField(service, "trainingThreads", 0);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void candidatesTrainConcurrentlyAndTheBestR2Wins() {
+        ModelRegistry.ModelKey key = new ModelRegistry.ModelKey("BTC", "1d", TrainingDataService.FEATURE_SET_VERSION);
+        Classifier best = ReflectionTestUtils.invokeMethod(service, "trainAndSelectBestModel", data, data, key);
+
+        assertInstanceOf(Stub.class, best);
+        assertTrue(((Stub) best).exact);
+
+        Map<String, Object> report = report("BTC 1d");
+        assertEquals("Exact", report.get("best"));
+        List<Map<String, Object>> candidates = candidates(report);
+        assertEquals(1.0, (double) candidates.get(0).get("r2"), 1e-9);
+        assertTrue((double) candidates.get(1).get("r2") < 0.5);
+
+        // The round takes about as long as its slower candidate, not the sum of both
+        long wallMs = (long) report.get("wallMs");
+        long slowestMs = candidates.stream().mapToLong(row -> (long) row.get("wallMs")).max().orElseThrow();
+        assertTrue(slowestMs >= SLOW_MS);
+        assertTrue(wallMs >= slowestMs);
+        assertTrue(wallMs < slowestMs + FAST_MS + 100, "round took " + wallMs + " ms");
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> report(String name) {
+        return (Map<String, Object>) service.getTrainingReports().get(name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> candidates(Map<String, Object> report) {
+        return (List<Map<String, Object>>) report.get("candidates");
+    }
+
+    /**
+     * Predicts the target exactly, or always the training mean
+     */
+    private class Stub extends AbstractClassifier {
+        private final long buildMs;
+        private final boolean exact;
+        private double mean;
+
+        Stub(long buildMs, boolean exact) {
+            this.buildMs = buildMs;
+            this.exact = exact;
+        }
+
+        @Override
+        public void buildClassifier(Instances instances) throws Exception {
+            building.countDown();
+            if (!building.await(5, TimeUnit.SECONDS)) throw new IllegalStateException("trained one at a time");
+            Thread.sleep(buildMs);
+            mean = instances.meanOrMode(instances.classIndex());
+        }
+
+        @Override
+        public double classifyInstance(Instance instance) {
+            return exact ? 2 * instance.value(0) : mean;
+        }
+    }
+
+    private static Instances dataset(int size) {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        attributes.add(new Attribute("x"));
+        attributes.add(new Attribute("y"));
+        Instances data = new Instances("AIModelServiceTest", attributes, size);
+        data.setClassIndex(1);
+        for (int i = 0; i < size; i++) {
+            data.add(new DenseInstance(1.0, new double[]{i, 2 * i}));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,199 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisPipelineTest {
+
+    private final List<String> analysed = new CopyOnWriteArrayList<>();
+    private AnalysisPipeline pipeline;
+
+    @AfterEach
+    void tearDown() {
+        if (pipeline != null) pipeline.shutdown();
+    }
+
+    @Test
+    void ticksArrivingDuringAnAnalysisAreConflatedIntoOne() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline = new AnalysisPipeline(1, 10, symbol -> {
+            analysed.add(symbol);
+            started.countDown();
+            await(release);
+        });
+
+        pipeline.submit("BTC");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        // Four more ticks while the first is being analysed: the slot only counts them
+        for (int i = 0; i < 4; i++) {
+            pipeline.submit("BTC");
+        }
+        assertEquals(0, queuedTasks());
+        release.countDown();
+
+        awaitStat("processed", 2);
+        assertEquals(List.of("BTC", "BTC"), analysed);
+        assertStats(5, 2, 3, 0, 0);
+        assertEquals(3, pipeline.getConflatedCount());
+    }
+
+    @Test
+    void eachSymbolHasItsOwnSlot() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline = new AnalysisPipeline(1, 10, symbol -> {
+            analysed.add(symbol);
+            if (symbol.equals("BTC")) {
+                started.countDown();
+                await(release);
+            }
+        });
+
+        pipeline.submit("BTC");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        pipeline.submit("SOL");
+        pipeline.submit("SOL");
+        pipeline.submit("TAO");
+        // One task per symbol waits for the single worker, however many ticks it stands for
+        assertEquals(2, queuedTasks());
+        release.countDown();
+
+        awaitStat("processed", 3);
+        assertEquals(List.of("BTC", "SOL", "TAO"), analysed);
+        assertStats(4, 3, 1, 0, 0);
+        assertEquals(3, pipeline.getStats().get("trackedSymbols"));
+    }
+
+    @Test
+    void ticksAreDroppedWhenTheWorkerQueueIsFull() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        pipeline = new AnalysisPipeline(1, 1, symbol -> {
+            analysed.add(symbol);
+            if (symbol.equals("BTC")) {
+                started.countDown();
+                await(release);
+            }
+        });
+
+        pipeline.submit("BTC");
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        pipeline.submit("SOL");
+        // The queue holds SOL's task, so WIF's ticks are rejected and dropped, never left pending
+        pipeline.submit("WIF");
+        pipeline.submit("WIF");
+        assertEquals(2, pipeline.getDroppedCount());
+        release.countDown();
+
+        awaitStat("processed", 2);
+        assertEquals(List.of("BTC", "SOL"), analysed);
+
+        // Once there is room again the symbol is analysed as normal
+        pipeline.submit("WIF");
+        awaitStat("processed", 3);
+        assertEquals(List.of("BTC", "SOL", "WIF"), analysed);
+        assertStats(5, 3, 0, 2, 0);
+    }
+
+    @Test
+    void aFailedAnalysisDoesNotStallTheSymbol() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        pipeline = new AnalysisPipeline(1, 10, symbol -> {
+            if (calls.incrementAndGet() == 1) throw new IllegalStateException("model not ready");
+            analysed.add(symbol);
+        });
+
+        pipeline.submit("BTC");
+        awaitStat("failed", 1);
+        pipeline.submit("BTC");
+        awaitStat("processed", 1);
+
+        assertEquals(List.of("BTC"), analysed);
+        assertStats(2, 1, 0, 0, 1);
+    }
+
+    @Test
+    void theNewestTickIsAlwaysAnalysedWhenTicksRaceTheDrain() throws Exception {
+        // The producer publishes a value and then signals, as ingest does; the analyser reads the newest value.
+        // A signal that lands between the worker's last read and it releasing the slot must still be analysed.
+        AtomicLong latest = new AtomicLong();
+        AtomicLong lastSeen = new AtomicLong(-1);
+        Consumer<String> analyser = symbol -> lastSeen.set(latest.get());
+        pipeline = new AnalysisPipeline(2, 100, analyser);
+
+        int producers = 4;
+        int ticksEach = 20_000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            String symbol = p % 2 == 0 ? "BTC" : "SOL";
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < ticksEach; i++) {
+                    latest.incrementAndGet();
+                    pipeline.submit(symbol);
+                }
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join(30_000);
+
+        long last = latest.get();
+        assertTrue(waitFor(() -> lastSeen.get() == last && idle()), "last tick not analysed: " + lastSeen.get());
+
+        // Every signal was either analysed or conflated into an analysis; none were lost or dropped
+        long submitted = (long) pipeline.getStats().get("submitted");
+        long processed = (long) pipeline.getStats().get("processed");
+        assertEquals((long) producers * ticksEach, submitted);
+        assertEquals(submitted, processed + pipeline.getConflatedCount());
+        assertEquals(0, pipeline.getDroppedCount());
+    }
+
+    private void assertStats(long submitted, long processed, long conflated, long dropped, long failed) {
+        assertEquals(submitted, pipeline.getStats().get("submitted"));
+        assertEquals(processed, pipeline.getStats().get("processed"));
+        assertEquals(conflated, pipeline.getStats().get("conflated"));
+        assertEquals(dropped, pipeline.getStats().get("dropped"));
+        assertEquals(failed, pipeline.getStats().get("failed"));
+    }
+
+    private void awaitStat(String name, long expected) throws InterruptedException {
+        assertTrue(waitFor(() -> (long) pipeline.getStats().get(name) == expected && idle()),
+                name + " = " + pipeline.getStats().get(name));
+    }
+
+    private boolean idle() {
+        return (int) pipeline.getStats().get("activeWorkers") == 0 && queuedTasks() == 0;
+    }
+
+    private int queuedTasks() {
+        return (int) pipeline.getStats().get("queuedTasks");
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) return false;
+            Thread.sleep(2);
+        }
+        return true;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
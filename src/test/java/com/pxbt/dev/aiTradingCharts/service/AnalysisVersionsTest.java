@@ -0,0 +1,215 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisVersionsTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final List<String> TIMEFRAMES = List.of("1h", "4h", "1d", "1w");
+    private static final List<String> TRENDS = List.of("STRONG_BEARISH", "BEARISH", "NEUTRAL", "BULLISH", "STRONG_BULLISH");
+
+    private final AnalysisVersions versions = new AnalysisVersions();
+
+    @Test
+    void firstAnalysisIsVersionOne() {
+        JsonNode analysis = analysis(new Random(1));
+        AnalysisVersions.Change change = versions.publish("BTC", analysis, 1_000);
+
+        assertEquals(1, change.version());
+        assertEquals(0, change.baseVersion());
+        assertNull(change.changes());
+        assertSame(analysis, change.analysis());
+        assertEquals(new AnalysisVersions.Version(1, 1_000, analysis), versions.latest("BTC"));
+        assertNull(versions.latest("ETH"));
+    }
+
+    @Test
+    void equalAnalysisIsNotANewVersion() {
+        JsonNode analysis = analysis(new Random(2));
+        versions.publish("BTC", analysis, 1_000);
+
+        // Built again from scratch, and with fields in another order
+        ObjectNode reordered = MAPPER.createObjectNode();
+        List.of("fibonacciTimeZones", "chartPatterns", "timeframePredictions", "confidence", "tradingSignal", "timeframe",
+                        "symbol")
+                .forEach(name -> reordered.set(name, analysis.get(name).deepCopy()));
+        assertNull(versions.publish("BTC", analysis(new Random(2)), 2_000));
+        assertNull(versions.publish("BTC", reordered, 3_000));
+
+        assertEquals(1, versions.latest("BTC").version());
+        assertEquals(1_000, versions.latest("BTC").publishedAt());
+        assertEquals(Map.of("symbols", 1, "published", 1L, "unchanged", 2L), Map.copyOf(versions.getStats()));
+    }
+
+    @Test
+    void patchHoldsOnlyWhatChanged() throws Exception {
+        JsonNode before = MAPPER.readTree("""
+                {"symbol":"BTC","tradingSignal":"BUY","confidence":0.7,
+                 "timeframePredictions":{"1d":{"predictedChange":0.02,"trend":"BULLISH","timeHorizons":{"timeframe":"1 day"}},
+                                         "1w":{"predictedChange":0.05,"trend":"BULLISH"}},
+                 "chartPatterns":[{"type":"UPTREND"},{"type":"SUPPORT"}],
+                 "timeframe":"1d"}""");
+        JsonNode after = MAPPER.readTree("""
+                {"symbol":"BTC","tradingSignal":"BUY","confidence":0.7,
+                 "timeframePredictions":{"1d":{"predictedChange":-0.01,"trend":"BEARISH","timeHorizons":{"timeframe":"1 day"}},
+                                         "1w":{"predictedChange":0.05,"trend":"BULLISH"},
+                                         "4h":{"predictedChange":0.001,"trend":"NEUTRAL"}},
+                 "chartPatterns":[{"type":"UPTREND"},{"type":"RESISTANCE"}]}""");
+        versions.publish("BTC", before, 1_000);
+        AnalysisVersions.Change change = versions.publish("BTC", after, 2_000);
+
+        assertEquals(2, change.version());
+        assertEquals(1, change.baseVersion());
+        // Changed fields with their new value, arrays whole, the removed field as null, the rest left out
+        assertEquals(MAPPER.readTree("""
+                {"timeframePredictions":{"1d":{"predictedChange":-0.01,"trend":"BEARISH"},
+                                         "4h":{"predictedChange":0.001,"trend":"NEUTRAL"}},
+                 "chartPatterns":[{"type":"UPTREND"},{"type":"RESISTANCE"}],
+                 "timeframe":null}"""), change.changes());
+        assertEquals(after, applyMergePatch(before, change.changes()));
+    }
+
+    @Test
+    void patchesReplayedOnTheFirstVersionGiveTheLatest() {
+        Random random = new Random(24);
+        ObjectNode analysis = analysis(random);
+        JsonNode client = versions.publish("BTC", analysis.deepCopy(), 0).analysis();
+        long version = 1;
+
+        for (int step = 1; step <= 2_000; step++) {
+            mutate(analysis, random);
+            AnalysisVersions.Change change = versions.publish("BTC", analysis.deepCopy(), step);
+            if (change == null) {
+                assertEquals(withoutNulls(client), withoutNulls(analysis), "unchanged analysis differs at step " + step);
+                continue;
+            }
+            assertEquals(version, change.baseVersion());
+            assertEquals(++version, change.version());
+            client = applyMergePatch(client, change.changes());
+            // A merge patch can't tell a null field from a missing one; clients treat both as absent
+            assertEquals(withoutNulls(analysis), withoutNulls(client), "diverged at step " + step);
+        }
+        assertTrue(version > 1_000, "only " + version + " versions");
+        assertEquals(version, versions.latest("BTC").version());
+    }
+
+    @Test
+    void removedSymbolStartsAgainAtVersionOne() {
+        Random random = new Random(3);
+        versions.publish("BTC", analysis(random), 1_000);
+        versions.publish("BTC", analysis(random), 2_000);
+        assertEquals(2, versions.latest("BTC").version());
+
+        versions.remove("BTC");
+        assertNull(versions.latest("BTC"));
+        AnalysisVersions.Change change = versions.publish("BTC", analysis(random), 3_000);
+        assertEquals(1, change.version());
+        assertNull(change.changes());
+    }
+
+    /**
+     * Shaped like {@code AnalysisMessage.content}
+     */
+    private static ObjectNode analysis(Random random) {
+        ObjectNode analysis = MAPPER.createObjectNode();
+        analysis.put("symbol", "BTC");
+        analysis.put("timeframe", "1d");
+        analysis.put("tradingSignal", random.nextBoolean() ? "BUY" : "HOLD");
+        analysis.put("confidence", random.nextInt(100) / 100.0);
+        ObjectNode predictions = analysis.putObject("timeframePredictions");
+        for (String timeframe : TIMEFRAMES) {
+            predictions.set(timeframe, prediction(timeframe, random));
+        }
+        analysis.set("chartPatterns", patterns(random));
+        analysis.set("fibonacciTimeZones", patterns(random));
+        return analysis;
+    }
+
+    private static ObjectNode prediction(String timeframe, Random random) {
+        ObjectNode prediction = MAPPER.createObjectNode();
+        prediction.put("predictedChange", random.nextInt(200) / 1000.0 - 0.1);
+        prediction.put("confidence", random.nextInt(100) / 100.0);
+        prediction.put("trend", TRENDS.get(random.nextInt(TRENDS.size())));
+        prediction.putObject("timeHorizons").put("timeframe", timeframe).put("type", "SHORT_TERM");
+        return prediction;
+    }
+
+    private static ArrayNode patterns(Random random) {
+        ArrayNode patterns = MAPPER.createArrayNode();
+        for (int i = random.nextInt(4); i > 0; i--) {
+            patterns.addObject().put("type", TRENDS.get(random.nextInt(TRENDS.size()))).put("strength", random.nextInt(10));
+        }
+        return patterns;
+    }
+
+    private static void mutate(ObjectNode analysis, Random random) {
+        ObjectNode predictions = (ObjectNode) analysis.get("timeframePredictions");
+        String timeframe = TIMEFRAMES.get(random.nextInt(TIMEFRAMES.size()));
+        switch (random.nextInt(9)) {
+            case 0 -> analysis.put("tradingSignal", random.nextBoolean() ? "BUY" : "SELL");
+            case 1 -> analysis.put("confidence", random.nextInt(100) / 100.0);
+            case 2 -> {
+                if (predictions.get(timeframe) instanceof ObjectNode prediction) {
+                    prediction.put("trend", TRENDS.get(random.nextInt(TRENDS.size())));
+                }
+            }
+            case 3 -> predictions.set(timeframe, prediction(timeframe, random));
+            case 4 -> predictions.remove(timeframe);
+            case 5 -> analysis.set(random.nextBoolean() ? "chartPatterns" : "fibonacciTimeZones", patterns(random));
+            case 6 -> {
+                // A field that comes and goes, or turns null
+                switch (random.nextInt(3)) {
+                    case 0 -> analysis.remove("timeframe");
+                    case 1 -> analysis.putNull("timeframe");
+                    default -> analysis.put("timeframe", random.nextBoolean() ? "1d" : "4h");
+                }
+            }
+            case 7 -> {
+                // An object turning into a scalar and back
+                if (random.nextBoolean()) predictions.put(timeframe, "unavailable");
+                else predictions.set(timeframe, prediction(timeframe, random));
+            }
+            default -> {
+                // Recomputed to the same content
+            }
+        }
+    }
+
+    /**
+     * RFC 7386 merge, as the chart page applies it
+     */
+    private static JsonNode applyMergePatch(JsonNode target, JsonNode patch) {
+        if (!patch.isObject()) return patch.deepCopy();
+        ObjectNode result = target != null && target.isObject() ? ((ObjectNode) target).deepCopy() : MAPPER.createObjectNode();
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            if (field.getValue().isNull()) {
+                result.remove(field.getKey());
+            } else {
+                result.set(field.getKey(), applyMergePatch(result.get(field.getKey()), field.getValue()));
+            }
+        }
+        return result;
+    }
+
+    private static JsonNode withoutNulls(JsonNode node) {
+        if (!node.isObject()) return node;
+        ObjectNode copy = MAPPER.createObjectNode();
+        node.fields().forEachRemaining(field -> {
+            if (!field.getValue().isNull()) copy.set(field.getKey(), withoutNulls(field.getValue()));
+        });
+        return copy;
+    }
+}
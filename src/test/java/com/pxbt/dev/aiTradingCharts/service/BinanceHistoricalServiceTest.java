@@ -0,0 +1,83 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.Gateway.BinanceGateway;
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static com.pxbt.dev.aiTradingCharts.service.BinanceHistoricalService.DAILY;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Live ticks folded into the forming daily bar
+ */
+class BinanceHistoricalServiceTest {
+
+    private static final long DAY = 86_400_000L;
+    private static final long TODAY = 1_728_000_000_000L / DAY * DAY;
+
+    private final BarSeriesStore store = new BarSeriesStore();
+    private final SymbolRegistry symbolRegistry = mock(SymbolRegistry.class);
+    private BinanceHistoricalService service;
+    private SymbolRegistry.SymbolResources resources;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(store, "defaultCapacity", 1_000);
+        service = new BinanceHistoricalService(mock(BinanceGateway.class), store, mock(KlineCache.class),
+                mock(HistoricalResponseCache.class), symbolRegistry);
+        service.init();
+        ArgumentCaptor<SymbolRegistry.SymbolResources> captor = ArgumentCaptor.forClass(SymbolRegistry.SymbolResources.class);
+        verify(symbolRegistry).addResources(captor.capture());
+        resources = captor.getValue();
+    }
+
+    @Test
+    void ticksUpdateTodayAndOpenTheNextDay() {
+        // Nothing is loaded yet
+        service.applyTick("BTC", 100, TODAY + 1_000);
+        assertNull(store.get("BTC", DAILY));
+
+        BarSeries daily = loaded(store.getOrCreate("BTC", DAILY, 10));
+        service.applyTick("BTC", 105, TODAY + 60_000);
+        service.applyTick("BTC", 97, TODAY + 120_000);
+        assertEquals(2, daily.size());
+        assertEquals(97, daily.view().close(1));
+        assertEquals(105, daily.view().high(1));
+
+        service.applyTick("BTC", 98, TODAY + DAY + 5);
+        assertEquals(3, daily.size());
+        assertEquals(TODAY + DAY, daily.lastTimestamp());
+    }
+
+    @Test
+    void ticksFollowTheSeriesWhenItIsResizedOrReloaded() {
+        loaded(store.getOrCreate("BTC", DAILY, 3));
+        service.applyTick("BTC", 101, TODAY + 1_000);
+
+        // Grown for a backfill: the next tick lands in the larger copy
+        BarSeries grown = store.ensureCapacity("BTC", DAILY, 500);
+        service.applyTick("BTC", 120, TODAY + 2_000);
+        assertEquals(120, grown.view().close(grown.size() - 1));
+
+        // Released and loaded again: ticks go to the new series, not the dropped one
+        resources.release("BTC");
+        assertNull(store.get("BTC", DAILY));
+        BarSeries reloaded = loaded(store.getOrCreate("BTC", DAILY, 10));
+        service.applyTick("BTC", 90, TODAY + 3_000);
+        assertEquals(90, reloaded.view().close(reloaded.size() - 1));
+        assertEquals(120, grown.view().close(grown.size() - 1));
+    }
+
+    /**
+     * Yesterday's and today's bars, as a history load leaves them
+     */
+    private static BarSeries loaded(BarSeries daily) {
+        daily.append(TODAY - DAY, 95, 100, 94, 99, 1_000);
+        daily.append(TODAY, 99, 102, 98, 100, 500);
+        return daily;
+    }
+}
@@ -0,0 +1,110 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import org.junit.jupiter.api.Test;
+import weka.classifiers.Classifier;
+import weka.classifiers.functions.LinearRegression;
+import weka.classifiers.functions.SMOreg;
+import weka.classifiers.trees.RandomForest;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compiled evaluators against Weka's own predictions on data the models haven't seen
+ */
+class CompiledModelTest {
+
+    private static final int FEATURES = TrainingDataService.FEATURE_COUNT;
+
+    @Test
+    void compiledForestMatchesWeka() throws Exception {
+        RandomForest forest = new RandomForest();
+        forest.setNumIterations(30);
+        forest.setSeed(7);
+
+        CompiledModel compiled = trainAndCompile(forest);
+
+        assertInstanceOf(CompiledModel.Forest.class, compiled);
+        assertTrue(((CompiledModel.Forest) compiled).nodeCount() > 30);
+        assertMatchesWeka(compiled, forest);
+    }
+
+    @Test
+    void compiledLinearRegressionMatchesWeka() throws Exception {
+        LinearRegression linear = new LinearRegression();
+
+        CompiledModel compiled = trainAndCompile(linear);
+
+        assertInstanceOf(CompiledModel.LinearModel.class, compiled);
+        assertMatchesWeka(compiled, linear);
+    }
+
+    @Test
+    void unsupportedModelsStayOnWeka() throws Exception {
+        SMOreg svm = new SMOreg();
+        Instances data = dataset(new Random(1), 200);
+        svm.buildClassifier(data);
+
+        assertNull(CompiledModel.compile(svm, data));
+    }
+
+    private static CompiledModel trainAndCompile(Classifier model) throws Exception {
+        Instances data = dataset(new Random(1), 400);
+        model.buildClassifier(data);
+        CompiledModel compiled = CompiledModel.compile(model, data);
+        assertNotNull(compiled);
+        assertEquals(FEATURES, compiled.featureCount());
+        return compiled;
+    }
+
+    private static void assertMatchesWeka(CompiledModel compiled, Classifier model) throws Exception {
+        Random random = new Random(2);
+        Instances header = dataset(random, 0);
+        double[][] rows = new double[500][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = row(random);
+            double[] values = new double[FEATURES + 1];
+            System.arraycopy(rows[i], 0, values, 0, FEATURES);
+            values[FEATURES] = weka.core.Utils.missingValue();
+            header.add(new DenseInstance(1.0, values));
+        }
+
+        assertEquals(0.0, CompiledModel.maxDeviation(compiled, model, rows, header), 1e-9);
+    }
+
+    /**
+     * Noisy non-linear target over indicator-like features
+     */
+    private static Instances dataset(Random random, int size) {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        for (int i = 0; i < FEATURES; i++) {
+            attributes.add(new Attribute("feature_" + i));
+        }
+        attributes.add(new Attribute("price_change"));
+        Instances data = new Instances("CompiledModelTest", attributes, size);
+        data.setClassIndex(FEATURES);
+
+        for (int i = 0; i < size; i++) {
+            double[] features = row(random);
+            double[] values = new double[FEATURES + 1];
+            System.arraycopy(features, 0, values, 0, FEATURES);
+            values[FEATURES] = 0.02 * features[0] - 0.01 * features[3] * features[4]
+                    + (features[7] > 0.5 ? 0.01 : -0.01) + random.nextGaussian() * 0.002;
+            data.add(new DenseInstance(1.0, values));
+        }
+        return data;
+    }
+
+    private static double[] row(Random random) {
+        double[] features = new double[FEATURES];
+        for (int i = 0; i < FEATURES; i++) {
+            features[i] = random.nextDouble();
+        }
+        return features;
+    }
+}
@@ -0,0 +1,266 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.Gateway.BinanceGateway;
+import com.pxbt.dev.aiTradingCharts.Gateway.RequestWeightLimiter;
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class HistoricalBackfillServiceTest {
+
+    private static final long MINUTE = 60_000L;
+    private static final long START = 1_728_000_000_000L / MINUTE * MINUTE;
+    private static final Duration WAIT = Duration.ofSeconds(10);
+
+    @TempDir
+    Path directory;
+
+    private final BinanceGateway gateway = mock(BinanceGateway.class);
+    private final List<Long> requested = new CopyOnWriteArrayList<>();
+    private final List<String> checkpoints = new CopyOnWriteArrayList<>();
+
+    private KlineCache klineCache;
+    private BarSeriesStore store;
+    private HistoricalBackfillService backfill;
+
+    @BeforeEach
+    void setUp() {
+        // Records what each checkpoint held, so the order pages were merged in can be checked afterwards
+        klineCache = new KlineCache() {
+            @Override
+            public void write(String symbol, String interval, BarSeries.View bars) {
+                checkpoints.add(describe(bars));
+                super.write(symbol, interval, bars);
+            }
+        };
+        ReflectionTestUtils.setField(klineCache, "enabled", true);
+        ReflectionTestUtils.setField(klineCache, "directory", directory.toString());
+        restart();
+    }
+
+    @Test
+    void pagesTheRangeAndMergesPagesInTimeOrder() {
+        // The first page is the slowest to arrive and the last the fastest
+        respond(pageStart -> pageStart == START ? 150 : pageStart == START + 1000 * MINUTE ? 75 : 0);
+
+        HistoricalBackfillService.BackfillResult result =
+                backfill.backfill("BTC", "1m", START, START + 2500 * MINUTE).block(WAIT);
+
+        assertEquals(List.of(START, START + 1000 * MINUTE, START + 2000 * MINUTE), requested);
+        verify(gateway).getRawKlines("BTC", "1m", START, START + 1000 * MINUTE - 1, 1000,
+                RequestWeightLimiter.Priority.BACKGROUND);
+        verify(gateway).getRawKlines("BTC", "1m", START + 2000 * MINUTE, START + 2500 * MINUTE - 1, 1000,
+                RequestWeightLimiter.Priority.BACKGROUND);
+        assertEquals(3, result.pages());
+        assertEquals(2500, result.bars());
+        assertEquals(2500, result.seriesSize());
+
+        // Checkpointed after every page, each time a contiguous prefix of the range
+        assertEquals(List.of(span(0, 1000), span(0, 2000), span(0, 2500), span(0, 2500)), checkpoints);
+        assertEquals(span(0, 2500), describe(store.get("BTC", "1m").view()));
+        assertEquals(HistoricalBackfillService.State.DONE, progress("BTC|1m").get("state"));
+        assertEquals(3, progress("BTC|1m").get("pagesMerged"));
+        // Appended in place - never rewritten, so incremental readers carry on
+        assertEquals(0, store.get("BTC", "1m").generation());
+    }
+
+    @Test
+    void resumesFromTheMergedPagesAfterAFailure() {
+        ReflectionTestUtils.setField(backfill, "pageRetries", 0);
+        respond(pageStart -> pageStart == START + 1000 * MINUTE ? -1 : 0);
+
+        Mono<HistoricalBackfillService.BackfillResult> failing =
+                backfill.backfill("BTC", "1m", START, START + 2500 * MINUTE);
+        assertThrows(IllegalStateException.class, () -> failing.block(WAIT));
+        assertEquals(span(0, 1000), describe(store.get("BTC", "1m").view()));
+        assertEquals(span(0, 1000), checkpoints.get(checkpoints.size() - 1));
+        assertEquals(HistoricalBackfillService.State.FAILED, progress("BTC|1m").get("state"));
+
+        // After a restart the merged page comes back from the kline cache and isn't fetched again
+        restart();
+        requested.clear();
+        respond(pageStart -> 0);
+        HistoricalBackfillService.BackfillResult result =
+                backfill.backfill("BTC", "1m", START, START + 2500 * MINUTE).block(WAIT);
+
+        assertEquals(List.of(START + 1000 * MINUTE, START + 2000 * MINUTE), requested);
+        assertEquals(1000, result.barsHeld());
+        assertEquals(1500, result.bars());
+        assertEquals(span(0, 2500), describe(store.get("BTC", "1m").view()));
+    }
+
+    @Test
+    void olderHistoryIsFetchedBackwardsWithoutLosingWhatTheStreamWrote() {
+        BarSeries series = store.getOrCreate("BTC", "1m");
+        for (int bar = 2000; bar < 2100; bar++) {
+            append(series, bar);
+        }
+        ReflectionTestUtils.setField(backfill, "pageRetries", 0);
+        // While the first page is in flight the stream amends the forming bar and opens the next one;
+        // the oldest page fails
+        respond(pageStart -> {
+            if (pageStart == START + 1000 * MINUTE) {
+                BarSeries live = store.get("BTC", "1m");
+                live.applyTick(START + 2099 * MINUTE, 1e9);
+                append(live, 2100);
+                return 20;
+            }
+            return -1;
+        });
+
+        Mono<HistoricalBackfillService.BackfillResult> failing =
+                backfill.backfill("BTC", "1m", START, START + 2100 * MINUTE);
+        assertThrows(IllegalStateException.class, () -> failing.block(WAIT));
+
+        // The newer of the two older pages was merged in front, next to what was held, and checkpointed
+        assertEquals(List.of(START + 1000 * MINUTE, START), requested);
+        BarSeries.View bars = store.get("BTC", "1m").view();
+        assertEquals(1101, bars.size());
+        assertEquals(START + 1000 * MINUTE, bars.timestamp(0));
+        assertEquals(START + 2100 * MINUTE, bars.timestamp(bars.size() - 1));
+        assertEquals(1e9, bars.close(bars.size() - 2));
+        assertEquals(1101, klineCache.read("BTC", "1m").size());
+        assertEquals(1, store.get("BTC", "1m").generation());
+
+        // Resuming only fetches the oldest page
+        requested.clear();
+        respond(pageStart -> 0);
+        HistoricalBackfillService.BackfillResult result =
+                backfill.backfill("BTC", "1m", START, START + 2100 * MINUTE).block(WAIT);
+
+        assertEquals(List.of(START), requested);
+        assertEquals(2101, result.seriesSize());
+        bars = store.get("BTC", "1m").view();
+        assertEquals(START, bars.timestamp(0));
+        for (int i = 1; i < bars.size(); i++) {
+            assertEquals(bars.timestamp(i - 1) + MINUTE, bars.timestamp(i));
+        }
+        assertEquals(1e9, bars.close(bars.size() - 2));
+    }
+
+    @Test
+    void olderPagesAreMergedInOneRewrite() {
+        BarSeries series = store.getOrCreate("BTC", "1m");
+        for (int bar = 3000; bar < 3010; bar++) {
+            append(series, bar);
+        }
+        respond(pageStart -> 0);
+
+        HistoricalBackfillService.BackfillResult result =
+                backfill.backfill("BTC", "1m", START, START + 3010 * MINUTE).block(WAIT);
+
+        assertEquals(List.of(START + 2000 * MINUTE, START + 1000 * MINUTE, START), requested);
+        assertEquals(3000, result.bars());
+        assertEquals(span(0, 3010), describe(store.get("BTC", "1m").view()));
+        assertEquals(1, store.get("BTC", "1m").generation());
+        // Only the final checkpoint holds the older bars, so the cache file is rewritten once
+        assertEquals(List.of(span(0, 3010)), checkpoints);
+    }
+
+    @Test
+    void rangeIsCutToWhatTheSeriesCanHold() {
+        ReflectionTestUtils.setField(store, "defaultCapacity", 1500);
+        respond(pageStart -> 0);
+
+        HistoricalBackfillService.BackfillResult result =
+                backfill.backfill("BTC", "1m", START, START + 2500 * MINUTE).block(WAIT);
+
+        assertEquals(List.of(START + 1000 * MINUTE, START + 2000 * MINUTE), requested);
+        assertEquals(1500, result.seriesSize());
+        assertEquals(1500, store.get("BTC", "1m").capacity());
+        assertEquals(span(1000, 2500), describe(store.get("BTC", "1m").view()));
+    }
+
+    @Test
+    void unknownIntervalFailsTheBackfill() {
+        assertThrows(IllegalArgumentException.class,
+                () -> backfill.backfill("BTC", "1x", START, START + MINUTE).block(WAIT));
+
+        assertEquals(HistoricalBackfillService.State.FAILED, progress("BTC|1x").get("state"));
+        assertNull(store.get("BTC", "1x"));
+    }
+
+    /**
+     * A fresh store and service over the same kline cache, as after a restart
+     */
+    private void restart() {
+        store = new BarSeriesStore();
+        ReflectionTestUtils.setField(store, "defaultCapacity", 100_000);
+        backfill = new HistoricalBackfillService(gateway, store, klineCache, mock(SymbolRegistry.class));
+        ReflectionTestUtils.setField(backfill, "maxConcurrency", 8);
+        ReflectionTestUtils.setField(backfill, "pageRetries", 3);
+        ReflectionTestUtils.setField(backfill, "checkpointEveryPages", 1);
+    }
+
+    /**
+     * Answer kline requests with one bar per minute of the page, after {@code delayMs(pageStart)} ms,
+     * or with an error if that is negative
+     */
+    private void respond(LongFunction<Integer> delayMs) {
+        when(gateway.getRawKlines(anyString(), anyString(), anyLong(), anyLong(), anyInt(),
+                any(RequestWeightLimiter.Priority.class))).thenAnswer(invocation -> {
+            long from = invocation.getArgument(2);
+            long to = invocation.getArgument(3);
+            return Mono.defer(() -> {
+                requested.add(from);
+                int delay = delayMs.apply(from);
+                if (delay < 0) return Mono.error(new IllegalStateException("503 Service Unavailable"));
+                return Mono.just(klines(from, to)).delayElement(Duration.ofMillis(delay));
+            });
+        });
+    }
+
+    private static byte[] klines(long from, long to) {
+        StringBuilder json = new StringBuilder("[");
+        for (long open = from; open <= to; open += MINUTE) {
+            long bar = (open - START) / MINUTE;
+            if (json.length() > 1) json.append(',');
+            json.append('[').append(open).append(",\"").append(bar).append("\",\"").append(bar + 2)
+                    .append("\",\"").append(bar - 2).append("\",\"").append(bar + 1).append("\",\"")
+                    .append(bar * 10).append("\",").append(open + MINUTE - 1).append(",\"0\",1,\"0\",\"0\",\"0\"]");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void append(BarSeries series, int bar) {
+        series.append(START + bar * MINUTE, bar, bar + 2, bar - 2, bar + 1, bar * 10);
+    }
+
+    /**
+     * "first..last" in bars from START if the bars are contiguous and match what was served, otherwise what's wrong
+     */
+    private static String describe(BarSeries.View bars) {
+        for (int i = 0; i < bars.size(); i++) {
+            long bar = (bars.timestamp(i) - START) / MINUTE;
+            if (bars.timestamp(i) != bars.timestamp(0) + i * MINUTE) return "gap at " + bar;
+            if (bars.open(i) != bar || bars.volume(i) != bar * 10) return "wrong bar " + bar;
+        }
+        return bars.isEmpty() ? "empty"
+                : (bars.timestamp(0) - START) / MINUTE + ".." + (bars.timestamp(bars.size() - 1) - START) / MINUTE;
+    }
+
+    private static String span(int fromBar, int toBarExclusive) {
+        return fromBar + ".." + (toBarExclusive - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> progress(String key) {
+        Map<String, Object> backfills = (Map<String, Object>) backfill.getStats().get("backfills");
+        return (Map<String, Object>) backfills.get(key);
+    }
+}
@@ -0,0 +1,230 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
+import com.pxbt.dev.aiTradingCharts.model.CryptoPrice;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistoricalResponseCacheTest {
+
+    private static final long HOUR = 3_600_000L;
+    // 10:30 on some day
+    private static final long START = 1_728_000_000_000L / HOUR * HOUR + HOUR / 2;
+    private static final Duration WAIT = Duration.ofSeconds(5);
+
+    private HistoricalResponseCache cache;
+    private final AtomicLong now = new AtomicLong(START);
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        cache = new HistoricalResponseCache();
+        ReflectionTestUtils.setField(cache, "staleWhileRevalidateMs", 300_000L);
+        ReflectionTestUtils.setField(cache, "maxEntries", 500);
+        ReflectionTestUtils.setField(cache, "clock", (LongSupplier) now::get);
+    }
+
+    @Test
+    void freshUntilTheCurrentCandleCloses() {
+        List<CryptoPrice> first = get("1h", counting(() -> Mono.just(prices(1))));
+        assertEquals(1, loads.get());
+
+        // Still the 10:00 candle, and the grace second after 11:00
+        now.set(START + HOUR / 2 - 1);
+        assertSame(first, get("1h", counting(() -> Mono.just(prices(2)))));
+        now.set(START + HOUR / 2 + 999);
+        assertSame(first, get("1h", counting(() -> Mono.just(prices(2)))));
+        assertEquals(1, loads.get());
+
+        // Past it, the stale list is served once while it refreshes in the background
+        now.set(START + HOUR / 2 + 1_000);
+        assertSame(first, get("1h", counting(() -> Mono.just(prices(2)))));
+        assertEquals(2, loads.get());
+        List<CryptoPrice> refreshed = get("1h", counting(() -> Mono.just(prices(3))));
+        assertEquals(prices(2), refreshed);
+        assertEquals(2, loads.get());
+
+        assertStats(1, 1, 3, 0, 1);
+    }
+
+    @Test
+    void expiryFollowsTheInterval() {
+        get("1d", counting(() -> Mono.just(prices(1))));
+        get("1h", counting(() -> Mono.just(prices(1))));
+        assertEquals(2, loads.get());
+
+        // At 11:01 the hourly entry has gone stale, the daily one hasn't
+        now.set(START + HOUR / 2 + 60_000);
+        get("1d", counting(() -> Mono.just(prices(2))));
+        get("1h", counting(() -> Mono.just(prices(2))));
+        assertEquals(3, loads.get());
+        assertEquals(1L, cache.getStats().get("refreshes"));
+    }
+
+    @Test
+    void weeklyCandlesCloseOnMonday() {
+        // Saturday 2024-10-12 12:00 UTC; the week's candle closes Monday 2024-10-14 00:00, not on a Thursday
+        long monday = 1_728_864_000_000L;
+        now.set(1_728_734_400_000L);
+        List<CryptoPrice> first = get("1w", counting(() -> Mono.just(prices(1))));
+
+        now.set(monday + 999);
+        assertSame(first, get("1w", counting(() -> Mono.just(prices(2)))));
+        assertEquals(1, loads.get());
+
+        now.set(monday + 1_000);
+        get("1w", counting(() -> Mono.just(prices(2))));
+        assertEquals(2, loads.get());
+        assertEquals(1L, cache.getStats().get("refreshes"));
+    }
+
+    @Test
+    void nextBarOpenFollowsBinanceBoundaries() {
+        // Tuesday 2024-02-20: the month closes on Friday 2024-03-01, the week on Monday 2024-02-26
+        long tuesday = 1_708_387_200_000L;
+        assertEquals(1_709_251_200_000L, BarSeries.nextBarOpen("1M", tuesday));
+        assertEquals(tuesday + 6 * 24 * HOUR, BarSeries.nextBarOpen("1w", tuesday));
+        assertEquals(tuesday + 3 * 24 * HOUR, BarSeries.nextBarOpen("3d", tuesday));
+        assertEquals(tuesday + 4 * HOUR, BarSeries.nextBarOpen("4h", tuesday));
+    }
+
+    @Test
+    void pastTheStaleWindowIsLoadedInTheForeground() {
+        get("1h", counting(() -> Mono.just(prices(1))));
+
+        now.set(START + HOUR / 2 + 1_000 + 300_000);
+        assertEquals(prices(2), get("1h", counting(() -> Mono.just(prices(2)))));
+        assertEquals(2, loads.get());
+        assertStats(2, 0, 0, 0, 0);
+    }
+
+    @Test
+    void concurrentRequestsShareOneLoad() throws Exception {
+        Sinks.One<List<CryptoPrice>> upstream = Sinks.one();
+        Supplier<Mono<List<CryptoPrice>>> loader = counting(upstream::asMono);
+        int requests = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(requests);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<CompletableFuture<List<CryptoPrice>>>> pending = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                pending.add(pool.submit(() -> {
+                    start.await();
+                    return cache.get("btc", "1h", 500, loader).toFuture();
+                }));
+            }
+            start.countDown();
+            List<CompletableFuture<List<CryptoPrice>>> responses = new ArrayList<>();
+            for (Future<CompletableFuture<List<CryptoPrice>>> future : pending) {
+                responses.add(future.get(5, TimeUnit.SECONDS));
+            }
+            assertTrue(responses.stream().noneMatch(CompletableFuture::isDone));
+
+            upstream.tryEmitValue(prices(1));
+            for (CompletableFuture<List<CryptoPrice>> response : responses) {
+                assertEquals(prices(1), response.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertStats(1, 0, 0, requests - 1, 0);
+        assertEquals(1, cache.getStats().get("entries"));
+    }
+
+    @Test
+    void backgroundRefreshIsNotRepeated() {
+        get("1h", counting(() -> Mono.just(prices(1))));
+        now.set(START + HOUR / 2 + 60_000);
+
+        Sinks.One<List<CryptoPrice>> upstream = Sinks.one();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(prices(1), get("1h", counting(upstream::asMono)));
+        }
+        assertEquals(2, loads.get());
+        assertEquals(1L, cache.getStats().get("refreshes"));
+
+        upstream.tryEmitValue(prices(2));
+        assertEquals(prices(2), get("1h", counting(() -> Mono.just(prices(3)))));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void failedFirstLoadIsRetriedByTheNextRequest() {
+        Mono<List<CryptoPrice>> failed = cache.get("BTC", "1h", 500,
+                counting(() -> Mono.error(new IllegalStateException("429 Too Many Requests"))));
+        assertThrows(IllegalStateException.class, () -> failed.block(WAIT));
+
+        // An empty body counts as a failure too
+        Mono<List<CryptoPrice>> empty = cache.get("BTC", "1h", 500, counting(() -> Mono.just(List.of())));
+        assertThrows(IllegalStateException.class, () -> empty.block(WAIT));
+
+        assertEquals(prices(1), get("1h", counting(() -> Mono.just(prices(1)))));
+        assertEquals(3, loads.get());
+        assertEquals(2L, cache.getStats().get("errors"));
+        assertEquals(3L, cache.getStats().get("misses"));
+    }
+
+    @Test
+    void failedRefreshKeepsServingTheStaleList() {
+        List<CryptoPrice> first = get("1h", counting(() -> Mono.just(prices(1))));
+        now.set(START + HOUR / 2 + 60_000);
+
+        assertSame(first, get("1h", counting(() -> Mono.error(new IllegalStateException("timeout")))));
+        assertSame(first, get("1h", counting(() -> Mono.just(prices(2)))));
+        assertEquals(3, loads.get());
+        assertEquals(1L, cache.getStats().get("errors"));
+        assertEquals(prices(2), get("1h", counting(() -> Mono.just(prices(3)))));
+    }
+
+    private List<CryptoPrice> get(String interval, Supplier<Mono<List<CryptoPrice>>> loader) {
+        return cache.get("BTC", interval, 500, loader).block(WAIT);
+    }
+
+    /**
+     * Loader that counts the upstream calls it makes
+     */
+    private Supplier<Mono<List<CryptoPrice>>> counting(Supplier<Mono<List<CryptoPrice>>> loader) {
+        return () -> {
+            loads.incrementAndGet();
+            return loader.get();
+        };
+    }
+
+    private void assertStats(long misses, long staleServed, long hits, long coalesced, long refreshes) {
+        assertEquals(misses, cache.getStats().get("misses"), "misses");
+        assertEquals(staleServed, cache.getStats().get("staleServed"), "staleServed");
+        assertEquals(hits, cache.getStats().get("hits"), "hits");
+        assertEquals(coalesced, cache.getStats().get("coalesced"), "coalesced");
+        assertEquals(refreshes, cache.getStats().get("refreshes"), "refreshes");
+    }
+
+    private static List<CryptoPrice> prices(int version) {
+        List<CryptoPrice> prices = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            double price = 60_000 + version * 100 + i;
+            prices.add(new CryptoPrice("BTC", price, 10, START - (3 - i) * HOUR, price, price, price, price));
+        }
+        return prices;
+    }
+}
@@ -0,0 +1,322 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The rolling indicators against the window-rescanning calculations they replaced (copied below from
+ * PricePredictionService and TradingAnalysisService as they were), on a BTC-sized random walk long enough
+ * to cross several resums, with the forming bar amended between closes
+ */
+class IndicatorStateTest {
+
+    private static final long DAY = 86_400_000L;
+    private static final IndicatorState.Spec SPEC =
+            new IndicatorState.Spec("test", 120, new int[]{5, 10, 14, 20, 21, 50}, new int[]{12, 26});
+
+    @Test
+    void matchesTheWindowedCalculations() {
+        Random random = new Random(7);
+        IndicatorState state = new IndicatorState(SPEC);
+        List<Double> closes = new ArrayList<>();
+        List<Double> volumes = new ArrayList<>();
+        double price = 60_000;
+
+        for (int bar = 0; bar < 3 * IndicatorState.RESUM_INTERVAL; bar++) {
+            price *= 1 + random.nextGaussian() * 0.02;
+            double volume = 1_000 + random.nextDouble() * 20_000;
+            state.push(bar * DAY, price, volume);
+            closes.add(price);
+            volumes.add(volume);
+            assertMatches(state, closes, volumes);
+
+            // The forming bar follows a few ticks before it closes
+            for (int amend = random.nextInt(3); amend > 0; amend--) {
+                price *= 1 + random.nextGaussian() * 0.005;
+                volume += random.nextDouble() * 500;
+                state.amendNewest(bar * DAY, price, volume);
+                closes.set(closes.size() - 1, price);
+                volumes.set(volumes.size() - 1, volume);
+                assertMatches(state, closes, volumes);
+            }
+        }
+    }
+
+    @Test
+    void trendInputsMatchTheOldAnalysisWindow() {
+        Random random = new Random(11);
+        IndicatorState state = new IndicatorState(new IndicatorState.Spec("trend", 30, new int[]{7, 10, 14}, new int[0]));
+        List<Double> closes = new ArrayList<>();
+        double price = 150;
+
+        for (int bar = 0; bar < 2_000; bar++) {
+            price *= 1 + random.nextGaussian() * 0.03;
+            state.push(bar * DAY, price, 1);
+            closes.add(price);
+            if (state.count() < 30) continue;
+
+            double[] window = window(closes, 30);
+            for (int bars : new int[]{7, 30}) {
+                double[] prices = Arrays.copyOfRange(window, window.length - bars, window.length);
+                // Old calculatePriceTrend: linearly weighted average against the first price
+                double weightedSum = 0, totalWeight = 0;
+                for (int i = 0; i < prices.length; i++) {
+                    double weight = (i + 1) / (double) prices.length;
+                    totalWeight += weight;
+                    weightedSum += prices[i] * weight;
+                }
+                assertClose(weightedSum / totalWeight, state.weightedMean(bars), "weightedMean " + bars);
+                // Old calculateVolatility: population deviation relative to the mean
+                assertClose(oldVolatility(prices, prices.length) / oldSma(prices, prices.length),
+                        state.stdDev(bars) / state.mean(bars), "relative volatility " + bars);
+            }
+            // Old calculateMomentum: mean of the last 9 returns over a 10-bar lookback
+            double momentum = 0;
+            for (int i = window.length - 10; i < window.length - 1; i++) {
+                momentum += (window[i + 1] - window[i]) / window[i];
+            }
+            assertClose(momentum, state.returnSum(10), "returnSum 10");
+        }
+    }
+
+    @Test
+    void engineFollowsAppendsTicksAndReloads() {
+        BarSeriesStore store = new BarSeriesStore();
+        ReflectionTestUtils.setField(store, "defaultCapacity", 500);
+        IndicatorEngine engine = new IndicatorEngine();
+        ReflectionTestUtils.setField(engine, "barSeriesStore", store);
+        Random random = new Random(3);
+
+        BarSeries series = store.getOrCreate("BTC", "1d");
+        double price = 60_000;
+        for (int bar = 0; bar < 300; bar++) {
+            price *= 1 + random.nextGaussian() * 0.02;
+            series.append(bar * DAY, price, price, price, price, 5_000 + bar);
+            // Live ticks on the forming bar, read between some of them
+            for (int tick = 0; tick < 3; tick++) {
+                series.applyTick(bar * DAY, price * (1 + random.nextGaussian() * 0.004));
+                if (random.nextInt(4) == 0) assertSameAsReplay(engine, series);
+            }
+            if (bar % 7 == 0) assertSameAsReplay(engine, series);
+        }
+        // More new bars than the first tail snapshot holds
+        for (int bar = 300; bar < 340; bar++) {
+            price *= 1 + random.nextGaussian() * 0.02;
+            series.append(bar * DAY, price, price, price, price, 5_000 + bar);
+        }
+        assertSameAsReplay(engine, series);
+        assertEquals(1L, engine.getStats().get("rebuilds"));
+
+        // A reload rewrites history and forces one replay
+        BarSeries reloaded = new BarSeries(500);
+        for (int bar = 0; bar < 200; bar++) {
+            reloaded.append(bar * DAY, 100 + bar, 101 + bar, 99 + bar, 100.5 + bar, 10);
+        }
+        series.replace(reloaded.view());
+        assertSameAsReplay(engine, series);
+        assertEquals(2L, engine.getStats().get("rebuilds"));
+        assertTrue((Long) engine.getStats().get("incrementalUpdates") > 300);
+    }
+
+    private static void assertSameAsReplay(IndicatorEngine engine, BarSeries series) {
+        IndicatorState replayed = IndicatorState.of(IndicatorState.FEATURES, series.snapshot(Integer.MAX_VALUE));
+        double[] expected = features(replayed);
+        double[] actual = engine.read("BTC", "1d", IndicatorState.FEATURES, IndicatorStateTest::features);
+        for (int i = 0; i < expected.length; i++) {
+            assertClose(expected[i], actual[i], "feature " + i);
+        }
+    }
+
+    private static double[] features(IndicatorState s) {
+        return new double[]{s.lastClose(), s.sma(20), s.sma(50), s.ema(12), s.ema(26), s.rsi(14), s.rsi(21),
+                s.volatility(20), s.zScore(), s.bollingerPosition(), s.volumePriceTrend(), s.volumeStrength()};
+    }
+
+    private static void assertMatches(IndicatorState state, List<Double> allCloses, List<Double> allVolumes) {
+        double[] prices = window(allCloses, SPEC.window());
+        double[] volumes = window(allVolumes, SPEC.window());
+        assertEquals(prices.length, state.count());
+
+        for (int period : new int[]{5, 10, 20, 50}) {
+            assertClose(oldSma(prices, period), state.sma(period), "sma " + period);
+            assertClose(oldVolatility(prices, period), state.volatility(period), "volatility " + period);
+            assertClose(oldRateOfChange(prices, period), state.rateOfChange(period), "rateOfChange " + period);
+            assertClose(oldMomentum(prices, period), state.momentum(period), "momentum " + period);
+        }
+        assertClose(oldRsi(prices, 14), state.rsi(14), "rsi 14");
+        assertClose(oldRsi(prices, 21), state.rsi(21), "rsi 21");
+
+        // EMAs now run over the whole history rather than restarting at the window's first bar
+        double[] history = allCloses.stream().mapToDouble(Double::doubleValue).toArray();
+        assertClose(oldEma(history, 12), state.ema(12), "ema 12");
+        assertClose(oldEma(history, 26), state.ema(26), "ema 26");
+        assertClose(oldEma(history, 12) - oldEma(history, 26), state.macd(), "macd");
+
+        assertClose(oldVolumeStrength(volumes), state.volumeStrength(), "volumeStrength");
+        assertClose(oldPriceAcceleration(prices), state.priceAcceleration(), "priceAcceleration");
+        assertClose(oldZScore(prices), state.zScore(), "zScore");
+        assertClose(oldBollingerPosition(prices), state.bollingerPosition(), "bollingerPosition");
+        assertClose(oldVolumePriceTrend(volumes, prices), state.volumePriceTrend(), "volumePriceTrend");
+        assertClose(oldSupportResistance(prices), state.supportResistance(), "supportResistance");
+        assertClose(oldTrendStrength(prices), state.trendStrength(), "trendStrength");
+        assertClose(oldLongTermTrend(prices), state.longTermTrend(), "longTermTrend");
+        if (prices.length >= 30 && prices[prices.length - 1] != prices[prices.length - 30]) {
+            assertClose(oldMarketCycle(prices), state.marketCycle(), "marketCycle");
+        }
+    }
+
+    private static void assertClose(double expected, double actual, String what) {
+        double tolerance = 1e-9 * Math.max(1, Math.abs(expected));
+        assertEquals(expected, actual, tolerance, what);
+    }
+
+    private static double[] window(List<Double> values, int size) {
+        return values.subList(Math.max(0, values.size() - size), values.size()).stream()
+                .mapToDouble(Double::doubleValue).toArray();
+    }
+
+    // ===== The calculations as they were before IndicatorState =====
+
+    private static double oldSma(double[] prices, int period) {
+        if (prices.length < period) return prices[prices.length - 1];
+        double sum = 0;
+        for (int i = prices.length - period; i < prices.length; i++) {
+            sum += prices[i];
+        }
+        return sum / period;
+    }
+
+    private static double oldEma(double[] prices, int period) {
+        double multiplier = 2.0 / (period + 1);
+        double ema = prices[0];
+        for (int i = 1; i < prices.length; i++) {
+            ema = (prices[i] * multiplier) + (ema * (1 - multiplier));
+        }
+        return ema;
+    }
+
+    private static double oldRsi(double[] prices, int period) {
+        if (prices.length < period + 1) return 50.0;
+        double gains = 0.0;
+        double losses = 0.0;
+        for (int i = prices.length - period; i < prices.length - 1; i++) {
+            double change = prices[i + 1] - prices[i];
+            if (change > 0) gains += change;
+            else losses -= change;
+        }
+        double avgGain = gains / period;
+        double avgLoss = losses / period;
+        if (avgLoss == 0) return 100.0;
+        double rs = avgGain / avgLoss;
+        return 100.0 - (100.0 / (1 + rs));
+    }
+
+    private static double oldVolatility(double[] prices, int period) {
+        if (prices.length < period) return 0.0;
+        double mean = oldSma(prices, period);
+        double sum = 0.0;
+        int start = Math.max(0, prices.length - period);
+        int count = prices.length - start;
+        for (int i = start; i < prices.length; i++) {
+            sum += Math.pow(prices[i] - mean, 2);
+        }
+        return Math.sqrt(sum / count);
+    }
+
+    private static double oldMomentum(double[] prices, int period) {
+        if (prices.length < period) return 0.0;
+        return prices[prices.length - 1] - prices[prices.length - period];
+    }
+
+    private static double oldRateOfChange(double[] prices, int period) {
+        if (prices.length < period) return 0.0;
+        return ((prices[prices.length - 1] - prices[prices.length - period]) / prices[prices.length - period]) * 100;
+    }
+
+    private static double oldPriceAcceleration(double[] prices) {
+        if (prices.length < 3) return 0;
+        double change1 = (prices[prices.length - 1] - prices[prices.length - 2]) / prices[prices.length - 2];
+        double change2 = (prices[prices.length - 2] - prices[prices.length - 3]) / prices[prices.length - 3];
+        return change1 - change2;
+    }
+
+    private static double oldZScore(double[] prices) {
+        if (prices.length < 2) return 0.0;
+        double mean = oldSma(prices, prices.length);
+        double stdDev = oldVolatility(prices, prices.length);
+        return stdDev == 0 ? 0.0 : (prices[prices.length - 1] - mean) / stdDev;
+    }
+
+    private static double oldBollingerPosition(double[] prices) {
+        if (prices.length < 20) return 0.5;
+        double sma20 = oldSma(prices, 20);
+        double stdDev = oldVolatility(prices, 20);
+        double upperBand = sma20 + (2 * stdDev);
+        double lowerBand = sma20 - (2 * stdDev);
+        return (prices[prices.length - 1] - lowerBand) / (upperBand - lowerBand);
+    }
+
+    private static double oldVolumePriceTrend(double[] volumes, double[] prices) {
+        if (prices.length < 2) return 0;
+        double volumeSum = 0;
+        double priceChangeSum = 0;
+        for (int i = 1; i < prices.length; i++) {
+            double priceChange = (prices[i] - prices[i - 1]) / prices[i - 1];
+            volumeSum += volumes[i];
+            priceChangeSum += priceChange * volumes[i];
+        }
+        return volumeSum == 0 ? 0 : priceChangeSum / volumeSum;
+    }
+
+    private static double oldSupportResistance(double[] prices) {
+        if (prices.length < 10) return 0.0;
+        double avg = oldSma(prices, prices.length);
+        return (prices[prices.length - 1] - avg) / avg;
+    }
+
+    private static double oldTrendStrength(double[] prices) {
+        if (prices.length < 20) return 0.0;
+        double sma20 = oldSma(prices, Math.min(20, prices.length));
+        double sma50 = oldSma(prices, Math.min(50, prices.length));
+        return (sma20 - sma50) / sma50;
+    }
+
+    private static double oldMarketCycle(double[] prices) {
+        if (prices.length < 30) return 0;
+        double momentum30 = oldMomentum(prices, 30);
+        double momentum10 = oldMomentum(prices, 10);
+        return (momentum30 - momentum10) / Math.abs(momentum30);
+    }
+
+    private static double oldLongTermTrend(double[] prices) {
+        if (prices.length < 100) return 0;
+        double sumX = 0, sumY = 0, sumXY = 0, sumX2 = 0;
+        int n = prices.length;
+        for (int i = 0; i < n; i++) {
+            sumX += i;
+            sumY += prices[i];
+            sumXY += i * prices[i];
+            sumX2 += i * i;
+        }
+        double slope = (n * sumXY - sumX * sumY) / (n * sumX2 - sumX * sumX);
+        return slope / prices[0];
+    }
+
+    private static double oldVolumeStrength(double[] volumes) {
+        if (volumes.length < 2) return 0.5;
+        double avgVolume = 0.0;
+        for (int i = 0; i < volumes.length - 1; i++) {
+            avgVolume += volumes[i];
+        }
+        avgVolume /= (volumes.length - 1);
+        return volumes[volumes.length - 1] / avgVolume;
+    }
+}
@@ -0,0 +1,222 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KlineCacheTest {
+
+    private static final long DAY = 86_400_000L;
+
+    @TempDir
+    Path directory;
+
+    private KlineCache cache;
+    private Path file;
+
+    @BeforeEach
+    void setUp() {
+        cache = new KlineCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "directory", directory.toString());
+        file = directory.resolve("BTC-1d.klines");
+    }
+
+    @Test
+    void readsBackWhatWasWritten() {
+        BarSeries bars = bars(1, 3_000);
+        cache.write("btc", "1d", bars.view());
+
+        assertSameBars(bars, cache.read("BTC", "1d"));
+        assertNull(cache.read("BTC", "1h"));
+        assertNull(cache.read("ETH", "1d"));
+    }
+
+    @Test
+    void laterWritesAmendTheLastBarAndAppendInPlace() throws IOException {
+        BarSeries bars = bars(1, 100);
+        cache.write("BTC", "1d", bars.view());
+        long size = Files.size(file);
+
+        // The forming bar moved, then more bars closed
+        bars.applyTick(100 * DAY, 1_234.5);
+        for (int day = 101; day <= 150; day++) {
+            append(bars, day);
+        }
+        cache.write("BTC", "1d", bars.view());
+
+        assertEquals(size, Files.size(file), "file was rewritten");
+        BarSeries read = cache.read("BTC", "1d");
+        assertSameBars(bars, read);
+        assertEquals(1_234.5, read.view().close(99));
+
+        // Writing the same bars again changes nothing
+        cache.write("BTC", "1d", bars.view());
+        assertSameBars(bars, cache.read("BTC", "1d"));
+    }
+
+    @Test
+    void fullFileIsRewrittenLarger() throws IOException {
+        cache.write("BTC", "1d", bars(1, 10).view());
+        long size = Files.size(file);
+
+        BarSeries bars = bars(1, 1_500);
+        cache.write("BTC", "1d", bars.view());
+
+        assertTrue(Files.size(file) > size);
+        assertSameBars(bars, cache.read("BTC", "1d"));
+    }
+
+    @Test
+    void divergedHistoryReplacesTheFile() {
+        cache.write("BTC", "1d", bars(100, 200).view());
+
+        // A series that starts after the stored one ends
+        BarSeries later = bars(500, 520);
+        cache.write("BTC", "1d", later.view());
+        assertSameBars(later, cache.read("BTC", "1d"));
+
+        // A series that ends before the stored one does
+        BarSeries earlier = bars(1, 50);
+        cache.write("BTC", "1d", earlier.view());
+        assertSameBars(earlier, cache.read("BTC", "1d"));
+
+        // A series extended with older bars in front of the stored ones, as a backfill does
+        BarSeries extended = bars(1, 60);
+        extended.merge(bars(-40, 0).view());
+        cache.write("BTC", "1d", extended.view());
+        assertSameBars(extended, cache.read("BTC", "1d"));
+    }
+
+    @Test
+    void truncatedFileIsIgnoredAndRewritten() throws IOException {
+        BarSeries bars = bars(1, 200);
+        cache.write("BTC", "1d", bars.view());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() / 2);
+        }
+        assertNull(cache.read("BTC", "1d"));
+
+        // Shorter than the header
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(10);
+        }
+        assertNull(cache.read("BTC", "1d"));
+
+        cache.write("BTC", "1d", bars.view());
+        assertSameBars(bars, cache.read("BTC", "1d"));
+    }
+
+    @Test
+    void corruptHeaderIsIgnoredAndRewritten() throws IOException {
+        BarSeries bars = bars(1, 200);
+
+        // Not a cache file at all
+        Files.write(file, "open,high,low,close\n1,2,3,4\n5,6,7,8\n9,10,11,12\n".getBytes());
+        assertNull(cache.read("BTC", "1d"));
+
+        // More bars than slots
+        cache.write("BTC", "1d", bars.view());
+        overwriteInt(12, 5_000);
+        assertNull(cache.read("BTC", "1d"));
+
+        // Negative capacity
+        cache.write("BTC", "1d", bars.view());
+        overwriteInt(8, -1);
+        assertNull(cache.read("BTC", "1d"));
+
+        cache.write("BTC", "1d", bars.view());
+        assertSameBars(bars, cache.read("BTC", "1d"));
+    }
+
+    @Test
+    void disabledCacheNeitherReadsNorWrites() {
+        cache.write("BTC", "1d", bars(1, 10).view());
+        ReflectionTestUtils.setField(cache, "enabled", false);
+
+        assertNull(cache.read("BTC", "1d"));
+        cache.write("ETH", "1d", bars(1, 10).view());
+        assertFalse(Files.exists(directory.resolve("ETH-1d.klines")));
+    }
+
+    @Test
+    void concurrentWritesOfOneFileLeaveItConsistent() throws Exception {
+        // Appends racing rewrites (older bars in front), as a backfill checkpoint and a history save can
+        ExecutorService writers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int firstDay = t % 2 == 0 ? 1 : -t * 100;
+                done.add(writers.submit(() -> {
+                    for (int lastDay = 50; lastDay <= 300; lastDay += 10) {
+                        cache.write("BTC", "1d", bars(firstDay, lastDay).view());
+                    }
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+
+        // Whichever write came last, the file holds exactly one of the written series
+        BarSeries.View read = cache.read("BTC", "1d").view();
+        int firstDay = (int) (read.timestamp(0) / DAY);
+        assertSameBars(bars(firstDay, firstDay + read.size() - 1), cache.read("BTC", "1d"));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(file), files.toList(), "temp files left behind");
+        }
+    }
+
+    private void overwriteInt(int position, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, value), position);
+        }
+    }
+
+    private static BarSeries bars(int firstDay, int lastDay) {
+        BarSeries bars = new BarSeries(10_000);
+        for (int day = firstDay; day <= lastDay; day++) {
+            append(bars, day);
+        }
+        return bars;
+    }
+
+    private static void append(BarSeries bars, int day) {
+        bars.append(day * DAY, 100 + day, 101.25 + day, 98.5 + day, 100.75 + day, 1_000.125 * day);
+    }
+
+    private static void assertSameBars(BarSeries expected, BarSeries actual) {
+        assertNotNull(actual);
+        BarSeries.View e = expected.view();
+        BarSeries.View a = actual.view();
+        assertEquals(e.size(), a.size());
+        for (int i = 0; i < e.size(); i++) {
+            assertEquals(e.timestamp(i), a.timestamp(i));
+            assertEquals(e.open(i), a.open(i));
+            assertEquals(e.high(i), a.high(i));
+            assertEquals(e.low(i), a.low(i));
+            assertEquals(e.close(i), a.close(i));
+            assertEquals(e.volume(i), a.volume(i));
+        }
+    }
+}
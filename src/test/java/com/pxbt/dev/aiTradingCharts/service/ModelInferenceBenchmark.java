@@ -0,0 +1,100 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import weka.classifiers.functions.LinearRegression;
+import weka.classifiers.trees.RandomForest;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-prediction latency: Weka (a new DenseInstance per call, as AIModelService did) vs. the compiled
+ * evaluators. Run {@link #main} after {@code mvn test-compile}; the target is 10x lower latency.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelInferenceBenchmark {
+
+    private static final int FEATURES = TrainingDataService.FEATURE_COUNT;
+
+    private RandomForest forest;
+    private LinearRegression linear;
+    private CompiledModel compiledForest;
+    private CompiledModel compiledLinear;
+    private Instances header;
+    private double[] features;
+
+    @Setup
+    public void train() throws Exception {
+        Random random = new Random(1);
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        for (int i = 0; i < FEATURES; i++) {
+            attributes.add(new Attribute("feature_" + i));
+        }
+        attributes.add(new Attribute("price_change"));
+        Instances data = new Instances("ModelInferenceBenchmark", attributes, 1000);
+        data.setClassIndex(FEATURES);
+        for (int i = 0; i < 1000; i++) {
+            double[] values = new double[FEATURES + 1];
+            for (int j = 0; j < FEATURES; j++) values[j] = random.nextDouble();
+            values[FEATURES] = 0.02 * values[0] - 0.01 * values[3] * values[4] + random.nextGaussian() * 0.002;
+            data.add(new DenseInstance(1.0, values));
+        }
+
+        forest = new RandomForest();
+        forest.setNumIterations(100);
+        forest.buildClassifier(data);
+        linear = new LinearRegression();
+        linear.buildClassifier(data);
+        compiledForest = CompiledModel.compile(forest, data);
+        compiledLinear = CompiledModel.compile(linear, data);
+        header = new Instances(data, 0);
+
+        features = new double[FEATURES];
+        for (int j = 0; j < FEATURES; j++) features[j] = random.nextDouble();
+    }
+
+    @Benchmark
+    public double wekaForest() throws Exception {
+        return forest.classifyInstance(instance());
+    }
+
+    @Benchmark
+    public double compiledForest() {
+        return compiledForest.predict(features);
+    }
+
+    @Benchmark
+    public double wekaLinearRegression() throws Exception {
+        return linear.classifyInstance(instance());
+    }
+
+    @Benchmark
+    public double compiledLinearRegression() {
+        return compiledLinear.predict(features);
+    }
+
+    private DenseInstance instance() {
+        double[] values = new double[FEATURES + 1];
+        System.arraycopy(features, 0, values, 0, FEATURES);
+        values[FEATURES] = weka.core.Utils.missingValue();
+        DenseInstance instance = new DenseInstance(1.0, values);
+        instance.setDataset(header);
+        return instance;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ModelInferenceBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,132 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.model.ModelPerformance;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import weka.classifiers.functions.LinearRegression;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ModelRegistryTest {
+
+    @TempDir
+    Path directory;
+
+    private final Instances data = dataset(new Random(1), 100);
+    private ModelRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        ModelStore store = new ModelStore();
+        ReflectionTestUtils.setField(store, "directory", directory.toString());
+        ReflectionTestUtils.setField(store, "keepVersions", 3);
+        registry = new ModelRegistry(mock(SymbolRegistry.class), store);
+        ReflectionTestUtils.setField(registry, "maxHeapBytes", Long.MAX_VALUE);
+        registry.init();
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedAndReloadsThemFromTheStore() throws Exception {
+        LinearRegression first = put("AAA");
+        // Room for two models of this size, not three
+        long size = (long) entry("AAA").get("sizeBytes");
+        ReflectionTestUtils.setField(registry, "maxHeapBytes", size * 5 / 2);
+
+        put("BBB");
+        put("CCC");
+        assertEquals(List.of("BBB", "CCC"), resident());
+
+        // Using BBB makes CCC the eldest
+        assertNotNull(registry.get(key("BBB")));
+        put("DDD");
+        assertEquals(List.of("BBB", "DDD"), resident());
+        assertEquals(2L, registry.getStats().get("evictions"));
+        assertTrue((long) registry.getStats().get("residentBytes") <= size * 5 / 2);
+
+        // An evicted model is still known, and comes back from the store on use
+        assertEquals(4, registry.size());
+        assertEquals(0.5, registry.getPerformance(key("AAA")).getR2());
+        ModelRegistry.Model reloaded = registry.get(key("AAA"));
+        assertEquals(1L, registry.getStats().get("reloads"));
+        assertEquals(first.classifyInstance(data.instance(0)), reloaded.classifier().classifyInstance(data.instance(0)));
+        assertEquals(List.of("AAA", "DDD"), resident());
+
+        // Then it is resident again
+        assertSame(reloaded, registry.get(key("AAA")));
+        assertEquals(1L, registry.getStats().get("reloads"));
+        assertNull(registry.get(key("EEE")));
+    }
+
+    @Test
+    void theMostRecentModelStaysEvenIfItAloneIsOverBudget() throws Exception {
+        ReflectionTestUtils.setField(registry, "maxHeapBytes", 1L);
+
+        put("AAA");
+        put("BBB");
+
+        assertEquals(List.of("BBB"), resident());
+        assertNotNull(registry.get(key("BBB")));
+        assertEquals(0L, registry.getStats().get("reloads"));
+    }
+
+    private LinearRegression put(String symbol) throws Exception {
+        LinearRegression model = new LinearRegression();
+        model.buildClassifier(data);
+        registry.put(key(symbol), model, data, new ModelPerformance(0.5, 0.01, 0.01, 20), data.size(),
+                CompiledModel.compile(model, data));
+        return model;
+    }
+
+    private static ModelRegistry.ModelKey key(String symbol) {
+        return new ModelRegistry.ModelKey(symbol, "1d", TrainingDataService.FEATURE_SET_VERSION);
+    }
+
+    /**
+     * Symbols whose model is on the heap
+     */
+    private List<String> resident() {
+        return entries().stream().filter(row -> (boolean) row.get("resident"))
+                .map(row -> (String) row.get("symbol")).toList();
+    }
+
+    private Map<String, Object> entry(String symbol) {
+        return entries().stream().filter(row -> row.get("symbol").equals(symbol)).findFirst().orElseThrow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> entries() {
+        return (List<Map<String, Object>>) registry.getStats().get("entries");
+    }
+
+    private static Instances dataset(Random random, int size) {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        for (int i = 0; i < TrainingDataService.FEATURE_COUNT; i++) {
+            attributes.add(new Attribute("feature_" + i));
+        }
+        attributes.add(new Attribute("price_change"));
+        Instances data = new Instances("ModelRegistryTest", attributes, size);
+        data.setClassIndex(TrainingDataService.FEATURE_COUNT);
+
+        for (int i = 0; i < size; i++) {
+            double[] values = new double[TrainingDataService.FEATURE_COUNT + 1];
+            for (int j = 0; j < TrainingDataService.FEATURE_COUNT; j++) {
+                values[j] = random.nextDouble();
+            }
+            values[TrainingDataService.FEATURE_COUNT] = 0.02 * values[0] - 0.01 * values[3] + random.nextGaussian() * 0.002;
+            data.add(new DenseInstance(1.0, values));
+        }
+        return data;
+    }
+}
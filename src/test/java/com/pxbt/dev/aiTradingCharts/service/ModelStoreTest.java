@@ -0,0 +1,166 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.model.ModelPerformance;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+import weka.classifiers.Classifier;
+import weka.classifiers.functions.LinearRegression;
+import weka.classifiers.trees.RandomForest;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ModelStoreTest {
+
+    private static final ModelRegistry.ModelKey KEY =
+            new ModelRegistry.ModelKey("btc", "1d", TrainingDataService.FEATURE_SET_VERSION);
+
+    @TempDir
+    Path directory;
+
+    private ModelStore store;
+    private Path keyDirectory;
+
+    @BeforeEach
+    void setUp() {
+        store = new ModelStore();
+        ReflectionTestUtils.setField(store, "directory", directory.toString());
+        ReflectionTestUtils.setField(store, "keepVersions", 3);
+        keyDirectory = directory.resolve("BTC-1d-v" + TrainingDataService.FEATURE_SET_VERSION);
+    }
+
+    @Test
+    void readsBackTheNewestVersion() throws Exception {
+        RandomForest forest = new RandomForest();
+        forest.setNumIterations(10);
+        forest.setSeed(7);
+        Instances data = dataset(new Random(1), 200);
+        forest.buildClassifier(data);
+
+        assertEquals(1, store.write(KEY, model(new LinearRegression(), data, 1L)));
+        assertEquals(2, store.write(KEY, model(forest, data, 2L)));
+
+        ModelStore.Stored stored = store.readLatest(KEY);
+        assertEquals(2, stored.version());
+        assertEquals(2L, stored.model().trainedAt());
+        assertInstanceOf(RandomForest.class, stored.model().classifier());
+        assertEquals(forest.classifyInstance(data.instance(0)),
+                stored.model().classifier().classifyInstance(data.instance(0)));
+        assertEquals(List.of(KEY), store.keys());
+        assertNull(store.readLatest(new ModelRegistry.ModelKey("ETH", "1d", TrainingDataService.FEATURE_SET_VERSION)));
+    }
+
+    @Test
+    void fallsBackWhenTheNewestFailsItsChecksum() throws Exception {
+        Instances data = dataset(new Random(1), 100);
+        for (long trainedAt = 1; trainedAt <= 3; trainedAt++) {
+            store.write(KEY, model(new LinearRegression(), data, trainedAt));
+        }
+
+        // One flipped bit in the payload of the newest version
+        Path newest = keyDirectory.resolve("000003.model");
+        byte[] bytes = Files.readAllBytes(newest);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(newest, bytes);
+
+        ModelStore.Stored stored = store.readLatest(KEY);
+        assertEquals(2, stored.version());
+        assertEquals(2L, stored.model().trainedAt());
+        assertEquals(1L, store.getStats().get("integrityFailures"));
+        assertEquals(1L, store.getStats().get("fallbacks"));
+
+        // The next write still numbers past the damaged file
+        assertEquals(4, store.write(KEY, model(new LinearRegression(), data, 4L)));
+        assertEquals(4, store.readLatest(KEY).version());
+    }
+
+    @Test
+    void prunesToTheNewestKeepVersions() throws Exception {
+        ReflectionTestUtils.setField(store, "keepVersions", 2);
+        Instances data = dataset(new Random(1), 100);
+        for (long trainedAt = 1; trainedAt <= 5; trainedAt++) {
+            store.write(KEY, model(new LinearRegression(), data, trainedAt));
+        }
+
+        assertEquals(List.of("000004.model", "000005.model"), files());
+        assertEquals(5, store.readLatest(KEY).version());
+    }
+
+    @Test
+    void refusesClassesThatArentPartOfAModel() throws Exception {
+        store.write(KEY, model(new LinearRegression(), dataset(new Random(1), 100), 1L));
+
+        // A well-formed file with a matching digest, but a payload that isn't a model
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(payload)) {
+            out.writeObject(new PriorityQueue<>(List.of(1, 2, 3)));
+        }
+        writeRaw(keyDirectory.resolve("000002.model"), payload.toByteArray());
+
+        ModelStore.Stored stored = store.readLatest(KEY);
+        assertEquals(1, stored.version());
+        assertEquals(1L, store.getStats().get("integrityFailures"));
+    }
+
+    private List<String> files() throws IOException {
+        try (Stream<Path> files = Files.list(keyDirectory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    /**
+     * A file in the store's format around any payload
+     */
+    private static void writeRaw(Path file, byte[] payload) throws Exception {
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(0x4D444C31);
+            out.writeInt(1);
+            out.writeLong(payload.length);
+            out.write(MessageDigest.getInstance("SHA-256").digest(payload));
+            out.write(payload);
+        }
+    }
+
+    private static ModelRegistry.Model model(Classifier classifier, Instances data, long trainedAt) throws Exception {
+        if (classifier instanceof LinearRegression) classifier.buildClassifier(data);
+        return new ModelRegistry.Model(classifier, new Instances(data, 0), new ModelPerformance(0.5, 0.01, 0.01, 20),
+                data.size(), trainedAt, CompiledModel.compile(classifier, data));
+    }
+
+    private static Instances dataset(Random random, int size) {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        for (int i = 0; i < TrainingDataService.FEATURE_COUNT; i++) {
+            attributes.add(new Attribute("feature_" + i));
+        }
+        attributes.add(new Attribute("price_change"));
+        Instances data = new Instances("ModelStoreTest", attributes, size);
+        data.setClassIndex(TrainingDataService.FEATURE_COUNT);
+
+        for (int i = 0; i < size; i++) {
+            double[] values = new double[TrainingDataService.FEATURE_COUNT + 1];
+            for (int j = 0; j < TrainingDataService.FEATURE_COUNT; j++) {
+                values[j] = random.nextDouble();
+            }
+            values[TrainingDataService.FEATURE_COUNT] = 0.02 * values[0] - 0.01 * values[3] + random.nextGaussian() * 0.002;
+            data.add(new DenseInstance(1.0, values));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,218 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pxbt.dev.aiTradingCharts.Gateway.BinanceStreamGateway;
+import com.pxbt.dev.aiTradingCharts.Gateway.TickerListener;
+import com.pxbt.dev.aiTradingCharts.dto.AnalysisMessage;
+import com.pxbt.dev.aiTradingCharts.dto.PriceTickMessage;
+import com.pxbt.dev.aiTradingCharts.handler.BroadcastMessage;
+import com.pxbt.dev.aiTradingCharts.handler.CryptoWebSocketHandler;
+import com.pxbt.dev.aiTradingCharts.handler.MessageEncoding;
+import com.pxbt.dev.aiTradingCharts.model.PricePrediction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Ticks through the stream listener to the WebSocket broadcasts, with the analysis services stubbed so the
+ * predictions scale with the price like the real models' do
+ */
+class RealTimeDataServiceTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long DAY = 86_400_000L;
+    private static final long TODAY = 1_728_000_000_000L / DAY * DAY;
+
+    private RealTimeDataService service;
+    private ScheduledExecutorService scheduler;
+    private BinanceHistoricalService history;
+    private PricePredictionService predictions;
+    private TickerListener ticker;
+
+    // Every data message broadcast, decoded from its JSON encoding
+    private final List<JsonNode> broadcasts = new CopyOnWriteArrayList<>();
+    private volatile double predictedChange = 0.02;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        history = mock(BinanceHistoricalService.class);
+        predictions = mock(PricePredictionService.class);
+        CryptoWebSocketHandler webSocketHandler = mock(CryptoWebSocketHandler.class);
+        BinanceStreamGateway streamGateway = mock(BinanceStreamGateway.class);
+        SymbolRegistry symbolRegistry = mock(SymbolRegistry.class);
+
+        when(webSocketHandler.hasSubscribers("BTC")).thenReturn(true);
+        doAnswer(invocation -> {
+            BroadcastMessage message = invocation.getArgument(1);
+            broadcasts.add(MAPPER.readTree(message.encode(MessageEncoding.JSON).getPayload().toString()));
+            return null;
+        }).when(webSocketHandler).broadcast(eq("BTC"), any(), anyBoolean());
+        when(history.getLastDailyBarTime("BTC")).thenReturn(TODAY);
+        when(history.getDailyGeneration("BTC")).thenReturn(1L);
+        when(predictions.predictMultipleTimeframes(eq("BTC"), anyDouble()))
+                .thenAnswer(invocation -> predictionsAt(invocation.getArgument(1)));
+
+        service = new RealTimeDataService();
+        ReflectionTestUtils.setField(service, "analysisWorkerThreads", 1);
+        ReflectionTestUtils.setField(service, "analysisQueueCapacity", 16);
+        ReflectionTestUtils.setField(service, "tickMaxHz", 0.0);
+        ReflectionTestUtils.setField(service, "sharedScheduler", scheduler);
+        ReflectionTestUtils.setField(service, "webSocketHandler", webSocketHandler);
+        ReflectionTestUtils.setField(service, "binanceStreamGateway", streamGateway);
+        ReflectionTestUtils.setField(service, "predictionService", predictions);
+        ReflectionTestUtils.setField(service, "binanceHistoricalService", history);
+        ReflectionTestUtils.setField(service, "chartPatternService", mock(ChartPatternService.class));
+        ReflectionTestUtils.setField(service, "fibonacciTimeZoneService", mock(FibonacciTimeZoneService.class));
+        ReflectionTestUtils.setField(service, "aiModelService", mock(AIModelService.class));
+        ReflectionTestUtils.setField(service, "symbolRegistry", symbolRegistry);
+        service.init();
+
+        // Activate BTC to get hold of its ticker listener
+        ArgumentCaptor<SymbolRegistry.SymbolResources> resources = ArgumentCaptor.forClass(SymbolRegistry.SymbolResources.class);
+        verify(symbolRegistry).addResources(resources.capture());
+        resources.getValue().acquire("BTC").block();
+        ArgumentCaptor<TickerListener> listener = ArgumentCaptor.forClass(TickerListener.class);
+        verify(streamGateway).subscribe(eq("btcusdt@ticker"), listener.capture());
+        ticker = listener.getValue();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void priceOnlyTicksSendNoAnalysisDeltas() {
+        tick(67_000.0);
+        awaitTick(67_000.0);
+        assertEquals(1, analysisMessages(AnalysisMessage.FULL).size());
+
+        for (int i = 1; i <= 50; i++) {
+            tick(67_000.0 + i * 7.5);
+        }
+        double last = 67_000.0 + 50 * 7.5;
+        awaitTick(last);
+
+        assertEquals(1, analysisMessages(AnalysisMessage.FULL).size());
+        assertEquals(List.of(), analysisMessages(AnalysisMessage.DELTA), "price-only ticks changed the analysis");
+        verify(predictions, times(1)).predictMultipleTimeframes(eq("BTC"), anyDouble());
+
+        // The predicted prices follow the price on the ticks instead
+        JsonNode prediction = lastTick().get("predictions").get("1d");
+        assertEquals(last * 1.02, prediction.get("predictedPrice").asDouble(), 1e-6);
+        assertEquals(last * 1.02 * 1.05, prediction.get("priceTargets").get("optimistic").asDouble(), 1e-6);
+        JsonNode analysis = analysisMessages(AnalysisMessage.FULL).get(0).get("analysis");
+        assertFalse(analysis.has("currentPrice"));
+        assertEquals(0.02, analysis.get("timeframePredictions").get("1d").get("predictedChange").asDouble(), 1e-9);
+    }
+
+    @Test
+    void closedDailyBarPublishesADelta() {
+        tick(67_000.0);
+        awaitTick(67_000.0);
+
+        // The day rolls over and the models now expect a fall
+        predictedChange = -0.03;
+        when(history.getLastDailyBarTime("BTC")).thenReturn(TODAY + DAY);
+        tick(66_500.0);
+        await(() -> !analysisMessages(AnalysisMessage.DELTA).isEmpty());
+
+        JsonNode delta = analysisMessages(AnalysisMessage.DELTA).get(0);
+        assertEquals(2, delta.get("version").asLong());
+        assertEquals(1, delta.get("baseVersion").asLong());
+        assertEquals("BEARISH", delta.get("changes").get("timeframePredictions").get("1d").get("trend").asText());
+    }
+
+    @Test
+    void failedAnalysisKeepsThePreviousOne() {
+        tick(67_000.0);
+        awaitTick(67_000.0);
+
+        // The day rolls over but the models fail
+        when(history.getLastDailyBarTime("BTC")).thenReturn(TODAY + DAY);
+        when(predictions.predictMultipleTimeframes(eq("BTC"), anyDouble()))
+                .thenThrow(new IllegalStateException("model unavailable"));
+        tick(66_500.0);
+        awaitTick(66_500.0);
+
+        assertEquals(1L, service.getPipelineStats().get("failedAnalyses"));
+        assertEquals(List.of(), analysisMessages(AnalysisMessage.DELTA));
+        assertEquals(66_500.0 * 1.02, lastTick().get("predictions").get("1d").get("predictedPrice").asDouble(), 1e-6);
+
+        // The closed bar wasn't recorded as analysed, so the next tick tries again
+        predictedChange = -0.03;
+        doAnswer(invocation -> predictionsAt(invocation.getArgument(1)))
+                .when(predictions).predictMultipleTimeframes(eq("BTC"), anyDouble());
+        tick(66_400.0);
+        await(() -> !analysisMessages(AnalysisMessage.DELTA).isEmpty());
+        assertEquals(2, analysisMessages(AnalysisMessage.DELTA).get(0).get("version").asLong());
+    }
+
+    private void tick(double price) {
+        ticker.onTicker(price, 24_000.0, System.currentTimeMillis());
+    }
+
+    private Map<String, PricePrediction> predictionsAt(double price) {
+        Map<String, PricePrediction> byTimeframe = new LinkedHashMap<>();
+        for (String timeframe : PricePredictionService.TIMEFRAMES) {
+            double predicted = price * (1 + predictedChange);
+            byTimeframe.put(timeframe, new PricePrediction("BTC", predicted, 0.7,
+                    predictedChange > 0 ? "BULLISH" : "BEARISH",
+                    Map.of("conservative", predicted * 0.95, "expected", predicted, "optimistic", predicted * 1.05),
+                    Map.of("timeframe", timeframe)));
+        }
+        return byTimeframe;
+    }
+
+    private List<JsonNode> analysisMessages(String type) {
+        return broadcasts.stream().filter(message -> type.equals(message.get("type").asText())).toList();
+    }
+
+    private JsonNode lastTick() {
+        List<JsonNode> ticks = analysisMessages(PriceTickMessage.TYPE);
+        return ticks.get(ticks.size() - 1);
+    }
+
+    /**
+     * Wait until the tick at this price has been broadcast and the analysis pipeline is idle
+     */
+    private void awaitTick(double price) {
+        await(() -> broadcasts.stream().anyMatch(message -> PriceTickMessage.TYPE.equals(message.get("type").asText())
+                && message.get("price").asDouble() == price));
+        await(() -> {
+            Map<String, Object> stats = service.getPipelineStats();
+            long settled = (Long) stats.get("processed") + (Long) stats.get("conflated")
+                    + (Long) stats.get("dropped") + (Long) stats.get("failed");
+            return settled == (Long) stats.get("submitted") && (Integer) stats.get("activeWorkers") == 0;
+        });
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "timed out");
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
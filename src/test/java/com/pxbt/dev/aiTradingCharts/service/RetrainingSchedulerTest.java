@@ -0,0 +1,126 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RetrainingSchedulerTest {
+
+    private static final long DAY = 86_400_000L;
+    private static final int TIMEFRAMES = TrainingDataService.TIMEFRAMES.size();
+
+    private final TrainingDataService trainingDataService = mock(TrainingDataService.class);
+    private final BinanceHistoricalService historicalDataService = mock(BinanceHistoricalService.class);
+    private final ModelRegistry modelRegistry = mock(ModelRegistry.class);
+    private final SymbolRegistry symbolRegistry = mock(SymbolRegistry.class);
+    private final long today = System.currentTimeMillis() / DAY * DAY;
+    private RetrainingScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        // 120 daily bars, the newest still forming
+        BarSeries bars = new BarSeries(1000);
+        for (long open = today - 119 * DAY; open <= today; open += DAY) {
+            bars.append(open, 100, 101, 99, 100, 1_000);
+        }
+        when(historicalDataService.getDailyBars(eq("BTC"), anyInt())).thenReturn(bars.view());
+        when(symbolRegistry.getActiveSymbols()).thenReturn(List.of("BTC"));
+        when(trainingDataService.collectSymbolTrainingData(anyString(), anyString())).thenReturn(true);
+
+        scheduler = new RetrainingScheduler(trainingDataService, historicalDataService, modelRegistry,
+                symbolRegistry, mock(ScheduledExecutorService.class));
+        ReflectionTestUtils.setField(scheduler, "enabled", false);
+        ReflectionTestUtils.setField(scheduler, "minNewBars", 3);
+        ReflectionTestUtils.setField(scheduler, "threads", 1);
+        ReflectionTestUtils.setField(scheduler, "queueCapacity", 4);
+        scheduler.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    @Test
+    void retrainsOnceMinNewBarsHaveClosed() throws Exception {
+        // Trained just before the last two bars closed
+        when(modelRegistry.getTrainedAt(any())).thenReturn(today - 2 * DAY);
+        check();
+        assertEquals(List.of(), scheduler.getStats().get("pending"));
+        verifyNoInteractions(trainingDataService);
+
+        // A third closed bar since the oldest of the symbol's models was trained
+        when(modelRegistry.getTrainedAt(new ModelRegistry.ModelKey("BTC", "4h",
+                TrainingDataService.FEATURE_SET_VERSION))).thenReturn(today - 3 * DAY);
+        check();
+        assertTrue(awaitCompleted(1), "never retrained");
+        for (String timeframe : TrainingDataService.TIMEFRAMES) {
+            verify(trainingDataService).collectSymbolTrainingData("BTC", timeframe);
+        }
+
+        // The attempt counts as training, so the same bars don't trigger it again
+        check();
+        assertEquals(List.of(), scheduler.getStats().get("pending"));
+        verify(trainingDataService, times(TIMEFRAMES)).collectSymbolTrainingData(anyString(), anyString());
+    }
+
+    @Test
+    void aSecondRetrainJoinsThePendingJob() throws Exception {
+        CountDownLatch training = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(trainingDataService.collectSymbolTrainingData(anyString(), anyString())).thenAnswer(invocation -> {
+            training.countDown();
+            release.await();
+            return true;
+        });
+
+        CompletableFuture<Void> first = scheduler.retrain("BTC");
+        assertTrue(training.await(5, TimeUnit.SECONDS));
+        CompletableFuture<Void> second = scheduler.retrain("BTC");
+        // Nor does the periodic check queue another while it runs
+        when(modelRegistry.getTrainedAt(any())).thenReturn(0L);
+        check();
+
+        assertSame(first, second);
+        assertEquals(List.of("BTC"), scheduler.getStats().get("pending"));
+        release.countDown();
+        second.get(5, TimeUnit.SECONDS);
+        verify(trainingDataService, times(TIMEFRAMES)).collectSymbolTrainingData(anyString(), anyString());
+        assertTrue(awaitCompleted(1));
+
+        // Once it's done the next retrain is a new job
+        CompletableFuture<Void> next = scheduler.retrain("BTC");
+        assertNotSame(first, next);
+        next.get(5, TimeUnit.SECONDS);
+        verify(trainingDataService, times(2 * TIMEFRAMES)).collectSymbolTrainingData(anyString(), anyString());
+    }
+
+    private void check() {
+        ReflectionTestUtils.invokeMethod(scheduler, "checkForNewBars");
+    }
+
+    /**
+     * Wait until that many jobs have completed and none is pending
+     */
+    private boolean awaitCompleted(long jobs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while ((long) scheduler.getStats().get("completed") < jobs
+                || !((List<?>) scheduler.getStats().get("pending")).isEmpty()) {
+            if (System.currentTimeMillis() > deadline) return false;
+            Thread.sleep(5);
+        }
+        return true;
+    }
+}
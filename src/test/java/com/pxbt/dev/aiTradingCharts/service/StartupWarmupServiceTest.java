@@ -0,0 +1,114 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class StartupWarmupServiceTest {
+
+    private final BinanceHistoricalService history = mock(BinanceHistoricalService.class);
+    private final SymbolRegistry symbolRegistry = mock(SymbolRegistry.class);
+    private final Map<String, Integer> dailyBars = new ConcurrentHashMap<>();
+    private final Sinks.Empty<Void> pinnedActivation = Sinks.empty();
+
+    private StartupWarmupService warmup;
+
+    @BeforeEach
+    void setUp() {
+        warmup = new StartupWarmupService();
+        ReflectionTestUtils.setField(warmup, "binanceHistoricalService", history);
+        ReflectionTestUtils.setField(warmup, "marketDataService", mock(MarketDataService.class));
+        ReflectionTestUtils.setField(warmup, "symbolRegistry", symbolRegistry);
+        ReflectionTestUtils.setField(warmup, "realTimeDataService", mock(RealTimeDataService.class));
+        ReflectionTestUtils.setField(warmup, "retrainingScheduler", mock(RetrainingScheduler.class));
+        ReflectionTestUtils.setField(warmup, "modelRegistry", mock(ModelRegistry.class));
+
+        when(history.getDailyBarCounts()).thenReturn(dailyBars);
+        when(symbolRegistry.getPinnedSymbols()).thenReturn(List.of("BTC", "SOL"));
+        when(symbolRegistry.activatePinned()).thenReturn(pinnedActivation.asMono());
+        when(symbolRegistry.getState(anyString())).thenReturn(SymbolRegistry.State.ACTIVE);
+    }
+
+    @Test
+    void readyOnlyOnceEveryPinnedSymbolHasDailyBars() {
+        assertFalse(warmup.isReady());
+
+        warmup.warmUp();
+        // Bars and states already look right, but activation hasn't finished
+        dailyBars.put("BTC", 1000);
+        dailyBars.put("SOL", 1000);
+        assertFalse(warmup.isReady());
+        assertEquals(StartupWarmupService.TaskState.RUNNING, taskState("history"));
+
+        // Activation done, but SOL's history came back empty
+        dailyBars.put("SOL", 0);
+        pinnedActivation.tryEmitEmpty();
+        assertEquals(StartupWarmupService.TaskState.DONE, taskState("history"));
+        assertFalse(warmup.isReady());
+        assertNull(warmup.getStatus().get("timeToReadyMs"));
+
+        // SOL's bars arrived after the history task finished; the time to ready is still recorded
+        dailyBars.put("SOL", 1000);
+        assertTrue(warmup.isReady());
+        assertEquals(true, warmup.getStatus().get("ready"));
+        Object timeToReady = warmup.getStatus().get("timeToReadyMs");
+        assertNotNull(timeToReady);
+        assertEquals(timeToReady, warmup.getStatus().get("timeToReadyMs"));
+    }
+
+    @Test
+    void notReadyWhileAPinnedSymbolIsNotActive() {
+        dailyBars.put("BTC", 1000);
+        dailyBars.put("SOL", 1000);
+        when(symbolRegistry.getState("SOL")).thenReturn(SymbolRegistry.State.ACTIVATING);
+
+        warmup.warmUp();
+        pinnedActivation.tryEmitEmpty();
+        assertFalse(warmup.isReady());
+
+        when(symbolRegistry.getState("SOL")).thenReturn(SymbolRegistry.State.FAILED);
+        assertFalse(warmup.isReady());
+
+        when(symbolRegistry.getState("SOL")).thenReturn(SymbolRegistry.State.ACTIVE);
+        assertTrue(warmup.isReady());
+    }
+
+    @Test
+    void readyIsRecordedWhenActivationCompletesWithEverythingLoaded() {
+        dailyBars.put("BTC", 1000);
+        dailyBars.put("SOL", 1000);
+
+        warmup.warmUp();
+        assertNull(warmup.getStatus().get("timeToReadyMs"));
+        pinnedActivation.tryEmitEmpty();
+
+        assertTrue(warmup.isReady());
+        assertNotNull(warmup.getStatus().get("timeToReadyMs"));
+    }
+
+    @Test
+    void failedActivationIsNeverReady() {
+        dailyBars.put("BTC", 1000);
+        dailyBars.put("SOL", 1000);
+
+        warmup.warmUp();
+        pinnedActivation.tryEmitError(new IllegalStateException("Binance unreachable"));
+
+        assertEquals(StartupWarmupService.TaskState.FAILED, taskState("history"));
+        assertFalse(warmup.isReady());
+    }
+
+    @SuppressWarnings("unchecked")
+    private StartupWarmupService.TaskState taskState(String task) {
+        Map<String, Object> tasks = (Map<String, Object>) warmup.getStatus().get("tasks");
+        return (StartupWarmupService.TaskState) ((Map<String, Object>) tasks.get(task)).get("state");
+    }
+}
@@ -0,0 +1,209 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SymbolRegistryTest {
+
+    private static final Duration WAIT = Duration.ofSeconds(5);
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private final Recording history = new Recording("history");
+    private final Recording stream = new Recording("stream");
+    private SymbolRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SymbolRegistry(scheduler);
+        ReflectionTestUtils.setField(registry, "defaultSymbols", List.of("BTC", "sol"));
+        ReflectionTestUtils.setField(registry, "idleTimeoutMs", 60_000L);
+        ReflectionTestUtils.setField(registry, "idleCheckIntervalMs", 10L);
+        registry.addResources(history);
+        registry.addResources(stream);
+        registry.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void firstUseActivatesEveryResourceOnce() {
+        assertTrue(registry.register("eth"));
+        assertFalse(registry.register("ETH"));
+        assertEquals(SymbolRegistry.State.INACTIVE, registry.getState("ETH"));
+        assertTrue(events.isEmpty());
+
+        registry.touch("eth");
+        registry.touch("ETH");
+        registry.activate("ETH").block(WAIT);
+
+        // In registration order, so a service is set up after the ones it depends on
+        assertEquals(List.of("history+ETH", "stream+ETH"), events);
+        assertEquals(SymbolRegistry.State.ACTIVE, registry.getState("ETH"));
+        assertEquals(List.of("ETH"), registry.getActiveSymbols());
+        assertEquals(1L, registry.getStats().get("activations"));
+
+        // Unregistered symbols are ignored by touch and refused by activate
+        registry.touch("DOGE");
+        assertNull(registry.getState("DOGE"));
+        assertThrows(IllegalArgumentException.class, () -> registry.activate("DOGE").block(WAIT));
+        assertThrows(IllegalArgumentException.class, () -> registry.register("not a symbol"));
+    }
+
+    @Test
+    void unregisterReleasesInReverseOrder() {
+        registry.register("ETH");
+        registry.activate("ETH").block(WAIT);
+        events.clear();
+
+        assertTrue(registry.unregister("eth"));
+        assertFalse(registry.unregister("ETH"));
+
+        assertEquals(List.of("stream-ETH", "history-ETH"), events);
+        assertNull(registry.getState("ETH"));
+        assertFalse(registry.getSymbols().contains("ETH"));
+        assertEquals(1L, registry.getStats().get("releases"));
+    }
+
+    @Test
+    void idleSymbolsAreReleasedWhilePinnedOnesStay() throws Exception {
+        ReflectionTestUtils.setField(registry, "idleTimeoutMs", 100L);
+        registry.activatePinned().block(WAIT);
+        registry.register("ETH");
+        registry.activate("ETH").block(WAIT);
+
+        assertTrue(waitFor(() -> registry.getState("ETH") == SymbolRegistry.State.INACTIVE), "ETH never released");
+        assertTrue(events.containsAll(List.of("stream-ETH", "history-ETH")));
+        // Released off the shared scheduler, which only picked the idle symbol
+        assertNotNull(stream.releasedOn);
+        assertNotEquals(schedulerThread(), stream.releasedOn);
+        assertEquals(List.of("BTC", "SOL"), registry.getActiveSymbols());
+        assertFalse(events.stream().anyMatch(event -> event.startsWith("stream-") && !event.endsWith("ETH")));
+
+        // Using it again brings it back
+        registry.touch("ETH");
+        assertTrue(waitFor(() -> registry.getState("ETH") == SymbolRegistry.State.ACTIVE));
+        assertEquals(2, events.stream().filter("stream+ETH"::equals).count());
+    }
+
+    @Test
+    void lookupsNormalizeTheSymbolLikeRegister() {
+        assertTrue(registry.register(" eth "));
+
+        assertTrue(registry.isRegistered("Eth"));
+        assertTrue(registry.isRegistered(" ETH"));
+        assertEquals(SymbolRegistry.State.INACTIVE, registry.getState("eth "));
+        registry.activate(" eth").block(WAIT);
+        assertEquals(SymbolRegistry.State.ACTIVE, registry.getState("ETH"));
+
+        // Names that can't be symbols are just unknown
+        assertFalse(registry.isRegistered("not a symbol"));
+        assertNull(registry.getState(null));
+        registry.touch("e");
+        assertThrows(IllegalArgumentException.class, () -> registry.activate("not a symbol").block(WAIT));
+    }
+
+    @Test
+    void pinnedSymbolsComeFirstAndActivateTogether() {
+        registry.register("ETH");
+        registry.register("DOGE");
+
+        assertEquals(List.of("BTC", "SOL", "ETH", "DOGE"), registry.getSymbols());
+        assertEquals(List.of("BTC", "SOL"), registry.getPinnedSymbols());
+
+        registry.activatePinned().block(WAIT);
+        assertEquals(List.of("BTC", "SOL"), registry.getActiveSymbols());
+        assertEquals(SymbolRegistry.State.INACTIVE, registry.getState("ETH"));
+    }
+
+    @Test
+    void releasedWhileActivatingDropsWhatWasSetUp() {
+        Sinks.Empty<Void> slowHistory = Sinks.empty();
+        history.pending.put("ETH", slowHistory);
+        registry.register("ETH");
+
+        registry.touch("ETH");
+        assertEquals(SymbolRegistry.State.ACTIVATING, registry.getState("ETH"));
+        registry.unregister("ETH");
+        events.clear();
+        slowHistory.tryEmitEmpty();
+
+        // The late setup of both resources is undone rather than left behind
+        assertEquals(List.of("history+ETH", "stream+ETH", "stream-ETH", "history-ETH"), events);
+        assertEquals(0L, registry.getStats().get("activations"));
+    }
+
+    @Test
+    void failedActivationReleasesAndReportsFailed() {
+        stream.failing = true;
+        registry.register("ETH");
+
+        assertThrows(IllegalStateException.class, () -> registry.activate("ETH").block(WAIT));
+
+        assertEquals(SymbolRegistry.State.FAILED, registry.getState("ETH"));
+        assertEquals(List.of("history+ETH", "stream+ETH", "stream-ETH", "history-ETH"), events);
+        assertEquals(1L, registry.getStats().get("failedActivations"));
+        assertTrue(registry.getActiveSymbols().isEmpty());
+    }
+
+    private Thread schedulerThread() throws Exception {
+        return scheduler.submit(Thread::currentThread).get();
+    }
+
+    private static boolean waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) return false;
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    /**
+     * Logs "name+SYMBOL" on acquire and "name-SYMBOL" on release
+     */
+    private class Recording implements SymbolRegistry.SymbolResources {
+        private final String name;
+        final Map<String, Sinks.Empty<Void>> pending = new ConcurrentHashMap<>();
+        volatile boolean failing;
+        volatile Thread releasedOn;
+
+        Recording(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public Mono<Void> acquire(String symbol) {
+            Sinks.Empty<Void> slow = pending.remove(symbol);
+            Mono<Void> setUp = slow != null ? slow.asMono() : Mono.empty();
+            return setUp.then(Mono.fromRunnable(() -> {
+                events.add(name + "+" + symbol);
+                if (failing) throw new IllegalStateException(name + " unavailable");
+            }));
+        }
+
+        @Override
+        public void release(String symbol) {
+            events.add(name + "-" + symbol);
+            releasedOn = Thread.currentThread();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.pxbt.dev.aiTradingCharts.service;
+
+import com.pxbt.dev.aiTradingCharts.model.BarSeries;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The one-pass double[][] training set against the row-by-row List construction it replaced (copied below
+ * as it was, bounded at the last bar with a known future as the new one is)
+ */
+class TrainingDataServiceTest {
+
+    private static final long DAY = 86_400_000L;
+
+    private final TrainingDataService service = new TrainingDataService();
+
+    @Test
+    void matrixMatchesTheRowByRowConstruction() {
+        BarSeries bars = randomWalk(new Random(3), 2_500);
+
+        for (String timeframe : TrainingDataService.TIMEFRAMES) {
+            TrainingDataService.TrainingSet built = service.buildTrainingSet(bars.view(), timeframe);
+            List<double[]> rows = new ArrayList<>();
+            List<Double> targets = new ArrayList<>();
+            rowByRow(bars.view(), futureOffset(timeframe), rows, targets);
+
+            assertEquals(targets.size(), built.size(), timeframe);
+            assertEquals(built.size(), built.features().length, timeframe);
+            // Outliers were dropped, so the matrix was trimmed
+            assertTrue(built.size() < bars.size() - IndicatorState.FEATURES.window() - futureOffset(timeframe));
+            for (int i = 0; i < built.size(); i++) {
+                assertEquals(TrainingDataService.FEATURE_COUNT, built.features()[i].length);
+                assertArrayEquals(rows.get(i), built.features()[i], timeframe + " row " + i);
+                assertEquals(targets.get(i), built.targets()[i], timeframe + " target " + i);
+            }
+        }
+    }
+
+    @Test
+    void tooShortASeriesGivesAnEmptySet() {
+        BarSeries bars = randomWalk(new Random(5), IndicatorState.FEATURES.window() + 7);
+
+        TrainingDataService.TrainingSet built = service.buildTrainingSet(bars.view(), "1d");
+        assertEquals(0, built.size());
+        assertEquals(0, built.features().length);
+        assertEquals(0, service.buildTrainingSet(bars.view(), "1h").size());
+    }
+
+    /**
+     * The old loop: a new feature array and boxed target appended per accepted sample
+     */
+    private static void rowByRow(BarSeries.View data, int futureOffset, List<double[]> rows, List<Double> targets) {
+        IndicatorState state = new IndicatorState(IndicatorState.FEATURES);
+        for (int i = 0; i < data.size() - futureOffset; i++) {
+            if (i >= state.window()) {
+                double[] features = extractFeatures(state);
+                double actualChange = (data.close(i + futureOffset) - data.close(i)) / data.close(i);
+                if (Math.abs(actualChange) < 0.5) {
+                    rows.add(features);
+                    targets.add(actualChange);
+                }
+            }
+            state.push(data.timestamp(i), data.close(i), data.volume(i));
+        }
+    }
+
+    private static double[] extractFeatures(IndicatorState state) {
+        double[] features = new double[15];
+        features[0] = state.sma(5);
+        features[1] = state.sma(20);
+        features[2] = state.ema(12);
+        features[3] = state.rsi(14);
+        features[4] = state.macd();
+        features[5] = state.volatility(20);
+        features[6] = state.momentum(10);
+        features[7] = state.rateOfChange(10);
+        features[8] = state.volumeStrength();
+        features[9] = state.zScore();
+        features[10] = state.trendStrength();
+        features[11] = state.supportResistance();
+        features[12] = state.bollingerPosition();
+        features[13] = state.priceAcceleration();
+        features[14] = state.volumePriceTrend();
+        return features;
+    }
+
+    private static int futureOffset(String timeframe) {
+        return switch (timeframe) {
+            case "1h" -> 24;
+            case "4h" -> 12;
+            case "1d" -> 7;
+            default -> 24;
+        };
+    }
+
+    /**
+     * Daily bars of a BTC-sized random walk, with a crash and recovery the outlier filter has to drop
+     */
+    private static BarSeries randomWalk(Random random, int size) {
+        BarSeries bars = new BarSeries(size);
+        double price = 60_000;
+        for (int bar = 0; bar < size; bar++) {
+            price *= 1 + random.nextGaussian() * 0.02;
+            if (bar == size / 2) price *= 0.4;
+            if (bar == size / 2 + 3) price *= 2.5;
+            bars.append(bar * DAY, price, price * 1.01, price * 0.99, price, 1_000 + random.nextDouble() * 20_000);
+        }
+        return bars;
+    }
+}